@@ -6,14 +6,15 @@ import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.multibindings.MapBinder;
 import com.google.inject.servlet.RequestScoped;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.SimpleFSDirectory;
 import org.segrada.model.savedquery.GraphSavedQueryDataWorker;
 import org.segrada.model.savedquery.SavedQueryDataWorker;
 import org.segrada.search.SearchEngine;
+import org.segrada.search.lucene.LuceneDirectoryFactory;
 import org.segrada.search.lucene.LuceneSearchEngine;
 import org.segrada.search.lucene.LuceneSegradaAnalyzer;
 import org.segrada.search.solr.SolrSearchEngine;
@@ -22,6 +23,12 @@ import org.segrada.service.base.AbstractFullTextService;
 import org.segrada.service.base.AbstractRepositoryService;
 import org.segrada.service.binarydata.BinaryDataService;
 import org.segrada.service.binarydata.BinaryDataServiceFile;
+import org.segrada.service.importer.BulkImportJob;
+import org.segrada.service.index.DetachedServiceFactory;
+import org.segrada.service.index.ReindexJob;
+import org.segrada.service.index.SearchIndexUpdateQueue;
+import org.segrada.service.index.ServiceIndexUpdateProcessor;
+import org.segrada.service.index.ServiceReindexWorker;
 import org.segrada.service.repository.RememberMeRepository;
 import org.segrada.service.repository.factory.RepositoryFactory;
 import org.segrada.service.repository.orientdb.OrientRememberMeRepository;
@@ -33,6 +40,7 @@ import org.segrada.util.PasswordEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import static org.segrada.util.Preconditions.checkNotNull;
@@ -148,7 +156,52 @@ public class ServiceModule extends AbstractModule {
 			// define search engine for solr server
 			return new SolrSearchEngine(settings, luceneAnalyzer);
 		}
-		return new LuceneSearchEngine(luceneDirectory, luceneAnalyzer);
+		return new LuceneSearchEngine(settings, luceneDirectory, luceneAnalyzer);
+	}
+
+	@Provides
+	@Singleton
+	@Inject
+	public SearchIndexUpdateQueue provideSearchIndexUpdateQueue(ApplicationSettings settings, ServiceIndexUpdateProcessor processor) {
+		// journal is saved next to database and index
+		Path journal = null;
+		String savePath = settings.getSetting("savePath");
+		if (savePath != null && !savePath.isEmpty()) {
+			if (!savePath.endsWith(java.io.File.separator)) savePath += java.io.File.separator;
+			journal = Paths.get(savePath + "index_queue.journal");
+		}
+
+		return new SearchIndexUpdateQueue(processor, journal,
+				settings.getSettingAsInt("index.queue.capacity", 10000),
+				settings.getSettingAsInt("index.queue.batchSize", 100),
+				settings.getSettingAsLong("index.queue.flushDelay", 250L),
+				settings.getSettingAsLong("index.queue.offerTimeout", 2000L));
+	}
+
+	@Provides
+	@Singleton
+	@Inject
+	public ReindexJob provideReindexJob(ApplicationSettings settings, ServiceReindexWorker worker, SearchEngine searchEngine) {
+		// checkpoint is saved next to database and index
+		Path checkpoint = null;
+		String savePath = settings.getSetting("savePath");
+		if (savePath != null && !savePath.isEmpty()) {
+			if (!savePath.endsWith(java.io.File.separator)) savePath += java.io.File.separator;
+			checkpoint = Paths.get(savePath + "reindex.checkpoint");
+		}
+
+		return new ReindexJob(worker, searchEngine, checkpoint,
+				settings.getSettingAsInt("reindex.threads", 0),
+				settings.getSettingAsInt("reindex.partitionSize", 5000));
+	}
+
+	@Provides
+	@Singleton
+	@Inject
+	public BulkImportJob provideBulkImportJob(ApplicationSettings settings, DetachedServiceFactory serviceFactory) {
+		return new BulkImportJob(serviceFactory,
+				settings.getSettingAsInt("import.batchSize", 1000),
+				settings.getSettingAsInt("import.maxErrors", 100));
 	}
 
 	@Provides
@@ -158,6 +211,9 @@ public class ServiceModule extends AbstractModule {
 		if (logger.isInfoEnabled())
 			logger.info("Providing OrientGraphFactory: " + settings.getSetting("orientDB.url"));
 
+		// parsed statements are cached by their text (global setting, has to be set before databases are opened)
+		OGlobalConfiguration.STATEMENT_CACHE_SIZE.setValue(settings.getSettingAsInt("orientDB.statementCacheSize", 500));
+
 		return new OrientGraphFactory(
 				settings.getSetting("orientDB.url"),
 				settings.getSetting("orientDB.login"),
@@ -179,9 +235,6 @@ public class ServiceModule extends AbstractModule {
 	// lucene should be thread save in practice
 	@Provides @Singleton @Inject
 	public Directory provideLuceneDirectory(ApplicationSettings settings) {
-		if (logger.isInfoEnabled())
-			logger.info("Providing LuceneDirectory: " + settings.getSetting("savePath") + java.io.File.separator + "lucene");
-
 		// construct save path from settings
 		String savePath = checkNotNull(settings.getSetting("savePath"), "savePath");
 
@@ -189,7 +242,9 @@ public class ServiceModule extends AbstractModule {
 		savePath += "lucene" + java.io.File.separator;
 
 		try {
-			return new SimpleFSDirectory(Paths.get(savePath));
+			return LuceneDirectoryFactory.createDirectory(settings.getSetting("lucene.directory"), Paths.get(savePath),
+					settings.getSettingAsInt("lucene.nrtCache.maxMergeSizeMB", 0),
+					settings.getSettingAsInt("lucene.nrtCache.maxCachedMB", 0));
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
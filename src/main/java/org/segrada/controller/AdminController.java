@@ -2,26 +2,59 @@ package org.segrada.controller;
 
 import com.google.inject.Inject;
 import com.google.inject.servlet.RequestScoped;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.sun.jersey.core.header.FormDataContentDisposition;
+import com.sun.jersey.multipart.FormDataParam;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
-import org.segrada.search.SearchEngine;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
 import org.segrada.service.base.AbstractFullTextService;
+import org.segrada.service.exporter.DatabaseExporter;
+import org.segrada.service.exporter.ExportWriter;
+import org.segrada.service.exporter.GraphMLExportWriter;
+import org.segrada.service.exporter.JsonLinesExportWriter;
+import org.segrada.service.importer.BulkImportJob;
+import org.segrada.service.index.ReindexJob;
+import org.segrada.service.index.SearchIndexUpdateQueue;
+import org.segrada.service.repository.orientdb.base.LookupCache;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
+import org.segrada.servlet.PageCacheDependencies;
+import org.segrada.session.CSRFTokenManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.security.RolesAllowed;
 import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -46,7 +79,19 @@ public class AdminController {
 	private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
 
 	@Inject
-	private SearchEngine searchEngine;
+	private SearchIndexUpdateQueue searchIndexUpdateQueue;
+
+	@Inject
+	private ReindexJob reindexJob;
+
+	@Inject
+	private BulkImportJob bulkImportJob;
+
+	@Inject
+	private PageCacheDependencies pageCacheDependencies;
+
+	@Inject
+	private ODatabaseDocumentTx db;
 
 	/**
 	 * map to all full text services
@@ -71,41 +116,206 @@ public class AdminController {
 	@Produces(MediaType.TEXT_HTML)
 	@RolesAllowed("ADMIN")
 	public String reindex(@Context ServletContext context) {
-		clearCache(context); // delete caches
+		// services to reindex
+		List<String> serviceClasses = new ArrayList<>(fullTextServiceMap.size());
+		for (AbstractFullTextService service : fullTextServiceMap.values())
+			serviceClasses.add(service.getClass().getName());
 
-		// clear index
-		searchEngine.clearAllIndexes();
+		// build new index in background - search stays available until it is complete
+		boolean started = reindexJob.start(serviceClasses, false);
+		if (logger.isDebugEnabled())
+			logger.debug(started ? "Started reindexing" : "Reindexing is running already");
 
-		// how many entities do we have in total?
-		long total = 0;
-		long done = 0;
-		for (Map.Entry<String, AbstractFullTextService> entry : fullTextServiceMap.entrySet()) {
-			total += (float) entry.getValue().count();
+		initI18N(context);
+		try {
+			return messages.getString(started ? "ReindexingStarted" : "ReindexingRunning");
+		} catch (Exception e) {
+			return started ? "Reindexing has been started." : "Reindexing is running already.";
 		}
-		if (logger.isDebugEnabled())
-			logger.debug("Reindexing count: " + total);
+	}
+
+	@GET
+	@Path("/reindex_status")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+	@RolesAllowed("ADMIN")
+	public String reindexStatus() {
+		// state, progress per class and throughput
+		return toJSON(reindexJob.getStatus()).toString();
+	}
 
-		// work all services and update index
-		for (Map.Entry<String, AbstractFullTextService> entry : fullTextServiceMap.entrySet()) {
-			if (logger.isDebugEnabled())
-				logger.debug("Started reindexing " + entry);
+	@POST
+	@Path("/import")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@RolesAllowed("ADMIN")
+	public Response bulkImport(@FormDataParam("file") final InputStream file,
+	                           @FormDataParam("file") final FormDataContentDisposition fileDetail,
+	                           @FormDataParam("format") final String formatName,
+	                           @FormDataParam("type") final String type,
+	                           @FormDataParam("_csrf") final String csrf, // _csrf checked locally
+	                           @Context HttpServletRequest request) {
+		// check csrf
+		String sessionToken = CSRFTokenManager.getTokenForSession(request.getSession());
+		if (csrf == null || !csrf.equals(sessionToken))
+			return Response.serverError().build();
+
+		if (file == null)
+			return Response.status(Response.Status.BAD_REQUEST).entity("{\"error\":\"No file uploaded\"}").build();
 
-			// reindex this batch
-			entry.getValue().reindexAll();
+		// format given or taken from file name
+		String fileName = fileDetail != null && fileDetail.getFileName() != null ? fileDetail.getFileName() : "upload";
+		BulkImportJob.Format format = BulkImportJob.Format.fromName(formatName != null && !formatName.isEmpty() ? formatName : fileName);
+		if (format == null)
+			return Response.status(Response.Status.BAD_REQUEST).entity("{\"error\":\"Unknown format - use jsonl or csv\"}").build();
 
-			// all done
-			done += (float) entry.getValue().count();
+		if (bulkImportJob.isRunning())
+			return Response.status(Response.Status.CONFLICT).entity(toJSON(bulkImportJob.getStatus()).toString()).build();
 
-			if (logger.isDebugEnabled())
-				logger.debug("Reindexed " + entry + ": " + done + "/" + total);
+		// stream upload to temporary file, job reads rows from there in background
+		java.nio.file.Path path = null;
+		try {
+			path = Files.createTempFile("segrada-import", "." + format.name().toLowerCase(Locale.ENGLISH));
+			Files.copy(file, path, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			logger.error("Could not save uploaded import file", e);
+			deleteQuietly(path);
+			return Response.serverError().build();
 		}
 
-		initI18N(context);
+		if (!bulkImportJob.start(path, fileName, format, type != null && !type.isEmpty() ? type : null)) {
+			deleteQuietly(path);
+			return Response.status(Response.Status.CONFLICT).entity(toJSON(bulkImportJob.getStatus()).toString()).build();
+		}
+
+		return Response.ok(toJSON(bulkImportJob.getStatus()).toString()).build();
+	}
+
+	@GET
+	@Path("/import_status")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+	@RolesAllowed("ADMIN")
+	public String bulkImportStatus() {
+		// state, rows, throughput, imported entities by type and errors of rows
+		return toJSON(bulkImportJob.getStatus()).toString();
+	}
+
+	@GET
+	@Path("/import_cancel")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+	@RolesAllowed("ADMIN")
+	public String bulkImportCancel() {
+		// rows read so far are still saved and indexed
+		bulkImportJob.cancel();
+		return toJSON(bulkImportJob.getStatus()).toString();
+	}
+
+	@GET
+	@Path("/export")
+	@Produces("application/gzip")
+	@RolesAllowed("ADMIN")
+	public Response export(@QueryParam("format") String format, @QueryParam("fromClass") String fromClass,
+	                       @QueryParam("after") String after) {
+		final boolean graphML = "graphml".equalsIgnoreCase(format);
+		if (!graphML && format != null && !format.isEmpty() && !"jsonl".equalsIgnoreCase(format))
+			return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Unknown format - use jsonl or graphml").build();
+
+		final String resumeClass = fromClass != null && !fromClass.isEmpty() ? fromClass : null;
+		final String resumeAfter = after != null && !after.isEmpty() ? after : null;
+		if (resumeClass != null && !DatabaseExporter.CLASSES.contains(resumeClass))
+			return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Unknown class " + resumeClass).build();
+
+		// records are written while iterating the database, so export size does not matter
+		StreamingOutput output = outputStream -> {
+			Writer writer = new OutputStreamWriter(new GZIPOutputStream(outputStream), StandardCharsets.UTF_8);
+			ExportWriter exportWriter = graphML ? new GraphMLExportWriter(writer) : new JsonLinesExportWriter(writer);
+			DatabaseExporter exporter = new DatabaseExporter(db);
+			try {
+				exporter.export(exportWriter, resumeClass, resumeAfter);
+			} catch (IOException | RuntimeException e) {
+				logger.error("Export failed after " + exporter.getRecords() + " records - resume with fromClass="
+						+ exporter.getLastClass() + "&after=" + exporter.getLastRid(), e);
+				throw e;
+			}
+			writer.close();
+		};
+
+		String fileName = "segrada-export" + (resumeClass != null ? "-" + resumeClass : "") + (graphML ? ".graphml.gz" : ".jsonl.gz");
+		return Response.ok(output).header("Content-Disposition", "attachment; filename=\"" + fileName + "\"").build();
+	}
+
+	/**
+	 * delete temporary file, ignoring errors
+	 * @param path of file or null
+	 */
+	private static void deleteQuietly(java.nio.file.Path path) {
+		if (path == null) return;
 		try {
-			return messages.getString("ReindexingFinished");
-		} catch (Exception e) {
-			return "Finished with error(s).";
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	@GET
+	@Path("/index_queue")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+	@RolesAllowed("ADMIN")
+	public String indexQueue() {
+		// queue depth, lag and throughput counters
+		return toJSON(searchIndexUpdateQueue.getStatistics()).toString();
+	}
+
+	/**
+	 * convert map of statistics to JSON object
+	 * @param map of values - nested maps are converted, too
+	 * @return JSON object
+	 */
+	private JSONObject toJSON(Map<String, Object> map) {
+		JSONObject jsonObject = new JSONObject();
+
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			try {
+				Object value = entry.getValue();
+				if (value instanceof Map) value = toJSON((Map<String, Object>) value);
+				else if (value instanceof Collection) value = new JSONArray((Collection) value);
+				jsonObject.put(entry.getKey(), value);
+			} catch (JSONException e) {
+				logger.warn("Could not convert statistic " + entry.getKey() + " to JSON", e);
+			}
 		}
+
+		return jsonObject;
+	}
+
+	@GET
+	@Path("/page_cache")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+	@RolesAllowed("ADMIN")
+	public String pageCache() {
+		// hits, misses and evictions per url pattern
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("pages", pageCacheDependencies.size());
+		statistics.put("patterns", pageCacheDependencies.getStatistics());
+
+		return toJSON(statistics).toString();
+	}
+
+	@GET
+	@Path("/entity_cache")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+	@RolesAllowed("ADMIN")
+	public String entityCache() {
+		// size, hit rate and evictions per database and model
+		return toJSON(LookupCache.getModelStatistics()).toString();
+	}
+
+	@GET
+	@Path("/statements")
+	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
+	@RolesAllowed("ADMIN")
+	public String statements() {
+		// executions, failures and time per named repository statement
+		return toJSON(OrientDbStatement.getStatistics()).toString();
 	}
 
 	@GET
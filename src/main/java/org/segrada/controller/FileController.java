@@ -19,6 +19,7 @@ import org.segrada.service.TagService;
 import org.segrada.service.base.AbstractRepositoryService;
 import org.segrada.service.base.SegradaService;
 import org.segrada.session.CSRFTokenManager;
+import org.segrada.session.Identity;
 import org.segrada.util.Sluggify;
 
 import javax.annotation.Nullable;
@@ -68,6 +69,9 @@ public class FileController extends AbstractColoredController<IFile> {
 	@Inject
 	private Map<String, AbstractRepositoryService> annotatedServices;
 
+	@Inject
+	private Identity identity;
+
 	@Override
 	protected String getBasePath() {
 		return "/file/";
@@ -322,7 +326,7 @@ public class FileController extends AbstractColoredController<IFile> {
 		if (referenceEntity != null && source != null)
 			service.connectFileToEntity(source, referenceEntity);
 
-		clearCache(); // delete caches
+		clearCache("file", referenceUid, source == null ? null : source.getUid()); // delete affected caches
 
 		String add = "";
 		if (!errors.isEmpty()) {
@@ -371,7 +375,7 @@ public class FileController extends AbstractColoredController<IFile> {
 
 		// do removal
 		if (referenceEntity != null && source != null) {
-			clearCache(); // delete caches
+			clearCache("file", referenceUid, sourceUid); // delete affected caches
 
 			service.removeFileFromEntity(source, referenceEntity);
 
@@ -400,6 +404,12 @@ public class FileController extends AbstractColoredController<IFile> {
 	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
 	@PermitAll //TODO: ACL
 	public String search(@QueryParam("s") String term, @QueryParam("tags") String tags) {
+		if (!identity.hasAccess("FILE")) return "[]";
+
+		// titles and file names are suggested from memory
+		if (term != null && !term.trim().isEmpty())
+			return suggestionsToJSON(service.suggest(term, 30), true);
+
 		// json array to hold hits
 		JSONArray jsonArray = new JSONArray();
 
@@ -599,7 +609,7 @@ public class FileController extends AbstractColoredController<IFile> {
 		// no validation errors: save entity
 		if (errors.isEmpty()) {
 			if (service.save(entity)) {
-				clearCache(); // delete caches
+				clearCache(entity); // delete affected caches
 
 				// remember tags and colors
 				rememberLastTags(tags, entity.getModelName());
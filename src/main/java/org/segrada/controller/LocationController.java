@@ -118,7 +118,7 @@ public class LocationController extends AbstractBaseController<ILocation> {
 
 			// try to save
 			if (!service.save(location)) error = true;
-			else clearCache(); // delete caches
+			else clearCache(parent); // delete affected caches
 		}
 
 		Map<String, Object> model = new HashMap<>();
@@ -150,14 +150,20 @@ public class LocationController extends AbstractBaseController<ILocation> {
 			else if (parentModel.equals("Relation")) parentService = this.relationService;
 
 			// try to delete element
-			if (!service.delete(location)) error = true;
-			else clearCache(); // delete caches
+			boolean deleted = service.delete(location);
+			if (!deleted) error = true;
 
 			// try to find parent model
 			if (parentService != null) {
 				parent = (SegradaCoreEntity) parentService.findById(parentId);
 				if (parent == null) error = true;
 			} else error = true;
+
+			// delete affected caches
+			if (deleted) {
+				if (parent != null) clearCache(parent);
+				else clearCache("location", uid);
+			}
 		}
 
 		Map<String, Object> model = new HashMap<>();
@@ -16,6 +16,7 @@ import org.segrada.service.NodeService;
 import org.segrada.service.RelationService;
 import org.segrada.service.TagService;
 import org.segrada.service.base.SegradaService;
+import org.segrada.session.Identity;
 
 import javax.annotation.Nullable;
 import javax.annotation.security.PermitAll;
@@ -54,6 +55,9 @@ public class NodeController extends AbstractColoredController<INode> {
 	@Inject
 	private TagService tagService;
 
+	@Inject
+	private Identity identity;
+
 	@Inject
 	private JSONConverter jsonConverter;
 
@@ -183,14 +187,20 @@ public class NodeController extends AbstractColoredController<INode> {
 	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
 	@PermitAll //TODO: ACL
 	public String search(@QueryParam("s") String term, @QueryParam("tags") String tags) {
-		// json array to hold hits
-		JSONArray jsonArray = new JSONArray();
+		if (!identity.hasAccess("NODE")) return "[]";
 
 		// explode tags
 		String[] tagIds;
 		if (tags != null && !tags.isEmpty()) tagIds = tags.split(",");
 		else tagIds = null;
 
+		// titles are suggested from memory, unless search is contained by tags
+		if (term != null && !term.trim().isEmpty() && tagIds == null)
+			return suggestionsToJSON(service.suggest(term, 30), true);
+
+		// json array to hold hits
+		JSONArray jsonArray = new JSONArray();
+
 		// search term finding
 		for (INode node : service.findBySearchTermAndTags(term, 30, true, tagIds)) {
 			try {
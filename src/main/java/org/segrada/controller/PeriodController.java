@@ -165,7 +165,7 @@ public class PeriodController extends AbstractBaseController<IPeriod> {
 			// save parent service in order to save from/to date
 			parentService.save(parent);
 
-			clearCache(); // delete caches
+			clearCache(parent); // delete affected caches
 		} else {
 			model.put("entity", entity);
 			model.put("errors", errors);
@@ -220,12 +220,15 @@ public class PeriodController extends AbstractBaseController<IPeriod> {
 		Response response = handleUpdate(entity, service);
 		if (response.getStatus() != 200) { // redirect means that element has been saved successfully
 			// update parent model, too - this will update the period of the model
+			INode parent = null;
 			if (entity.getParentModel().equals("Node"))
-				nodeService.save(nodeService.findById(entity.getParentId()));
+				nodeService.save(parent = nodeService.findById(entity.getParentId()));
 			else if (entity.getParentModel().equals("Relation"))
-				nodeService.save(nodeService.findById(entity.getParentId()));
+				nodeService.save(parent = nodeService.findById(entity.getParentId()));
 			else logger.error("No such enriched model while updating period: " + entity.getModelName());
 
+			if (parent != null) clearCache(parent); // delete affected caches
+
 			// return "success" response
 			Map<String, Object> model = new HashMap<>();
 			model.put("entity", entity);
@@ -275,12 +278,16 @@ public class PeriodController extends AbstractBaseController<IPeriod> {
 		else if (parentModel.equals("Relation")) parentService = this.relationService;
 
 		// update parent
+		SegradaCoreEntity parent = null;
 		if (parentService != null) {
-			if (!parentService.save(parentService.findById(parentId)))
+			parent = (SegradaCoreEntity) parentService.findById(parentId);
+			if (!parentService.save(parent))
 				return Response.ok(new Viewable("error", "Parent update failed.")).build();
 		} else logger.error("No such enriched model while deleting period: " + entity.getModelName());
 
-		clearCache(); // delete caches
+		// delete affected caches
+		if (parent != null) clearCache(parent);
+		else clearCache("period", uid);
 
 		// empty response
 		return Response.ok().build();
@@ -146,6 +146,10 @@ public class PictogramController extends AbstractBaseController<IPictogram> {
 	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
 	@PermitAll
 	public String search(@QueryParam("s") String term) {
+		// titles are suggested from memory
+		if (term != null && !term.trim().isEmpty())
+			return suggestionsToJSON(service.suggest(term, 36), true);
+
 		// json array to hold hits
 		JSONArray jsonArray = new JSONArray();
 
@@ -232,7 +236,7 @@ public class PictogramController extends AbstractBaseController<IPictogram> {
 		// no validation errors: save entity
 		if (errors.isEmpty()) {
 			if (service.save(entity)) {
-				clearCache(); // delete caches
+				clearCache(entity); // delete affected caches
 
 				//OK - redirect to show
 				try {
@@ -5,7 +5,9 @@ import com.google.inject.servlet.RequestScoped;
 import com.sun.jersey.api.view.Viewable;
 import org.segrada.model.prototype.ITag;
 import org.segrada.search.SearchEngine;
+import org.segrada.search.SearchHit;
 import org.segrada.service.TagService;
+import org.segrada.service.util.PaginationInfo;
 import org.segrada.session.Identity;
 
 import javax.annotation.security.RolesAllowed;
@@ -15,6 +17,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -64,7 +67,8 @@ public class SearchController {
 			@QueryParam("operator") String operator,
 			@QueryParam("class") String clazz,
 			@QueryParam("tags") List<String> tags,
-			@QueryParam("limit") String limit
+			@QueryParam("limit") String limit,
+			@QueryParam("cursor") String cursor
 	) {
 		// filters:
 		Map<String, String> filters = new HashMap<>();
@@ -100,19 +104,44 @@ public class SearchController {
 				filters.put("tags", sb.toString());
 		}
 		if (limit != null && !limit.isEmpty()) filters.put("limit", limit);
+		if (cursor != null && !cursor.isEmpty()) filters.put("cursor", cursor);
+		filters.put("facets", "true");
+
+		PaginationInfo<SearchHit> paginationInfo = searchEngine.search(term, filters);
 
 		// create model map
 		Map<String, Object> model = new HashMap<>();
-		model.put("paginationInfo", searchEngine.search(term, filters));
+		model.put("paginationInfo", paginationInfo);
 		model.put("searchTerm", term);
+		model.put("searchClass", clazz);
 		model.put("filters", filters);
 		if (tags != null && !tags.isEmpty()) {
 			model.put("tags", tags);
 		}
+		if (paginationInfo.getFacets() != null) {
+			model.put("classFacets", paginationInfo.getFacets().get("className"));
+			if (identity.hasAccess("TAG"))
+				model.put("tagFacets", getTagFacets(paginationInfo.getFacets().get("tag")));
+		}
 		model.put("searchClasses", SEARCH_CLASSES);
 		return new Viewable("search/index", model);
 	}
 
+	/**
+	 * map facet counts of tag ids to tag titles
+	 * @param tagCounts counts by tag id
+	 * @return counts by tag title
+	 */
+	private Map<String, Integer> getTagFacets(Map<String, Integer> tagCounts) {
+		Map<String, Integer> tagFacets = new LinkedHashMap<>();
+		if (tagCounts != null)
+			for (Map.Entry<String, Integer> entry : tagCounts.entrySet()) {
+				ITag tag = tagService.findById(entry.getKey());
+				if (tag != null) tagFacets.put(tag.getTitle(), entry.getValue());
+			}
+		return tagFacets;
+	}
+
 	@GET
 	@Path("/in_document")
 	@Produces(MediaType.TEXT_HTML)
@@ -123,7 +152,7 @@ public class SearchController {
 	) {
 		// create model map
 		Map<String, Object> model = new HashMap<>();
-		model.put("hits", searchEngine.searchInDocument(term, id));
+		model.put("passages", searchEngine.searchPassagesInDocument(term, id));
 
 		return new Viewable("search/in_document", model);
 	}
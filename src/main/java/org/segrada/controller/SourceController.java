@@ -14,6 +14,7 @@ import org.segrada.model.prototype.ITag;
 import org.segrada.service.SourceService;
 import org.segrada.service.TagService;
 import org.segrada.service.base.SegradaService;
+import org.segrada.session.Identity;
 
 import javax.annotation.Nullable;
 import javax.annotation.security.PermitAll;
@@ -52,6 +53,9 @@ public class SourceController extends AbstractColoredController<ISource> {
 	@Inject
 	private TagService tagService;
 
+	@Inject
+	private Identity identity;
+
 	@Override
 	protected String getBasePath() {
 		return "/source/";
@@ -248,6 +252,12 @@ public class SourceController extends AbstractColoredController<ISource> {
 	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
 	@PermitAll //TODO: ACL
 	public String search(@QueryParam("s") String term) {
+		if (!identity.hasAccess("SOURCE")) return "[]";
+
+		// titles and short references are suggested from memory
+		if (term != null && !term.trim().isEmpty())
+			return suggestionsToJSON(service.suggest(term, 30), true);
+
 		// json array to hold hits
 		JSONArray jsonArray = new JSONArray();
 
@@ -108,10 +108,15 @@ public class SourceReferenceController extends AbstractBaseController<ISourceRef
 	@Produces(MediaType.TEXT_HTML)
 	@RolesAllowed({"SOURCE_REFERENCE_DELETE", "SOURCE_REFERENCE_DELETE_MINE"})
 	public Response delete(@PathParam("uid") String uid, @QueryParam("backUrl") String backUrl) {
-		if (!service.delete(service.findById(service.convertUidToId(uid)))) {
+		ISourceReference sourceReference = service.findById(service.convertUidToId(uid));
+		if (!service.delete(sourceReference)) {
 			return Response.ok(new Viewable("error", "DELETE failed.")).build();
 		}
-		clearCache(); // delete caches
+		// delete affected caches
+		if (sourceReference == null) clearCache("source_reference", uid);
+		else clearCache("source_reference", uid,
+				sourceReference.getSource() == null ? null : sourceReference.getSource().getUid(),
+				sourceReference.getReference() == null ? null : sourceReference.getReference().getUid());
 
 		return Response.seeOther(URI.create(backUrl)).build();
 	}
@@ -162,7 +167,8 @@ public class SourceReferenceController extends AbstractBaseController<ISourceRef
 			if (referenceText != null && referenceText.isEmpty()) referenceText = null;
 			sourceReference.setReferenceText(referenceText);
 
-			clearCache(); // delete caches
+			clearCache("source_reference", sourceReference.getId() == null ? null : sourceReference.getUid(),
+					source == null ? null : source.getUid(), referenceEntity == null ? null : referenceEntity.getUid()); // delete affected caches
 		}
 
 		// no errors: save
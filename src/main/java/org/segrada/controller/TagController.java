@@ -15,6 +15,7 @@ import org.segrada.service.TagService;
 import org.segrada.service.base.AbstractRepositoryService;
 import org.segrada.service.base.SegradaService;
 import org.segrada.service.repository.prototype.CRUDRepository;
+import org.segrada.servlet.PageCacheDependencies;
 import org.segrada.util.Sluggify;
 
 import javax.annotation.security.PermitAll;
@@ -241,7 +242,7 @@ public class TagController extends AbstractBaseController<ITag> {
 
 		// do removal
 		if (tagUid != null && referenceModel != null && referenceUid != null) {
-			clearCache(); // delete caches
+			clearCache(PageCacheDependencies.modelToUrlPart(referenceModel), referenceUid, tagUid); // delete affected caches
 
 			service.removeTag(tag.getId(), service.convertUidToId(referenceUid));
 		}
@@ -266,6 +267,10 @@ public class TagController extends AbstractBaseController<ITag> {
 	@Produces(MediaType.APPLICATION_JSON + ";charset=utf-8")
 	@PermitAll
 	public String search(@QueryParam("s") String term) {
+		// titles are suggested from memory
+		if (term != null && !term.trim().isEmpty())
+			return suggestionsToJSON(service.suggest(term, 10), false);
+
 		// json array to hold hits
 		JSONArray jsonArray = new JSONArray();
 
@@ -4,6 +4,9 @@ import com.google.inject.Inject;
 import com.sun.jersey.api.view.Viewable;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
 import org.segrada.model.prototype.IPictogram;
 import org.segrada.model.prototype.SegradaColoredEntity;
 import org.segrada.model.prototype.SegradaEntity;
@@ -12,8 +15,11 @@ import org.segrada.service.base.AbstractRepositoryService;
 import org.segrada.service.base.SegradaService;
 import org.segrada.service.repository.prototype.CRUDRepository;
 import org.segrada.service.repository.prototype.PaginatingRepositoryOrService;
+import org.segrada.service.util.TitleSuggester;
+import org.segrada.servlet.PageCacheDependencies;
 
 import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
@@ -22,7 +28,9 @@ import javax.validation.ValidatorFactory;
 import javax.ws.rs.core.Response;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -46,6 +54,12 @@ public abstract class AbstractBaseController<T extends SegradaEntity> {
 	@Inject
 	protected HttpSession session;
 
+	@Inject
+	protected HttpServletRequest request;
+
+	@Inject
+	protected PageCacheDependencies pageCacheDependencies;
+
 	/**
 	 * Handle non paginated index
 	 * @param service showing pages
@@ -135,8 +149,16 @@ public abstract class AbstractBaseController<T extends SegradaEntity> {
 		// save to session
 		session.setAttribute(key, cleanedFilter);
 
+		// cursor of previous page (keyset pagination) - only valid for this request, so not saved to session
+		Map<String, Object> paginationFilter = cleanedFilter;
+		String cursor = request != null ? request.getParameter("cursor") : null;
+		if (cursor != null && !cursor.isEmpty()) {
+			paginationFilter = new HashMap<>(cleanedFilter);
+			paginationFilter.put("cursor", cursor);
+		}
+
 		// add to model map
-		model.put("paginationInfo", service.paginate(page, entriesPerPage, cleanedFilter));
+		model.put("paginationInfo", service.paginate(page, entriesPerPage, paginationFilter));
 		model.put("filters", cleanedFilter);
 
 		return new Viewable(getBasePath() + viewName, model);
@@ -211,7 +233,7 @@ public abstract class AbstractBaseController<T extends SegradaEntity> {
 		// no validation errors: save entity
 		if (errors.isEmpty()) {
 			if (service.save(entity)) {
-				clearCache(); // delete caches
+				clearCache(entity); // delete affected caches
 
 				// remember tags and color?
 				if (entity instanceof SegradaTaggable) {
@@ -266,7 +288,7 @@ public abstract class AbstractBaseController<T extends SegradaEntity> {
 			return Response.ok(new Viewable("error", "DELETE failed.")).build();
 		}
 
-		clearCache(); // delete caches
+		clearCache(entity); // delete affected caches
 
 		boolean emptyValue = empty == null || empty.isEmpty() || empty.equals("0");
 		// empty response
@@ -340,6 +362,32 @@ public abstract class AbstractBaseController<T extends SegradaEntity> {
 		}
 	}
 
+	/**
+	 * clear cached pages affected by change of entity: pages depending on it and lists of its model
+	 * @param entity changed
+	 */
+	protected void clearCache(SegradaEntity entity) {
+		clearCache(PageCacheDependencies.modelToUrlPart(entity.getModelName()), entity.getUid());
+
+		// tags might have been created on the fly => tag lists
+		Ehcache cache = CacheManager.getInstance().getEhcache("SimplePageCachingFilter");
+		if (entity instanceof SegradaTaggable && cache != null && pageCacheDependencies != null)
+			pageCacheDependencies.evict(cache, Collections.singleton(PageCacheDependencies.modelDependency("tag")));
+	}
+
+	/**
+	 * clear cached pages affected by change of entities
+	 * @param model url part of model changed, e.g. "node" - lists of this model are evicted
+	 * @param uids of entities changed (may contain nulls)
+	 */
+	protected void clearCache(String model, String... uids) {
+		Ehcache cache = CacheManager.getInstance().getEhcache("SimplePageCachingFilter");
+		if (cache == null) return;
+
+		if (pageCacheDependencies == null) cache.removeAll(); // flush whole cache
+		else pageCacheDependencies.invalidate(cache, model, uids);
+	}
+
 	/**
 	 * get attached Segrada service
 	 * @return attached Segrada service or null
@@ -405,4 +453,29 @@ public abstract class AbstractBaseController<T extends SegradaEntity> {
 		if (o != null && o instanceof IPictogram) return (IPictogram) o;
 		return null;
 	}
+
+	/**
+	 * convert suggestions to json array for typeahead fields
+	 * @param suggestions to convert
+	 * @param withUid true to add uids of entities
+	 * @return json array as string
+	 */
+	protected String suggestionsToJSON(List<TitleSuggester.Suggestion> suggestions, boolean withUid) {
+		JSONArray jsonArray = new JSONArray();
+
+		for (TitleSuggester.Suggestion suggestion : suggestions) {
+			try {
+				JSONObject jsonObject = new JSONObject();
+				jsonObject.put("id", suggestion.getId());
+				if (withUid) jsonObject.put("uid", suggestion.getUid());
+				jsonObject.put("title", suggestion.getTitle());
+
+				jsonArray.put(jsonObject);
+			} catch (JSONException e) {
+				//IGNORE
+			}
+		}
+
+		return jsonArray.toString();
+	}
 }
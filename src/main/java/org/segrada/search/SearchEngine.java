@@ -2,6 +2,9 @@ package org.segrada.search;
 
 import org.segrada.service.util.PaginationInfo;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -38,6 +41,14 @@ public interface SearchEngine {
 	 */
 	boolean index(String id, String className, String title, String subTitles, String content, String[] tagIds,  Integer color, String iconFileIdentifier, float weight);
 
+	/**
+	 * index a number of documents at once - should be preferred to single calls of index when writing many documents
+	 *
+	 * @param documents to index
+	 * @return true if all documents have been written
+	 */
+	boolean indexAll(Collection<SearchIndexDocument> documents);
+
 	/**
 	 * Do a search
 	 *
@@ -55,6 +66,20 @@ public interface SearchEngine {
 	 */
 	String[] searchInDocument(String searchTerm, String id);
 
+	/**
+	 * search within a document and its passages (e.g. pages of a file's full text) for certain terms
+	 * @param searchTerm term(s) to search for
+	 * @param id of document to search in
+	 * @return highlighted hits by passage number (0 for the document's own content, passages start with 1), ordered
+	 * by passage number, empty if nothing has been found
+	 */
+	default Map<Integer, String[]> searchPassagesInDocument(String searchTerm, String id) {
+		Map<Integer, String[]> passages = new LinkedHashMap<>();
+		String[] hits = searchInDocument(searchTerm, id);
+		if (hits != null && hits.length > 0) passages.put(0, hits);
+		return passages;
+	}
+
 	/**
 	 * Remove entity from index
 	 *
@@ -62,6 +87,13 @@ public interface SearchEngine {
 	 */
 	void remove(String id);
 
+	/**
+	 * Remove a number of entities from index at once
+	 *
+	 * @param ids of documents e.g. db ids
+	 */
+	void removeAll(Collection<String> ids);
+
 	/**
 	 * Find entry by id an return all data in search engine - used for testing
 	 *
@@ -70,8 +102,26 @@ public interface SearchEngine {
 	 */
 	SearchHit getById(String id);
 
+	/**
+	 * open builder for a complete new index - only one builder may be open at a time
+	 *
+	 * @param resume continue a build interrupted earlier, if possible
+	 * @return index builder
+	 * @throws IOException if builder could not be opened
+	 */
+	SearchIndexBuilder openIndexBuilder(boolean resume) throws IOException;
+
 	/**
 	 * completely clear index
 	 */
 	void clearAllIndexes();
+
+	/**
+	 * check whether the index has been written with a layout differing from the current configuration
+	 *
+	 * @return true if the index should be rebuilt
+	 */
+	default boolean isIndexOutdated() {
+		return false;
+	}
 }
@@ -0,0 +1,60 @@
+package org.segrada.search;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Builds a complete new index next to the live one - search stays available until the new index is published
+ */
+public interface SearchIndexBuilder {
+	/**
+	 * @return true if builder continues a build interrupted earlier (documents checkpointed then are still there)
+	 */
+	boolean isResumed();
+
+	/**
+	 * add documents to the new index - thread safe
+	 *
+	 * @param documents to index
+	 * @return true if all documents have been written
+	 */
+	boolean indexAll(Collection<SearchIndexDocument> documents);
+
+	/**
+	 * make all documents written so far durable, so the build can be resumed from here
+	 *
+	 * @throws IOException on write error
+	 */
+	void checkpoint() throws IOException;
+
+	/**
+	 * replace the live index by the new one - builder cannot be used afterwards
+	 *
+	 * @throws IOException on write error
+	 */
+	void publish() throws IOException;
+
+	/**
+	 * stop building, but keep checkpointed state, so the build can be resumed later
+	 */
+	void close();
+
+	/**
+	 * stop building and throw away the new index
+	 */
+	void discard();
+}
@@ -0,0 +1,170 @@
+package org.segrada.search;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Single document to be written to search engine - used for bulk indexing
+ */
+public class SearchIndexDocument {
+	/**
+	 * default maximum length of passages of long texts not divided into pages
+	 */
+	public static final int DEFAULT_PASSAGE_LENGTH = 4000;
+
+	private final String id;
+
+	private final String className;
+
+	private final String title;
+
+	private final String subTitles;
+
+	private final String content;
+
+	private final String[] tagIds;
+
+	private final Integer color;
+
+	private final String iconFileIdentifier;
+
+	private final float weight;
+
+	private final String[] passages;
+
+	/**
+	 * Constructor - see {@link SearchEngine#index(String, String, String, String, String, String[], Integer, String, float)}
+	 * for parameters
+	 */
+	public SearchIndexDocument(String id, String className, String title, String subTitles, String content, String[] tagIds, Integer color, String iconFileIdentifier, float weight) {
+		this(id, className, title, subTitles, content, tagIds, color, iconFileIdentifier, weight, null);
+	}
+
+	/**
+	 * Constructor - see {@link SearchEngine#index(String, String, String, String, String, String[], Integer, String, float)}
+	 * for parameters
+	 * @param passages long text of document (e.g. full text of a file) in passages indexed separately from the document,
+	 *                 null if document has no passages, empty to remove passages indexed before
+	 */
+	public SearchIndexDocument(String id, String className, String title, String subTitles, String content, String[] tagIds, Integer color, String iconFileIdentifier, float weight, @Nullable String[] passages) {
+		this.id = id;
+		this.className = className;
+		this.title = title;
+		this.subTitles = subTitles;
+		this.content = content;
+		this.tagIds = tagIds;
+		this.color = color;
+		this.iconFileIdentifier = iconFileIdentifier;
+		this.weight = weight;
+		this.passages = passages;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getSubTitles() {
+		return subTitles;
+	}
+
+	public String getContent() {
+		return content;
+	}
+
+	public String[] getTagIds() {
+		return tagIds;
+	}
+
+	public Integer getColor() {
+		return color;
+	}
+
+	public String getIconFileIdentifier() {
+		return iconFileIdentifier;
+	}
+
+	public float getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return passages (numbered from 1 in order of array) or null if document has no passages
+	 */
+	public @Nullable String[] getPassages() {
+		return passages;
+	}
+
+	/**
+	 * split long text into passages: pages if text contains page breaks (form feeds), chunks of at most maxLength
+	 * characters ending at paragraph or word boundaries otherwise
+	 * @param text to split
+	 * @param maxLength maximum length of chunks
+	 * @return passages - empty pages are kept as empty strings, so passage numbers match page numbers
+	 */
+	public static String[] splitIntoPassages(@Nullable String text, int maxLength) {
+		if (text == null || text.trim().isEmpty()) return new String[0];
+
+		List<String> passages = new ArrayList<>();
+
+		// pages
+		if (text.indexOf('\f') >= 0) {
+			for (String page : text.split("\f", -1))
+				passages.add(page.trim());
+			// drop trailing empty pages
+			while (!passages.isEmpty() && passages.get(passages.size() - 1).isEmpty())
+				passages.remove(passages.size() - 1);
+			return passages.toArray(new String[passages.size()]);
+		}
+
+		if (maxLength < 1) maxLength = DEFAULT_PASSAGE_LENGTH;
+		int start = 0;
+		while (start < text.length()) {
+			int end = Math.min(start + maxLength, text.length());
+			if (end < text.length()) {
+				// end at paragraph, else at word boundary in the second half of the chunk
+				int min = start + maxLength / 2;
+				int boundary = text.lastIndexOf("\n\n", end);
+				if (boundary < min) boundary = lastWhitespace(text, min, end);
+				if (boundary >= min) end = boundary;
+			}
+
+			String passage = text.substring(start, end).trim();
+			if (!passage.isEmpty()) passages.add(passage);
+			start = end;
+		}
+
+		return passages.toArray(new String[passages.size()]);
+	}
+
+	/**
+	 * @return position of last whitespace in range or -1
+	 */
+	private static int lastWhitespace(String text, int from, int to) {
+		for (int i = to; i >= from; i--)
+			if (Character.isWhitespace(text.charAt(i))) return i;
+		return -1;
+	}
+}
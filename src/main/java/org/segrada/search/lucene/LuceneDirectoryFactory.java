@@ -0,0 +1,83 @@
+package org.segrada.search.lucene;
+
+import org.apache.lucene.store.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Creates Lucene directories of the type set in the settings (lucene.directory)
+ */
+public class LuceneDirectoryFactory {
+	private static final Logger logger = LoggerFactory.getLogger(LuceneDirectoryFactory.class);
+
+	/**
+	 * memory mapped files - fastest concurrent reads on 64 bit systems
+	 */
+	public static final String MMAP = "mmap";
+
+	/**
+	 * positional reads using FileChannel - concurrent reads, but slow on Windows
+	 */
+	public static final String NIO = "nio";
+
+	/**
+	 * RandomAccessFile - reads of the same file are serialized
+	 */
+	public static final String SIMPLE = "simple";
+
+	/**
+	 * best type for the platform chosen by Lucene
+	 */
+	public static final String AUTO = "auto";
+
+	/**
+	 * create directory
+	 * @param type directory type (mmap, nio, simple or auto), mmap if empty
+	 * @param path of index
+	 * @param nrtMaxMergeSizeMB segments up to this size are cached in memory by a NRTCachingDirectory (0 for no caching)
+	 * @param nrtMaxCachedMB maximum memory used by NRTCachingDirectory (0 for no caching)
+	 * @return directory
+	 * @throws IOException if directory could not be opened
+	 */
+	public static Directory createDirectory(@Nullable String type, Path path, double nrtMaxMergeSizeMB, double nrtMaxCachedMB) throws IOException {
+		if (type == null || type.trim().isEmpty()) type = MMAP;
+
+		Directory directory;
+		switch (type.trim().toLowerCase()) {
+			case MMAP: directory = new MMapDirectory(path); break;
+			case NIO: directory = new NIOFSDirectory(path); break;
+			case SIMPLE: directory = new SimpleFSDirectory(path); break;
+			case AUTO: directory = FSDirectory.open(path); break;
+			default:
+				logger.warn("Unknown lucene.directory " + type + " - falling back to " + MMAP);
+				directory = new MMapDirectory(path);
+		}
+
+		// newly flushed small segments are kept in memory until they are merged or committed
+		if (nrtMaxMergeSizeMB > 0 && nrtMaxCachedMB > 0)
+			directory = new NRTCachingDirectory(directory, nrtMaxMergeSizeMB, nrtMaxCachedMB);
+
+		if (logger.isInfoEnabled())
+			logger.info("Providing LuceneDirectory: " + directory);
+
+		return directory;
+	}
+}
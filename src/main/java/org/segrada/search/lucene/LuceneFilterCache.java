@@ -0,0 +1,102 @@
+package org.segrada.search.lucene;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Cache of matching documents of filter queries (e.g. class and tag filters) per segment - entries are keyed by filter
+ * query and segment core, so they survive refreshes of the searcher as long as the segment exists and are dropped when
+ * it is merged away
+ */
+public class LuceneFilterCache extends LRUQueryCache {
+	/**
+	 * fields whose term filters are cached
+	 */
+	private final Set<String> fields;
+
+	/**
+	 * caching policy: only filters consisting of terms of the cached fields
+	 */
+	private final QueryCachingPolicy policy = new QueryCachingPolicy() {
+		@Override
+		public void onUse(Query query) {
+			// no usage tracking - filters are cached on first use
+		}
+
+		@Override
+		public boolean shouldCache(Query query, LeafReaderContext context) {
+			return isTermsFilter(query);
+		}
+	};
+
+	/**
+	 * Constructor
+	 * @param maxSize maximum number of cached filters
+	 * @param maxRamBytesUsed memory budget in bytes
+	 * @param fields fields whose term filters are cached
+	 */
+	public LuceneFilterCache(int maxSize, long maxRamBytesUsed, String... fields) {
+		super(maxSize, maxRamBytesUsed);
+		this.fields = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(fields)));
+	}
+
+	/**
+	 * @return policy to set on searchers using this cache
+	 */
+	public QueryCachingPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * check if query is a term query on one of the cached fields or a boolean query of those
+	 * @param query to check
+	 * @return true if query should be cached
+	 */
+	protected boolean isTermsFilter(Query query) {
+		if (query instanceof TermQuery)
+			return fields.contains(((TermQuery) query).getTerm().field());
+
+		if (query instanceof BooleanQuery) {
+			BooleanQuery booleanQuery = (BooleanQuery) query;
+			if (booleanQuery.clauses().isEmpty()) return false;
+			for (BooleanClause clause : booleanQuery.clauses())
+				if (!isTermsFilter(clause.getQuery())) return false;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return ratio of filter lookups answered by the cache (0 to 1)
+	 */
+	public double getHitRate() {
+		long total = getTotalCount();
+		return total == 0 ? 0d : (double) getHitCount() / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LuceneFilterCache{size=%d, ramBytesUsed=%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d}",
+				getCacheSize(), ramBytesUsed(), getHitCount(), getMissCount(), getHitRate() * 100, getEvictionCount());
+	}
+}
@@ -0,0 +1,127 @@
+package org.segrada.search.lucene;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.postingshighlight.Passage;
+import org.apache.lucene.search.postingshighlight.PassageFormatter;
+import org.apache.lucene.search.postingshighlight.PostingsHighlighter;
+
+import java.io.IOException;
+import java.text.BreakIterator;
+import java.util.Map;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Highlighter using the offsets stored in the postings, so no term vectors are needed - returns one short fragment
+ * per matching sentence with matches in bold, like the fragments of the former vector highlighter
+ */
+public class LucenePassageHighlighter extends PostingsHighlighter {
+	/**
+	 * characters kept before the first and after the last match of a sentence
+	 */
+	private final int contextChars;
+
+	/**
+	 * Constructor
+	 * @param maxLength maximum number of characters of a field to analyze
+	 * @param contextChars characters kept before the first and after the last match of a sentence
+	 */
+	public LucenePassageHighlighter(int maxLength, int contextChars) {
+		super(maxLength);
+		this.contextChars = contextChars;
+	}
+
+	/**
+	 * highlight field of a number of documents in one pass
+	 * @param field to highlight
+	 * @param query to highlight terms of
+	 * @param searcher searcher the documents were found with
+	 * @param docIds documents to highlight
+	 * @param maxPassages maximum number of fragments per document
+	 * @return fragments per document in order of docIds, empty arrays for documents without matches in field
+	 * @throws IOException on index errors
+	 */
+	public String[][] highlight(String field, Query query, IndexSearcher searcher, int[] docIds, int maxPassages) throws IOException {
+		Object[] highlights = highlightFieldsAsObjects(new String[]{field}, query, searcher, docIds, new int[]{maxPassages}).get(field);
+
+		String[][] fragments = new String[docIds.length][];
+		for (int i = 0; i < docIds.length; i++)
+			fragments[i] = highlights != null && highlights[i] != null ? (String[]) highlights[i] : new String[]{};
+		return fragments;
+	}
+
+	@Override
+	protected PassageFormatter getFormatter(String field) {
+		return new PassageFormatter() {
+			@Override
+			public Object format(Passage[] passages, String content) {
+				String[] fragments = new String[passages.length];
+				for (int i = 0; i < passages.length; i++)
+					fragments[i] = formatPassage(passages[i], content);
+				return fragments;
+			}
+		};
+	}
+
+	/**
+	 * documents without matches in field do not get any fragments
+	 */
+	@Override
+	protected Passage[] getEmptyHighlight(String fieldName, BreakIterator bi, int maxPassages) {
+		return new Passage[0];
+	}
+
+	/**
+	 * format single passage: cut sentence around matches, embolden matches
+	 * @param passage to format
+	 * @param content text of field
+	 * @return fragment
+	 */
+	protected String formatPassage(Passage passage, String content) {
+		int[] starts = passage.getMatchStarts();
+		int[] ends = passage.getMatchEnds();
+		int matches = passage.getNumMatches();
+
+		int start = passage.getStartOffset();
+		int end = passage.getEndOffset();
+		if (matches > 0) {
+			// cut at word boundaries
+			int cutStart = starts[0] - contextChars;
+			if (cutStart > start) {
+				int space = content.indexOf(' ', cutStart);
+				start = space >= 0 && space < starts[0] ? space + 1 : cutStart;
+			}
+			int cutEnd = ends[matches - 1] + contextChars;
+			if (cutEnd < end) {
+				int space = content.lastIndexOf(' ', cutEnd);
+				end = space >= ends[matches - 1] ? space : cutEnd;
+			}
+		}
+
+		StringBuilder sb = new StringBuilder();
+		int pos = start;
+		for (int i = 0; i < matches; i++) {
+			// overlapping matches
+			if (starts[i] < pos) continue;
+
+			sb.append(content, pos, starts[i]).append("<b>").append(content, starts[i], ends[i]).append("</b>");
+			pos = ends[i];
+		}
+		sb.append(content, pos, end);
+
+		return sb.toString().trim();
+	}
+}
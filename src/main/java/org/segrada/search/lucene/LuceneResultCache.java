@@ -0,0 +1,170 @@
+package org.segrada.search.lucene;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Bounded cache of search results by normalized query - entries belong to an index generation (reader version) and
+ * are dropped as soon as a searcher of a newer generation stores a result, or when their time to live has passed
+ */
+public class LuceneResultCache<V> {
+	/**
+	 * maximum number of results to cache (0 to disable caching)
+	 */
+	private final int maxEntries;
+
+	/**
+	 * time to live of entries in milliseconds (0 for no expiry)
+	 */
+	private final long ttl;
+
+	/**
+	 * index generation of cached entries
+	 */
+	private long generation = -1L;
+
+	/**
+	 * statistics
+	 */
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * cached entries by key (least recently used entries are evicted)
+	 */
+	private final Map<String, Entry<V>> entries;
+
+	/**
+	 * Constructor
+	 * @param maxEntries maximum number of results to cache (0 to disable caching)
+	 * @param ttl time to live of entries in milliseconds (0 for no expiry)
+	 */
+	public LuceneResultCache(int maxEntries, long ttl) {
+		this.maxEntries = maxEntries;
+		this.ttl = ttl;
+		this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+				return size() > LuceneResultCache.this.maxEntries;
+			}
+		});
+	}
+
+	/**
+	 * @return true if results are cached at all
+	 */
+	public boolean isEnabled() {
+		return maxEntries > 0;
+	}
+
+	/**
+	 * get cached result
+	 * @param key normalized query
+	 * @param generation index generation of searcher
+	 * @return result or null if not cached for this generation
+	 */
+	public @Nullable V get(String key, long generation) {
+		if (!isEnabled()) return null;
+
+		synchronized (entries) {
+			Entry<V> entry = generation == this.generation ? entries.get(key) : null;
+			if (entry != null && (entry.expires == 0L || entry.expires > System.currentTimeMillis())) {
+				hits.incrementAndGet();
+				return entry.value;
+			}
+			if (entry != null) entries.remove(key);
+		}
+
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * cache result - results of older generations are not cached, results of newer ones replace all entries
+	 * @param key normalized query
+	 * @param generation index generation of searcher the result was computed with
+	 * @param value result
+	 */
+	public void put(String key, long generation, V value) {
+		if (!isEnabled()) return;
+
+		synchronized (entries) {
+			if (generation < this.generation) return;
+			if (generation > this.generation) {
+				entries.clear();
+				this.generation = generation;
+			}
+
+			entries.put(key, new Entry<>(value, ttl > 0 ? System.currentTimeMillis() + ttl : 0L));
+		}
+	}
+
+	/**
+	 * remove all entries
+	 */
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+			generation = -1L;
+		}
+	}
+
+	/**
+	 * @return number of cached results
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return ratio of lookups answered by the cache (0 to 1)
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0d : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LuceneResultCache{size=%d, hits=%d, misses=%d, hitRate=%.1f%%}", size(), getHits(), getMisses(), getHitRate() * 100);
+	}
+
+	/**
+	 * cached result
+	 */
+	private static class Entry<V> {
+		private final V value;
+		private final long expires;
+
+		private Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package org.segrada.search.lucene;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Continuation token of a search pointing behind the last hit of a page - only valid for the same query on the same
+ * index reader version, so searchAfter continues exactly where the previous page ended
+ */
+public class LuceneSearchCursor {
+	/**
+	 * page the last hit belongs to
+	 */
+	private final int page;
+
+	/**
+	 * version of index reader the page was read from
+	 */
+	private final long readerVersion;
+
+	/**
+	 * hash of query and filter
+	 */
+	private final int queryHash;
+
+	/**
+	 * last hit of page
+	 */
+	private final ScoreDoc lastHit;
+
+	/**
+	 * Constructor
+	 */
+	public LuceneSearchCursor(int page, long readerVersion, int queryHash, ScoreDoc lastHit) {
+		this.page = page;
+		this.readerVersion = readerVersion;
+		this.queryHash = queryHash;
+		this.lastHit = lastHit;
+	}
+
+	/**
+	 * decode token
+	 * @param cursor token created by encode
+	 * @return cursor or null if token is invalid
+	 */
+	public static @Nullable LuceneSearchCursor decode(@Nullable String cursor) {
+		if (cursor == null || cursor.isEmpty()) return null;
+
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+			if (parts.length != 5) return null;
+
+			// score is kept as raw bits, searchAfter compares exactly
+			ScoreDoc lastHit = new ScoreDoc(Integer.parseInt(parts[3]), Float.intBitsToFloat(Integer.parseUnsignedInt(parts[4], 16)));
+			return new LuceneSearchCursor(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]), lastHit);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return url safe token
+	 */
+	public String encode() {
+		String token = page + "|" + readerVersion + "|" + queryHash + "|" + lastHit.doc + "|" + Integer.toHexString(Float.floatToIntBits(lastHit.score));
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * check whether cursor can be used to fetch a page
+	 * @param page to fetch
+	 * @param readerVersion version of current index reader
+	 * @param queryHash hash of current query and filter
+	 * @return true if cursor points to the end of the preceding page of the same search
+	 */
+	public boolean continues(int page, long readerVersion, int queryHash) {
+		return this.page == page - 1 && this.readerVersion == readerVersion && this.queryHash == queryHash;
+	}
+
+	public int getPage() {
+		return page;
+	}
+
+	public ScoreDoc getLastHit() {
+		return lastHit;
+	}
+}
@@ -2,29 +2,65 @@ package org.segrada.search.lucene;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.*;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.index.*;
-import org.apache.lucene.queries.BooleanFilter;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.queryparser.xml.builders.BooleanFilterBuilder;
 import org.apache.lucene.search.*;
+import org.apache.lucene.search.join.JoinUtil;
+import org.apache.lucene.search.join.ScoreMode;
 import org.apache.lucene.search.vectorhighlight.FastVectorHighlighter;
 import org.apache.lucene.search.vectorhighlight.FieldQuery;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.segrada.search.SearchEngine;
 import org.segrada.search.SearchHit;
+import org.segrada.search.SearchIndexBuilder;
+import org.segrada.search.SearchIndexDocument;
 import org.segrada.service.util.PaginationInfo;
+import org.segrada.session.ApplicationSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -67,16 +103,253 @@ public class LuceneSearchEngine implements SearchEngine {
 	 */
 	protected final FieldType indexedTextType;
 
+	/**
+	 * facet fields: class name and tags (multi valued), counted using sorted set doc values
+	 */
+	protected final FacetsConfig facetsConfig;
+
+	/**
+	 * maximum number of values returned per facet field
+	 */
+	protected static final int FACET_MAX_VALUES = 20;
+
+	/**
+	 * facet ordinals of the current searcher's reader - rebuilt when reader changes
+	 */
+	private volatile SortedSetDocValuesReaderState facetState;
+
+	/**
+	 * highlighter using offsets stored in postings (default, no term vectors needed)
+	 */
+	public static final String HIGHLIGHTER_POSTINGS = "postings";
+
+	/**
+	 * highlighter using term vectors (index stores term vectors of text fields)
+	 */
+	public static final String HIGHLIGHTER_VECTOR = "vector";
+
+	/**
+	 * maximum number of characters of a text analyzed to highlight search hits
+	 */
+	protected static final int HIGHLIGHT_MAX_LENGTH = 100000;
+
+	/**
+	 * true if text fields store term vectors and hits are highlighted by FastVectorHighlighter
+	 */
+	protected final boolean vectorHighlighting;
+
+	/**
+	 * default commit interval in milliseconds
+	 */
+	public static final long DEFAULT_COMMIT_INTERVAL = 10000L;
+
+	/**
+	 * default number of changes after which index is committed
+	 */
+	public static final int DEFAULT_COMMIT_MAX_CHANGES = 100;
+
+	/**
+	 * default refresh interval in milliseconds (0 = refresh searcher after each change)
+	 */
+	public static final long DEFAULT_REFRESH_INTERVAL = 0L;
+
+	/**
+	 * default maximum number of cached filters
+	 */
+	public static final int DEFAULT_FILTER_CACHE_MAX_ENTRIES = 1000;
+
+	/**
+	 * default memory budget of filter cache in MB
+	 */
+	public static final int DEFAULT_FILTER_CACHE_MAX_MB = 32;
+
+	/**
+	 * stored fields shown in hit lists - read from doc values, stored fields are read for old indexes only
+	 */
+	private static final Set<String> DISPLAY_FIELDS = new HashSet<>(Arrays.asList("id", "className", "title", "subTitles",
+			"tag", "color", "iconFileIdentifier"));
+
+	/**
+	 * passages (e.g. pages of the full text of a file) are separate documents linked to the document of their entity
+	 * by its id - they are never hits on their own, but are joined to their entities
+	 */
+	protected static final String PASSAGE_OF = "passageOf";
+
+	/**
+	 * text field of passages
+	 */
+	protected static final String PASSAGE = "passage";
+
+	/**
+	 * number of passage within its entity (doc values only)
+	 */
+	protected static final String PASSAGE_NUMBER = "passageNumber";
+
+	/**
+	 * hash of all passages of an entity, indexed in its first passage - passages are rewritten only if it changes
+	 */
+	protected static final String PASSAGES_HASH = "passagesHash";
+
+	/**
+	 * maximum number of passages highlighted when searching within a document
+	 */
+	protected static final int MAX_HIGHLIGHTED_PASSAGES = 100;
+
+	/**
+	 * default maximum number of cached search results and highlights
+	 */
+	public static final int DEFAULT_RESULT_CACHE_MAX_ENTRIES = 1000;
+
+	/**
+	 * default time to live of cached search results and highlights in seconds
+	 */
+	public static final long DEFAULT_RESULT_CACHE_TTL = 300L;
+
+	/**
+	 * cache of class and tag filters shared by all searchers - null if disabled
+	 */
+	protected final LuceneFilterCache filterCache;
+
+	/**
+	 * cache of result pages (doc ids and scores) per index generation
+	 */
+	private volatile LuceneResultCache<CachedResult> resultCache =
+			new LuceneResultCache<>(DEFAULT_RESULT_CACHE_MAX_ENTRIES, DEFAULT_RESULT_CACHE_TTL * 1000L);
+
+	/**
+	 * cache of highlights in single documents per index generation
+	 */
+	private volatile LuceneResultCache<Map<Integer, String[]>> highlightCache =
+			new LuceneResultCache<>(DEFAULT_RESULT_CACHE_MAX_ENTRIES, DEFAULT_RESULT_CACHE_TTL * 1000L);
+
+	/**
+	 * long-lived index writer shared by all writing operations
+	 */
+	protected final IndexWriter writer;
+
+	/**
+	 * near-real-time searcher manager handing out searchers to queries
+	 */
+	protected final SearcherManager searcherManager;
+
+	/**
+	 * commit index after this many milliseconds if there are pending changes (0 = no time based commits)
+	 */
+	private final long commitInterval;
+
+	/**
+	 * commit index after this many changes (0 = no count based commits)
+	 */
+	private final int commitMaxChanges;
+
+	/**
+	 * refresh searchers every this many milliseconds (0 = refresh after each change)
+	 */
+	private final long refreshInterval;
+
+	/**
+	 * number of changes not committed yet
+	 */
+	private final AtomicInteger pendingChanges = new AtomicInteger(0);
+
+	/**
+	 * scheduler for periodic commits and refreshes - null if not needed
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * true after engine has been shut down
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * writes take the read lock, publishing a rebuilt index takes the write lock
+	 */
+	private final ReadWriteLock publishLock = new ReentrantReadWriteLock();
+
+	/**
+	 * index builder currently open - live changes are mirrored to it
+	 */
+	private volatile LuceneIndexBuilder indexBuilder;
+
 	/**
 	 * Constructor
 	 *
 	 * @param luceneDirectory directory to save hits in
 	 * @param luceneAnalyzer  analyzer to use
 	 */
-	@Inject
 	public LuceneSearchEngine(Directory luceneDirectory, Analyzer luceneAnalyzer) {
+		this(luceneDirectory, luceneAnalyzer, DEFAULT_COMMIT_INTERVAL, DEFAULT_COMMIT_MAX_CHANGES, DEFAULT_REFRESH_INTERVAL);
+	}
+
+	/**
+	 * Constructor reading commit and refresh policy from settings
+	 *
+	 * @param settings        of application
+	 * @param luceneDirectory directory to save hits in
+	 * @param luceneAnalyzer  analyzer to use
+	 */
+	@Inject
+	public LuceneSearchEngine(ApplicationSettings settings, Directory luceneDirectory, Analyzer luceneAnalyzer) {
+		this(luceneDirectory, luceneAnalyzer,
+				settings.getSettingAsLong("lucene.commitInterval", DEFAULT_COMMIT_INTERVAL),
+				settings.getSettingAsInt("lucene.commitMaxChanges", DEFAULT_COMMIT_MAX_CHANGES),
+				settings.getSettingAsLong("lucene.refreshInterval", DEFAULT_REFRESH_INTERVAL),
+				HIGHLIGHTER_VECTOR.equalsIgnoreCase(settings.getSetting("lucene.highlighter")),
+				settings.getSettingAsInt("lucene.filterCache.maxEntries", DEFAULT_FILTER_CACHE_MAX_ENTRIES),
+				settings.getSettingAsInt("lucene.filterCache.maxMB", DEFAULT_FILTER_CACHE_MAX_MB));
+
+		configureResultCache(settings.getSettingAsInt("lucene.resultCache.maxEntries", DEFAULT_RESULT_CACHE_MAX_ENTRIES),
+				settings.getSettingAsLong("lucene.resultCache.ttl", DEFAULT_RESULT_CACHE_TTL));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param luceneDirectory  directory to save hits in
+	 * @param luceneAnalyzer   analyzer to use
+	 * @param commitInterval   commit pending changes after this many milliseconds (0 to disable)
+	 * @param commitMaxChanges commit after this many changes (0 to disable)
+	 * @param refreshInterval  refresh searchers after this many milliseconds (0 to refresh after each change)
+	 */
+	public LuceneSearchEngine(Directory luceneDirectory, Analyzer luceneAnalyzer, long commitInterval, int commitMaxChanges, long refreshInterval) {
+		this(luceneDirectory, luceneAnalyzer, commitInterval, commitMaxChanges, refreshInterval, false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param luceneDirectory    directory to save hits in
+	 * @param luceneAnalyzer     analyzer to use
+	 * @param commitInterval     commit pending changes after this many milliseconds (0 to disable)
+	 * @param commitMaxChanges   commit after this many changes (0 to disable)
+	 * @param refreshInterval    refresh searchers after this many milliseconds (0 to refresh after each change)
+	 * @param vectorHighlighting store term vectors and highlight using them instead of the offsets in the postings
+	 */
+	public LuceneSearchEngine(Directory luceneDirectory, Analyzer luceneAnalyzer, long commitInterval, int commitMaxChanges, long refreshInterval, boolean vectorHighlighting) {
+		this(luceneDirectory, luceneAnalyzer, commitInterval, commitMaxChanges, refreshInterval, vectorHighlighting,
+				DEFAULT_FILTER_CACHE_MAX_ENTRIES, DEFAULT_FILTER_CACHE_MAX_MB);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param luceneDirectory         directory to save hits in
+	 * @param luceneAnalyzer          analyzer to use
+	 * @param commitInterval          commit pending changes after this many milliseconds (0 to disable)
+	 * @param commitMaxChanges        commit after this many changes (0 to disable)
+	 * @param refreshInterval         refresh searchers after this many milliseconds (0 to refresh after each change)
+	 * @param vectorHighlighting      store term vectors and highlight using them instead of the offsets in the postings
+	 * @param filterCacheMaxEntries   maximum number of cached class and tag filters (0 to disable cache)
+	 * @param filterCacheMaxMB        memory budget of filter cache in MB (0 to disable cache)
+	 */
+	public LuceneSearchEngine(Directory luceneDirectory, Analyzer luceneAnalyzer, long commitInterval, int commitMaxChanges, long refreshInterval, boolean vectorHighlighting, int filterCacheMaxEntries, int filterCacheMaxMB) {
+		this.vectorHighlighting = vectorHighlighting;
 		this.directory = luceneDirectory;
 		this.analyzer = luceneAnalyzer;
+		this.commitInterval = commitInterval < 0 ? 0 : commitInterval;
+		this.commitMaxChanges = commitMaxChanges < 0 ? 0 : commitMaxChanges;
+		this.refreshInterval = refreshInterval < 0 ? 0 : refreshInterval;
 
 		// stored, indexed, but not tokenized
 		simpleIndexType = new FieldType();
@@ -85,77 +358,362 @@ public class LuceneSearchEngine implements SearchEngine {
 		simpleIndexType.setTokenized(false);
 		simpleIndexType.freeze();
 
-		// stored, indexed and searchable text type
+		// stored, indexed and searchable text type - offsets in postings are used for highlighting
 		indexedTextType = new FieldType();
 		indexedTextType.setStored(true);
 		indexedTextType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
-		indexedTextType.setStoreTermVectors(true);
-		indexedTextType.setStoreTermVectorOffsets(true);
-		indexedTextType.setStoreTermVectorPositions(true);
+		if (vectorHighlighting) {
+			indexedTextType.setStoreTermVectors(true);
+			indexedTextType.setStoreTermVectorOffsets(true);
+			indexedTextType.setStoreTermVectorPositions(true);
+		}
 		indexedTextType.freeze();
+
+		// filter cache of class and tag filters
+		if (filterCacheMaxEntries > 0 && filterCacheMaxMB > 0)
+			filterCache = new LuceneFilterCache(filterCacheMaxEntries, filterCacheMaxMB * 1024L * 1024L, "className", "tag");
+		else filterCache = null;
+
+		facetsConfig = new FacetsConfig();
+		facetsConfig.setMultiValued("tag", true);
+
+		// open writer and searcher manager for the lifetime of the engine
+		try {
+			IndexWriterConfig indexWriterConfig = new IndexWriterConfig(this.analyzer);
+			indexWriterConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+
+			writer = new IndexWriter(directory, indexWriterConfig);
+			searcherManager = new SearcherManager(writer, true, new SearcherFactory() {
+				@Override
+				public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+					IndexSearcher searcher = new IndexSearcher(reader);
+					if (filterCache != null) {
+						searcher.setQueryCache(filterCache);
+						searcher.setQueryCachingPolicy(filterCache.getPolicy());
+					} else searcher.setQueryCache(null);
+					return searcher;
+				}
+			});
+		} catch (IOException e) {
+			throw new RuntimeException("Could not open Lucene index writer", e);
+		}
+
+		// start scheduler for periodic maintenance, if needed
+		if (this.commitInterval > 0 || this.refreshInterval > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "lucene-index-maintenance");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+			if (this.commitInterval > 0)
+				scheduler.scheduleWithFixedDelay(this::commitIfPending, this.commitInterval, this.commitInterval, TimeUnit.MILLISECONDS);
+			if (this.refreshInterval > 0)
+				scheduler.scheduleWithFixedDelay(this::refresh, this.refreshInterval, this.refreshInterval, TimeUnit.MILLISECONDS);
+		} else scheduler = null;
+
+		if (logger.isInfoEnabled())
+			logger.info("Lucene index opened (commit interval " + this.commitInterval + "ms, commit after "
+					+ this.commitMaxChanges + " changes, refresh interval " + this.refreshInterval + "ms, "
+					+ (vectorHighlighting ? HIGHLIGHTER_VECTOR : HIGHLIGHTER_POSTINGS) + " highlighter)");
+	}
+
+	/**
+	 * called after each change to the index - applies commit and refresh policy
+	 * @param changes number of changes written
+	 */
+	protected void afterChange(int changes) {
+		int pending = pendingChanges.addAndGet(changes);
+
+		// count based commit
+		if (commitMaxChanges > 0 && pending >= commitMaxChanges)
+			commitIfPending();
+
+		// refresh searchers immediately, if no refresh interval has been set
+		if (refreshInterval == 0)
+			refresh();
+	}
+
+	/**
+	 * commit index, if there are pending changes
+	 */
+	protected void commitIfPending() {
+		if (closed || pendingChanges.get() == 0) return;
+
+		publishLock.readLock().lock();
+		int committed = pendingChanges.getAndSet(0);
+		try {
+			// changes mirrored to a running build must be durable there before they are durable in the live index -
+			// live index is not committed otherwise
+			LuceneIndexBuilder builder = indexBuilder;
+			if (builder != null) builder.commitMirrored();
+
+			writer.commit();
+
+			if (logger.isDebugEnabled())
+				logger.debug("Committed " + committed + " change(s) to Lucene index");
+		} catch (Throwable e) {
+			// retried with next commit
+			pendingChanges.addAndGet(committed);
+			logger.error("Could not commit Lucene index", e);
+		} finally {
+			publishLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * refresh near-real-time searchers
+	 */
+	protected void refresh() {
+		if (closed) return;
+
+		publishLock.readLock().lock();
+		try {
+			searcherManager.maybeRefreshBlocking();
+		} catch (Throwable e) {
+			logger.error("Could not refresh Lucene searcher", e);
+		} finally {
+			publishLock.readLock().unlock();
+		}
 	}
 
 	@Override
-	public synchronized boolean index(String id, String className, String title, String subTitles, String content, String[] tagIds, Integer color, String iconFileIdentifier, float weight) {
+	public boolean index(String id, String className, String title, String subTitles, String content, String[] tagIds, Integer color, String iconFileIdentifier, float weight) {
+		publishLock.readLock().lock();
 		try {
-			// init index writer config
-			IndexWriterConfig indexWriterConfig = new IndexWriterConfig(this.analyzer);
+			// create or update document
+			Document doc = createDocument(id, className, title, subTitles, content, tagIds, color, iconFileIdentifier, weight);
+			writer.updateDocument(new Term("id", id), doc);
 
-			// create new index writer
-			IndexWriter iWriter = new IndexWriter(directory, indexWriterConfig);
-			Document doc = new Document();
+			LuceneIndexBuilder builder = indexBuilder;
+			if (builder != null) builder.mirrorUpdate(id, doc);
+
+			afterChange(1);
+		} catch (Exception e) {
+			logger.error("Could not index document " + id, e);
+			return false;
+		} finally {
+			publishLock.readLock().unlock();
+		}
+
+		return true;
+	}
 
-			doc.add(new Field("id", id, simpleIndexType));
-			doc.add(new Field("className", className, simpleIndexType));
+	@Override
+	public boolean indexAll(Collection<SearchIndexDocument> documents) {
+		if (documents == null || documents.isEmpty()) return true;
 
-			Field field;
-			if (title != null) {
-				field = new Field("title", title, indexedTextType);
-				field.setBoost(10f * weight);
-				doc.add(field);
+		boolean success = true;
+		int written = 0;
+		publishLock.readLock().lock();
+		try {
+			LuceneIndexBuilder builder = indexBuilder;
+
+			// passages indexed already are not analyzed again
+			Map<String, String> passagesHashes = new HashMap<>();
+			for (SearchIndexDocument document : documents)
+				if (document.getPassages() != null) passagesHashes.put(document.getId(), createPassagesHash(document));
+			Set<String> unchangedPassages = findIndexedPassages(passagesHashes);
+
+			for (SearchIndexDocument document : documents) {
+				try {
+					Document doc = createDocument(document);
+					writer.updateDocument(new Term("id", document.getId()), doc);
+					if (builder != null) builder.mirrorUpdate(document.getId(), doc);
+					written++;
+
+					if (document.getPassages() != null)
+						written += writePassages(document, passagesHashes.get(document.getId()), unchangedPassages.contains(document.getId()), builder);
+				} catch (Exception e) {
+					logger.error("Could not index document " + document.getId(), e);
+					success = false;
+				}
 			}
 
-			if (subTitles != null) {
-				field = new Field("subTitles", subTitles, indexedTextType);
-				field.setBoost(6f * weight);
-				doc.add(field);
+			// apply commit and refresh policy once for the whole batch
+			if (written > 0) afterChange(written);
+		} finally {
+			publishLock.readLock().unlock();
+		}
+
+		return success;
+	}
+
+	/**
+	 * create Lucene document from bulk document
+	 * @param document to convert
+	 * @return document to be written to index
+	 */
+	protected Document createDocument(SearchIndexDocument document) throws IOException {
+		return createDocument(document.getId(), document.getClassName(), document.getTitle(), document.getSubTitles(),
+				document.getContent(), document.getTagIds(), document.getColor(), document.getIconFileIdentifier(),
+				document.getWeight());
+	}
+
+	/**
+	 * write passages of document, replacing passages written before
+	 * @param document having passages
+	 * @param hash of passages
+	 * @param unchanged true if passages have been indexed already - written to index builder only
+	 * @param builder index builder to mirror passages to (may be null)
+	 * @return number of changes (0 or 1)
+	 * @throws IOException on index errors
+	 */
+	protected int writePassages(SearchIndexDocument document, String hash, boolean unchanged, @Nullable LuceneIndexBuilder builder) throws IOException {
+		if (unchanged && builder == null) return 0;
+
+		List<Document> passages = createPassageDocuments(document, hash);
+		if (builder != null) builder.mirrorPassages(document.getId(), passages);
+		if (unchanged) return 0;
+
+		Term term = new Term(PASSAGE_OF, document.getId());
+		if (passages.isEmpty()) writer.deleteDocuments(term);
+		else writer.updateDocuments(term, passages);
+		return 1;
+	}
+
+	/**
+	 * find entities whose passages have been indexed already
+	 * @param passagesHashes hashes of passages by entity id
+	 * @return ids of entities whose passages have the same hash in index
+	 */
+	protected Set<String> findIndexedPassages(Map<String, String> passagesHashes) {
+		Set<String> indexed = new HashSet<>();
+		if (passagesHashes.isEmpty()) return indexed;
+
+		IndexSearcher iSearcher = null;
+		try {
+			// include changes not refreshed yet
+			searcherManager.maybeRefreshBlocking();
+			iSearcher = searcherManager.acquire();
+
+			for (Map.Entry<String, String> entry : passagesHashes.entrySet())
+				if (iSearcher.search(new TermQuery(new Term(PASSAGES_HASH, entry.getKey() + "|" + entry.getValue())), 1).totalHits > 0)
+					indexed.add(entry.getKey());
+		} catch (IOException e) {
+			logger.warn("Could not look up indexed passages", e);
+		} finally {
+			releaseSearcher(iSearcher);
+		}
+
+		return indexed;
+	}
+
+	/**
+	 * hash passages and their weight
+	 * @param document having passages
+	 * @return hex encoded hash
+	 */
+	protected static String createPassagesHash(SearchIndexDocument document) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			md.update(Float.toString(document.getWeight()).getBytes(StandardCharsets.UTF_8));
+			for (String passage : document.getPassages()) {
+				md.update((byte) 0);
+				if (passage != null) md.update(passage.getBytes(StandardCharsets.UTF_8));
 			}
+			return Hex.encodeHexString(md.digest());
+		} catch (Exception e) {
+			throw new RuntimeException("Could not hash passages", e);
+		}
+	}
+
+	/**
+	 * create Lucene documents of passages - empty passages are skipped, but counted
+	 * @param document having passages
+	 * @param hash of passages
+	 * @return documents to be written to index
+	 */
+	protected List<Document> createPassageDocuments(SearchIndexDocument document, String hash) {
+		String[] passages = document.getPassages();
+		List<Document> docs = new ArrayList<>();
+		if (passages == null) return docs;
 
-			// add content
-			if (content == null) content = "";
-			field = new Field("content", content, indexedTextType);
-			field.setBoost(weight);
+		for (int i = 0; i < passages.length; i++) {
+			if (passages[i] == null || passages[i].isEmpty()) continue;
+
+			Document doc = new Document();
+			doc.add(new StringField(PASSAGE_OF, document.getId(), Field.Store.NO));
+			doc.add(new SortedDocValuesField(PASSAGE_OF, new BytesRef(document.getId())));
+			doc.add(new NumericDocValuesField(PASSAGE_NUMBER, i + 1));
+			if (docs.isEmpty())
+				doc.add(new StringField(PASSAGES_HASH, document.getId() + "|" + hash, Field.Store.NO));
+
+			Field field = new Field(PASSAGE, passages[i], indexedTextType);
+			field.setBoost(document.getWeight());
 			doc.add(field);
 
-			// add tagIds
-			if (tagIds != null)
-				for (String tagId : tagIds) {
-					field = new Field("tag", tagId, simpleIndexType);
-					field.setBoost(weight);
-					doc.add(field);
-				}
+			docs.add(doc);
+		}
 
-			// add color and icon - just stored
-			if (color != null) {
-				field = new IntField("color", color, IntField.TYPE_STORED);
-				doc.add(field);
-			}
+		return docs;
+	}
 
-			// add color and icon - just stored
-			if (iconFileIdentifier != null) {
-				field = new Field("iconFileIdentifier", iconFileIdentifier, TextField.TYPE_STORED);
+	/**
+	 * create Lucene document from data
+	 * @return document to be written to index
+	 * @throws IOException if facet fields could not be built
+	 */
+	protected Document createDocument(String id, String className, String title, String subTitles, String content, String[] tagIds, Integer color, String iconFileIdentifier, float weight) throws IOException {
+		Document doc = new Document();
+
+		doc.add(new Field("id", id, simpleIndexType));
+		doc.add(new BinaryDocValuesField("id", new BytesRef(id)));
+		doc.add(new Field("className", className, simpleIndexType));
+		if (className != null && !className.isEmpty()) {
+			doc.add(new SortedDocValuesField("className", new BytesRef(className)));
+			doc.add(new SortedSetDocValuesFacetField("className", className));
+		}
+
+		Field field;
+		if (title != null) {
+			field = new Field("title", title, indexedTextType);
+			field.setBoost(10f * weight);
+			doc.add(field);
+			doc.add(new BinaryDocValuesField("title", new BytesRef(title)));
+		}
+
+		if (subTitles != null) {
+			field = new Field("subTitles", subTitles, indexedTextType);
+			field.setBoost(6f * weight);
+			doc.add(field);
+			doc.add(new BinaryDocValuesField("subTitles", new BytesRef(subTitles)));
+		}
+
+		// add content
+		if (content == null) content = "";
+		field = new Field("content", content, indexedTextType);
+		field.setBoost(weight);
+		doc.add(field);
+
+		// add tagIds
+		if (tagIds != null)
+			for (String tagId : tagIds) {
+				field = new Field("tag", tagId, simpleIndexType);
+				field.setBoost(weight);
 				doc.add(field);
+				if (tagId != null && !tagId.isEmpty()) {
+					doc.add(new SortedSetDocValuesField("tag", new BytesRef(tagId)));
+					doc.add(new SortedSetDocValuesFacetField("tag", tagId));
+				}
 			}
 
-			// create or update document
-			iWriter.updateDocument(new Term("id", id), doc);
-			iWriter.close();
-		} catch (Exception e) {
-			logger.error("Could not index document " + id, e);
-			return false;
+		// add color and icon - just stored
+		if (color != null) {
+			field = new IntField("color", color, IntField.TYPE_STORED);
+			doc.add(field);
+			doc.add(new NumericDocValuesField("color", color));
 		}
 
-		return true;
+		// add color and icon - just stored
+		if (iconFileIdentifier != null) {
+			field = new Field("iconFileIdentifier", iconFileIdentifier, TextField.TYPE_STORED);
+			doc.add(field);
+			doc.add(new BinaryDocValuesField("iconFileIdentifier", new BytesRef(iconFileIdentifier)));
+		}
+
+		// translate facet fields to doc values
+		return facetsConfig.build(doc);
 	}
 
 	@Override
@@ -167,8 +725,10 @@ public class LuceneSearchEngine implements SearchEngine {
 		int page = 1;
 		int entriesPerPage = 20;
 
+		IndexSearcher iSearcher = null;
 		try {
-			DirectoryReader iReader = DirectoryReader.open(directory);
+			iSearcher = searcherManager.acquire();
+			IndexReader iReader = iSearcher.getIndexReader();
 
 			String[] containFields;
 			// do we have a filter to contain to certain fields?
@@ -193,60 +753,31 @@ public class LuceneSearchEngine implements SearchEngine {
 				else if (!operator.isEmpty() && !operator.equalsIgnoreCase("and")) throw new RuntimeException("operator-Filter " + operator + " is not and/or.");
 			}
 
-			// filters for query
-			List<Filter> searchFilters = new ArrayList<>();
+			// filters for query - normalized, so they are found in the filter cache
+			List<Query> searchFilters = new ArrayList<>();
 
 			// class filter
-			if (filters.containsKey("class") && !filters.get("class").isEmpty()) {
-				// multiple classes?
-				String[] classes = filters.get("class").split(",");
-
-				// single class
-				if (classes.length <= 1) {
-					TermQuery categoryQuery = new TermQuery(new Term("className", filters.get("class")));
-					searchFilters.add(new QueryWrapperFilter(categoryQuery));
-				} else { // multiple classes
-					Filter[] categories = new Filter[classes.length];
-					for (int i = 0; i < classes.length; i++) {
-						categories[i] = new QueryWrapperFilter(new TermQuery(new Term("className", classes[i].trim())));
-					}
-					BooleanFilter bFilter = new BooleanFilter();
-					for (Filter f : categories)
-						bFilter.add(f, BooleanClause.Occur.SHOULD);
-
-					// add chained filter
-					searchFilters.add(bFilter);
-				}
-			}
+			Query classFilter = createTermsFilter("className", filters.get("class"));
+			if (classFilter != null) searchFilters.add(classFilter);
 
 			// tag filter
-			if (filters.containsKey("tags") && !filters.get("tags").isEmpty()) {
-				// split tags into array
-				String[] tags = filters.get("tags").split(",");
-				BooleanQuery booleanQuery = new BooleanQuery();
-				for (String tag : tags) {
-					booleanQuery.add(new TermQuery(new Term("tag", tag.trim())), BooleanClause.Occur.SHOULD);
-				}
-				searchFilters.add(new QueryWrapperFilter(booleanQuery));
-			}
-
-			// create filter - if multiple filters applied, add chained filter
-			Filter filter = null;
-			if (searchFilters.size() == 1)
-				filter = searchFilters.get(0);
-			else if (searchFilters.size() > 1) {
-				BooleanFilter bFilter = new BooleanFilter();
-				for (Filter f : searchFilters)
-					bFilter.add(f, BooleanClause.Occur.MUST);
-
-				filter = bFilter;
-			}
+			Query tagFilter = createTermsFilter("tag", filters.get("tags"));
+			if (tagFilter != null) searchFilters.add(tagFilter);
 
 			// define query
 			Query query = null;
 			if (searchTerm != null)
 				query = parser.parse(searchTerm);
-			if (query == null) query = new MatchAllDocsQuery(); // fallback to match all documents
+
+			// entities having passages (e.g. pages of full texts) matching the query are found, too
+			Query passageQuery = null;
+			if (query != null && Arrays.asList(containFields).contains("content")) {
+				QueryParser passageParser = new QueryParser(PASSAGE, analyzer);
+				passageParser.setDefaultOperator(parser.getDefaultOperator());
+				passageQuery = passageParser.parse(searchTerm);
+			}
+
+			if (query == null) query = createMatchAllQuery(); // fallback to match all documents
 
 			// get hits per page
 			if (filters.containsKey("limit")) {
@@ -267,77 +798,410 @@ public class LuceneSearchEngine implements SearchEngine {
 				}
 			}
 
-			// calculate start/stop indexes
-			int startIndex = (page - 1) * entriesPerPage;
-			int endIndex = page * entriesPerPage;
-
-			IndexSearcher iSearcher = new IndexSearcher(iReader);
-			// do search
-			TopDocs topDocs = iSearcher.search(query, filter, 1000);
-
-			// update end index
-			if (topDocs.scoreDocs.length < endIndex)
-				endIndex = topDocs.scoreDocs.length;
-			// how many pages do we have?
-			int pages = topDocs.scoreDocs.length / entriesPerPage + 1;
-			// reset page to sane limit, if needed
-			if (page <= 0 || page > pages) page = 1;
-
-			// highlighter
-			FastVectorHighlighter highlighter = new FastVectorHighlighter();
-			FieldQuery fieldQuery = null;
-			// field query for highlighted terms
-			if (searchTerm != null)
-				fieldQuery = highlighter.getFieldQuery(new QueryParser("content", analyzer).parse(searchTerm), iReader);
+			if (page <= 0) page = 1;
+
+			// identify search by its parsed queries, so a cursor is only used to continue the very same search - the
+			// passage join is not part of it, it runs the passage query when it is created
+			long readerVersion = iReader instanceof DirectoryReader ? ((DirectoryReader) iReader).getVersion() : -1L;
+			String searchKey = query + "|" + passageQuery + "|" + searchFilters + "|" + entriesPerPage;
+			int queryHash = searchKey.hashCode();
+
+			// facets are counted in the same pass as hits are collected
+			boolean countFacets = "true".equalsIgnoreCase(filters.get("facets"));
+			FacetsCollector facetsCollector = countFacets ? new FacetsCollector() : null;
+
+			// same search on same index generation done already?
+			LuceneResultCache<CachedResult> resultCache = this.resultCache;
+			String cacheKey = searchKey + "|" + page + "|" + countFacets;
+			CachedResult cachedResult = readerVersion >= 0 ? resultCache.get(cacheKey, readerVersion) : null;
+
+			// queries are completed on cache misses only
+			Query filteredQuery = cachedResult == null ? createFilteredQuery(iSearcher, query, passageQuery, searchFilters) : null;
+
+			// do search - continue after last hit of preceding page if cursor is valid, otherwise collect hits up to
+			// the requested page only
+			LuceneSearchCursor cursor = LuceneSearchCursor.decode(filters.get("cursor"));
+			ScoreDoc[] scoreDocs;
+			int totalHits;
+			Map<String, Map<String, Integer>> facets = null;
+			if (cachedResult != null) {
+				page = cachedResult.page;
+				scoreDocs = cachedResult.scoreDocs;
+				totalHits = cachedResult.totalHits;
+				facets = cachedResult.facets;
+			} else if (readerVersion >= 0 && cursor != null && cursor.continues(page, readerVersion, queryHash)) {
+				TopDocs topDocs = facetsCollector != null
+						? FacetsCollector.searchAfter(iSearcher, cursor.getLastHit(), filteredQuery, entriesPerPage, facetsCollector)
+						: iSearcher.searchAfter(cursor.getLastHit(), filteredQuery, entriesPerPage);
+				scoreDocs = topDocs.scoreDocs;
+				totalHits = topDocs.totalHits;
+			} else {
+				TopDocs topDocs = facetsCollector != null
+						? FacetsCollector.search(iSearcher, filteredQuery, page * entriesPerPage, facetsCollector)
+						: iSearcher.search(filteredQuery, page * entriesPerPage);
+				totalHits = topDocs.totalHits;
+
+				// reset page to sane limit, if needed
+				if (page > pagesOf(totalHits, entriesPerPage)) page = 1;
+
+				// calculate start/stop indexes
+				int startIndex = Math.min((page - 1) * entriesPerPage, topDocs.scoreDocs.length);
+				int endIndex = Math.min(page * entriesPerPage, topDocs.scoreDocs.length);
+				scoreDocs = Arrays.copyOfRange(topDocs.scoreDocs, startIndex, endIndex);
+			}
+
+			if (cachedResult == null) {
+				if (facetsCollector != null) facets = countFacets(iReader, facetsCollector);
+				if (readerVersion >= 0)
+					resultCache.put(cacheKey, readerVersion, new CachedResult(page, totalHits, scoreDocs, facets));
+			}
+
+			// how many pages do we have? (total hits are counted exactly)
+			int pages = pagesOf(totalHits, entriesPerPage);
 
 			// cycle trough hits
 			List<SearchHit> hits = new ArrayList<>();
 
-			for (int i = startIndex ; i < endIndex ; i++) {
-				ScoreDoc scoreDoc = topDocs.scoreDocs[i];
-				Document hitDoc = iSearcher.doc(scoreDoc.doc);
-
-				SearchHit searchHit = new SearchHit();
-				searchHit.setId(hitDoc.get("id"));
-				searchHit.setClassName(hitDoc.get("className"));
-				searchHit.setTitle(hitDoc.get("title"));
-				searchHit.setSubTitles(hitDoc.get("subTitles"));
-				searchHit.setTagIds(hitDoc.getValues("tag"));
-				String color = hitDoc.get("color");
-				searchHit.setColor(color!=null?new Integer(color):null);
-				searchHit.setIconFileIdentifier(hitDoc.get("iconFileIdentifier"));
+			for (ScoreDoc scoreDoc : scoreDocs) {
+				SearchHit searchHit = loadSearchHit(iReader, scoreDoc.doc);
 				searchHit.setRelevance(scoreDoc.score);
 
-				// get highlighted components
-				if (searchTerm != null) {
-					String[] bestFragments = highlighter.getBestFragments(fieldQuery, iReader, scoreDoc.doc, "content", 18, 10);
-					searchHit.setHighlightText(bestFragments);
-				}
-
 				// add hit
 				hits.add(searchHit);
 			}
 
-			iReader.close();
+			// get highlighted components of the hits on this page in one pass
+			if (searchTerm != null && scoreDocs.length > 0) {
+				int[] docIds = new int[scoreDocs.length];
+				for (int i = 0; i < scoreDocs.length; i++)
+					docIds[i] = scoreDocs[i].doc;
+
+				String[][] fragments = highlight(iSearcher, "content", new QueryParser("content", analyzer).parse(searchTerm), docIds, 18, 10, HIGHLIGHT_MAX_LENGTH);
+
+				// found by passage: highlight best passages of these hits at once
+				Map<String, String[]> passageFragments = Collections.emptyMap();
+				if (passageQuery != null) {
+					Set<String> ids = new HashSet<>();
+					for (int i = 0; i < fragments.length; i++)
+						if (fragments[i] == null || fragments[i].length == 0) ids.add(hits.get(i).getId());
+					passageFragments = highlightBestPassages(iSearcher, passageQuery, searchTerm, ids);
+				}
+
+				for (int i = 0; i < fragments.length; i++) {
+					if (passageFragments.containsKey(hits.get(i).getId())) fragments[i] = passageFragments.get(hits.get(i).getId());
+					hits.get(i).setHighlightText(fragments[i]);
+				}
+			}
+
+			// cursor to next page
+			String nextCursor = null;
+			if (readerVersion >= 0 && page < pages && scoreDocs.length > 0)
+				nextCursor = new LuceneSearchCursor(page, readerVersion, queryHash, scoreDocs[scoreDocs.length - 1]).encode();
 
 			// return pagination info
-			return new PaginationInfo<>(page, pages, topDocs.totalHits, entriesPerPage, hits);
+			return new PaginationInfo<>(page, pages, totalHits, entriesPerPage, hits, nextCursor, facets);
 		} catch (Throwable e) {
 			logger.error("Error in search.", e);
+		} finally {
+			releaseSearcher(iSearcher);
 		}
 
 		// return empty list result in order to avoid NPEs
 		return new PaginationInfo<>(page, 1, 0, entriesPerPage, new ArrayList<>());
 	}
 
+	/**
+	 * load fields shown in hit lists from doc values, so large stored fields like content are not decompressed
+	 * @param iReader reader of searcher
+	 * @param docId global document id
+	 * @return hit without relevance and highlights
+	 * @throws IOException on index errors
+	 */
+	protected SearchHit loadSearchHit(IndexReader iReader, int docId) throws IOException {
+		List<LeafReaderContext> leaves = iReader.leaves();
+		LeafReaderContext context = leaves.get(ReaderUtil.subIndex(docId, leaves));
+		LeafReader leafReader = context.reader();
+		int doc = docId - context.docBase;
+
+		SearchHit searchHit = new SearchHit();
+
+		// segment written without doc values (index not migrated yet) - read selected stored fields
+		BinaryDocValues ids = leafReader.getBinaryDocValues("id");
+		if (ids == null) {
+			Document hitDoc = leafReader.document(doc, DISPLAY_FIELDS);
+			searchHit.setId(hitDoc.get("id"));
+			searchHit.setClassName(hitDoc.get("className"));
+			searchHit.setTitle(hitDoc.get("title"));
+			searchHit.setSubTitles(hitDoc.get("subTitles"));
+			searchHit.setTagIds(hitDoc.getValues("tag"));
+			String color = hitDoc.get("color");
+			searchHit.setColor(color!=null?new Integer(color):null);
+			searchHit.setIconFileIdentifier(hitDoc.get("iconFileIdentifier"));
+			return searchHit;
+		}
+
+		searchHit.setId(ids.get(doc).utf8ToString());
+		SortedDocValues classNames = leafReader.getSortedDocValues("className");
+		if (classNames != null && classNames.getOrd(doc) >= 0)
+			searchHit.setClassName(classNames.get(doc).utf8ToString());
+		searchHit.setTitle(getBinaryValue(leafReader, "title", doc));
+		searchHit.setSubTitles(getBinaryValue(leafReader, "subTitles", doc));
+
+		List<String> tagIds = new ArrayList<>();
+		SortedSetDocValues tags = leafReader.getSortedSetDocValues("tag");
+		if (tags != null) {
+			tags.setDocument(doc);
+			for (long ord = tags.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = tags.nextOrd())
+				tagIds.add(tags.lookupOrd(ord).utf8ToString());
+		}
+		searchHit.setTagIds(tagIds.toArray(new String[tagIds.size()]));
+
+		NumericDocValues colors = leafReader.getNumericDocValues("color");
+		Bits hasColor = leafReader.getDocsWithField("color");
+		if (colors != null && hasColor != null && hasColor.get(doc))
+			searchHit.setColor((int) colors.get(doc));
+		searchHit.setIconFileIdentifier(getBinaryValue(leafReader, "iconFileIdentifier", doc));
+
+		return searchHit;
+	}
+
+	/**
+	 * get string doc value
+	 * @param leafReader segment reader
+	 * @param field name of field
+	 * @param doc document id within segment
+	 * @return value or null if document does not have a value
+	 * @throws IOException on index errors
+	 */
+	private static String getBinaryValue(LeafReader leafReader, String field, int doc) throws IOException {
+		BinaryDocValues values = leafReader.getBinaryDocValues(field);
+		Bits hasValue = leafReader.getDocsWithField(field);
+		if (values == null || hasValue == null || !hasValue.get(doc)) return null;
+		return values.get(doc).utf8ToString();
+	}
+
+	/**
+	 * @return query matching all documents of entities, but not their passages
+	 */
+	protected static Query createMatchAllQuery() {
+		BooleanQuery query = new BooleanQuery();
+		query.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+		query.add(new FieldValueQuery(PASSAGE_OF), BooleanClause.Occur.MUST_NOT);
+		return query;
+	}
+
+	/**
+	 * complete query of search: entities having matching passages are found, too, and filters are added as non
+	 * scoring clauses, so their matching documents are taken from filter cache
+	 * @param iSearcher searcher to run passage query with - join query collects the entities of matching passages
+	 * @param query parsed entity query
+	 * @param passageQuery parsed passage query or null
+	 * @param searchFilters filters to add
+	 * @return query to search with
+	 * @throws IOException on index errors
+	 */
+	protected Query createFilteredQuery(IndexSearcher iSearcher, Query query, @Nullable Query passageQuery, List<Query> searchFilters) throws IOException {
+		if (passageQuery != null) {
+			BooleanQuery entityOrPassages = new BooleanQuery();
+			entityOrPassages.add(query, BooleanClause.Occur.SHOULD);
+			entityOrPassages.add(JoinUtil.createJoinQuery(PASSAGE_OF, false, "id", passageQuery, iSearcher, ScoreMode.Max), BooleanClause.Occur.SHOULD);
+			query = entityOrPassages;
+		}
+
+		if (searchFilters.isEmpty()) return query;
+
+		BooleanQuery booleanQuery = new BooleanQuery();
+		booleanQuery.add(query, BooleanClause.Occur.MUST);
+		for (Query searchFilter : searchFilters)
+			booleanQuery.add(searchFilter, BooleanClause.Occur.FILTER);
+		return booleanQuery;
+	}
+
+	/**
+	 * highlight best matching passage of a number of entities - passages are searched and highlighted in one pass
+	 * @param iSearcher searcher entities were found with
+	 * @param passageQuery query passages were found with
+	 * @param searchTerm term(s) to highlight
+	 * @param ids of entities
+	 * @return fragments by entity id (entities without matching passages are missing)
+	 * @throws Exception on index or parser errors
+	 */
+	protected Map<String, String[]> highlightBestPassages(IndexSearcher iSearcher, Query passageQuery, String searchTerm, Collection<String> ids) throws Exception {
+		Map<String, String[]> fragments = new HashMap<>();
+		if (ids.isEmpty()) return fragments;
+
+		BooleanQuery query = new BooleanQuery();
+		query.add(passageQuery, BooleanClause.Occur.MUST);
+		query.add(createTermsFilter(PASSAGE_OF, String.join(",", ids)), BooleanClause.Occur.FILTER);
+
+		// best scoring passage per entity
+		Map<String, ScoreDoc> best = new HashMap<>();
+		iSearcher.search(query, new SimpleCollector() {
+			private Scorer scorer;
+			private SortedDocValues passageOf;
+			private int docBase;
+
+			@Override
+			protected void doSetNextReader(LeafReaderContext context) throws IOException {
+				passageOf = DocValues.getSorted(context.reader(), PASSAGE_OF);
+				docBase = context.docBase;
+			}
+
+			@Override
+			public void setScorer(Scorer scorer) {
+				this.scorer = scorer;
+			}
+
+			@Override
+			public void collect(int doc) throws IOException {
+				String id = passageOf.get(doc).utf8ToString();
+				float score = scorer.score();
+				ScoreDoc current = best.get(id);
+				if (current == null || score > current.score) best.put(id, new ScoreDoc(docBase + doc, score));
+			}
+
+			@Override
+			public boolean needsScores() {
+				return true;
+			}
+		});
+		if (best.isEmpty()) return fragments;
+
+		List<String> found = new ArrayList<>(best.keySet());
+		int[] docIds = new int[found.size()];
+		for (int i = 0; i < docIds.length; i++)
+			docIds[i] = best.get(found.get(i)).doc;
+
+		String[][] highlighted = highlight(iSearcher, PASSAGE, new QueryParser(PASSAGE, analyzer).parse(searchTerm), docIds, 18, 10, HIGHLIGHT_MAX_LENGTH);
+		for (int i = 0; i < highlighted.length; i++)
+			if (highlighted[i] != null) fragments.put(found.get(i), highlighted[i]);
+
+		return fragments;
+	}
+
+	/**
+	 * create filter matching any of a list of terms - terms are sorted and deduplicated, so equal filters are equal
+	 * queries for the filter cache
+	 * @param field to filter
+	 * @param values comma separated list of terms
+	 * @return filter query or null if no values are given
+	 */
+	protected static Query createTermsFilter(String field, String values) {
+		if (values == null) return null;
+
+		Set<String> terms = new TreeSet<>();
+		for (String value : values.split(","))
+			if (!value.trim().isEmpty()) terms.add(value.trim());
+
+		if (terms.isEmpty()) return null;
+		if (terms.size() == 1) return new TermQuery(new Term(field, terms.iterator().next()));
+
+		BooleanQuery booleanQuery = new BooleanQuery(true);
+		for (String term : terms)
+			booleanQuery.add(new TermQuery(new Term(field, term)), BooleanClause.Occur.SHOULD);
+		return booleanQuery;
+	}
+
+	/**
+	 * count facet values of hits
+	 * @param iReader reader hits were collected from
+	 * @param facetsCollector collector of hits
+	 * @return counts by facet field (className, tag) and value, most frequent values first
+	 * @throws IOException on index errors
+	 */
+	protected Map<String, Map<String, Integer>> countFacets(IndexReader iReader, FacetsCollector facetsCollector) throws IOException {
+		Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+		facets.put("className", new LinkedHashMap<>());
+		facets.put("tag", new LinkedHashMap<>());
+
+		SortedSetDocValuesReaderState state = facetState;
+		if (state == null || state.getOrigReader() != iReader) {
+			try {
+				state = new DefaultSortedSetDocValuesReaderState(iReader);
+			} catch (IllegalArgumentException e) {
+				// no document with facet fields in index, e.g. empty index or index written by an older version
+				return facets;
+			}
+			facetState = state;
+		}
+
+		SortedSetDocValuesFacetCounts counts = new SortedSetDocValuesFacetCounts(state, facetsCollector);
+		for (Map.Entry<String, Map<String, Integer>> facet : facets.entrySet()) {
+			// dimension unknown if no document has any value
+			if (state.getOrdRange(facet.getKey()) == null) continue;
+
+			FacetResult result = counts.getTopChildren(FACET_MAX_VALUES, facet.getKey());
+			if (result != null)
+				for (LabelAndValue labelAndValue : result.labelValues)
+					facet.getValue().put(labelAndValue.label, labelAndValue.value.intValue());
+		}
+
+		return facets;
+	}
+
+	/**
+	 * highlight text field of documents
+	 * @param iSearcher searcher documents were found with
+	 * @param field to highlight, content or passage
+	 * @param query to highlight terms of
+	 * @param docIds documents to highlight
+	 * @param fragmentSize approximate length of fragments
+	 * @param maxFragments maximum number of fragments per document
+	 * @param maxLength maximum number of characters of content to analyze (postings highlighter only)
+	 * @return fragments per document in order of docIds
+	 * @throws IOException on index errors
+	 */
+	protected String[][] highlight(IndexSearcher iSearcher, String field, Query query, int[] docIds, int fragmentSize, int maxFragments, int maxLength) throws IOException {
+		if (!vectorHighlighting)
+			return new LucenePassageHighlighter(maxLength, fragmentSize / 2).highlight(field, query, iSearcher, docIds, maxFragments);
+
+		IndexReader iReader = iSearcher.getIndexReader();
+		FastVectorHighlighter highlighter = new FastVectorHighlighter();
+		FieldQuery fieldQuery = highlighter.getFieldQuery(query, iReader);
+
+		String[][] fragments = new String[docIds.length][];
+		for (int i = 0; i < docIds.length; i++)
+			fragments[i] = highlighter.getBestFragments(fieldQuery, iReader, docIds[i], field, fragmentSize, maxFragments);
+		return fragments;
+	}
+
+	/**
+	 * calculate number of pages
+	 * @param totalHits number of hits
+	 * @param entriesPerPage hits per page
+	 * @return number of pages, at least 1
+	 */
+	private static int pagesOf(int totalHits, int entriesPerPage) {
+		return Math.max(1, (totalHits + entriesPerPage - 1) / entriesPerPage);
+	}
+
 	@Override
 	public String[] searchInDocument(String searchTerm, String id) {
+		List<String> fragments = new ArrayList<>();
+		for (String[] passageFragments : searchPassagesInDocument(searchTerm, id).values())
+			Collections.addAll(fragments, passageFragments);
+
+		return fragments.toArray(new String[fragments.size()]);
+	}
+
+	@Override
+	public Map<Integer, String[]> searchPassagesInDocument(String searchTerm, String id) {
 		// sanity check
-		if (searchTerm == null || id == null || searchTerm.isEmpty() || id.isEmpty()) return new String[]{};
+		if (searchTerm == null || id == null || searchTerm.isEmpty() || id.isEmpty()) return new LinkedHashMap<>();
 
+		IndexSearcher iSearcher = null;
 		try {
-			DirectoryReader iReader = DirectoryReader.open(directory);
-			IndexSearcher iSearcher = new IndexSearcher(iReader);
+			iSearcher = searcherManager.acquire();
+			IndexReader iReader = iSearcher.getIndexReader();
+
+			// highlighted this document already on same index generation?
+			LuceneResultCache<Map<Integer, String[]>> highlightCache = this.highlightCache;
+			String cacheKey = searchTerm + "|" + id;
+			long readerVersion = iReader instanceof DirectoryReader ? ((DirectoryReader) iReader).getVersion() : -1L;
+			Map<Integer, String[]> cached = readerVersion >= 0 ? highlightCache.get(cacheKey, readerVersion) : null;
+			if (cached != null) return copyFragments(cached);
+
+			Map<Integer, String[]> passages = new LinkedHashMap<>();
 
 			// only search content
 			MultiFieldQueryParser parser = new MultiFieldQueryParser(new String[]{"content"}, analyzer);
@@ -350,62 +1214,139 @@ public class LuceneSearchEngine implements SearchEngine {
 			// do search, maximum of 1 document
 			TopDocs topDocs = iSearcher.search(query, filter, 1);
 
+			// return max of 100 highlighted elements of the whole text
+			int remaining = 100;
 			if (topDocs.scoreDocs.length > 0) {
-				ScoreDoc scoreDoc = topDocs.scoreDocs[0];
-
-				// get highlighted text
-				FastVectorHighlighter highlighter = new FastVectorHighlighter();
-				FieldQuery fieldQuery = highlighter.getFieldQuery(new QueryParser("content", analyzer).parse(searchTerm), iReader);
+				String[] fragments = highlight(iSearcher, "content", new QueryParser("content", analyzer).parse(searchTerm), new int[]{topDocs.scoreDocs[0].doc}, 100, remaining, Integer.MAX_VALUE - 1)[0];
+				if (fragments != null && fragments.length > 0) {
+					passages.put(0, fragments);
+					remaining -= fragments.length;
+				}
+			}
 
-				// return max of 100 highlighted elements
-				return highlighter.getBestFragments(fieldQuery, iReader, scoreDoc.doc, "content", 100, 100);
+			// passages containing all terms in order of passages
+			QueryParser passageParser = new QueryParser(PASSAGE, analyzer);
+			passageParser.setDefaultOperator(QueryParser.Operator.AND);
+			BooleanQuery passageQuery = new BooleanQuery();
+			passageQuery.add(passageParser.parse(searchTerm), BooleanClause.Occur.MUST);
+			passageQuery.add(new TermQuery(new Term(PASSAGE_OF, id)), BooleanClause.Occur.FILTER);
+
+			ScoreDoc[] passageDocs = iSearcher.search(passageQuery, MAX_HIGHLIGHTED_PASSAGES).scoreDocs;
+			if (remaining > 0 && passageDocs.length > 0) {
+				int[] numbers = new int[passageDocs.length];
+				Integer[] order = new Integer[numbers.length];
+				for (int i = 0; i < numbers.length; i++) {
+					numbers[i] = getPassageNumber(iReader, passageDocs[i].doc);
+					order[i] = i;
+				}
+				Arrays.sort(order, Comparator.comparingInt(i -> numbers[i]));
+
+				int[] docIds = new int[order.length];
+				for (int i = 0; i < order.length; i++)
+					docIds[i] = passageDocs[order[i]].doc;
+
+				String[][] fragments = highlight(iSearcher, PASSAGE, new QueryParser(PASSAGE, analyzer).parse(searchTerm), docIds, 100, 10, Integer.MAX_VALUE - 1);
+				for (int i = 0; i < fragments.length && remaining > 0; i++) {
+					if (fragments[i] == null || fragments[i].length == 0) continue;
+					if (fragments[i].length > remaining) fragments[i] = Arrays.copyOf(fragments[i], remaining);
+					passages.put(numbers[order[i]], fragments[i]);
+					remaining -= fragments[i].length;
+				}
 			}
+
+			if (readerVersion >= 0) highlightCache.put(cacheKey, readerVersion, copyFragments(passages));
+			return passages;
 		} catch (Throwable e) {
 			logger.error("Error in search.", e);
+		} finally {
+			releaseSearcher(iSearcher);
 		}
 
-		return new String[]{};
+		return new LinkedHashMap<>();
+	}
+
+	/**
+	 * read number of passage
+	 * @param iReader reader of searcher
+	 * @param docId global document id of passage
+	 * @return passage number (starting with 1)
+	 * @throws IOException on index errors
+	 */
+	private static int getPassageNumber(IndexReader iReader, int docId) throws IOException {
+		List<LeafReaderContext> leaves = iReader.leaves();
+		LeafReaderContext context = leaves.get(ReaderUtil.subIndex(docId, leaves));
+		return (int) DocValues.getNumeric(context.reader(), PASSAGE_NUMBER).get(docId - context.docBase);
+	}
+
+	/**
+	 * copy fragments by passage, so cached arrays are not changed by callers
+	 */
+	private static Map<Integer, String[]> copyFragments(Map<Integer, String[]> passages) {
+		Map<Integer, String[]> copy = new LinkedHashMap<>();
+		for (Map.Entry<Integer, String[]> entry : passages.entrySet())
+			copy.put(entry.getKey(), entry.getValue().clone());
+		return copy;
 	}
 
 	@Override
-	public synchronized void remove(String id) {
+	public void remove(String id) {
+		publishLock.readLock().lock();
 		try {
-			// init index writer config
-			IndexWriterConfig indexWriterConfig = new IndexWriterConfig(this.analyzer);
+			writer.deleteDocuments(new Term("id", id), new Term(PASSAGE_OF, id));
+
+			LuceneIndexBuilder builder = indexBuilder;
+			if (builder != null) builder.mirrorDelete(id);
+
+			afterChange(1);
+		} catch (Exception e) {
+			logger.warn("Error while deleting document " + id, e);
+		} finally {
+			publishLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void removeAll(Collection<String> ids) {
+		if (ids == null || ids.isEmpty()) return;
 
-			// create new index writer
-			IndexWriter iWriter = new IndexWriter(directory, indexWriterConfig);
+		publishLock.readLock().lock();
+		try {
+			// documents and their passages
+			Term[] terms = new Term[ids.size() * 2];
+			int i = 0;
+			for (String id : ids) {
+				terms[i++] = new Term("id", id);
+				terms[i++] = new Term(PASSAGE_OF, id);
+			}
 
-			PhraseQuery query = new PhraseQuery();
-			query.add(new Term("id", id));
+			writer.deleteDocuments(terms);
 
-			iWriter.deleteDocuments(query);
+			LuceneIndexBuilder builder = indexBuilder;
+			if (builder != null)
+				for (String id : ids)
+					builder.mirrorDelete(id);
 
-			iWriter.close();
+			afterChange(ids.size());
 		} catch (Exception e) {
-			logger.warn("Error while deleting document " + id, e);
+			logger.warn("Error while deleting " + ids.size() + " documents", e);
+		} finally {
+			publishLock.readLock().unlock();
 		}
 	}
 
 	@Override
-	public synchronized SearchHit getById(String id) {
+	public SearchHit getById(String id) {
+		IndexSearcher iSearcher = null;
 		try {
-			DirectoryReader iReader = DirectoryReader.open(directory);
-			IndexSearcher iSearcher = new IndexSearcher(iReader);
+			iSearcher = searcherManager.acquire();
 
-			PhraseQuery query = new PhraseQuery();
-			query.add(new Term("id", id));
-			
-			TopDocs topDocs = iSearcher.search(query, null, 1);
+			TopDocs topDocs = iSearcher.search(new TermQuery(new Term("id", id)), null, 1);
 
 			// not found?
-			if (topDocs.totalHits == 0) {
-				iReader.close();
-				return null;
-			}
+			if (topDocs.totalHits == 0) return null;
 
 			// fetch hit
-			Document document = iSearcher.doc(0);
+			Document document = iSearcher.doc(topDocs.scoreDocs[0].doc);
 
 			SearchHit searchHit = new SearchHit();
 			searchHit.setId(document.get("id"));
@@ -415,36 +1356,178 @@ public class LuceneSearchEngine implements SearchEngine {
 			searchHit.setHighlightText(new String[]{document.get("content")});
 			searchHit.setTagIds(document.getValues("tag"));
 
-			iReader.close();
-
 			return searchHit;
 		} catch (Exception e) {
 			logger.warn("Error in getById", e);
+		} finally {
+			releaseSearcher(iSearcher);
 		}
 
 		return null;
 	}
 
 	@Override
-	public synchronized void clearAllIndexes() {
+	public void clearAllIndexes() {
+		publishLock.readLock().lock();
 		try {
-			// init index writer config
-			IndexWriterConfig indexWriterConfig = new IndexWriterConfig(this.analyzer);
+			writer.deleteAll();
+			writer.commit();
+			pendingChanges.set(0);
+			refresh();
+		} catch (Exception e) {
+			logger.warn("Error while deleting all entries", e);
+		} finally {
+			publishLock.readLock().unlock();
+		}
+	}
 
-			// create new index writer
-			IndexWriter iWriter = new IndexWriter(directory, indexWriterConfig);
+	@Override
+	public synchronized SearchIndexBuilder openIndexBuilder(boolean resume) throws IOException {
+		if (closed) throw new IOException("Lucene index has been closed");
+		if (indexBuilder != null) throw new IOException("Another index build is running");
 
-			iWriter.deleteAll();
+		Directory builderDirectory = createBuilderDirectory();
+		boolean resumed = resume && DirectoryReader.indexExists(builderDirectory);
 
-			iWriter.close();
-		} catch (Exception e) {
-			logger.warn("Error while deleting all entries", e);
+		IndexWriterConfig indexWriterConfig = new IndexWriterConfig(this.analyzer);
+		indexWriterConfig.setOpenMode(resumed ? IndexWriterConfig.OpenMode.APPEND : IndexWriterConfig.OpenMode.CREATE);
+		// bulk writes - larger buffer than live writer
+		indexWriterConfig.setRAMBufferSizeMB(64d);
+
+		indexBuilder = new LuceneIndexBuilder(builderDirectory, new IndexWriter(builderDirectory, indexWriterConfig), resumed);
+
+		if (logger.isInfoEnabled())
+			logger.info((resumed ? "Resumed" : "Started") + " building new Lucene index in " + builderDirectory);
+
+		return indexBuilder;
+	}
+
+	/**
+	 * index is outdated if the term vectors of its text fields do not match the highlighter mode, or facets or doc
+	 * values of hit list fields are missing
+	 */
+	@Override
+	public boolean isIndexOutdated() {
+		IndexSearcher iSearcher = null;
+		try {
+			iSearcher = searcherManager.acquire();
+			for (LeafReaderContext context : iSearcher.getIndexReader().leaves()) {
+				FieldInfo fieldInfo = context.reader().getFieldInfos().fieldInfo("content");
+				if (fieldInfo != null && fieldInfo.hasVectors() != vectorHighlighting) return true;
+
+				// facet doc values missing
+				if (fieldInfo != null && context.reader().getFieldInfos().fieldInfo(facetsConfig.getDimConfig("className").indexFieldName) == null) return true;
+
+				// hit list doc values missing
+				FieldInfo idInfo = context.reader().getFieldInfos().fieldInfo("id");
+				if (idInfo != null && idInfo.getDocValuesType() != DocValuesType.BINARY) return true;
+			}
+		} catch (IOException e) {
+			logger.warn("Could not check layout of Lucene index", e);
+		} finally {
+			releaseSearcher(iSearcher);
+		}
+
+		return false;
+	}
+
+	/**
+	 * create directory to build new index in: sibling of index directory on file system, in memory otherwise
+	 * @return directory
+	 * @throws IOException if directory could not be opened
+	 */
+	protected Directory createBuilderDirectory() throws IOException {
+		Directory unwrapped = FilterDirectory.unwrap(directory); // e.g. NRTCachingDirectory
+		if (unwrapped instanceof FSDirectory) {
+			Path path = ((FSDirectory) unwrapped).getDirectory();
+			return FSDirectory.open(path.resolveSibling(path.getFileName() + "_reindex"));
+		}
+
+		return new RAMDirectory();
+	}
+
+	/**
+	 * @return cache of class and tag filters or null if disabled
+	 */
+	public LuceneFilterCache getFilterCache() {
+		return filterCache;
+	}
+
+	/**
+	 * replace caches of search results and highlights
+	 * @param maxEntries maximum number of cached results per cache (0 to disable caching)
+	 * @param ttl time to live of cached results in seconds (0 for no expiry)
+	 */
+	public void configureResultCache(int maxEntries, long ttl) {
+		resultCache = new LuceneResultCache<>(maxEntries, ttl * 1000L);
+		highlightCache = new LuceneResultCache<>(maxEntries, ttl * 1000L);
+	}
+
+	/**
+	 * @return cache of result pages
+	 */
+	public LuceneResultCache<?> getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * @return cache of highlights in single documents
+	 */
+	public LuceneResultCache<?> getHighlightCache() {
+		return highlightCache;
+	}
+
+	/**
+	 * release searcher acquired from searcher manager
+	 * @param iSearcher to release (may be null)
+	 */
+	protected void releaseSearcher(IndexSearcher iSearcher) {
+		if (iSearcher == null) return;
+
+		try {
+			searcherManager.release(iSearcher);
+		} catch (IOException e) {
+			logger.warn("Could not release Lucene searcher", e);
 		}
 	}
 
 	@PreDestroy
-	public void destroy() {
+	public synchronized void destroy() {
+		if (closed) return;
+
 		logger.info("Shutting down Lucene index");
+		if (logger.isInfoEnabled()) {
+			if (filterCache != null) logger.info(filterCache.toString());
+			logger.info("Results: " + resultCache + ", highlights: " + highlightCache);
+		}
+
+		// stop periodic maintenance and write pending changes
+		if (scheduler != null) {
+			scheduler.shutdown();
+			try {
+				scheduler.awaitTermination(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		commitIfPending();
+		closed = true;
+
+		// keep checkpointed state of unfinished builds
+		LuceneIndexBuilder builder = indexBuilder;
+		if (builder != null) builder.close();
+
+		try {
+			searcherManager.close();
+		} catch (IOException e) {
+			logger.warn("Error while closing lucene searcher manager", e);
+		}
+
+		try {
+			writer.close();
+		} catch (IOException e) {
+			logger.warn("Error while closing lucene index writer", e);
+		}
 
 		try {
 			directory.close();
@@ -452,4 +1535,255 @@ public class LuceneSearchEngine implements SearchEngine {
 			logger.warn("Error while closing lucene index", e);
 		}
 	}
+
+	/**
+	 * Builds new index in a separate directory and replaces the contents of the live index on publish. Changes to the
+	 * live index during the build are mirrored, so they are not lost - and documents changed live are not overwritten
+	 * by older versions read by the build. The ids changed live are committed with the new index, so a resumed build
+	 * keeps respecting them.
+	 */
+	protected class LuceneIndexBuilder implements SearchIndexBuilder {
+		/**
+		 * key of commit data holding the ids changed live
+		 */
+		private static final String LIVE_IDS = "liveIds";
+
+		private final Directory builderDirectory;
+
+		private final IndexWriter builderWriter;
+
+		private final boolean resumed;
+
+		/**
+		 * ids changed in live index since build started
+		 */
+		private final Set<String> liveIds = ConcurrentHashMap.newKeySet();
+
+		/**
+		 * lock stripes to make check of live ids and writing atomic per id
+		 */
+		private final Object[] stripes = new Object[64];
+
+		private volatile boolean finished = false;
+
+		/**
+		 * true if live changes have been mirrored since last commit
+		 */
+		private volatile boolean mirrored = false;
+
+		protected LuceneIndexBuilder(Directory builderDirectory, IndexWriter builderWriter, boolean resumed) {
+			this.builderDirectory = builderDirectory;
+			this.builderWriter = builderWriter;
+			this.resumed = resumed;
+
+			for (int i = 0; i < stripes.length; i++)
+				stripes[i] = new Object();
+
+			// ids changed live before the build was interrupted
+			if (resumed) {
+				String journal = builderWriter.getCommitData().get(LIVE_IDS);
+				if (journal != null && !journal.isEmpty())
+					liveIds.addAll(Arrays.asList(journal.split("\n")));
+			}
+		}
+
+		private Object stripe(String id) {
+			return stripes[(id.hashCode() & 0x7fffffff) % stripes.length];
+		}
+
+		/**
+		 * mirror live update
+		 */
+		void mirrorUpdate(String id, Document doc) throws IOException {
+			if (finished) return;
+			synchronized (stripe(id)) {
+				liveIds.add(id);
+				builderWriter.updateDocument(new Term("id", id), doc);
+				mirrored = true;
+			}
+		}
+
+		/**
+		 * mirror live removal
+		 */
+		void mirrorDelete(String id) throws IOException {
+			if (finished) return;
+			synchronized (stripe(id)) {
+				liveIds.add(id);
+				builderWriter.deleteDocuments(new Term("id", id), new Term(PASSAGE_OF, id));
+				mirrored = true;
+			}
+		}
+
+		/**
+		 * mirror passages of live update
+		 */
+		void mirrorPassages(String id, List<Document> passages) throws IOException {
+			if (finished) return;
+			synchronized (stripe(id)) {
+				liveIds.add(id);
+				writePassages(builderWriter, id, passages);
+				mirrored = true;
+			}
+		}
+
+		/**
+		 * replace passages of entity in new index
+		 */
+		private void writePassages(IndexWriter builderWriter, String id, List<Document> passages) throws IOException {
+			Term term = new Term(PASSAGE_OF, id);
+			if (passages.isEmpty()) builderWriter.deleteDocuments(term);
+			else builderWriter.updateDocuments(term, passages);
+		}
+
+		@Override
+		public boolean isResumed() {
+			return resumed;
+		}
+
+		@Override
+		public boolean indexAll(Collection<SearchIndexDocument> documents) {
+			if (finished) return false;
+			if (documents == null || documents.isEmpty()) return true;
+
+			boolean success = true;
+			for (SearchIndexDocument document : documents) {
+				try {
+					synchronized (stripe(document.getId())) {
+						// live version is newer
+						if (liveIds.contains(document.getId())) continue;
+						builderWriter.updateDocument(new Term("id", document.getId()), createDocument(document));
+						if (document.getPassages() != null)
+							writePassages(builderWriter, document.getId(), createPassageDocuments(document, createPassagesHash(document)));
+					}
+				} catch (Exception e) {
+					logger.error("Could not index document " + document.getId() + " in new index", e);
+					success = false;
+				}
+			}
+
+			return success;
+		}
+
+		/**
+		 * commit mirrored live changes, if there are any - called before the live index commits
+		 */
+		synchronized void commitMirrored() throws IOException {
+			if (!finished && mirrored) commit();
+		}
+
+		/**
+		 * commit new index together with ids changed live
+		 */
+		private synchronized void commit() throws IOException {
+			mirrored = false;
+			builderWriter.setCommitData(createCommitData());
+			builderWriter.commit();
+		}
+
+		/**
+		 * @return commit data containing ids changed live
+		 */
+		private Map<String, String> createCommitData() {
+			return Collections.singletonMap(LIVE_IDS, String.join("\n", liveIds));
+		}
+
+		@Override
+		public void checkpoint() throws IOException {
+			if (finished) throw new IOException("Index builder has been closed");
+			commit();
+		}
+
+		@Override
+		public void publish() throws IOException {
+			if (finished) throw new IOException("Index builder has been closed");
+
+			// block live writes, commits and refreshes while contents are replaced
+			publishLock.writeLock().lock();
+			try {
+				finished = true;
+				builderWriter.close();
+
+				writer.deleteAll();
+				writer.addIndexes(builderDirectory);
+				writer.commit();
+				pendingChanges.set(0);
+
+				// searchers switch to new index at once
+				searcherManager.maybeRefreshBlocking();
+			} finally {
+				indexBuilder = null;
+				publishLock.writeLock().unlock();
+			}
+
+			deleteBuilderDirectory();
+
+			if (logger.isInfoEnabled())
+				logger.info("Published new Lucene index with " + writer.numDocs() + " documents");
+		}
+
+		@Override
+		public void close() {
+			if (finished) return;
+			finished = true;
+			indexBuilder = null;
+
+			// closing commits pending documents - with the ids changed live
+			synchronized (this) {
+				try {
+					builderWriter.setCommitData(createCommitData());
+					builderWriter.close();
+					builderDirectory.close();
+				} catch (IOException e) {
+					logger.warn("Error while closing new Lucene index", e);
+				}
+			}
+		}
+
+		@Override
+		public void discard() {
+			if (!finished) {
+				finished = true;
+				indexBuilder = null;
+
+				try {
+					builderWriter.rollback();
+				} catch (IOException e) {
+					logger.warn("Error while rolling back new Lucene index", e);
+				}
+			}
+
+			deleteBuilderDirectory();
+		}
+
+		/**
+		 * remove all files of builder directory
+		 */
+		private void deleteBuilderDirectory() {
+			try {
+				for (String file : builderDirectory.listAll())
+					builderDirectory.deleteFile(file);
+				builderDirectory.close();
+			} catch (Exception e) {
+				logger.warn("Could not remove files of new Lucene index", e);
+			}
+		}
+	}
+
+	/**
+	 * page of search results kept in result cache
+	 */
+	protected static class CachedResult {
+		private final int page;
+		private final int totalHits;
+		private final ScoreDoc[] scoreDocs;
+		private final Map<String, Map<String, Integer>> facets;
+
+		private CachedResult(int page, int totalHits, ScoreDoc[] scoreDocs, Map<String, Map<String, Integer>> facets) {
+			this.page = page;
+			this.totalHits = totalHits;
+			this.scoreDocs = scoreDocs;
+			this.facets = facets;
+		}
+	}
 }
@@ -9,21 +9,32 @@ import org.apache.lucene.search.*;
 import org.apache.lucene.util.Version;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
-import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
 import org.segrada.search.SearchEngine;
 import org.segrada.search.SearchHit;
+import org.segrada.search.SearchIndexBuilder;
+import org.segrada.search.SearchIndexDocument;
 import org.segrada.service.util.PaginationInfo;
 import org.segrada.session.ApplicationSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -46,8 +57,6 @@ import java.util.Map;
  */
 @Singleton // thread safety should work
 public class SolrSearchEngine implements SearchEngine {
-	//TODO: add test method
-
 	private static final Logger logger = LoggerFactory.getLogger(SolrSearchEngine.class);
 
 	/**
@@ -60,6 +69,21 @@ public class SolrSearchEngine implements SearchEngine {
 	 */
 	protected final Analyzer analyzer;
 
+	/**
+	 * queue sending updates in batches, null if not connected
+	 */
+	protected SolrUpdateQueue updateQueue;
+
+	/**
+	 * milliseconds within Solr should commit updates (0 to soft commit after each batch)
+	 */
+	private final int commitWithin;
+
+	/**
+	 * milliseconds to wait for pending updates before explicit commits
+	 */
+	private final long flushTimeout;
+
 	/**
 	 * mappings to field names
 	 */
@@ -78,6 +102,16 @@ public class SolrSearchEngine implements SearchEngine {
 	 * @param luceneAnalyzer lucene analyzer to use for parsing search queries
 	 */
 	public SolrSearchEngine(ApplicationSettings settings, Analyzer luceneAnalyzer) {
+		this(settings, luceneAnalyzer, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param settings of application
+	 * @param luceneAnalyzer lucene analyzer to use for parsing search queries
+	 * @param client Solr client to use, e.g. embedded server - if null, a http client is created from the server setting
+	 */
+	protected SolrSearchEngine(ApplicationSettings settings, Analyzer luceneAnalyzer, @Nullable SolrClient client) {
 		this.analyzer = luceneAnalyzer;
 
 		// define field values from settings
@@ -90,67 +124,171 @@ public class SolrSearchEngine implements SearchEngine {
 		color = settings.getSetting("solr.field_color", "color_s");
 		icon = settings.getSetting("solr.field_icon", "icon_s");
 
-		String url = settings.getSetting("solr.server");
-		if (url == null || url.isEmpty()) {
-			logger.error("Could not connect to Solr server - empty server string."); // should not happen
-			return;
+		commitWithin = settings.getSettingAsInt("solr.commitWithin", 1000);
+		flushTimeout = settings.getSettingAsLong("solr.queue.flushTimeout", 60000L);
+
+		if (client != null) solr = client;
+		else {
+			String url = settings.getSetting("solr.server");
+			if (url == null || url.isEmpty()) {
+				logger.error("Could not connect to Solr server - empty server string."); // should not happen
+				return;
+			}
+
+			// create client
+			solr = new HttpSolrClient(url);
+
+			// try to connect to server
+			try {
+				solr.ping();
+			} catch (Exception e) {
+				solr = null; // remove solr
+				logger.error("Could not connect to Solr server", e);
+				return;
+			}
 		}
 
-		// create client
-		solr = new HttpSolrClient(url);
+		// batch updates in background
+		updateQueue = new SolrUpdateQueue(this::send,
+				settings.getSettingAsInt("solr.queue.threads", 2),
+				settings.getSettingAsInt("solr.queue.capacity", 10000),
+				settings.getSettingAsInt("solr.queue.batchSize", 500),
+				settings.getSettingAsLong("solr.queue.flushDelay", 250L),
+				settings.getSettingAsLong("solr.queue.offerTimeout", 2000L),
+				settings.getSettingAsInt("solr.queue.maxAttempts", 5),
+				settings.getSettingAsLong("solr.queue.retryDelay", 500L));
+		updateQueue.start();
+	}
 
-		// try to connect to server
-		try {
-			solr.ping();
-		} catch (Exception e) {
-			solr = null; // remove solr
-			logger.error("Could not connect to Solr server", e);
+	/**
+	 * send batch of updates in a single request - Solr commits them within the configured time, so there are no
+	 * commits per entity
+	 * @param documents documents to add or replace
+	 * @param deleteIds ids of documents to delete
+	 * @throws Exception if request failed
+	 */
+	protected void send(Collection<SolrInputDocument> documents, Collection<String> deleteIds) throws Exception {
+		UpdateRequest request = new UpdateRequest();
+		if (!documents.isEmpty()) request.add(documents);
+		if (!deleteIds.isEmpty()) request.deleteById(new ArrayList<>(deleteIds));
+
+		if (commitWithin > 0) request.setCommitWithin(commitWithin);
+		else request.setAction(AbstractUpdateRequest.ACTION.COMMIT, false, false, true); // soft commit
+
+		request.process(solr);
+	}
+
+	/**
+	 * @return queue sending updates, null if not connected
+	 */
+	public @Nullable SolrUpdateQueue getUpdateQueue() {
+		return updateQueue;
+	}
+
+	/**
+	 * send pending updates and close client
+	 */
+	@PreDestroy
+	public synchronized void destroy() {
+		if (updateQueue != null) {
+			updateQueue.shutdown(10000L);
+			if (logger.isInfoEnabled())
+				logger.info("Solr update queue statistics: " + updateQueue.getStatistics());
+		}
+
+		if (solr != null) {
+			try {
+				solr.close();
+			} catch (IOException e) {
+				logger.warn("Could not close Solr client", e);
+			}
 		}
 	}
 
 	@Override
 	public boolean index(String id, String className, String title, String subTitles, String content, String[] tagIds, Integer color, String iconFileIdentifier, float weight) {
-		try {
-			SolrInputDocument doc = new SolrInputDocument();
+		if (updateQueue == null) {
+			logger.error("Could not index document " + id + " - not connected to Solr server");
+			return false;
+		}
 
-			doc.addField(this.id, id);
-			doc.addField(this.className, className);
+		SolrInputDocument doc = createDocument(id, className, title, subTitles, content, tagIds, color, iconFileIdentifier, weight);
 
-			if (title != null)
-				doc.addField(this.title, title, 10f * weight);
+		// queue full or stopped: send within request
+		return updateQueue.enqueueAdd(id, doc) || updateQueue.sendNow(Collections.singletonList(doc), Collections.emptyList());
+	}
 
-			if (subTitles != null)
-				doc.addField(this.subTitles, subTitles, 6f * weight);
+	@Override
+	public boolean indexAll(Collection<SearchIndexDocument> documents) {
+		if (documents == null || documents.isEmpty()) return true;
+		if (updateQueue == null) {
+			logger.error("Could not index " + documents.size() + " documents - not connected to Solr server");
+			return false;
+		}
 
-			// add content
-			if (content == null) content = "";
-			doc.addField(this.content, content, weight);
+		List<SolrInputDocument> docs = new ArrayList<>(documents.size());
+		for (SearchIndexDocument document : documents)
+			docs.add(createDocument(document.getId(), document.getClassName(), document.getTitle(),
+					document.getSubTitles(), joinPassages(document), document.getTagIds(), document.getColor(),
+					document.getIconFileIdentifier(), document.getWeight()));
 
-			// add tagIds
-			if (tagIds != null)
-				for (String tagId : tagIds) {
-					doc.addField(this.tag, tagId, weight);
-				}
+		// documents are batched already - add them in one request
+		return updateQueue.sendNow(docs, Collections.emptyList());
+	}
 
-			// add color and icon - just stored
-			if (color != null)
-				doc.addField(this.color, color, 0);
+	/**
+	 * passages are not indexed separately in Solr - they are appended to the content
+	 * @param document to index
+	 * @return content including passages
+	 */
+	protected static String joinPassages(SearchIndexDocument document) {
+		if (document.getPassages() == null || document.getPassages().length == 0) return document.getContent();
+
+		StringBuilder sb = new StringBuilder();
+		if (document.getContent() != null) sb.append(document.getContent());
+		for (String passage : document.getPassages()) {
+			if (passage == null || passage.isEmpty()) continue;
+			if (sb.length() > 0) sb.append("\n\n");
+			sb.append(passage);
+		}
+		return sb.toString();
+	}
 
-			// add color and icon - just stored
-			if (iconFileIdentifier != null)
-				doc.addField(this.icon, iconFileIdentifier, 0);
+	/**
+	 * create Solr document from data
+	 * @return document to be sent to server
+	 */
+	protected SolrInputDocument createDocument(String id, String className, String title, String subTitles, String content, String[] tagIds, Integer color, String iconFileIdentifier, float weight) {
+		SolrInputDocument doc = new SolrInputDocument();
 
-			// add document
-			UpdateResponse response = solr.add(doc);
+		doc.addField(this.id, id);
+		doc.addField(this.className, className);
 
-			// commit it - do soft commit
-			solr.commit(false, false, true);
-		} catch (Exception e) {
-			logger.error("Could not index document " + id, e);
-			return false;
-		}
+		if (title != null)
+			doc.addField(this.title, title, 10f * weight);
+
+		if (subTitles != null)
+			doc.addField(this.subTitles, subTitles, 6f * weight);
+
+		// add content
+		if (content == null) content = "";
+		doc.addField(this.content, content, weight);
+
+		// add tagIds
+		if (tagIds != null)
+			for (String tagId : tagIds) {
+				doc.addField(this.tag, tagId, weight);
+			}
+
+		// add color and icon - just stored
+		if (color != null)
+			doc.addField(this.color, color, 0);
 
-		return true;
+		// add color and icon - just stored
+		if (iconFileIdentifier != null)
+			doc.addField(this.icon, iconFileIdentifier, 0);
+
+		return doc;
 	}
 
 	@Override
@@ -259,12 +397,21 @@ public class SolrSearchEngine implements SearchEngine {
 			query.setHighlightSimplePre("<b>");
 			query.setHighlightSimplePost("</b>");
 
+			// facet counts of class names and tags, computed by the same query
+			boolean facets = "true".equalsIgnoreCase(filters.get("facets"));
+			if (facets) {
+				query.setFacet(true);
+				query.addFacetField(this.className, this.tag);
+				query.setFacetMinCount(1);
+				query.setFacetLimit(20);
+			}
+
 			// do query
 			QueryResponse response = solr.query(query);
 			SolrDocumentList results = response.getResults();
 
 			// how many pages do we have?
-			int pages = (int) (results.getNumFound() / entriesPerPage + 1);
+			int pages = (int) Math.max(1, (results.getNumFound() + entriesPerPage - 1) / entriesPerPage);
 
 			// cycle trough hits
 			List<SearchHit> hits = new ArrayList<>();
@@ -293,7 +440,8 @@ public class SolrSearchEngine implements SearchEngine {
 			}
 
 			// return pagination info
-			return new PaginationInfo<>(page, pages, (int) results.getNumFound(), entriesPerPage, hits);
+			return new PaginationInfo<>(page, pages, (int) results.getNumFound(), entriesPerPage, hits, null,
+					facets ? getFacetCounts(response) : null);
 		} catch (Throwable e) {
 			logger.error("Error in search.", e);
 		}
@@ -302,6 +450,31 @@ public class SolrSearchEngine implements SearchEngine {
 		return new PaginationInfo<>(page, 1, 0, entriesPerPage, new ArrayList<>());
 	}
 
+	/**
+	 * get facet counts from response
+	 * @param response of query
+	 * @return counts by facet field (className, tag) and value, most frequent values first
+	 */
+	private Map<String, Map<String, Integer>> getFacetCounts(QueryResponse response) {
+		Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+		facets.put("className", getFacetCounts(response.getFacetField(this.className)));
+		facets.put("tag", getFacetCounts(response.getFacetField(this.tag)));
+		return facets;
+	}
+
+	/**
+	 * get counts of a facet field
+	 * @param facetField field of response, may be null
+	 * @return counts by value
+	 */
+	private Map<String, Integer> getFacetCounts(FacetField facetField) {
+		Map<String, Integer> counts = new LinkedHashMap<>();
+		if (facetField != null && facetField.getValues() != null)
+			for (FacetField.Count count : facetField.getValues())
+				counts.put(count.getName(), (int) count.getCount());
+		return counts;
+	}
+
 	/**
 	 * helper to convert main stuff of solr document to hit
 	 * @param doc
@@ -403,12 +576,28 @@ public class SolrSearchEngine implements SearchEngine {
 
 	@Override
 	public void remove(String id) {
-		try {
-			solr.deleteById(id);
-			solr.commit();
-		} catch (Exception e) {
-			logger.error("Solr remove error.", e);
+		if (updateQueue == null) {
+			logger.error("Solr remove error - not connected to Solr server.");
+			return;
+		}
+
+		if (!updateQueue.enqueueDelete(id))
+			updateQueue.sendNow(Collections.emptyList(), Collections.singletonList(id));
+	}
+
+	@Override
+	public void removeAll(Collection<String> ids) {
+		if (ids == null || ids.isEmpty()) return;
+		if (updateQueue == null) {
+			logger.error("Solr remove error - not connected to Solr server.");
+			return;
 		}
+
+		// delete ids not accepted by queue within request
+		List<String> rejected = new ArrayList<>();
+		for (String id : ids)
+			if (!updateQueue.enqueueDelete(id)) rejected.add(id);
+		updateQueue.sendNow(Collections.emptyList(), rejected);
 	}
 
 	@Override
@@ -426,8 +615,62 @@ public class SolrSearchEngine implements SearchEngine {
 		return null;
 	}
 
+	/**
+	 * Solr keeps serving the existing index while it is rebuilt, so documents are updated in place - entries of
+	 * entities deleted in the meantime have been removed by the services already
+	 */
+	@Override
+	public SearchIndexBuilder openIndexBuilder(boolean resume) {
+		return new SearchIndexBuilder() {
+			@Override
+			public boolean isResumed() {
+				return resume;
+			}
+
+			@Override
+			public boolean indexAll(Collection<SearchIndexDocument> documents) {
+				return SolrSearchEngine.this.indexAll(documents);
+			}
+
+			@Override
+			public void checkpoint() throws IOException {
+				commit();
+			}
+
+			@Override
+			public void publish() throws IOException {
+				commit();
+			}
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public void discard() {
+			}
+
+			private void commit() throws IOException {
+				if (updateQueue != null && !updateQueue.flush(flushTimeout))
+					logger.warn("Pending Solr updates could not be sent before commit");
+
+				try {
+					solr.commit();
+				} catch (SolrServerException e) {
+					throw new IOException("Could not commit Solr index", e);
+				}
+			}
+		};
+	}
+
 	@Override
 	public void clearAllIndexes() {
+		// pending updates would add documents again
+		if (updateQueue != null) {
+			updateQueue.clear();
+			updateQueue.flush(flushTimeout);
+		}
+
 		try {
 			solr.deleteByQuery("*:*");
 			solr.commit();
@@ -0,0 +1,431 @@
+package org.segrada.search.solr;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2016 Maximilian Kalus [segrada@auxnet.de]
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * <p>
+ * Bounded queue of pending Solr updates: updates are coalesced by document id and sent in batches by a number of
+ * worker threads, failed batches are retried with growing delays. Callers are blocked for a while if the queue is
+ * full, so they are slowed down as long as Solr cannot keep up.
+ */
+public class SolrUpdateQueue {
+	private static final Logger logger = LoggerFactory.getLogger(SolrUpdateQueue.class);
+
+	/**
+	 * maximum delay between attempts in milliseconds
+	 */
+	public static final long MAX_RETRY_DELAY = 30000L;
+
+	/**
+	 * Sends batches of updates to Solr
+	 */
+	public interface Sender {
+		/**
+		 * send batch of updates - documents and deletions have distinct ids
+		 * @param documents documents to add or replace
+		 * @param deleteIds ids of documents to delete
+		 * @throws Exception if batch could not be sent (will be retried)
+		 */
+		void send(Collection<SolrInputDocument> documents, Collection<String> deleteIds) throws Exception;
+	}
+
+	/**
+	 * lock for queue
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * pending updates mapped by document id, oldest first - null values are deletions
+	 */
+	private final LinkedHashMap<String, SolrInputDocument> pending = new LinkedHashMap<>();
+
+	/**
+	 * ids of documents currently sent by workers - not taken from queue by other workers to keep order of updates
+	 */
+	private final Set<String> inFlight = new HashSet<>();
+
+	private final Sender sender;
+
+	private final int threads;
+
+	private final int capacity;
+
+	private final int batchSize;
+
+	private final long flushDelay;
+
+	private final long offerTimeout;
+
+	private final int maxAttempts;
+
+	private final long retryDelay;
+
+	private final List<Thread> workers = new ArrayList<>();
+
+	private volatile boolean running = false;
+
+	private volatile boolean aborted = false;
+
+	/**
+	 * number of callers waiting in flush - workers do not wait for more updates then (guarded by lock)
+	 */
+	private int flushing = 0;
+
+	/**
+	 * metrics
+	 */
+	private final AtomicLong enqueued = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * @param sender sending batches to Solr
+	 * @param threads number of worker threads sending batches concurrently
+	 * @param capacity maximum number of pending updates (0 to disable queue, updates have to be sent directly then)
+	 * @param batchSize maximum number of updates sent at once
+	 * @param flushDelay milliseconds to wait for more updates before sending a batch that is not full
+	 * @param offerTimeout milliseconds to block callers when queue is full before giving up
+	 * @param maxAttempts maximum number of attempts to send a batch
+	 * @param retryDelay milliseconds to wait before the first retry, doubled on each further retry
+	 */
+	public SolrUpdateQueue(Sender sender, int threads, int capacity, int batchSize, long flushDelay, long offerTimeout, int maxAttempts, long retryDelay) {
+		this.sender = sender;
+		this.threads = threads < 1 ? 1 : threads;
+		this.capacity = capacity < 0 ? 0 : capacity;
+		this.batchSize = batchSize < 1 ? 1 : batchSize;
+		this.flushDelay = flushDelay < 0 ? 0 : flushDelay;
+		this.offerTimeout = offerTimeout < 0 ? 0 : offerTimeout;
+		this.maxAttempts = maxAttempts < 1 ? 1 : maxAttempts;
+		this.retryDelay = retryDelay < 0 ? 0 : retryDelay;
+	}
+
+	/**
+	 * start worker threads - does nothing if queue is disabled
+	 */
+	public void start() {
+		synchronized (lock) {
+			if (running || capacity == 0) return;
+			running = true;
+			aborted = false;
+		}
+
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(this::work, "solr-update-queue-" + (i + 1));
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+	}
+
+	/**
+	 * stop workers - tries to send pending updates until timeout, remaining updates are lost
+	 * @param timeout milliseconds to wait for workers
+	 */
+	public void shutdown(long timeout) {
+		synchronized (lock) {
+			if (!running) return;
+			running = false;
+			lock.notifyAll();
+		}
+
+		try {
+			for (Thread worker : workers) worker.join(timeout);
+			aborted = true;
+			for (Thread worker : workers) {
+				if (worker.isAlive()) {
+					worker.interrupt();
+					worker.join(timeout);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		workers.clear();
+
+		int left = size();
+		if (left > 0) logger.warn("Solr update queue has been shut down, " + left + " update(s) could not be sent");
+	}
+
+	/**
+	 * @return true if queue is accepting updates
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * enqueue document to be added or replaced
+	 * @param id of document
+	 * @param document to add
+	 * @return true if update has been enqueued, false if queue is not running or full - caller should send directly then
+	 */
+	public boolean enqueueAdd(String id, SolrInputDocument document) {
+		return document != null && offer(id, document);
+	}
+
+	/**
+	 * enqueue document to be deleted
+	 * @param id of document
+	 * @return true if update has been enqueued, false if queue is not running or full - caller should send directly then
+	 */
+	public boolean enqueueDelete(String id) {
+		return offer(id, null);
+	}
+
+	/**
+	 * add update to queue, replacing pending update of the same document
+	 * @param id of document
+	 * @param document to add or null to delete
+	 * @return true if update has been enqueued
+	 */
+	protected boolean offer(String id, SolrInputDocument document) {
+		if (id == null) return false;
+
+		synchronized (lock) {
+			if (!running) return false;
+
+			if (pending.containsKey(id)) {
+				coalesced.incrementAndGet();
+			} else {
+				// back-pressure: wait for workers to free capacity
+				long deadline = System.currentTimeMillis() + offerTimeout;
+				while (pending.size() >= capacity && running) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						rejected.incrementAndGet();
+						return false;
+					}
+					try {
+						lock.wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						rejected.incrementAndGet();
+						return false;
+					}
+				}
+				if (!running) return false;
+			}
+
+			pending.put(id, document);
+			enqueued.incrementAndGet();
+
+			lock.notifyAll();
+		}
+
+		return true;
+	}
+
+	/**
+	 * send updates right away in the calling thread, retrying failed attempts like the workers do
+	 * @param documents documents to add or replace
+	 * @param deleteIds ids of documents to delete
+	 * @return true if updates have been sent
+	 */
+	public boolean sendNow(Collection<SolrInputDocument> documents, Collection<String> deleteIds) {
+		return sendWithRetry(documents, deleteIds);
+	}
+
+	/**
+	 * wait until all pending updates have been sent, e.g. before committing
+	 * @param timeout milliseconds to wait at most
+	 * @return true if queue is empty
+	 */
+	public boolean flush(long timeout) {
+		long deadline = System.currentTimeMillis() + timeout;
+
+		synchronized (lock) {
+			flushing++;
+			lock.notifyAll(); // do not wait for more updates
+
+			try {
+				while (!pending.isEmpty() || !inFlight.isEmpty()) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0 || !running) return false;
+					try {
+						lock.wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return false;
+					}
+				}
+			} finally {
+				flushing--;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * drop all pending updates, e.g. before clearing the index
+	 */
+	public void clear() {
+		synchronized (lock) {
+			pending.clear();
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return number of pending updates (including the ones sent right now)
+	 */
+	public int size() {
+		synchronized (lock) {
+			return pending.size() + inFlight.size();
+		}
+	}
+
+	/**
+	 * @return map of metrics, e.g. for status pages
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("running", running);
+		statistics.put("depth", size());
+		statistics.put("capacity", capacity);
+		statistics.put("enqueued", enqueued.get());
+		statistics.put("coalesced", coalesced.get());
+		statistics.put("rejected", rejected.get());
+		statistics.put("sent", sent.get());
+		statistics.put("retried", retried.get());
+		statistics.put("failed", failed.get());
+		statistics.put("batches", batches.get());
+
+		return statistics;
+	}
+
+	/**
+	 * worker loop
+	 */
+	protected void work() {
+		while (!aborted) {
+			Map<String, SolrInputDocument> batch;
+
+			synchronized (lock) {
+				try {
+					// on shutdown, wait for updates of documents other workers are sending right now
+					while (!hasAvailable() && (running || !pending.isEmpty()))
+						lock.wait();
+
+					// give callers some time to add more updates, if batch would not be full - each update wakes
+					// workers, so wait until the delay has passed
+					long deadline = System.currentTimeMillis() + flushDelay;
+					long remaining = flushDelay;
+					while (running && flushing == 0 && pending.size() < batchSize && remaining > 0) {
+						lock.wait(remaining);
+						remaining = deadline - System.currentTimeMillis();
+					}
+				} catch (InterruptedException e) {
+					break;
+				}
+
+				// stopped and everything done
+				if (!hasAvailable()) {
+					if (running || !pending.isEmpty()) continue;
+					break;
+				}
+
+				batch = new LinkedHashMap<>();
+				Iterator<Map.Entry<String, SolrInputDocument>> it = pending.entrySet().iterator();
+				while (it.hasNext() && batch.size() < batchSize) {
+					Map.Entry<String, SolrInputDocument> entry = it.next();
+					if (inFlight.contains(entry.getKey())) continue;
+					batch.put(entry.getKey(), entry.getValue());
+					it.remove();
+				}
+				inFlight.addAll(batch.keySet());
+
+				// free capacity for waiting callers
+				lock.notifyAll();
+			}
+
+			List<SolrInputDocument> documents = new ArrayList<>(batch.size());
+			List<String> deleteIds = new ArrayList<>();
+			for (Map.Entry<String, SolrInputDocument> entry : batch.entrySet()) {
+				if (entry.getValue() == null) deleteIds.add(entry.getKey());
+				else documents.add(entry.getValue());
+			}
+
+			sendWithRetry(documents, deleteIds);
+
+			synchronized (lock) {
+				inFlight.removeAll(batch.keySet());
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return true if there is a pending update no other worker is sending an update of the same document for -
+	 * to be called with lock held
+	 */
+	private boolean hasAvailable() {
+		if (inFlight.isEmpty()) return !pending.isEmpty();
+
+		for (String id : pending.keySet())
+			if (!inFlight.contains(id)) return true;
+		return false;
+	}
+
+	/**
+	 * send batch, waiting twice as long after each failed attempt
+	 * @param documents documents to add or replace
+	 * @param deleteIds ids of documents to delete
+	 * @return true if batch has been sent
+	 */
+	private boolean sendWithRetry(Collection<SolrInputDocument> documents, Collection<String> deleteIds) {
+		int size = documents.size() + deleteIds.size();
+		if (size == 0) return true;
+
+		long delay = retryDelay;
+		for (int attempt = 1; ; attempt++) {
+			try {
+				sender.send(documents, deleteIds);
+				sent.addAndGet(size);
+				batches.incrementAndGet();
+				return true;
+			} catch (Throwable e) {
+				if (attempt >= maxAttempts || aborted) {
+					logger.error("Giving up sending batch of " + size + " Solr update(s) after " + attempt + " attempt(s)", e);
+					failed.addAndGet(size);
+					return false;
+				}
+				logger.warn("Could not send batch of " + size + " Solr update(s), retrying in " + delay + "ms: " + e.getMessage());
+				retried.incrementAndGet();
+			}
+
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failed.addAndGet(size);
+				return false;
+			}
+			delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+		}
+	}
+}
@@ -7,6 +7,7 @@ import org.segrada.model.prototype.SegradaAnnotatedEntity;
 import org.segrada.model.prototype.SegradaEntity;
 import org.segrada.rendering.markup.MarkupFilterFactory;
 import org.segrada.search.SearchEngine;
+import org.segrada.search.SearchIndexDocument;
 import org.segrada.service.base.AbstractFullTextService;
 import org.segrada.service.base.BinaryDataHandler;
 import org.segrada.service.base.SearchTermService;
@@ -16,6 +17,7 @@ import org.segrada.service.repository.TagRepository;
 import org.segrada.service.repository.factory.RepositoryFactory;
 import org.segrada.service.repository.prototype.PaginatingRepositoryOrService;
 import org.segrada.service.util.PaginationInfo;
+import org.segrada.service.util.TitleSuggester;
 import org.segrada.util.ImageManipulator;
 import org.segrada.util.TextExtractor;
 
@@ -80,6 +82,16 @@ public class FileService extends AbstractFullTextService<IFile, FileRepository>
 		return repository.findBySearchTerm(term, maximum, returnWithoutTerm);
 	}
 
+	/**
+	 * Find titles of entities for typeahead fields - answered from memory without loading entities
+	 * @param term search term
+	 * @param maximum maximum hits to return
+	 * @return list of suggestions
+	 */
+	public List<TitleSuggester.Suggestion> suggest(String term, int maximum) {
+		return repository.suggest(term, maximum);
+	}
+
 	@Override
 	public List<IFile> search(String term) {
 		return findBySearchTerm(term, 30, true);
@@ -97,11 +109,13 @@ public class FileService extends AbstractFullTextService<IFile, FileRepository>
 		if (description == null) description = "";
 		// to plain text
 		description = MarkupFilterFactory.produce(entity.getDescriptionMarkup()).toPlain(description);
-		// add full text?
-		if (entity.getIndexFullText() && entity.getFullText() != null && !entity.getFullText().isEmpty())
-			description += " ".concat(entity.getFullText());
-
 		idxEntity.content = description;
+
+		// full text is indexed in passages (pages or chunks) - empty passages remove full text indexed before
+		if (entity.getIndexFullText())
+			idxEntity.passages = SearchIndexDocument.splitIntoPassages(entity.getFullText(), SearchIndexDocument.DEFAULT_PASSAGE_LENGTH);
+		else idxEntity.passages = new String[0];
+
 		idxEntity.contentMarkup = "plain";
 		idxEntity.weight = 10f;
 		idxEntity.color = entity.getColor();
@@ -273,8 +287,11 @@ public class FileService extends AbstractFullTextService<IFile, FileRepository>
 
 	@Override
 	public boolean delete(IFile entity) {
-		removeBinaryDataFromService(entity);
-		return super.delete(entity);
+		// binary data is kept if deletion is rolled back
+		if (!super.delete(entity)) return false;
+
+		if (entity != null) removeBinaryDataFromService(entity);
+		return true;
 	}
 
 	/**
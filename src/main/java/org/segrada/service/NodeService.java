@@ -7,12 +7,15 @@ import org.segrada.search.SearchEngine;
 import org.segrada.service.base.AbstractFullTextService;
 import org.segrada.service.base.SearchTermService;
 import org.segrada.service.repository.NodeRepository;
+import org.segrada.service.repository.RelationRepository;
 import org.segrada.service.repository.TagRepository;
 import org.segrada.service.repository.factory.RepositoryFactory;
 import org.segrada.service.repository.prototype.PaginatingRepositoryOrService;
 import org.segrada.service.util.PaginationInfo;
+import org.segrada.service.util.TitleSuggester;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -63,6 +66,16 @@ public class NodeService extends AbstractFullTextService<INode, NodeRepository>
 		return repository.findBySearchTerm(term, maximum, returnWithoutTerm);
 	}
 
+	/**
+	 * Find titles of entities for typeahead fields - answered from memory without loading entities
+	 * @param term search term
+	 * @param maximum maximum hits to return
+	 * @return list of suggestions
+	 */
+	public List<TitleSuggester.Suggestion> suggest(String term, int maximum) {
+		return repository.suggest(term, maximum);
+	}
+
 	/**
 	 * find by search terms, but also contain by tags (used in reference search)
 	 * @param term to search for
@@ -101,6 +114,19 @@ public class NodeService extends AbstractFullTextService<INode, NodeRepository>
 		return idxEntity;
 	}
 
+	@Override
+	public boolean delete(INode entity) {
+		// relations are deleted with their node - find them before to remove them from search index
+		RelationRepository relationRepository = repositoryFactory.produceRepository(RelationRepository.class);
+		List<String> relationIds = relationRepository != null ? relationRepository.findIdsByRelation(entity) : Collections.emptyList();
+
+		if (super.delete(entity)) {
+			if (!relationIds.isEmpty()) removeFromSearchIndex(RelationService.class, relationIds);
+			return true;
+		}
+		return false;
+	}
+
 	@Override
 	public PaginationInfo<INode> paginate(int page, int entriesPerPage, Map<String, Object> filters) {
 		return repository.paginate(page, entriesPerPage, filters);
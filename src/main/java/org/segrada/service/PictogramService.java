@@ -8,6 +8,7 @@ import org.segrada.service.base.BinaryDataHandler;
 import org.segrada.service.binarydata.BinaryDataService;
 import org.segrada.service.repository.PictogramRepository;
 import org.segrada.service.repository.factory.RepositoryFactory;
+import org.segrada.service.util.TitleSuggester;
 import org.segrada.util.ImageManipulator;
 
 import java.io.IOException;
@@ -163,4 +164,14 @@ public class PictogramService extends AbstractRepositoryService<IPictogram, Pict
 	public List<IPictogram> findBySearchTerm(String term, int maximum, boolean returnWithoutTerm) {
 		return repository.findBySearchTerm(term, maximum, returnWithoutTerm);
 	}
+
+	/**
+	 * Find titles of entities for typeahead fields - answered from memory without loading entities
+	 * @param term search term
+	 * @param maximum maximum hits to return
+	 * @return list of suggestions
+	 */
+	public List<TitleSuggester.Suggestion> suggest(String term, int maximum) {
+		return repository.suggest(term, maximum);
+	}
 }
@@ -10,6 +10,7 @@ import org.segrada.service.repository.TagRepository;
 import org.segrada.service.repository.factory.RepositoryFactory;
 import org.segrada.service.repository.prototype.PaginatingRepositoryOrService;
 import org.segrada.service.util.PaginationInfo;
+import org.segrada.service.util.TitleSuggester;
 
 import javax.annotation.Nullable;
 import java.util.List;
@@ -62,6 +63,16 @@ public class TagService extends AbstractRepositoryService<ITag, TagRepository> i
 		return repository.findBySearchTerm(term, maximum, returnWithoutTerm);
 	}
 
+	/**
+	 * Find titles of entities for typeahead fields - answered from memory without loading entities
+	 * @param term search term
+	 * @param maximum maximum hits to return
+	 * @return list of suggestions
+	 */
+	public List<TitleSuggester.Suggestion> suggest(String term, int maximum) {
+		return repository.suggest(term, maximum);
+	}
+
 	@Override
 	public List<ITag> search(String term) {
 		return findBySearchTerm(term, 10, true);
@@ -1,15 +1,24 @@
 package org.segrada.service.base;
 
+import com.google.inject.Inject;
+import org.segrada.model.base.AbstractSegradaEntity;
 import org.segrada.model.prototype.SegradaEntity;
 import org.segrada.rendering.markup.MarkupFilter;
 import org.segrada.rendering.markup.MarkupFilterFactory;
 import org.segrada.search.SearchEngine;
+import org.segrada.search.SearchIndexBuilder;
+import org.segrada.search.SearchIndexDocument;
+import org.segrada.service.index.SearchIndexUpdateQueue;
 import org.segrada.service.repository.factory.RepositoryFactory;
 import org.segrada.service.repository.prototype.CRUDRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -37,6 +46,11 @@ abstract public class AbstractFullTextService<T extends SegradaEntity, E extends
 	 */
 	private final SearchEngine searchEngine;
 
+	/**
+	 * queue for asynchronous index updates - if not set, index is updated synchronously
+	 */
+	private SearchIndexUpdateQueue searchIndexUpdateQueue;
+
 	/**
 	 * Constructor
 	 */
@@ -45,10 +59,21 @@ abstract public class AbstractFullTextService<T extends SegradaEntity, E extends
 		this.searchEngine = searchEngine;
 	}
 
+	/**
+	 * set queue for asynchronous index updates
+	 * @param searchIndexUpdateQueue queue instance
+	 */
+	@Inject
+	public void setSearchIndexUpdateQueue(SearchIndexUpdateQueue searchIndexUpdateQueue) {
+		this.searchIndexUpdateQueue = searchIndexUpdateQueue;
+	}
+
 	@Override
 	public boolean save(T entity) {
 		if (super.save(entity)) {
-			indexEntity(entity);
+			// enqueue update or index directly, if queue is not running or full
+			if (searchIndexUpdateQueue == null || !searchIndexUpdateQueue.enqueueIndex(getClass(), entity.getId(), entity.getUid()))
+				indexEntity(entity);
 
 			return true;
 		}
@@ -57,8 +82,13 @@ abstract public class AbstractFullTextService<T extends SegradaEntity, E extends
 
 	@Override
 	public boolean delete(T entity) {
-		removeFromSearchIndex(entity);
-		return super.delete(entity);
+		// deletion might be rolled back - entity stays in search index then
+		if (!super.delete(entity)) return false;
+
+		// enqueue removal or remove directly, if queue is not running or full
+		if (entity != null && (searchIndexUpdateQueue == null || !searchIndexUpdateQueue.enqueueRemove(getClass(), entity.getId(), entity.getUid())))
+			removeFromSearchIndex(entity);
+		return true;
 	}
 
 	/**
@@ -70,15 +100,71 @@ abstract public class AbstractFullTextService<T extends SegradaEntity, E extends
 
 		List<T> list = findNextEntriesFrom(null, 100);
 		while (list != null) {
+			List<SearchIndexDocument> documents = new ArrayList<>(list.size());
 			for (T entity : list) {
-				indexEntity(entity);
+				SearchIndexDocument document = createSearchIndexDocument(prepareIndexEntity(entity));
+				if (document != null) documents.add(document);
 				lastUid = entity.getUid();
 			}
 
+			// write whole page at once
+			if (!searchEngine.indexAll(documents))
+				logger.error("Could not write all entities to search index while reindexing " + getModelClass().getSimpleName());
+
 			list = findNextEntriesFrom(lastUid, 100);
 		}
 	}
 
+	/**
+	 * write all entities within id range (inclusive) to new index
+	 * @param fromId first id of range
+	 * @param toId last id of range
+	 * @param builder of new index
+	 * @return number of entities written
+	 * @throws IOException if documents could not be written
+	 */
+	public int reindexRange(String fromId, String toId, SearchIndexBuilder builder) throws IOException {
+		int written = 0;
+		String lastId = null;
+
+		List<T> list = findEntriesInRange(fromId, toId, null, 100);
+		while (list != null) {
+			List<SearchIndexDocument> documents = new ArrayList<>(list.size());
+			for (T entity : list) {
+				SearchIndexDocument document = createSearchIndexDocument(prepareIndexEntity(entity));
+				if (document != null) documents.add(document);
+				lastId = entity.getId();
+			}
+
+			if (!builder.indexAll(documents))
+				throw new IOException("Could not write " + getModelClass().getSimpleName() + " entities " + fromId + " to " + toId + " to new index");
+			written += documents.size();
+
+			list = findEntriesInRange(fromId, toId, lastId, 100);
+		}
+
+		return written;
+	}
+
+	/**
+	 * index a number of entities at once - used by asynchronous index updates
+	 * @param ids of entities to load and index (entities not found are ignored)
+	 * @return true if documents could be written
+	 */
+	public boolean indexByIds(Collection<String> ids) {
+		List<SearchIndexDocument> documents = new ArrayList<>(ids.size());
+
+		for (String id : ids) {
+			T entity = findById(id);
+			if (entity == null) continue; // deleted in the meantime
+
+			SearchIndexDocument document = createSearchIndexDocument(prepareIndexEntity(entity));
+			if (document != null) documents.add(document);
+		}
+
+		return searchEngine.indexAll(documents);
+	}
+
 	/**
 	 * worker to index entity
 	 * @param entity to index
@@ -101,8 +187,38 @@ abstract public class AbstractFullTextService<T extends SegradaEntity, E extends
 	 * @param entity prepared entity for search engine
 	 */
 	protected void saveToSearchIndex(SearchIndexEntity entity) {
+		SearchIndexDocument document = createSearchIndexDocument(entity);
+		if (document == null) return;
+
+		// to index - documents with passages are written in bulk, so passages are written, too
+		boolean success;
+		if (document.getPassages() != null) success = searchEngine.indexAll(Collections.singletonList(document));
+		else success = searchEngine.index(
+				document.getId(),
+				document.getClassName(),
+				document.getTitle(),
+				document.getSubTitles(),
+				document.getContent(),
+				document.getTagIds(),
+				document.getColor(),
+				document.getIconFileIdentifier(),
+				document.getWeight()
+		);
+
+		if (!success)
+			logger.error("Could not write entity to search index: " + document.getClassName() + "/" + document.getId());
+		else if (logger.isInfoEnabled())
+			logger.info("Indexed entity to search index: " + document.getClassName() + "/" + document.getId());
+	}
+
+	/**
+	 * convert prepared entity (prepareIndexEntity) to document for search engine
+	 * @param entity prepared entity for search engine
+	 * @return document or null, if entity could not be converted
+	 */
+	protected @Nullable SearchIndexDocument createSearchIndexDocument(@Nullable SearchIndexEntity entity) {
 		// sanity check
-		if (entity == null || entity.id == null) return;
+		if (entity == null || entity.id == null) return null;
 
 		// get correct markup filter
 		MarkupFilter markupFilter;
@@ -110,13 +226,12 @@ abstract public class AbstractFullTextService<T extends SegradaEntity, E extends
 			markupFilter = MarkupFilterFactory.produce(entity.contentMarkup);
 		} catch (Exception e) {
 			logger.warn("Could not load MarkupFilter " + entity.contentMarkup + " while preparing search index indexing", e);
-			return;
+			return null;
 		}
 
 		String modelClass = getModelClass().getSimpleName().substring(1);  // clip off the I of the interface
 
-		// to index
-		if (!searchEngine.index(
+		return new SearchIndexDocument(
 				entity.id,
 				modelClass,
 				entity.title,
@@ -125,11 +240,9 @@ abstract public class AbstractFullTextService<T extends SegradaEntity, E extends
 				entity.tagIds,
 				entity.color,
 				entity.iconFileIdentifier,
-				entity.weight
-		))
-			logger.error("Could not write entity to search index: " + modelClass + "/" + entity.id);
-		else if (logger.isInfoEnabled())
-			logger.info("Indexed entity to search index: " + modelClass + "/" + entity.id);
+				entity.weight,
+				entity.passages
+		);
 	}
 
 	/**
@@ -144,6 +257,27 @@ abstract public class AbstractFullTextService<T extends SegradaEntity, E extends
 		}
 	}
 
+	/**
+	 * remove entities deleted along with another entity from search index - removals are enqueued, so they are written
+	 * in batches, or removed in one call if the queue does not take them
+	 * @param serviceClass service class of removed entities
+	 * @param ids of removed entities
+	 */
+	protected void removeFromSearchIndex(Class serviceClass, Collection<String> ids) {
+		List<String> uids = new ArrayList<>(ids.size());
+		for (String id : ids) {
+			String uid = AbstractSegradaEntity.convertOrientIdToUid(id);
+			if (uid != null && (searchIndexUpdateQueue == null || !searchIndexUpdateQueue.enqueueRemove(serviceClass, id, uid)))
+				uids.add(uid);
+		}
+
+		if (!uids.isEmpty()) {
+			searchEngine.removeAll(uids);
+			if (logger.isInfoEnabled())
+				logger.info("Removed " + uids.size() + " entities from search index");
+		}
+	}
+
 	/**
 	 * Helper class for search index saving
 	 */
@@ -166,6 +300,11 @@ abstract public class AbstractFullTextService<T extends SegradaEntity, E extends
 
 		public float weight;
 
+		/**
+		 * long plain text indexed in separate passages (null if entity has none)
+		 */
+		public String[] passages;
+
 		public SearchIndexEntity(String id) {
 			this.id = id;
 		}
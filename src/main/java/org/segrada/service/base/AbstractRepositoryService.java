@@ -68,6 +68,16 @@ public abstract class AbstractRepositoryService<T extends SegradaEntity, E exten
 		return repository.findNextEntriesFrom(uid, number);
 	}
 
+	@Override
+	public List<String[]> findIdRanges(int partitionSize) {
+		return repository.findIdRanges(partitionSize);
+	}
+
+	@Override
+	public List<T> findEntriesInRange(String fromId, String toId, String afterId, int number) {
+		return repository.findEntriesInRange(fromId, toId, afterId, number);
+	}
+
 	@Override
 	public long count() {
 		return repository.count();
@@ -44,6 +44,10 @@ public interface SegradaService<T extends SegradaEntity> {
 
 	List<T> findNextEntriesFrom(String uid, int number);
 
+	List<String[]> findIdRanges(int partitionSize);
+
+	List<T> findEntriesInRange(String fromId, String toId, String afterId, int number);
+
 	long count();
 
 	/**
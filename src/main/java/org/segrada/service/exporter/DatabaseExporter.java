@@ -0,0 +1,256 @@
+package org.segrada.service.exporter;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.ridbag.ORidBag;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Exports the semantic graph by iterating the clusters of each class record by record - records are written as
+ * documents, not converted to entities, and the local record cache is cleared regularly, so memory use does not
+ * grow with the database. Classes are exported in a fixed order and records in @rid order, so an interrupted export
+ * can be resumed after the last record written.
+ */
+public class DatabaseExporter {
+	private static final Logger logger = LoggerFactory.getLogger(DatabaseExporter.class);
+
+	/**
+	 * exported classes in order of export: vertices and documents first, edges last
+	 */
+	public static final List<String> CLASSES = Collections.unmodifiableList(Arrays.asList(
+			"Tag", "RelationType", "Node", "Source", "File", "Comment", "Relation", "Period", "Location",
+			"SourceReference", "IsTagOf", "IsRelation", "IsFileOf", "IsCommentOf"));
+
+	/**
+	 * fields not exported: file contents (files are exported as metadata only)
+	 */
+	private static final Set<String> SKIPPED_FIELDS = Collections.singleton("fullText");
+
+	/**
+	 * records read between clearing the local record cache
+	 */
+	private static final int CACHE_CLEAR_INTERVAL = 1000;
+
+	private final ODatabaseDocumentTx db;
+
+	private volatile long records = 0L;
+
+	private volatile String lastClass;
+
+	private volatile String lastRid;
+
+	/**
+	 * Constructor
+	 * @param db database to export - must not be used by other threads during the export
+	 */
+	public DatabaseExporter(ODatabaseDocumentTx db) {
+		this.db = db;
+	}
+
+	/**
+	 * export records
+	 * @param writer of export format
+	 * @param fromClass class to resume export at (null to export all classes)
+	 * @param afterRid record of fromClass to resume export after (null to export whole class)
+	 * @return number of records written
+	 * @throws IllegalArgumentException if class or record id is invalid
+	 * @throws IOException on write error
+	 */
+	public long export(ExportWriter writer, @Nullable String fromClass, @Nullable String afterRid) throws IOException {
+		int fromIndex = 0;
+		if (fromClass != null) {
+			fromIndex = CLASSES.indexOf(fromClass);
+			if (fromIndex < 0) throw new IllegalArgumentException("Class " + fromClass + " is not exported");
+		}
+
+		ORecordId after = null;
+		if (afterRid != null) {
+			if (fromClass == null || !ORecordId.isA(afterRid))
+				throw new IllegalArgumentException("Resuming after " + afterRid + " requires a class and a valid record id");
+			after = new ORecordId(afterRid);
+		}
+
+		records = 0L;
+		long start = System.currentTimeMillis();
+		List<String> classes = CLASSES.subList(fromIndex, CLASSES.size());
+
+		OSchema schema = db.getMetadata().getSchema();
+		Map<String, OType> vertexProperties = new TreeMap<>();
+		Map<String, OType> edgeProperties = new TreeMap<>();
+		for (String className : classes) {
+			OClass oClass = schema.getClass(className);
+			if (oClass == null) continue;
+
+			boolean edge = oClass.isSubClassOf("E");
+			for (OProperty property : oClass.properties()) {
+				if (isSkipped(property.getName()) || (edge && isEdgeEndpoint(property.getName()))) continue;
+				addProperty(edge ? edgeProperties : vertexProperties, property.getName(), property.getType());
+			}
+		}
+
+		writer.begin(vertexProperties, edgeProperties);
+
+		for (String className : classes) {
+			OClass oClass = schema.getClass(className);
+			if (oClass == null) continue;
+
+			exportClass(writer, oClass, className.equals(fromClass) ? after : null);
+		}
+
+		writer.end();
+
+		if (logger.isInfoEnabled())
+			logger.info("Exported " + records + " records in " + (System.currentTimeMillis() - start) + "ms"
+					+ (fromClass != null ? " (resumed at " + fromClass + (afterRid != null ? " after " + afterRid : "") + ")" : ""));
+
+		return records;
+	}
+
+	/**
+	 * @return number of records written by running or last export
+	 */
+	public long getRecords() {
+		return records;
+	}
+
+	/**
+	 * @return class of last record written or null
+	 */
+	public @Nullable String getLastClass() {
+		return lastClass;
+	}
+
+	/**
+	 * @return id of last record written or null - export can be resumed after this record
+	 */
+	public @Nullable String getLastRid() {
+		return lastRid;
+	}
+
+	/**
+	 * export records of a single class
+	 * @param writer of export format
+	 * @param oClass class to export
+	 * @param after record to resume after or null
+	 * @throws IOException on write error
+	 */
+	private void exportClass(ExportWriter writer, OClass oClass, @Nullable ORecordId after) throws IOException {
+		boolean edge = oClass.isSubClassOf("E");
+
+		// clusters of class in id order (subclasses are exported separately)
+		int[] clusterIds = oClass.getClusterIds().clone();
+		Arrays.sort(clusterIds);
+
+		for (int clusterId : clusterIds) {
+			long firstPosition = 0L;
+			if (after != null) {
+				if (clusterId < after.getClusterId()) continue;
+				if (clusterId == after.getClusterId()) firstPosition = after.getClusterPosition() + 1;
+			}
+
+			for (ODocument document : db.browseCluster(db.getClusterNameById(clusterId), firstPosition, -1L, false)) {
+				// cluster might be shared with another class
+				if (!oClass.getName().equals(document.getClassName())) continue;
+
+				String rid = document.getIdentity().toString();
+				writer.write(oClass.getName(), rid, toFields(document, edge), edge);
+
+				lastClass = oClass.getName();
+				lastRid = rid;
+				if (++records % CACHE_CLEAR_INTERVAL == 0) db.getLocalCache().clear();
+			}
+		}
+	}
+
+	/**
+	 * @param document to export
+	 * @param edge true if document is an edge
+	 * @return exported fields of document
+	 */
+	private static Map<String, Object> toFields(ODocument document, boolean edge) {
+		Map<String, Object> fields = new LinkedHashMap<>();
+
+		for (String name : document.fieldNames()) {
+			if (isSkipped(name)) continue;
+			// edge lists of vertices - edges are exported themselves
+			if (!(edge && isEdgeEndpoint(name)) && (name.startsWith("in_") || name.startsWith("out_"))) continue;
+
+			Object value = toValue(document.rawField(name));
+			if (value != null) fields.put(name, value);
+		}
+
+		return fields;
+	}
+
+	/**
+	 * @param value of field - links are not loaded
+	 * @return exported value or null to skip field
+	 */
+	private static @Nullable Object toValue(@Nullable Object value) {
+		if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) return value;
+		if (value instanceof Date) return ((Date) value).getTime();
+		if (value instanceof OIdentifiable) return ((OIdentifiable) value).getIdentity().toString();
+		if (value instanceof ORidBag || value instanceof byte[]) return null;
+
+		if (value instanceof Collection) {
+			List<Object> list = new ArrayList<>(((Collection<?>) value).size());
+			for (Object element : (Collection<?>) value) {
+				Object converted = toValue(element);
+				if (converted != null) list.add(converted);
+			}
+			return list;
+		}
+
+		if (value instanceof Map) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				Object converted = toValue(entry.getValue());
+				if (converted != null) map.put(String.valueOf(entry.getKey()), converted);
+			}
+			return map;
+		}
+
+		return value.toString();
+	}
+
+	/**
+	 * add property to map - properties of the same name with different types are exported as strings
+	 */
+	private static void addProperty(Map<String, OType> properties, String name, OType type) {
+		OType existing = properties.putIfAbsent(name, type);
+		if (existing != null && existing != type) properties.put(name, OType.STRING);
+	}
+
+	private static boolean isSkipped(String name) {
+		return SKIPPED_FIELDS.contains(name);
+	}
+
+	private static boolean isEdgeEndpoint(String name) {
+		return name.equals("in") || name.equals("out");
+	}
+}
@@ -0,0 +1,50 @@
+package org.segrada.service.exporter;
+
+import com.orientechnologies.orient.core.metadata.schema.OType;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Writes exported records in a file format - records are written as they come, nothing is kept in memory
+ */
+public interface ExportWriter {
+	/**
+	 * start export
+	 * @param vertexProperties schema properties of exported vertices and documents by name
+	 * @param edgeProperties schema properties of exported edges by name
+	 * @throws IOException on write error
+	 */
+	void begin(Map<String, OType> vertexProperties, Map<String, OType> edgeProperties) throws IOException;
+
+	/**
+	 * write single record
+	 * @param className class of record
+	 * @param rid record id
+	 * @param fields values by name: strings, numbers, booleans or lists and maps of those, links are given as record
+	 *               ids, edges have "out" and "in" fields
+	 * @param edge true if record is an edge
+	 * @throws IOException on write error
+	 */
+	void write(String className, String rid, Map<String, Object> fields, boolean edge) throws IOException;
+
+	/**
+	 * finish export and flush output - the underlying stream is not closed
+	 * @throws IOException on write error
+	 */
+	void end() throws IOException;
+}
@@ -0,0 +1,165 @@
+package org.segrada.service.exporter;
+
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Writes GraphML: edge records become edges between their out and in vertices, all other records become nodes
+ * (documents like periods refer to their parents by the "parent" attribute). Attribute keys are declared from the
+ * schema, fields without schema property are left out.
+ */
+public class GraphMLExportWriter implements ExportWriter {
+	private static final String NAMESPACE = "http://graphml.graphdrawing.org/xmlns";
+
+	private final Writer writer;
+
+	private XMLStreamWriter xml;
+
+	private Map<String, OType> vertexProperties;
+
+	private Map<String, OType> edgeProperties;
+
+	/**
+	 * Constructor
+	 * @param writer to write document to
+	 */
+	public GraphMLExportWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void begin(Map<String, OType> vertexProperties, Map<String, OType> edgeProperties) throws IOException {
+		this.vertexProperties = vertexProperties;
+		this.edgeProperties = edgeProperties;
+
+		try {
+			xml = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+			xml.writeStartDocument("UTF-8", "1.0");
+			xml.writeCharacters("\n");
+			xml.writeStartElement("graphml");
+			xml.writeDefaultNamespace(NAMESPACE);
+			xml.writeCharacters("\n");
+
+			writeKey("class", "all", "class", OType.STRING);
+			for (Map.Entry<String, OType> entry : vertexProperties.entrySet())
+				writeKey("v_" + entry.getKey(), "node", entry.getKey(), entry.getValue());
+			for (Map.Entry<String, OType> entry : edgeProperties.entrySet())
+				writeKey("e_" + entry.getKey(), "edge", entry.getKey(), entry.getValue());
+
+			xml.writeStartElement("graph");
+			xml.writeAttribute("id", "segrada");
+			xml.writeAttribute("edgedefault", "directed");
+			xml.writeCharacters("\n");
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not write GraphML header", e);
+		}
+	}
+
+	@Override
+	public void write(String className, String rid, Map<String, Object> fields, boolean edge) throws IOException {
+		try {
+			xml.writeStartElement(edge ? "edge" : "node");
+			xml.writeAttribute("id", rid);
+			if (edge) {
+				xml.writeAttribute("source", String.valueOf(fields.get("out")));
+				xml.writeAttribute("target", String.valueOf(fields.get("in")));
+			}
+
+			writeData("class", className);
+			Map<String, OType> properties = edge ? edgeProperties : vertexProperties;
+			for (Map.Entry<String, Object> entry : fields.entrySet())
+				if (entry.getValue() != null && properties.containsKey(entry.getKey()))
+					writeData((edge ? "e_" : "v_") + entry.getKey(), entry.getValue());
+
+			xml.writeEndElement();
+			xml.writeCharacters("\n");
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not write " + className + " " + rid + " to GraphML", e);
+		}
+	}
+
+	@Override
+	public void end() throws IOException {
+		try {
+			xml.writeEndElement(); // graph
+			xml.writeCharacters("\n");
+			xml.writeEndElement(); // graphml
+			xml.writeCharacters("\n");
+			xml.writeEndDocument();
+			xml.flush();
+		} catch (XMLStreamException e) {
+			throw new IOException("Could not finish GraphML", e);
+		}
+		writer.flush();
+	}
+
+	private void writeKey(String id, String target, String name, OType type) throws XMLStreamException {
+		xml.writeEmptyElement("key");
+		xml.writeAttribute("id", id);
+		xml.writeAttribute("for", target);
+		xml.writeAttribute("attr.name", name);
+		xml.writeAttribute("attr.type", toGraphMLType(type));
+		xml.writeCharacters("\n");
+	}
+
+	private void writeData(String key, Object value) throws XMLStreamException {
+		String text;
+		if (value instanceof Collection) text = new JSONArray((Collection) value).toString();
+		else if (value instanceof Map) text = new JSONObject((Map) value).toString();
+		else text = value.toString();
+
+		xml.writeStartElement("data");
+		xml.writeAttribute("key", key);
+		xml.writeCharacters(text);
+		xml.writeEndElement();
+	}
+
+	/**
+	 * @param type of schema property
+	 * @return GraphML attribute type - dates are written as milliseconds, links as record ids
+	 */
+	private static String toGraphMLType(OType type) {
+		switch (type) {
+			case BOOLEAN:
+				return "boolean";
+			case BYTE:
+			case SHORT:
+			case INTEGER:
+				return "int";
+			case LONG:
+			case DATE:
+			case DATETIME:
+				return "long";
+			case FLOAT:
+				return "float";
+			case DOUBLE:
+			case DECIMAL:
+				return "double";
+			default:
+				return "string";
+		}
+	}
+}
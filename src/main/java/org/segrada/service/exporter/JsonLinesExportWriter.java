@@ -0,0 +1,70 @@
+package org.segrada.service.exporter;
+
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Writes one JSON object per line: "@class" and "@rid" followed by the fields of the record
+ */
+public class JsonLinesExportWriter implements ExportWriter {
+	private final Writer writer;
+
+	/**
+	 * Constructor
+	 * @param writer to write lines to
+	 */
+	public JsonLinesExportWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void begin(Map<String, OType> vertexProperties, Map<String, OType> edgeProperties) {
+		// no header
+	}
+
+	@Override
+	public void write(String className, String rid, Map<String, Object> fields, boolean edge) throws IOException {
+		try {
+			JSONObject object = new JSONObject();
+			object.put("@class", className);
+			object.put("@rid", rid);
+			for (Map.Entry<String, Object> entry : fields.entrySet()) {
+				Object value = entry.getValue();
+				if (value instanceof Collection) value = new JSONArray((Collection) value);
+				else if (value instanceof Map) value = new JSONObject((Map) value);
+				object.put(entry.getKey(), value);
+			}
+
+			writer.write(object.toString());
+			writer.write('\n');
+		} catch (JSONException e) {
+			throw new IOException("Could not convert " + className + " " + rid + " to JSON", e);
+		}
+	}
+
+	@Override
+	public void end() throws IOException {
+		writer.flush();
+	}
+}
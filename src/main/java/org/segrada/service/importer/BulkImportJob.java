@@ -0,0 +1,363 @@
+package org.segrada.service.importer;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import org.segrada.service.NodeService;
+import org.segrada.service.RelationService;
+import org.segrada.service.SourceService;
+import org.segrada.service.base.AbstractFullTextService;
+import org.segrada.service.index.DetachedServiceFactory;
+import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Imports an uploaded file in the background: rows are streamed from the file into the bulk importer, new entities
+ * are indexed in one pass at the end. Progress and errors of rows can be polled while the job is running.
+ */
+public class BulkImportJob {
+	private static final Logger logger = LoggerFactory.getLogger(BulkImportJob.class);
+
+	/**
+	 * state of job
+	 */
+	public enum State {
+		IDLE, IMPORTING, INDEXING, FINISHED, FAILED, CANCELLED
+	}
+
+	/**
+	 * file formats
+	 */
+	public enum Format {
+		JSONL, CSV;
+
+		/**
+		 * @param reader of file
+		 * @return row reader for format
+		 */
+		public ImportRowReader createReader(Reader reader) {
+			return this == CSV ? new CsvImportRowReader(reader, ',') : new JsonLinesImportRowReader(reader);
+		}
+
+		/**
+		 * @param name of format or file name with extension (.jsonl, .ndjson, .json or .csv)
+		 * @return format or null if unknown
+		 */
+		public static @Nullable Format fromName(@Nullable String name) {
+			if (name == null) return null;
+			name = name.toLowerCase(Locale.ENGLISH);
+
+			if (name.equals("csv") || name.endsWith(".csv")) return CSV;
+			if (name.equals("jsonl") || name.equals("ndjson") || name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json"))
+				return JSONL;
+			return null;
+		}
+	}
+
+	/**
+	 * full text services indexing new entities by model name
+	 */
+	private static final Map<String, String> INDEXING_SERVICES = new LinkedHashMap<>();
+	static {
+		INDEXING_SERVICES.put("Node", NodeService.class.getName());
+		INDEXING_SERVICES.put("Source", SourceService.class.getName());
+		INDEXING_SERVICES.put("Relation", RelationService.class.getName());
+	}
+
+	private final DetachedServiceFactory serviceFactory;
+
+	/**
+	 * number of rows written in one transaction
+	 */
+	private final int batchSize;
+
+	/**
+	 * maximum number of error messages kept - further errors are counted only
+	 */
+	private final int maxErrors;
+
+	/**
+	 * lock for state and errors
+	 */
+	private final Object lock = new Object();
+
+	private volatile State state = State.IDLE;
+
+	private volatile boolean cancelled = false;
+
+	private Thread thread;
+
+	private volatile BulkImporter importer;
+
+	private Format format;
+
+	private String fileName;
+
+	private final AtomicLong rows = new AtomicLong(0);
+
+	private final AtomicLong indexed = new AtomicLong(0);
+
+	private final AtomicLong errorCount = new AtomicLong(0);
+
+	private final List<String> errors = new ArrayList<>();
+
+	private volatile long started = 0L;
+
+	private volatile long finished = 0L;
+
+	private volatile String error;
+
+	/**
+	 * Constructor
+	 * @param serviceFactory opening database connections and services for the background thread
+	 * @param batchSize number of rows written in one transaction
+	 * @param maxErrors maximum number of error messages kept
+	 */
+	public BulkImportJob(DetachedServiceFactory serviceFactory, int batchSize, int maxErrors) {
+		this.serviceFactory = serviceFactory;
+		this.batchSize = batchSize <= 0 ? 1000 : batchSize;
+		this.maxErrors = maxErrors < 0 ? 100 : maxErrors;
+	}
+
+	/**
+	 * @return true if job is running
+	 */
+	public boolean isRunning() {
+		State current = state;
+		return current == State.IMPORTING || current == State.INDEXING;
+	}
+
+	/**
+	 * @return current state
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * start importing file in background
+	 * @param file to import - deleted after the import
+	 * @param fileName original name of file for status
+	 * @param format of file
+	 * @param defaultType type of rows without "type" field (null to require the field)
+	 * @return false if an import is running already
+	 */
+	public boolean start(Path file, String fileName, Format format, @Nullable String defaultType) {
+		synchronized (lock) {
+			if (isRunning()) return false;
+
+			this.format = format;
+			this.fileName = fileName;
+			rows.set(0);
+			indexed.set(0);
+			errorCount.set(0);
+			errors.clear();
+			importer = null;
+			cancelled = false;
+			error = null;
+			started = System.currentTimeMillis();
+			finished = 0L;
+			state = State.IMPORTING;
+
+			thread = new Thread(() -> run(file, defaultType), "bulk-import");
+			thread.setDaemon(true);
+			thread.start();
+
+			if (logger.isInfoEnabled())
+				logger.info("Started bulk import of " + fileName + " (" + format.name() + ")");
+
+			return true;
+		}
+	}
+
+	/**
+	 * stop reading rows - rows read so far are saved and indexed
+	 */
+	public void cancel() {
+		if (isRunning()) {
+			logger.info("Cancelling bulk import");
+			cancelled = true;
+		}
+	}
+
+	/**
+	 * cancel running job and wait for it
+	 * @param timeout maximum milliseconds to wait
+	 */
+	public void shutdown(long timeout) {
+		Thread current;
+		synchronized (lock) {
+			if (!isRunning()) return;
+			cancelled = true;
+			current = thread;
+		}
+
+		try {
+			current.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (current.isAlive())
+			logger.warn("Bulk import did not stop in time");
+	}
+
+	/**
+	 * @return status and progress of job
+	 */
+	public Map<String, Object> getStatus() {
+		Map<String, Object> status = new LinkedHashMap<>();
+
+		long end = finished > 0 ? finished : System.currentTimeMillis();
+		long elapsed = started > 0 ? end - started : 0L;
+
+		status.put("state", state.name());
+		if (format != null) status.put("format", format.name());
+		if (fileName != null) status.put("file", fileName);
+		status.put("batchSize", batchSize);
+		status.put("started", started);
+		status.put("elapsed", elapsed);
+		status.put("rows", rows.get());
+		status.put("rowsPerSecond", elapsed > 0 ? rows.get() * 1000L / elapsed : 0L);
+		BulkImporter current = importer;
+		if (current != null) status.put("imported", current.getImported());
+		status.put("indexed", indexed.get());
+		status.put("errorCount", errorCount.get());
+		if (error != null) status.put("error", error);
+		synchronized (lock) {
+			status.put("errors", new ArrayList<>(errors));
+		}
+
+		return status;
+	}
+
+	/**
+	 * background thread: read and save rows, index new entities
+	 * @param file to import
+	 * @param defaultType type of rows without "type" field
+	 */
+	protected void run(Path file, @Nullable String defaultType) {
+		ODatabaseDocumentTx db = serviceFactory.openDatabase();
+		try {
+			OrientDbRepositoryFactory repositoryFactory = serviceFactory.createRepositoryFactory(db);
+			importer = new BulkImporter(repositoryFactory, batchSize, defaultType, this::addError);
+			importer.open();
+
+			try (ImportRowReader reader = format.createReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+				while (!cancelled) {
+					ImportRow row;
+					try {
+						row = reader.next();
+					} catch (ImportRowReader.RowFormatException e) {
+						rows.incrementAndGet();
+						addError(e.getLine(), e.getMessage());
+						continue;
+					}
+					if (row == null) break;
+
+					rows.incrementAndGet();
+					importer.add(row);
+				}
+			} finally {
+				// save rows read so far, even if reading failed
+				importer.close();
+			}
+
+			// index new entities in one pass
+			state = State.INDEXING;
+			index(repositoryFactory, importer.getNewIds());
+
+			finish(cancelled ? State.CANCELLED : State.FINISHED);
+		} catch (Exception e) {
+			logger.error("Error while importing " + fileName, e);
+			error = e.getMessage();
+			finish(State.FAILED);
+		} finally {
+			db.close();
+
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				logger.warn("Could not delete import file " + file, e);
+			}
+		}
+	}
+
+	/**
+	 * index new entities in pages
+	 * @param repositoryFactory to create services with
+	 * @param newIds ids by model name
+	 */
+	private void index(OrientDbRepositoryFactory repositoryFactory, Map<String, List<String>> newIds) {
+		for (Map.Entry<String, List<String>> entry : newIds.entrySet()) {
+			AbstractFullTextService service = serviceFactory.createService(INDEXING_SERVICES.get(entry.getKey()), repositoryFactory);
+			if (service == null) throw new IllegalStateException("Could not create service to index " + entry.getKey());
+
+			List<String> ids = entry.getValue();
+			for (int from = 0; from < ids.size(); from += batchSize) {
+				List<String> page = ids.subList(from, Math.min(from + batchSize, ids.size()));
+				if (!service.indexByIds(page))
+					addError(0L, "Could not index " + page.size() + " " + entry.getKey() + " entities");
+				indexed.addAndGet(page.size());
+			}
+		}
+	}
+
+	/**
+	 * keep error of row
+	 * @param line number of row (0 if not related to a row)
+	 * @param message describing the error
+	 */
+	private void addError(long line, String message) {
+		errorCount.incrementAndGet();
+		synchronized (lock) {
+			if (errors.size() < maxErrors) errors.add(line > 0 ? "Line " + line + ": " + message : message);
+		}
+	}
+
+	/**
+	 * end run
+	 * @param endState final state
+	 */
+	private void finish(State endState) {
+		// pages listing entities are outdated
+		try {
+			Ehcache cache = CacheManager.getInstance().getEhcache("SimplePageCachingFilter");
+			if (cache != null) cache.removeAll();
+		} catch (Exception e) {
+			logger.warn("Could not clear page cache after import", e);
+		}
+
+		synchronized (lock) {
+			finished = System.currentTimeMillis();
+			state = endState;
+		}
+
+		if (logger.isInfoEnabled())
+			logger.info("Bulk import " + endState.name().toLowerCase() + ": " + rows.get() + " rows in "
+					+ (finished - started) + "ms, " + errorCount.get() + " errors");
+	}
+}
@@ -0,0 +1,530 @@
+package org.segrada.service.importer;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import org.segrada.model.Node;
+import org.segrada.model.Relation;
+import org.segrada.model.RelationType;
+import org.segrada.model.Source;
+import org.segrada.model.Tag;
+import org.segrada.model.prototype.ITag;
+import org.segrada.model.prototype.SegradaEntity;
+import org.segrada.service.repository.orientdb.OrientDbNodeRepository;
+import org.segrada.service.repository.orientdb.OrientDbRelationRepository;
+import org.segrada.service.repository.orientdb.OrientDbSourceRepository;
+import org.segrada.service.repository.orientdb.OrientDbTagRepository;
+import org.segrada.service.repository.orientdb.base.AbstractOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
+import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Writes import rows to the database in batches: nodes and sources of a batch are saved in one transaction, tags
+ * and relation endpoints are resolved by lookup maps held in memory, so a row does not cost any queries. Rows are
+ * not indexed - new ids are collected for a bulk pass at the end.
+ * <p>
+ * Rows have a "type" (node, source, tag or relation) and the fields of the entity, tags are given by title. Nodes
+ * may have a "key" relations refer to by "from" and "to" - endpoints are keys of this run, node titles or ids. Keys
+ * and titles have to be known when the batch containing the relation is written, so relations should follow their
+ * nodes.
+ */
+public class BulkImporter {
+	private static final Logger logger = LoggerFactory.getLogger(BulkImporter.class);
+
+	/**
+	 * types of rows
+	 */
+	public static final String TYPE_NODE = "node";
+	public static final String TYPE_SOURCE = "source";
+	public static final String TYPE_TAG = "tag";
+	public static final String TYPE_RELATION = "relation";
+
+	private static final List<String> TYPES = Arrays.asList(TYPE_TAG, TYPE_NODE, TYPE_SOURCE, TYPE_RELATION);
+
+	/**
+	 * Receives errors of single rows - the import goes on with the next row
+	 */
+	public interface ErrorListener {
+		/**
+		 * @param line number of row
+		 * @param message describing the error
+		 */
+		void onError(long line, String message);
+	}
+
+	private final OrientDbRepositoryFactory repositoryFactory;
+
+	private final ODatabaseDocumentTx db;
+
+	private final int batchSize;
+
+	private final ErrorListener errorListener;
+
+	/**
+	 * type used for rows without type
+	 */
+	private final String defaultType;
+
+	private OrientDbNodeRepository nodeRepository;
+
+	private OrientDbSourceRepository sourceRepository;
+
+	private OrientDbTagRepository tagRepository;
+
+	private OrientDbRelationRepository relationRepository;
+
+	/**
+	 * rows of current batch
+	 */
+	private final List<ImportRow> batch = new ArrayList<>();
+
+	/**
+	 * lower case tag titles to ids
+	 */
+	private final Map<String, String> tagIds = new HashMap<>();
+
+	/**
+	 * lower case relation type titles (from and to titles) and ids to ids
+	 */
+	private final Map<String, String> relationTypeIds = new HashMap<>();
+
+	/**
+	 * node keys of this run to ids
+	 */
+	private final Map<String, String> nodeKeys = new HashMap<>();
+
+	/**
+	 * lower case titles of nodes to ids - loaded when a relation endpoint is not a key of this run
+	 */
+	private Map<String, String> nodeTitles;
+
+	/**
+	 * ids of new entities by model name (Node, Source, Relation) for indexing
+	 */
+	private final Map<String, List<String>> newIds = new LinkedHashMap<>();
+
+	/**
+	 * entities imported by type
+	 */
+	private final Map<String, AtomicLong> imported = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor
+	 * @param repositoryFactory working on the database of the import - must not be used by other threads
+	 * @param batchSize number of rows written in one transaction
+	 * @param defaultType type of rows without "type" field (null to require the field)
+	 * @param errorListener receives errors of rows
+	 */
+	public BulkImporter(OrientDbRepositoryFactory repositoryFactory, int batchSize, @Nullable String defaultType, ErrorListener errorListener) {
+		this.repositoryFactory = repositoryFactory;
+		this.db = repositoryFactory.getDb();
+		this.batchSize = batchSize <= 0 ? 1000 : batchSize;
+		this.defaultType = defaultType;
+		this.errorListener = errorListener;
+
+		for (String type : TYPES)
+			imported.put(type, new AtomicLong(0L));
+	}
+
+	/**
+	 * declare massive insert and load lookup maps - to be called before adding rows
+	 */
+	public void open() {
+		nodeRepository = repositoryFactory.produceRepository(OrientDbNodeRepository.class);
+		sourceRepository = repositoryFactory.produceRepository(OrientDbSourceRepository.class);
+		tagRepository = repositoryFactory.produceRepository(OrientDbTagRepository.class);
+		relationRepository = repositoryFactory.produceRepository(OrientDbRelationRepository.class);
+		if (nodeRepository == null || sourceRepository == null || tagRepository == null || relationRepository == null)
+			throw new IllegalStateException("Could not produce repositories for import");
+
+		db.declareIntent(new OIntentMassiveInsert());
+
+		for (ODocument document : OrientDbStatement.named("Import.tags", "select @rid as id, title from Tag").query(db))
+			putLowerCase(tagIds, document.field("title", String.class), document.field("id", String.class));
+
+		List<ODocument> relationTypes = OrientDbStatement.named("Import.relationTypes", "select @rid as id, fromTitle, toTitle from RelationType").query(db);
+		for (ODocument document : relationTypes) {
+			String id = document.field("id", String.class);
+			putLowerCase(relationTypeIds, document.field("fromTitle", String.class), id);
+			putLowerCase(relationTypeIds, document.field("toTitle", String.class), id);
+			relationTypeIds.put(id, id);
+		}
+
+		if (logger.isInfoEnabled())
+			logger.info("Bulk import started with " + tagIds.size() + " tags and " + relationTypes.size() + " relation types known");
+	}
+
+	/**
+	 * add row - batch is written when full
+	 * @param row to import
+	 */
+	public void add(ImportRow row) {
+		String type = row.get("type", defaultType == null ? "" : defaultType).toLowerCase(Locale.ENGLISH);
+		if (!TYPES.contains(type)) {
+			errorListener.onError(row.getLine(), "Unknown type \"" + type + "\"");
+			return;
+		}
+
+		batch.add(row);
+		if (batch.size() >= batchSize) flush();
+	}
+
+	/**
+	 * write rows of current batch
+	 */
+	public void flush() {
+		if (batch.isEmpty()) return;
+
+		// split batch by types - tags first, relations last, so rows can refer to entities of the same batch
+		Map<String, List<ImportRow>> byType = new HashMap<>();
+		for (ImportRow row : batch)
+			byType.computeIfAbsent(row.get("type", defaultType == null ? "" : defaultType).toLowerCase(Locale.ENGLISH), k -> new ArrayList<>()).add(row);
+		batch.clear();
+
+		createMissingTags(byType);
+		writeTags(byType.getOrDefault(TYPE_TAG, Collections.emptyList()));
+		writeEntities(byType.getOrDefault(TYPE_NODE, Collections.emptyList()), byType.getOrDefault(TYPE_SOURCE, Collections.emptyList()));
+		writeRelations(byType.getOrDefault(TYPE_RELATION, Collections.emptyList()));
+	}
+
+	/**
+	 * write remaining rows and end massive insert
+	 */
+	public void close() {
+		try {
+			flush();
+		} finally {
+			db.declareIntent(null);
+		}
+
+		if (logger.isInfoEnabled())
+			logger.info("Bulk import finished: " + imported);
+	}
+
+	/**
+	 * @return number of imported entities by type - may be called by other threads
+	 */
+	public Map<String, Long> getImported() {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		for (String type : TYPES)
+			counts.put(type, imported.get(type).get());
+		return counts;
+	}
+
+	/**
+	 * @return ids of new entities to index by model name (Node, Source, Relation)
+	 */
+	public Map<String, List<String>> getNewIds() {
+		return newIds;
+	}
+
+	/**
+	 * create all tags of batch not known yet at once
+	 * @param byType rows of batch by type
+	 */
+	private void createMissingTags(Map<String, List<ImportRow>> byType) {
+		Set<String> missing = new LinkedHashSet<>();
+		for (List<ImportRow> rows : byType.values())
+			for (ImportRow row : rows) {
+				for (String title : row.getList("tags"))
+					if (!tagIds.containsKey(title.toLowerCase(Locale.ENGLISH))) missing.add(title);
+				// tag rows create themselves
+				String title = row.get("title");
+				if (rows == byType.get(TYPE_TAG) && title != null && !tagIds.containsKey(title.toLowerCase(Locale.ENGLISH)))
+					missing.add(title);
+			}
+		if (missing.isEmpty()) return;
+
+		try {
+			for (ITag tag : tagRepository.createNewTagsByTitles(missing.toArray(new String[missing.size()])))
+				putLowerCase(tagIds, tag.getTitle(), tag.getId());
+		} catch (Exception e) {
+			logger.error("Could not create tags " + missing + " while importing", e);
+		}
+	}
+
+	/**
+	 * connect tag rows to their parent tags
+	 * @param rows of tags
+	 */
+	private void writeTags(List<ImportRow> rows) {
+		for (ImportRow row : rows) {
+			String title = row.get("title");
+			String id = title == null ? null : tagIds.get(title.toLowerCase(Locale.ENGLISH));
+			if (id == null) {
+				errorListener.onError(row.getLine(), title == null ? "Tag has no title" : "Could not create tag \"" + title + "\"");
+				continue;
+			}
+
+			try {
+				Tag child = new Tag();
+				child.setId(id);
+				child.setTitle(title);
+
+				for (String parentId : resolveTags(row)) {
+					Tag parent = new Tag();
+					parent.setId(parentId);
+					tagRepository.connectTag(parent, child);
+				}
+
+				imported.get(TYPE_TAG).incrementAndGet();
+			} catch (Exception e) {
+				errorListener.onError(row.getLine(), "Could not connect tag \"" + title + "\": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * save nodes and sources in one transaction and connect their tags
+	 * @param nodeRows rows of nodes
+	 * @param sourceRows rows of sources
+	 */
+	private void writeEntities(List<ImportRow> nodeRows, List<ImportRow> sourceRows) {
+		if (nodeRows.isEmpty() && sourceRows.isEmpty()) return;
+
+		List<ImportRow> rows = new ArrayList<>(nodeRows.size() + sourceRows.size());
+		List<ODocument> documents = new ArrayList<>(nodeRows.size() + sourceRows.size());
+
+		db.begin();
+		try {
+			for (ImportRow row : nodeRows) {
+				ODocument document = saveRow(row, nodeRepository, createNode(row));
+				if (document != null) {
+					rows.add(row);
+					documents.add(document);
+				}
+			}
+			for (ImportRow row : sourceRows) {
+				ODocument document = saveRow(row, sourceRepository, createSource(row));
+				if (document != null) {
+					rows.add(row);
+					documents.add(document);
+				}
+			}
+
+			db.commit();
+		} catch (Exception e) {
+			db.rollback();
+			logger.error("Could not commit import batch", e);
+			for (ImportRow row : rows)
+				errorListener.onError(row.getLine(), "Batch could not be saved: " + e.getMessage());
+			return;
+		}
+
+		// ids are persistent after commit
+		List<ODocument> nodeDocuments = new ArrayList<>();
+		List<ODocument> sourceDocuments = new ArrayList<>();
+		for (int i = 0; i < rows.size(); i++) {
+			ImportRow row = rows.get(i);
+			ODocument document = documents.get(i);
+			String id = document.getIdentity().toString();
+			boolean isNode = "Node".equals(document.getClassName());
+
+			if (isNode) {
+				nodeDocuments.add(document);
+				String key = row.get("key");
+				if (key != null) nodeKeys.put(key, id);
+				if (nodeTitles != null) putLowerCase(nodeTitles, row.get("title"), id);
+			} else sourceDocuments.add(document);
+
+			connectTags(row, id);
+			newIds.computeIfAbsent(document.getClassName(), k -> new ArrayList<>()).add(id);
+			imported.get(isNode ? TYPE_NODE : TYPE_SOURCE).incrementAndGet();
+		}
+
+		nodeRepository.finishBulkSave(nodeDocuments);
+		sourceRepository.finishBulkSave(sourceDocuments);
+	}
+
+	/**
+	 * save relations - edges cannot be created within the transactions of the import, so relations are saved one by one
+	 * @param rows of relations
+	 */
+	private void writeRelations(List<ImportRow> rows) {
+		List<ODocument> documents = new ArrayList<>(rows.size());
+
+		for (ImportRow row : rows) {
+			String relationTypeId = resolve(relationTypeIds, row.get("relationType"));
+			String fromId = resolveNode(row.get("from"));
+			String toId = resolveNode(row.get("to"));
+
+			if (relationTypeId == null || fromId == null || toId == null) {
+				errorListener.onError(row.getLine(), "Unknown " + (relationTypeId == null ? "relation type \"" + row.get("relationType")
+						: "node \"" + (fromId == null ? row.get("from") : row.get("to"))) + "\"");
+				continue;
+			}
+
+			RelationType relationType = new RelationType();
+			relationType.setId(relationTypeId);
+			Node from = new Node();
+			from.setId(fromId);
+			Node to = new Node();
+			to.setId(toId);
+
+			Relation relation = new Relation();
+			relation.setRelationType(relationType);
+			relation.setFromEntity(from);
+			relation.setToEntity(to);
+			relation.setDescription(row.get("description", ""));
+			relation.setDescriptionMarkup(row.get("descriptionMarkup", "default"));
+
+			ODocument document = saveRow(row, relationRepository, relation);
+			if (document == null) continue;
+
+			String id = document.getIdentity().toString();
+			connectTags(row, id);
+			documents.add(document);
+			newIds.computeIfAbsent("Relation", k -> new ArrayList<>()).add(id);
+			imported.get(TYPE_RELATION).incrementAndGet();
+		}
+
+		relationRepository.finishBulkSave(documents);
+	}
+
+	/**
+	 * save single row
+	 * @param row to save
+	 * @param repository to save entity with
+	 * @param entity created from row or null if row is invalid
+	 * @return saved document or null on error
+	 */
+	private @Nullable <T extends SegradaEntity> ODocument saveRow(ImportRow row, AbstractOrientDbRepository<T> repository, @Nullable T entity) {
+		if (entity == null) {
+			errorListener.onError(row.getLine(), "Title is missing");
+			return null;
+		}
+
+		try {
+			return repository.saveNew(entity);
+		} catch (Exception e) {
+			errorListener.onError(row.getLine(), "Could not save " + repository.getModelClassName() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * connect tags of row to new entity
+	 * @param row containing tags
+	 * @param id of new entity
+	 */
+	private void connectTags(ImportRow row, String id) {
+		try {
+			tagRepository.connectTagsToNewEntity(resolveTags(row), id);
+		} catch (Exception e) {
+			errorListener.onError(row.getLine(), "Could not connect tags: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @param row containing tags
+	 * @return ids of tags of row
+	 */
+	private Set<String> resolveTags(ImportRow row) {
+		Set<String> ids = new LinkedHashSet<>();
+		for (String title : row.getList("tags")) {
+			String id = tagIds.get(title.toLowerCase(Locale.ENGLISH));
+			if (id != null) ids.add(id);
+			else errorListener.onError(row.getLine(), "Unknown tag \"" + title + "\"");
+		}
+		return ids;
+	}
+
+	/**
+	 * @param endpoint key of this run, title or id of node
+	 * @return id of node or null
+	 */
+	private @Nullable String resolveNode(@Nullable String endpoint) {
+		if (endpoint == null) return null;
+
+		String id = nodeKeys.get(endpoint);
+		if (id != null) return id;
+		if (ORecordId.isA(endpoint) && endpoint.startsWith("#")) return endpoint;
+
+		// load titles of all nodes once
+		if (nodeTitles == null) {
+			nodeTitles = new HashMap<>();
+			for (ODocument document : OrientDbStatement.named("Import.nodes", "select @rid as id, title from Node").query(db))
+				putLowerCase(nodeTitles, document.field("title", String.class), document.field("id", String.class));
+		}
+
+		return resolve(nodeTitles, endpoint);
+	}
+
+	/**
+	 * @param map lower case keys to ids
+	 * @param key to look up
+	 * @return id or null
+	 */
+	private static @Nullable String resolve(Map<String, String> map, @Nullable String key) {
+		return key == null ? null : map.get(key.toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * put lower case key - first id of duplicate keys wins
+	 */
+	private static void putLowerCase(Map<String, String> map, @Nullable String key, String id) {
+		if (key != null && !key.isEmpty()) map.putIfAbsent(key.toLowerCase(Locale.ENGLISH), id);
+	}
+
+	/**
+	 * @param row of node
+	 * @return node or null if title is missing
+	 */
+	private static @Nullable Node createNode(ImportRow row) {
+		String title = row.get("title");
+		if (title == null) return null;
+
+		Node node = new Node();
+		node.setTitle(title);
+		node.setAlternativeTitles(row.get("alternativeTitles", ""));
+		node.setDescription(row.get("description", ""));
+		node.setDescriptionMarkup(row.get("descriptionMarkup", "default"));
+
+		return node;
+	}
+
+	/**
+	 * @param row of source
+	 * @return source or null if short title is missing
+	 */
+	private static @Nullable Source createSource(ImportRow row) {
+		String shortTitle = row.get("shortTitle");
+		if (shortTitle == null) return null;
+
+		Source source = new Source();
+		source.setShortTitle(shortTitle);
+		source.setLongTitle(row.get("longTitle", ""));
+		source.setShortRef(row.get("shortRef", ""));
+		source.setUrl(row.get("url", ""));
+		source.setProductCode(row.get("productCode", ""));
+		source.setAuthor(row.get("author", ""));
+		source.setCitation(row.get("citation", ""));
+		source.setCopyright(row.get("copyright", ""));
+		source.setDescription(row.get("description", ""));
+		source.setDescriptionMarkup(row.get("descriptionMarkup", "default"));
+
+		return source;
+	}
+}
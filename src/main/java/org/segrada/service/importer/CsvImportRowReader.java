@@ -0,0 +1,157 @@
+package org.segrada.service.importer;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Reads CSV (RFC 4180): first record contains field names, quoted fields may contain delimiters, line breaks and
+ * doubled quotes, empty lines are skipped
+ */
+public class CsvImportRowReader implements ImportRowReader {
+	private final Reader reader;
+
+	private final char delimiter;
+
+	/**
+	 * field names of first record
+	 */
+	private String[] header;
+
+	/**
+	 * current line number
+	 */
+	private long line = 1L;
+
+	/**
+	 * character read ahead or -2 if there is none
+	 */
+	private int pushedBack = -2;
+
+	/**
+	 * Constructor
+	 * @param reader to read records from
+	 * @param delimiter of fields, e.g. ','
+	 */
+	public CsvImportRowReader(Reader reader, char delimiter) {
+		this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+		this.delimiter = delimiter;
+	}
+
+	@Override
+	public @Nullable ImportRow next() throws IOException {
+		if (header == null) {
+			List<String> names = readRecord(line);
+			if (names == null) return null;
+
+			header = new String[names.size()];
+			for (int i = 0; i < header.length; i++)
+				header[i] = names.get(i).trim();
+			// skip byte order mark
+			if (header[0].startsWith("\uFEFF")) header[0] = header[0].substring(1).trim();
+		}
+
+		while (true) {
+			long start = line;
+			List<String> fields = readRecord(start);
+			if (fields == null) return null;
+
+			// empty line
+			if (fields.size() == 1 && fields.get(0).isEmpty()) continue;
+
+			if (fields.size() > header.length)
+				throw new RowFormatException(start, "Expected " + header.length + " fields, found " + fields.size());
+
+			Map<String, Object> values = new LinkedHashMap<>();
+			for (int i = 0; i < fields.size(); i++)
+				values.put(header[i], fields.get(i));
+
+			return new ImportRow(start, values);
+		}
+	}
+
+	/**
+	 * read next record
+	 * @param start line number of record
+	 * @return fields or null at the end of the stream
+	 * @throws IOException on read error or unclosed quotes
+	 */
+	private @Nullable List<String> readRecord(long start) throws IOException {
+		int c = read();
+		if (c == -1) return null;
+
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+
+		while (true) {
+			if (c == -1) {
+				if (quoted) throw new RowFormatException(start, "Quoted field is not closed");
+				fields.add(field.toString());
+				return fields;
+			}
+
+			if (quoted) {
+				if (c == '"') {
+					int following = read();
+					if (following == '"') field.append('"'); // escaped quote
+					else {
+						quoted = false;
+						pushedBack = following;
+					}
+				} else {
+					if (c == '\n') line++;
+					field.append((char) c);
+				}
+			} else if (c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if (c == delimiter) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\r' || c == '\n') {
+				if (c == '\r') {
+					int following = read();
+					if (following != '\n') pushedBack = following;
+				}
+				line++;
+				fields.add(field.toString());
+				return fields;
+			} else field.append((char) c);
+
+			c = read();
+		}
+	}
+
+	private int read() throws IOException {
+		if (pushedBack != -2) {
+			int c = pushedBack;
+			pushedBack = -2;
+			return c;
+		}
+		return reader.read();
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
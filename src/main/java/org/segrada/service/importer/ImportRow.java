@@ -0,0 +1,120 @@
+package org.segrada.service.importer;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Single row of a bulk import - values are strings or lists of strings
+ */
+public class ImportRow {
+	/**
+	 * separator of multiple values within a single string value, e.g. tags in CSV files
+	 */
+	public static final String LIST_SEPARATOR = "|";
+
+	/**
+	 * line number the row starts at
+	 */
+	private final long line;
+
+	private final Map<String, Object> values;
+
+	/**
+	 * Constructor
+	 * @param line number the row starts at
+	 * @param values by field name (strings or lists of strings)
+	 */
+	public ImportRow(long line, Map<String, Object> values) {
+		this.line = line;
+		this.values = values;
+	}
+
+	public long getLine() {
+		return line;
+	}
+
+	/**
+	 * @param field name
+	 * @return trimmed value or null if field is missing or empty - lists are joined by LIST_SEPARATOR
+	 */
+	public @Nullable String get(String field) {
+		Object value = values.get(field);
+		if (value == null) return null;
+
+		String string = value instanceof Collection ? String.join(LIST_SEPARATOR, toStrings((Collection<?>) value)) : value.toString();
+		string = string.trim();
+
+		return string.isEmpty() ? null : string;
+	}
+
+	/**
+	 * @param field name
+	 * @param defaultValue returned if field is missing or empty
+	 * @return trimmed value or default value
+	 */
+	public String get(String field, String defaultValue) {
+		String value = get(field);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * @param field name
+	 * @return trimmed, non empty values - strings are split by LIST_SEPARATOR
+	 */
+	public String[] getList(String field) {
+		Object value = values.get(field);
+		if (value == null) return new String[]{};
+
+		List<String> parts = value instanceof Collection ? toStrings((Collection<?>) value) : splitList(value.toString());
+
+		List<String> list = new ArrayList<>(parts.size());
+		for (String part : parts) {
+			String trimmed = part.trim();
+			if (!trimmed.isEmpty()) list.add(trimmed);
+		}
+
+		return list.toArray(new String[list.size()]);
+	}
+
+	private static List<String> toStrings(Collection<?> collection) {
+		List<String> list = new ArrayList<>(collection.size());
+		for (Object element : collection)
+			if (element != null) list.add(element.toString());
+		return list;
+	}
+
+	private static List<String> splitList(String value) {
+		List<String> list = new ArrayList<>();
+
+		int start = 0, pos;
+		while ((pos = value.indexOf(LIST_SEPARATOR, start)) >= 0) {
+			list.add(value.substring(start, pos));
+			start = pos + LIST_SEPARATOR.length();
+		}
+		list.add(value.substring(start));
+
+		return list;
+	}
+
+	@Override
+	public String toString() {
+		return "ImportRow{line " + line + ": " + values + "}";
+	}
+}
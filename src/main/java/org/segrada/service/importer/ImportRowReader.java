@@ -0,0 +1,47 @@
+package org.segrada.service.importer;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Reads import rows one by one from a stream - only the current row is kept in memory
+ */
+public interface ImportRowReader extends Closeable {
+	/**
+	 * Row could not be parsed - reading can go on with the next row
+	 */
+	class RowFormatException extends IOException {
+		private final long line;
+
+		public RowFormatException(long line, String message) {
+			super(message);
+			this.line = line;
+		}
+
+		public long getLine() {
+			return line;
+		}
+	}
+
+	/**
+	 * @return next row or null at the end of the stream
+	 * @throws RowFormatException if the row is malformed
+	 * @throws IOException on read error
+	 */
+	@Nullable ImportRow next() throws IOException;
+}
@@ -0,0 +1,90 @@
+package org.segrada.service.importer;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Reads JSON lines: one JSON object per line, arrays become lists of strings, empty lines are skipped
+ */
+public class JsonLinesImportRowReader implements ImportRowReader {
+	private final BufferedReader reader;
+
+	/**
+	 * current line number
+	 */
+	private long line = 0L;
+
+	/**
+	 * Constructor
+	 * @param reader to read lines from
+	 */
+	public JsonLinesImportRowReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+	}
+
+	@Override
+	public @Nullable ImportRow next() throws IOException {
+		String text;
+		do {
+			text = reader.readLine();
+			if (text == null) return null;
+			line++;
+
+			// skip byte order mark
+			if (line == 1L && text.startsWith("\uFEFF")) text = text.substring(1);
+		} while (text.trim().isEmpty());
+
+		try {
+			JSONObject object = new JSONObject(text);
+
+			Map<String, Object> values = new LinkedHashMap<>();
+			Iterator<?> keys = object.keys();
+			while (keys.hasNext()) {
+				String key = (String) keys.next();
+				Object value = object.get(key);
+
+				if (value instanceof JSONArray) {
+					JSONArray array = (JSONArray) value;
+					List<String> list = new ArrayList<>(array.length());
+					for (int i = 0; i < array.length(); i++)
+						if (!array.isNull(i)) list.add(array.get(i).toString());
+					values.put(key, list);
+				} else if (value != null && value != JSONObject.NULL) values.put(key, value.toString());
+			}
+
+			return new ImportRow(line, values);
+		} catch (JSONException e) {
+			throw new RowFormatException(line, e.getMessage());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
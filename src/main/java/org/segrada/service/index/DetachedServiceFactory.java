@@ -0,0 +1,106 @@
+package org.segrada.service.index;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import org.segrada.service.base.AbstractFullTextService;
+import org.segrada.service.repository.factory.RepositoryFactory;
+import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
+import org.segrada.session.ApplicationSettings;
+import org.segrada.session.Identity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Creates full text services for background threads: request and session scoped objects are not available outside
+ * of http requests, so each thread opens its own database connection and services are created on top of it.
+ */
+@Singleton
+public class DetachedServiceFactory {
+	private static final Logger logger = LoggerFactory.getLogger(DetachedServiceFactory.class);
+
+	private final Injector injector;
+
+	private final OrientGraphFactory orientGraphFactory;
+
+	private final ApplicationSettings settings;
+
+	/**
+	 * Constructor
+	 */
+	@Inject
+	public DetachedServiceFactory(Injector injector, OrientGraphFactory orientGraphFactory, ApplicationSettings settings) {
+		this.injector = injector;
+		this.orientGraphFactory = orientGraphFactory;
+		this.settings = settings;
+	}
+
+	/**
+	 * open new database connection - has to be closed by caller
+	 * @return database instance
+	 */
+	public ODatabaseDocumentTx openDatabase() {
+		return orientGraphFactory.getDatabase();
+	}
+
+	/**
+	 * create repository factory working on given database
+	 * @param db opened by openDatabase
+	 * @return repository factory
+	 */
+	public OrientDbRepositoryFactory createRepositoryFactory(ODatabaseDocumentTx db) {
+		return new OrientDbRepositoryFactory(db, settings, new Identity());
+	}
+
+	/**
+	 * create service instance using given repository factory - other constructor arguments are taken from injector
+	 * @param className of service
+	 * @param repositoryFactory to use
+	 * @return service instance or null
+	 */
+	public AbstractFullTextService createService(String className, RepositoryFactory repositoryFactory) {
+		try {
+			Class<?> clazz = Class.forName(className);
+			if (!AbstractFullTextService.class.isAssignableFrom(clazz))
+				throw new ClassCastException(className + " is not a full text service");
+
+			for (Constructor<?> constructor : clazz.getConstructors()) {
+				if (!constructor.isAnnotationPresent(Inject.class) && !constructor.isAnnotationPresent(javax.inject.Inject.class))
+					continue;
+
+				Class<?>[] types = constructor.getParameterTypes();
+				Object[] args = new Object[types.length];
+				for (int i = 0; i < types.length; i++) {
+					if (types[i].isAssignableFrom(OrientDbRepositoryFactory.class)) args[i] = repositoryFactory;
+					else args[i] = injector.getInstance(types[i]);
+				}
+
+				return (AbstractFullTextService) constructor.newInstance(args);
+			}
+
+			logger.error("No injectable constructor found for " + className);
+		} catch (Exception e) {
+			logger.error("Could not create service " + className + " in background", e);
+		}
+
+		return null;
+	}
+}
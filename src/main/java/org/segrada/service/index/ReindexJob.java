@@ -0,0 +1,574 @@
+package org.segrada.service.index;
+
+import org.segrada.search.SearchEngine;
+import org.segrada.search.SearchIndexBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Rebuilds the complete search index in the background: Entities of each service are split into id ranges which are
+ * indexed in parallel into a new index. The live index is replaced once all ranges are done. Finished ranges are
+ * written to a checkpoint file, so an interrupted run can be resumed.
+ */
+public class ReindexJob {
+	private static final Logger logger = LoggerFactory.getLogger(ReindexJob.class);
+
+	/**
+	 * state of job
+	 */
+	public enum State {
+		IDLE, PLANNING, RUNNING, PUBLISHING, FINISHED, FAILED, CANCELLED
+	}
+
+	/**
+	 * Worker accessing the entities of services
+	 */
+	public interface Worker {
+		/**
+		 * @param serviceClass class name of full text service
+		 * @return number of entities of service
+		 * @throws Exception on error
+		 */
+		long count(String serviceClass) throws Exception;
+
+		/**
+		 * @param serviceClass class name of full text service
+		 * @param partitionSize maximum number of entities per range
+		 * @return list of inclusive id ranges
+		 * @throws Exception on error
+		 */
+		List<String[]> partition(String serviceClass, int partitionSize) throws Exception;
+
+		/**
+		 * write entities of id range to new index
+		 * @param serviceClass class name of full text service
+		 * @param fromId first id of range
+		 * @param toId last id of range
+		 * @param builder of new index
+		 * @return number of documents written
+		 * @throws Exception on error
+		 */
+		int index(String serviceClass, String fromId, String toId, SearchIndexBuilder builder) throws Exception;
+	}
+
+	/**
+	 * progress of a single service
+	 */
+	private static class Progress {
+		private long total;
+
+		private int partitions;
+
+		private final AtomicInteger partitionsDone = new AtomicInteger(0);
+
+		private final AtomicLong documents = new AtomicLong(0);
+	}
+
+	private static final String CHECKPOINT_HEADER = "# segrada reindex checkpoint";
+
+	private final Worker worker;
+
+	private final SearchEngine searchEngine;
+
+	/**
+	 * checkpoint file or null if job should not be resumable
+	 */
+	private final Path checkpoint;
+
+	private final int threads;
+
+	private final int partitionSize;
+
+	/**
+	 * lock for state and checkpoint
+	 */
+	private final Object lock = new Object();
+
+	private volatile State state = State.IDLE;
+
+	private volatile boolean cancelled = false;
+
+	private Thread thread;
+
+	private ExecutorService executor;
+
+	private SearchIndexBuilder builder;
+
+	private BufferedWriter checkpointWriter;
+
+	private List<String> serviceClasses = Collections.emptyList();
+
+	/**
+	 * finished ranges of this run (service class, from, to) mapped to documents written
+	 */
+	private final Map<String, Long> done = new HashMap<>();
+
+	private final Map<String, Progress> progress = new LinkedHashMap<>();
+
+	private final AtomicLong documents = new AtomicLong(0);
+
+	private volatile long started = 0L;
+
+	private volatile long finished = 0L;
+
+	private volatile String error;
+
+	/**
+	 * Constructor
+	 * @param worker accessing entities
+	 * @param searchEngine to build new index for
+	 * @param checkpoint file to save finished ranges to (null to disable resuming)
+	 * @param threads number of ranges indexed in parallel
+	 * @param partitionSize maximum number of entities per range
+	 */
+	public ReindexJob(Worker worker, SearchEngine searchEngine, Path checkpoint, int threads, int partitionSize) {
+		this.worker = worker;
+		this.searchEngine = searchEngine;
+		this.checkpoint = checkpoint;
+		this.threads = threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads;
+		this.partitionSize = partitionSize <= 0 ? 5000 : partitionSize;
+	}
+
+	/**
+	 * @return true if job is running
+	 */
+	public boolean isRunning() {
+		State current = state;
+		return current == State.PLANNING || current == State.RUNNING || current == State.PUBLISHING;
+	}
+
+	/**
+	 * @return current state
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * start reindexing in background
+	 * @param serviceClasses class names of full text services to reindex
+	 * @param resume true to continue an interrupted run with the same services, if possible
+	 * @return false if job is running already or could not be started
+	 */
+	public boolean start(Collection<String> serviceClasses, boolean resume) {
+		synchronized (lock) {
+			if (isRunning()) return false;
+
+			// finished ranges of interrupted run
+			done.clear();
+			if (resume && !readCheckpoint(serviceClasses)) resume = false;
+
+			try {
+				builder = searchEngine.openIndexBuilder(resume);
+			} catch (IOException e) {
+				logger.error("Could not open new search index", e);
+				return false;
+			}
+
+			// finished ranges are lost, if new index could not be resumed
+			if (!builder.isResumed()) done.clear();
+
+			try {
+				openCheckpoint(serviceClasses, builder.isResumed());
+			} catch (IOException e) {
+				logger.warn("Could not write reindex checkpoint - reindexing will not be resumable", e);
+			}
+
+			this.serviceClasses = new ArrayList<>(serviceClasses);
+			progress.clear();
+			documents.set(0);
+			cancelled = false;
+			error = null;
+			started = System.currentTimeMillis();
+			finished = 0L;
+			state = State.PLANNING;
+
+			thread = new Thread(this::run, "search-reindex");
+			thread.setDaemon(true);
+			thread.start();
+
+			if (logger.isInfoEnabled())
+				logger.info((builder.isResumed() ? "Resumed" : "Started") + " reindexing of " + serviceClasses.size()
+						+ " services with " + threads + " threads (" + done.size() + " ranges done already)");
+
+			return true;
+		}
+	}
+
+	/**
+	 * resume run interrupted by shutdown or crash, if there is any
+	 * @return true if run has been resumed
+	 */
+	public boolean resume() {
+		List<String> classes = readCheckpointServices();
+		return classes != null && !classes.isEmpty() && start(classes, true);
+	}
+
+	/**
+	 * cancel running job, keeping finished ranges for resuming
+	 * @param timeout maximum milliseconds to wait for running ranges
+	 */
+	public void shutdown(long timeout) {
+		Thread current;
+		synchronized (lock) {
+			if (!isRunning()) return;
+			cancelled = true;
+			current = thread;
+		}
+
+		logger.info("Cancelling reindexing");
+
+		try {
+			current.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (current.isAlive())
+			logger.warn("Reindexing did not stop in time");
+	}
+
+	/**
+	 * @return status and progress of job
+	 */
+	public Map<String, Object> getStatus() {
+		Map<String, Object> status = new LinkedHashMap<>();
+
+		long end = finished > 0 ? finished : System.currentTimeMillis();
+		long elapsed = started > 0 ? end - started : 0L;
+
+		status.put("state", state.name());
+		status.put("threads", threads);
+		status.put("partitionSize", partitionSize);
+		status.put("started", started);
+		status.put("elapsed", elapsed);
+		status.put("documents", documents.get());
+		status.put("documentsPerSecond", elapsed > 0 ? documents.get() * 1000L / elapsed : 0L);
+		if (error != null) status.put("error", error);
+
+		Map<String, Object> classes = new LinkedHashMap<>();
+		synchronized (lock) {
+			for (Map.Entry<String, Progress> entry : progress.entrySet()) {
+				Progress classProgress = entry.getValue();
+
+				Map<String, Object> classStatus = new LinkedHashMap<>();
+				classStatus.put("total", classProgress.total);
+				classStatus.put("done", classProgress.documents.get());
+				classStatus.put("partitions", classProgress.partitions);
+				classStatus.put("partitionsDone", classProgress.partitionsDone.get());
+
+				classes.put(entry.getKey(), classStatus);
+			}
+		}
+		status.put("classes", classes);
+
+		return status;
+	}
+
+	/**
+	 * coordinator: plan ranges, index them in parallel and publish new index
+	 */
+	protected void run() {
+		try {
+			List<RangeTask> tasks = plan();
+
+			state = State.RUNNING;
+			executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+
+			List<Future<?>> futures = new ArrayList<>(tasks.size());
+			for (RangeTask task : tasks)
+				futures.add(executor.submit(task));
+
+			// wait for all ranges - first error stops the run
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (Exception e) {
+					cancelled = true;
+					if (error == null) error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+					logger.error("Error while reindexing", e);
+				}
+			}
+
+			if (error != null) {
+				finish(State.FAILED);
+			} else if (cancelled) {
+				finish(State.CANCELLED);
+			} else {
+				state = State.PUBLISHING;
+				builder.publish();
+				deleteCheckpoint();
+				finish(State.FINISHED);
+			}
+		} catch (Exception e) {
+			logger.error("Error while reindexing", e);
+			if (error == null) error = e.getMessage();
+			finish(State.FAILED);
+		}
+	}
+
+	/**
+	 * create tasks for all ranges not done yet
+	 * @return list of tasks
+	 * @throws Exception on error
+	 */
+	private List<RangeTask> plan() throws Exception {
+		List<RangeTask> tasks = new ArrayList<>();
+
+		for (String serviceClass : serviceClasses) {
+			Progress classProgress = new Progress();
+			List<String[]> ranges = worker.partition(serviceClass, partitionSize);
+			classProgress.total = worker.count(serviceClass);
+			classProgress.partitions = ranges.size();
+
+			for (String[] range : ranges) {
+				Long written = done.get(rangeKey(serviceClass, range[0], range[1]));
+				if (written != null) {
+					classProgress.partitionsDone.incrementAndGet();
+					classProgress.documents.addAndGet(written);
+				} else tasks.add(new RangeTask(serviceClass, range[0], range[1], classProgress));
+			}
+
+			synchronized (lock) {
+				progress.put(serviceClass, classProgress);
+			}
+		}
+
+		if (logger.isInfoEnabled())
+			logger.info("Reindexing " + tasks.size() + " ranges");
+
+		return tasks;
+	}
+
+	/**
+	 * end run and clean up
+	 * @param endState final state
+	 */
+	private void finish(State endState) {
+		if (executor != null) executor.shutdownNow();
+
+		synchronized (lock) {
+			if (endState == State.FAILED || endState == State.CANCELLED)
+				builder.close(); // keep checkpointed state for resuming
+			builder = null;
+			executor = null;
+
+			closeCheckpoint();
+
+			finished = System.currentTimeMillis();
+			state = endState;
+		}
+
+		if (logger.isInfoEnabled())
+			logger.info("Reindexing " + endState.name().toLowerCase() + ": " + documents.get() + " documents in "
+					+ (finished - started) + "ms");
+	}
+
+	/**
+	 * single range
+	 */
+	private class RangeTask implements Callable<Integer> {
+		private final String serviceClass;
+
+		private final String fromId;
+
+		private final String toId;
+
+		private final Progress classProgress;
+
+		RangeTask(String serviceClass, String fromId, String toId, Progress classProgress) {
+			this.serviceClass = serviceClass;
+			this.fromId = fromId;
+			this.toId = toId;
+			this.classProgress = classProgress;
+		}
+
+		@Override
+		public Integer call() throws Exception {
+			if (cancelled) return 0;
+
+			int written = worker.index(serviceClass, fromId, toId, builder);
+
+			// make range durable and remember it
+			synchronized (lock) {
+				builder.checkpoint();
+				writeCheckpointLine(rangeKey(serviceClass, fromId, toId) + "\t" + written);
+			}
+
+			documents.addAndGet(written);
+			classProgress.documents.addAndGet(written);
+			classProgress.partitionsDone.incrementAndGet();
+
+			return written;
+		}
+	}
+
+	/**
+	 * daemon threads for workers
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+		private final AtomicInteger counter = new AtomicInteger(0);
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "search-reindex-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private static String rangeKey(String serviceClass, String fromId, String toId) {
+		return serviceClass + "\t" + fromId + "\t" + toId;
+	}
+
+	/**
+	 * @return services of checkpoint file or null if there is none
+	 */
+	private List<String> readCheckpointServices() {
+		if (checkpoint == null || !Files.exists(checkpoint)) return null;
+
+		List<String> classes = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t");
+				if (parts.length == 2 && parts[0].equals("service")) classes.add(parts[1]);
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read reindex checkpoint " + checkpoint, e);
+			return null;
+		}
+
+		return classes;
+	}
+
+	/**
+	 * read finished ranges from checkpoint file into done
+	 * @param serviceClasses services to reindex
+	 * @return true if checkpoint matches services and partition size
+	 */
+	private boolean readCheckpoint(Collection<String> serviceClasses) {
+		if (checkpoint == null || !Files.exists(checkpoint)) return false;
+
+		Set<String> classes = new HashSet<>();
+		try (BufferedReader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			if (!CHECKPOINT_HEADER.equals(line)) return false;
+
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t");
+				if (parts.length == 2 && parts[0].equals("size")) {
+					// ranges differ with other partition size
+					if (Integer.parseInt(parts[1]) != partitionSize) return false;
+				} else if (parts.length == 2 && parts[0].equals("service")) {
+					classes.add(parts[1]);
+				} else if (parts.length == 5 && parts[0].equals("done")) {
+					done.put(rangeKey(parts[1], parts[2], parts[3]), Long.valueOf(parts[4]));
+				}
+			}
+		} catch (Exception e) {
+			logger.warn("Could not read reindex checkpoint " + checkpoint, e);
+			done.clear();
+			return false;
+		}
+
+		if (!classes.equals(new HashSet<>(serviceClasses))) {
+			done.clear();
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * open checkpoint file for writing finished ranges
+	 * @param serviceClasses services to reindex
+	 * @param append true to continue existing file
+	 * @throws IOException on write error
+	 */
+	private void openCheckpoint(Collection<String> serviceClasses, boolean append) throws IOException {
+		if (checkpoint == null) return;
+
+		if (append) {
+			checkpointWriter = Files.newBufferedWriter(checkpoint, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			return;
+		}
+
+		checkpointWriter = Files.newBufferedWriter(checkpoint, StandardCharsets.UTF_8);
+		checkpointWriter.write(CHECKPOINT_HEADER);
+		checkpointWriter.newLine();
+		checkpointWriter.write("size\t" + partitionSize);
+		checkpointWriter.newLine();
+		for (String serviceClass : serviceClasses) {
+			checkpointWriter.write("service\t" + serviceClass);
+			checkpointWriter.newLine();
+		}
+		checkpointWriter.flush();
+	}
+
+	/**
+	 * write line to checkpoint - called with lock held
+	 * @param range finished range
+	 * @throws IOException on write error
+	 */
+	private void writeCheckpointLine(String range) throws IOException {
+		if (checkpointWriter == null) return;
+
+		checkpointWriter.write("done\t" + range);
+		checkpointWriter.newLine();
+		checkpointWriter.flush();
+	}
+
+	private void closeCheckpoint() {
+		if (checkpointWriter == null) return;
+
+		try {
+			checkpointWriter.close();
+		} catch (IOException e) {
+			logger.warn("Could not close reindex checkpoint", e);
+		}
+		checkpointWriter = null;
+	}
+
+	private void deleteCheckpoint() {
+		synchronized (lock) {
+			closeCheckpoint();
+			if (checkpoint == null) return;
+
+			try {
+				Files.deleteIfExists(checkpoint);
+			} catch (IOException e) {
+				logger.warn("Could not delete reindex checkpoint " + checkpoint, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,542 @@
+package org.segrada.service.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Queue of pending search index updates: updates are coalesced by uid (only the latest operation per entity is kept),
+ * drained in batches by a background worker and journaled to disk, so pending updates are replayed after a restart.
+ */
+public class SearchIndexUpdateQueue {
+	private static final Logger logger = LoggerFactory.getLogger(SearchIndexUpdateQueue.class);
+
+	/**
+	 * maximum number of attempts to process a single update
+	 */
+	public static final int MAX_ATTEMPTS = 3;
+
+	/**
+	 * Worker processing batches of updates
+	 */
+	public interface Processor {
+		/**
+		 * process batch of updates - all updates in a batch have distinct uids
+		 * @param batch list of updates
+		 * @throws Exception if batch could not be processed (will be retried)
+		 */
+		void process(List<PendingUpdate> batch) throws Exception;
+	}
+
+	/**
+	 * Single pending update
+	 */
+	public static class PendingUpdate {
+		private final String serviceClass;
+
+		private final String id;
+
+		private final String uid;
+
+		private final boolean remove;
+
+		private final long enqueued;
+
+		private int attempts = 0;
+
+		public PendingUpdate(String serviceClass, String id, String uid, boolean remove, long enqueued) {
+			this.serviceClass = serviceClass;
+			this.id = id;
+			this.uid = uid;
+			this.remove = remove;
+			this.enqueued = enqueued;
+		}
+
+		/**
+		 * @return class name of full text service responsible for the entity
+		 */
+		public String getServiceClass() {
+			return serviceClass;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getUid() {
+			return uid;
+		}
+
+		/**
+		 * @return true if entity should be removed from index, false if it should be (re)indexed
+		 */
+		public boolean isRemove() {
+			return remove;
+		}
+
+		/**
+		 * @return timestamp of first enqueueing of this entity
+		 */
+		public long getEnqueued() {
+			return enqueued;
+		}
+	}
+
+	/**
+	 * lock for queue and journal
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * pending updates mapped by uid, oldest first
+	 */
+	private final LinkedHashMap<String, PendingUpdate> pending = new LinkedHashMap<>();
+
+	/**
+	 * updates currently processed by worker
+	 */
+	private List<PendingUpdate> inFlight = Collections.emptyList();
+
+	private final Processor processor;
+
+	/**
+	 * journal file or null if queue should not be persisted
+	 */
+	private final Path journal;
+
+	private final int capacity;
+
+	private final int batchSize;
+
+	private final long flushDelay;
+
+	private final long offerTimeout;
+
+	private BufferedWriter journalWriter;
+
+	private int journalLines = 0;
+
+	private Thread worker;
+
+	private volatile boolean running = false;
+
+	private volatile boolean aborted = false;
+
+	/**
+	 * metrics
+	 */
+	private final AtomicLong enqueued = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private volatile long lastBatchSize = 0;
+	private volatile long lastBatchDuration = 0;
+
+	/**
+	 * Constructor
+	 * @param processor worker processing batches
+	 * @param journal file to persist pending updates to (may be null)
+	 * @param capacity maximum number of pending updates - enqueueing will block if queue is full
+	 * @param batchSize maximum number of updates processed at once
+	 * @param flushDelay milliseconds to wait for more updates before processing a batch that is not full
+	 * @param offerTimeout milliseconds to block callers when queue is full before giving up
+	 */
+	public SearchIndexUpdateQueue(Processor processor, @Nullable Path journal, int capacity, int batchSize, long flushDelay, long offerTimeout) {
+		this.processor = processor;
+		this.journal = journal;
+		this.capacity = capacity < 1 ? 1 : capacity;
+		this.batchSize = batchSize < 1 ? 1 : batchSize;
+		this.flushDelay = flushDelay < 0 ? 0 : flushDelay;
+		this.offerTimeout = offerTimeout < 0 ? 0 : offerTimeout;
+	}
+
+	/**
+	 * replay journal and start worker thread
+	 */
+	public void start() {
+		synchronized (lock) {
+			if (running) return;
+
+			replayJournal();
+
+			running = true;
+			aborted = false;
+		}
+
+		worker = new Thread(this::work, "search-index-update-queue");
+		worker.setDaemon(true);
+		worker.start();
+
+		if (logger.isInfoEnabled())
+			logger.info("Search index update queue started with " + size() + " pending update(s)");
+	}
+
+	/**
+	 * stop worker - tries to process pending updates until timeout, remaining updates are kept in journal
+	 * @param timeout milliseconds to wait for worker
+	 */
+	public void shutdown(long timeout) {
+		synchronized (lock) {
+			if (!running) return;
+			running = false;
+			lock.notifyAll();
+		}
+
+		try {
+			worker.join(timeout);
+			if (worker.isAlive()) {
+				aborted = true;
+				worker.interrupt();
+				worker.join(timeout);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (lock) {
+			closeJournal();
+		}
+
+		logger.info("Search index update queue has been shut down, " + size() + " update(s) left in journal");
+	}
+
+	/**
+	 * @return true if queue is accepting updates
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * enqueue entity to be (re)indexed
+	 * @param serviceClass class of full text service responsible for entity
+	 * @param id of entity
+	 * @param uid of entity (id in search index)
+	 * @return true if update has been enqueued, false if queue is not running or full - caller should index directly then
+	 */
+	public boolean enqueueIndex(Class serviceClass, String id, String uid) {
+		return offer(new PendingUpdate(serviceClass.getName(), id, uid, false, System.currentTimeMillis()));
+	}
+
+	/**
+	 * enqueue entity to be removed from index
+	 * @param serviceClass class of full text service responsible for entity
+	 * @param id of entity
+	 * @param uid of entity (id in search index)
+	 * @return true if update has been enqueued, false if queue is not running or full - caller should remove directly then
+	 */
+	public boolean enqueueRemove(Class serviceClass, String id, String uid) {
+		return offer(new PendingUpdate(serviceClass.getName(), id, uid, true, System.currentTimeMillis()));
+	}
+
+	/**
+	 * add update to queue, coalescing with pending updates for the same uid
+	 * @param update to add
+	 * @return true if update has been enqueued
+	 */
+	protected boolean offer(PendingUpdate update) {
+		if (update.getUid() == null) return false;
+
+		synchronized (lock) {
+			if (!running) return false;
+
+			PendingUpdate existing = pending.get(update.getUid());
+			if (existing != null) {
+				// keep original enqueue time, so lag is measured correctly
+				update = new PendingUpdate(update.getServiceClass(), update.getId(), update.getUid(), update.isRemove(), existing.getEnqueued());
+				coalesced.incrementAndGet();
+			} else {
+				// back-pressure: wait for worker to free capacity
+				long deadline = System.currentTimeMillis() + offerTimeout;
+				while (pending.size() >= capacity && running) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						rejected.incrementAndGet();
+						return false;
+					}
+					try {
+						lock.wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						rejected.incrementAndGet();
+						return false;
+					}
+				}
+				if (!running) return false;
+			}
+
+			pending.put(update.getUid(), update);
+			appendToJournal(update);
+			enqueued.incrementAndGet();
+
+			lock.notifyAll();
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return number of pending updates (including the ones processed right now)
+	 */
+	public int size() {
+		synchronized (lock) {
+			return pending.size() + inFlight.size();
+		}
+	}
+
+	/**
+	 * @return milliseconds the oldest pending update has been waiting, 0 if queue is empty
+	 */
+	public long getLag() {
+		long oldest = Long.MAX_VALUE;
+
+		synchronized (lock) {
+			for (PendingUpdate update : inFlight)
+				if (update.getEnqueued() < oldest) oldest = update.getEnqueued();
+			for (PendingUpdate update : pending.values())
+				if (update.getEnqueued() < oldest) oldest = update.getEnqueued();
+		}
+
+		return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+	}
+
+	/**
+	 * @return map of metrics, e.g. for status pages
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("running", running);
+		statistics.put("depth", size());
+		statistics.put("capacity", capacity);
+		statistics.put("lag", getLag());
+		statistics.put("enqueued", enqueued.get());
+		statistics.put("coalesced", coalesced.get());
+		statistics.put("rejected", rejected.get());
+		statistics.put("processed", processed.get());
+		statistics.put("failed", failed.get());
+		statistics.put("batches", batches.get());
+		statistics.put("lastBatchSize", lastBatchSize);
+		statistics.put("lastBatchDuration", lastBatchDuration);
+
+		return statistics;
+	}
+
+	/**
+	 * worker loop
+	 */
+	protected void work() {
+		while (!aborted) {
+			List<PendingUpdate> batch;
+
+			synchronized (lock) {
+				try {
+					while (running && pending.isEmpty())
+						lock.wait();
+
+					// give callers some time to add more updates, if batch would not be full - each update wakes
+					// the worker, so wait until the delay has passed
+					long deadline = System.currentTimeMillis() + flushDelay;
+					long remaining = flushDelay;
+					while (running && pending.size() < batchSize && remaining > 0) {
+						lock.wait(remaining);
+						remaining = deadline - System.currentTimeMillis();
+					}
+				} catch (InterruptedException e) {
+					break;
+				}
+
+				// stopped and everything done
+				if (pending.isEmpty()) break;
+
+				batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+				Iterator<PendingUpdate> it = pending.values().iterator();
+				while (it.hasNext() && batch.size() < batchSize) {
+					batch.add(it.next());
+					it.remove();
+				}
+				inFlight = batch;
+
+				// free capacity for waiting callers
+				lock.notifyAll();
+			}
+
+			long start = System.currentTimeMillis();
+			boolean success;
+			try {
+				processor.process(batch);
+				success = true;
+			} catch (Throwable e) {
+				logger.error("Could not process batch of " + batch.size() + " search index update(s)", e);
+				success = false;
+			}
+
+			lastBatchSize = batch.size();
+			lastBatchDuration = System.currentTimeMillis() - start;
+			batches.incrementAndGet();
+
+			synchronized (lock) {
+				inFlight = Collections.emptyList();
+
+				if (success) processed.addAndGet(batch.size());
+				else requeue(batch);
+
+				// journal housekeeping
+				if (pending.isEmpty()) truncateJournal();
+				else if (journalLines > 2 * capacity) rewriteJournal();
+			}
+
+			// wait a bit before retrying failed batches - or stop retrying on shutdown, journal keeps updates
+			if (!success) {
+				if (!running) break;
+				try {
+					Thread.sleep(1000);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * put failed updates back into queue, unless they have been superseded or failed too often
+	 * @param batch failed batch
+	 */
+	private void requeue(List<PendingUpdate> batch) {
+		for (PendingUpdate update : batch) {
+			if (++update.attempts >= MAX_ATTEMPTS) {
+				logger.error("Giving up search index update of " + update.getUid() + " after " + update.attempts + " attempts");
+				failed.incrementAndGet();
+			} else if (!pending.containsKey(update.getUid())) pending.put(update.getUid(), update);
+		}
+	}
+
+	/**
+	 * read pending updates from journal - last entry per uid wins
+	 */
+	private void replayJournal() {
+		if (journal == null || !Files.exists(journal)) return;
+
+		long now = System.currentTimeMillis();
+		try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t");
+				if (parts.length != 4) continue; // ignore broken lines, e.g. after crash while writing
+
+				pending.put(parts[3], new PendingUpdate(parts[1], parts[2], parts[3], parts[0].equals("R"), now));
+			}
+		} catch (IOException e) {
+			logger.error("Could not replay search index journal " + journal, e);
+		}
+
+		if (!pending.isEmpty() && logger.isInfoEnabled())
+			logger.info("Replaying " + pending.size() + " search index update(s) from journal");
+
+		rewriteJournal();
+	}
+
+	/**
+	 * append single update to journal
+	 * @param update to append
+	 */
+	private void appendToJournal(PendingUpdate update) {
+		if (journal == null) return;
+
+		try {
+			if (journalWriter == null)
+				journalWriter = Files.newBufferedWriter(journal, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+			writeJournalLine(journalWriter, update);
+			journalWriter.flush();
+			journalLines++;
+		} catch (IOException e) {
+			logger.warn("Could not write search index journal " + journal, e);
+		}
+	}
+
+	/**
+	 * empty journal - all updates processed
+	 */
+	private void truncateJournal() {
+		if (journal == null || journalLines == 0) return;
+
+		closeJournal();
+		try {
+			Files.write(journal, new byte[0]);
+			journalLines = 0;
+		} catch (IOException e) {
+			logger.warn("Could not truncate search index journal " + journal, e);
+		}
+	}
+
+	/**
+	 * rewrite journal containing in-flight and pending updates only
+	 */
+	private void rewriteJournal() {
+		if (journal == null) return;
+
+		closeJournal();
+		try (BufferedWriter writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8)) {
+			journalLines = 0;
+			for (PendingUpdate update : inFlight) {
+				writeJournalLine(writer, update);
+				journalLines++;
+			}
+			for (PendingUpdate update : pending.values()) {
+				writeJournalLine(writer, update);
+				journalLines++;
+			}
+		} catch (IOException e) {
+			logger.warn("Could not rewrite search index journal " + journal, e);
+		}
+	}
+
+	private void writeJournalLine(BufferedWriter writer, PendingUpdate update) throws IOException {
+		writer.write(update.isRemove() ? "R" : "I");
+		writer.write('\t');
+		writer.write(update.getServiceClass());
+		writer.write('\t');
+		writer.write(update.getId());
+		writer.write('\t');
+		writer.write(update.getUid());
+		writer.newLine();
+	}
+
+	private void closeJournal() {
+		if (journalWriter != null) {
+			try {
+				journalWriter.close();
+			} catch (IOException e) {
+				logger.warn("Could not close search index journal " + journal, e);
+			}
+			journalWriter = null;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package org.segrada.service.index;
+
+import com.google.inject.Inject;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import org.segrada.search.SearchEngine;
+import org.segrada.service.base.AbstractFullTextService;
+import org.segrada.service.repository.factory.RepositoryFactory;
+
+import java.util.*;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Processes search index updates outside of http requests using services created by {@link DetachedServiceFactory}
+ */
+public class ServiceIndexUpdateProcessor implements SearchIndexUpdateQueue.Processor {
+	private final DetachedServiceFactory serviceFactory;
+
+	private final SearchEngine searchEngine;
+
+	/**
+	 * Constructor
+	 */
+	@Inject
+	public ServiceIndexUpdateProcessor(DetachedServiceFactory serviceFactory, SearchEngine searchEngine) {
+		this.serviceFactory = serviceFactory;
+		this.searchEngine = searchEngine;
+	}
+
+	@Override
+	public void process(List<SearchIndexUpdateQueue.PendingUpdate> batch) throws Exception {
+		// removals do not need the database
+		List<String> removals = new ArrayList<>();
+		// group entities to index by service
+		Map<String, List<String>> updates = new HashMap<>();
+
+		for (SearchIndexUpdateQueue.PendingUpdate update : batch) {
+			if (update.isRemove()) removals.add(update.getUid());
+			else updates.computeIfAbsent(update.getServiceClass(), k -> new ArrayList<>()).add(update.getId());
+		}
+
+		if (!removals.isEmpty())
+			searchEngine.removeAll(removals);
+
+		if (updates.isEmpty()) return;
+
+		ODatabaseDocumentTx db = serviceFactory.openDatabase();
+		try {
+			RepositoryFactory repositoryFactory = serviceFactory.createRepositoryFactory(db);
+
+			for (Map.Entry<String, List<String>> entry : updates.entrySet()) {
+				AbstractFullTextService service = serviceFactory.createService(entry.getKey(), repositoryFactory);
+				if (service == null) continue;
+
+				if (!service.indexByIds(entry.getValue()))
+					throw new RuntimeException("Could not write batch of " + entry.getValue().size() + " " + entry.getKey() + " entities to search index");
+			}
+		} finally {
+			db.close();
+		}
+	}
+}
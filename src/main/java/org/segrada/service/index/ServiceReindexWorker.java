@@ -0,0 +1,83 @@
+package org.segrada.service.index;
+
+import com.google.inject.Inject;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import org.segrada.search.SearchIndexBuilder;
+import org.segrada.service.base.AbstractFullTextService;
+
+import java.util.List;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Reads entities for reindexing using services created by {@link DetachedServiceFactory} - each call uses its own
+ * database connection, so ranges can be indexed in parallel
+ */
+public class ServiceReindexWorker implements ReindexJob.Worker {
+	private final DetachedServiceFactory serviceFactory;
+
+	/**
+	 * Constructor
+	 */
+	@Inject
+	public ServiceReindexWorker(DetachedServiceFactory serviceFactory) {
+		this.serviceFactory = serviceFactory;
+	}
+
+	@Override
+	public long count(String serviceClass) throws Exception {
+		ODatabaseDocumentTx db = serviceFactory.openDatabase();
+		try {
+			return createService(serviceClass, db).count();
+		} finally {
+			db.close();
+		}
+	}
+
+	@Override
+	public List<String[]> partition(String serviceClass, int partitionSize) throws Exception {
+		ODatabaseDocumentTx db = serviceFactory.openDatabase();
+		try {
+			return createService(serviceClass, db).findIdRanges(partitionSize);
+		} finally {
+			db.close();
+		}
+	}
+
+	@Override
+	public int index(String serviceClass, String fromId, String toId, SearchIndexBuilder builder) throws Exception {
+		ODatabaseDocumentTx db = serviceFactory.openDatabase();
+		try {
+			return createService(serviceClass, db).reindexRange(fromId, toId, builder);
+		} finally {
+			db.close();
+		}
+	}
+
+	/**
+	 * create service on database
+	 * @param serviceClass class name of service
+	 * @param db to work on
+	 * @return service
+	 * @throws IllegalStateException if service could not be created
+	 */
+	private AbstractFullTextService createService(String serviceClass, ODatabaseDocumentTx db) {
+		AbstractFullTextService service = serviceFactory.createService(serviceClass, serviceFactory.createRepositoryFactory(db));
+		if (service == null)
+			throw new IllegalStateException("Could not create service " + serviceClass);
+
+		return service;
+	}
+}
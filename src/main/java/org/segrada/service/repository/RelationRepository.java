@@ -40,6 +40,13 @@ public interface RelationRepository extends CRUDRepository<IRelation>, Paginatin
 	 */
 	List<IRelation> findByRelationType(IRelationType relationType);
 
+	/**
+	 * find ids of relations by related entity - relations are not loaded
+	 * @param node connected entity
+	 * @return list of ids of relations connected to node (in or out)
+	 */
+	List<String> findIdsByRelation(INode node);
+
 	/**
 	 * delete relations by node connection
 	 * @param node connected entity
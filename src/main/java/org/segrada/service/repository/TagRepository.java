@@ -109,6 +109,14 @@ public interface TagRepository extends CRUDRepository<ITag>, SearchTermRepositor
 	 */
 	void connectTag(ITag parent, SegradaTaggable child);
 
+	/**
+	 * Set tags of node by titles: missing tags are created, new connections are added and connections to tags
+	 * not in the list are removed
+	 * @param child node
+	 * @param titles tag titles list (null or empty removes all tags)
+	 */
+	void updateTagConnections(SegradaTaggable child, String[] titles);
+
 	/**
 	 * Remove existing tag connection
 	 * @param tagId id of tag
@@ -40,6 +40,11 @@ public class OrientDbColorRepository extends AbstractSegradaOrientDbRepository<I
 		return "Color";
 	}
 
+	@Override
+	protected boolean isEntityCacheSupported() {
+		return true;
+	}
+
 	@Override
 	public IColor convertToEntity(ODocument document) {
 		Color color = new Color();
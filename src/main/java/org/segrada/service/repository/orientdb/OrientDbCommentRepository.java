@@ -2,21 +2,19 @@ package org.segrada.service.repository.orientdb;
 
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.OCommandSQL;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.segrada.model.Comment;
 import org.segrada.model.prototype.IComment;
 import org.segrada.model.prototype.SegradaAnnotatedEntity;
 import org.segrada.model.prototype.SegradaEntity;
 import org.segrada.service.repository.CommentRepository;
 import org.segrada.service.repository.orientdb.base.AbstractAnnotatedOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.base.AbstractOrientDbRepository;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -91,8 +89,8 @@ public class OrientDbCommentRepository extends AbstractAnnotatedOrientDbReposito
 
 		initDb();
 
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select out as comment from IsCommentOf where in = " + id);
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Comment.findByReference", "select out as comment from IsCommentOf where in = ?")
+				.query(db, OrientDbStatement.rid(id));
 
 		for (ODocument document : result) {
 			list.add(convertToEntity(document.field("comment", ODocument.class)));
@@ -101,6 +99,22 @@ public class OrientDbCommentRepository extends AbstractAnnotatedOrientDbReposito
 		return list;
 	}
 
+	/**
+	 * find comments of a list of entities in a single query
+	 * @param ids of entities
+	 * @return map of entity ids to lists of comments (entities without comments are missing)
+	 */
+	public Map<String, List<IComment>> findByReferences(Collection<String> ids) {
+		if (ids == null || ids.isEmpty()) return new HashMap<>();
+
+		initDb();
+
+		List<ODocument> result = OrientDbStatement.named("Comment.findByReferences", "select in.@rid as id, out as comment from IsCommentOf where in IN ?")
+				.query(db, toRecordIds(ids));
+
+		return convertAndGroupByParent(result, "id", "comment");
+	}
+
 	@Override
 	public List<SegradaEntity> findByComment(String id) {
 		List<SegradaEntity> list = new ArrayList<>();
@@ -110,8 +124,8 @@ public class OrientDbCommentRepository extends AbstractAnnotatedOrientDbReposito
 
 		initDb();
 
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select in from IsCommentOf where out = " + id);
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Comment.findByComment", "select in from IsCommentOf where out = ?")
+				.query(db, OrientDbStatement.rid(id));
 
 		for (ODocument document : result) {
 			// get dynamic repository
@@ -133,7 +147,8 @@ public class OrientDbCommentRepository extends AbstractAnnotatedOrientDbReposito
 		if (isCommentOf(comment, entity)) return;
 
 		// add edge
-		db.command(new OCommandSQL("create edge IsCommentOf from " + comment.getId() + " to " + entity.getId())).execute();
+		OrientDbStatement.named("Comment.connect", "create edge IsCommentOf from ? to ?")
+				.execute(db, OrientDbStatement.rid(comment.getId()), OrientDbStatement.rid(entity.getId()));
 	}
 
 	@Override
@@ -141,12 +156,12 @@ public class OrientDbCommentRepository extends AbstractAnnotatedOrientDbReposito
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select @RID as id from IsCommentOf where out = " + comment.getId() + " and in = " + entity.getId());
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Comment.findEdge", "select @RID as id from IsCommentOf where out = ? and in = ?")
+				.query(db, OrientDbStatement.rid(comment.getId()), OrientDbStatement.rid(entity.getId()));
 
 		if (!result.isEmpty()) {
 			// remove edge
-			db.command(new OCommandSQL("delete edge " + result.get(0).field("id", String.class))).execute();
+			OrientDbStatement.named("Comment.deleteEdge", "delete edge IsCommentOf where @rid = ?").execute(db, (Object) result.get(0).field("id"));
 		}
 	}
 
@@ -154,8 +169,8 @@ public class OrientDbCommentRepository extends AbstractAnnotatedOrientDbReposito
 	public boolean isCommentOf(IComment comment, SegradaAnnotatedEntity entity) {
 		initDb();
 
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select in from IsCommentOf where out = " + comment.getId() + " and in = " + entity.getId());
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Comment.isCommentOf", "select in from IsCommentOf where out = ? and in = ?")
+				.query(db, OrientDbStatement.rid(comment.getId()), OrientDbStatement.rid(entity.getId()));
 
 		return !result.isEmpty();
 	}
@@ -167,8 +182,8 @@ public class OrientDbCommentRepository extends AbstractAnnotatedOrientDbReposito
 
 		initDb();
 
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select @rid from IsCommentOf where out = " + comment.getId() + " LIMIT 1");
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Comment.hasConnections", "select @rid from IsCommentOf where out = ? LIMIT 1")
+				.query(db, OrientDbStatement.rid(comment.getId()));
 
 		return !result.isEmpty();
 	}
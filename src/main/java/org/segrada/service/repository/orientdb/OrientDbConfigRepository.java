@@ -2,12 +2,10 @@ package org.segrada.service.repository.orientdb;
 
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.OCommandSQL;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.segrada.service.repository.ConfigRepository;
 import org.segrada.service.repository.orientdb.base.AbstractOrientDbBaseRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
-import org.segrada.util.OrientStringEscape;
 
 import java.util.List;
 
@@ -39,8 +37,7 @@ public class OrientDbConfigRepository extends AbstractOrientDbBaseRepository imp
 
 	@Override
 	public String getValue(String key) {
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Config where key = ?");
-		List<ODocument> result = db.command(query).execute(key);
+		List<ODocument> result = OrientDbStatement.named("Config.findByKey", "select * from Config where key = ?").query(db, key);
 
 		// not found?
 		if (result == null || result.isEmpty()) return null;
@@ -59,16 +56,13 @@ public class OrientDbConfigRepository extends AbstractOrientDbBaseRepository imp
 
 	@Override
 	public void setValue(String key, String value) {
-		key = OrientStringEscape.escapeOrientSql(key);
 		// upsert command
-		String query = "UPDATE Config SET key = '" + key + "', value = '" + OrientStringEscape.escapeOrientSql(value) + "' UPSERT WHERE key = '" + key + "'";
-		db.command(new OCommandSQL(query)).execute();
+		OrientDbStatement.named("Config.upsert", "UPDATE Config SET key = ?, value = ? UPSERT WHERE key = ?").execute(db, key, value, key);
 	}
 
 	@Override
 	public void deleteValue(String key) {
 		// delete command
-		String query = "DELETE FROM Config WHERE key = '" + OrientStringEscape.escapeOrientSql(key) + "'";
-		db.command(new OCommandSQL(query)).execute();
+		OrientDbStatement.named("Config.delete", "DELETE FROM Config WHERE key = ?").execute(db, key);
 	}
 }
@@ -1,9 +1,8 @@
 package org.segrada.service.repository.orientdb;
 
 import com.google.inject.Inject;
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.OCommandSQL;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
 import org.apache.lucene.search.TermQuery;
@@ -14,18 +13,15 @@ import org.segrada.model.prototype.SegradaEntity;
 import org.segrada.service.repository.FileRepository;
 import org.segrada.service.repository.orientdb.base.AbstractAnnotatedOrientDbRepository;
 import org.segrada.service.repository.orientdb.base.AbstractOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.PaginationInfo;
-import org.segrada.util.OrientStringEscape;
 import org.segrada.util.Sluggify;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.util.HashMap;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -120,8 +116,8 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from File where title LIKE ? OR filename LIKE ?" + getDefaultOrder(true));
-		List<ODocument> result = db.command(query).execute(titleOrFilename, titleOrFilename);
+		List<ODocument> result = OrientDbStatement.named("File.findByTitleOrFilename", "select * from File where title LIKE ? OR filename LIKE ?" + getDefaultOrder(true))
+				.query(db, titleOrFilename, titleOrFilename);
 
 		List<IFile> list = new ArrayList<>();
 
@@ -142,8 +138,9 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 		initDb();
 
 		if (isFile) { // undirected aggregation
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select out, in from IsFileOf where in.@class = 'File' AND out.@class = 'File' AND (in = " + id + " OR out = " + id + ")");
-			List<ODocument> result = db.command(query).execute();
+			List<ODocument> result = OrientDbStatement.named("File.findFilesByFile",
+					"select out, in from ( select expand(bothE('IsFileOf')) from ? ) where in.@class = 'File' AND out.@class = 'File'")
+					.query(db, OrientDbStatement.rid(id));
 
 			for (ODocument document : result) {
 				ODocument doc = document.field("out");
@@ -152,8 +149,8 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 				else list.add(convertToEntity(document.field("out")));
 			}
 		} else {
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select out from IsFileOf where in = " + id);
-			List<ODocument> result = db.command(query).execute();
+			List<ODocument> result = OrientDbStatement.named("File.findByReference", "select out from IsFileOf where in = ?")
+					.query(db, OrientDbStatement.rid(id));
 
 			for (ODocument document : result) {
 				list.add(convertToEntity(document.field("out")));
@@ -163,6 +160,31 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 		return list;
 	}
 
+	/**
+	 * find files of a list of entities in a single query (two for files connected to files)
+	 * @param ids of entities
+	 * @param isFile true if entities are files themselves (undirected aggregation)
+	 * @return map of entity ids to lists of files (entities without files are missing)
+	 */
+	public Map<String, List<IFile>> findByReferences(Collection<String> ids, boolean isFile) {
+		if (ids == null || ids.isEmpty()) return new HashMap<>();
+
+		initDb();
+
+		List<ORecordId> rids = toRecordIds(ids);
+		List<ODocument> result;
+		if (isFile) { // undirected aggregation
+			result = new ArrayList<>(OrientDbStatement.named("File.findFilesByReferencesIn",
+					"select in.@rid as id, out as file from IsFileOf where in IN ? AND out.@class = 'File'").query(db, rids));
+			result.addAll(OrientDbStatement.named("File.findFilesByReferencesOut",
+					"select out.@rid as id, in as file from IsFileOf where out IN ? AND in.@class = 'File'").query(db, rids));
+		} else {
+			result = OrientDbStatement.named("File.findByReferences", "select in.@rid as id, out as file from IsFileOf where in IN ?").query(db, rids);
+		}
+
+		return convertAndGroupByParent(result, "id", "file");
+	}
+
 	@Override
 	public List<SegradaEntity> findByFile(String id, @Nullable String byClass) {
 		List<SegradaEntity> list = new ArrayList<>();
@@ -172,12 +194,10 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 
 		initDb();
 
-		String constraints;
-		if (byClass != null) constraints = " AND in.@class = '" + OrientStringEscape.escapeOrientSql(byClass) + "'";
-		else constraints = "";
-
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select in from IsFileOf where out = " + id + constraints);
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result;
+		if (byClass != null) result = OrientDbStatement.named("File.findByFileAndClass", "select in from IsFileOf where out = ? AND in.@class = ?")
+				.query(db, OrientDbStatement.rid(id), byClass);
+		else result = OrientDbStatement.named("File.findByFile", "select in from IsFileOf where out = ?").query(db, OrientDbStatement.rid(id));
 
 		for (ODocument document : result) {
 			// get dynamic repository
@@ -199,7 +219,8 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 		if (isFileOf(file, entity)) return;
 
 		// add edge
-		db.command(new OCommandSQL("create edge IsFileOf from " + file.getId() + " to " + entity.getId())).execute();
+		OrientDbStatement.named("File.connect", "create edge IsFileOf from ? to ?")
+				.execute(db, OrientDbStatement.rid(file.getId()), OrientDbStatement.rid(entity.getId()));
 	}
 
 	@Override
@@ -207,15 +228,11 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 		initDb();
 
 		// execute query
-		String sql;
-		if (entity.getModelName().equals("File")) sql = "select @RID as id from IsFileOf where (out = " + file.getId() + " and in = " + entity.getId() + ") OR (in = " + file.getId() + " and out = " + entity.getId() + ")";
-		else sql = "select @RID as id from IsFileOf where out = " + file.getId() + " and in = " + entity.getId();
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>(sql);
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = findFileEdges(file, entity);
 
 		if (!result.isEmpty()) {
 			// remove edge
-			db.command(new OCommandSQL("delete edge " + result.get(0).field("id", String.class))).execute();
+			OrientDbStatement.named("File.deleteEdge", "delete edge IsFileOf where @rid = ?").execute(db, (Object) result.get(0).field("id"));
 		}
 	}
 
@@ -223,13 +240,29 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 	public boolean isFileOf(IFile file, SegradaAnnotatedEntity entity) {
 		initDb();
 
-		String sql;
-		if (entity.getModelName().equals("File")) sql = "select in from IsFileOf where (out = " + file.getId() + " and in = " + entity.getId() + ") OR (in = " + file.getId() + " and out = " + entity.getId() + ")";
-		else sql = "select @RID as id from IsFileOf where out = " + file.getId() + " and in = " + entity.getId();
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>(sql);
-		List<ODocument> result = db.command(query).execute();
+		return !findFileEdges(file, entity).isEmpty();
+	}
+
+	/**
+	 * find edges between file and entity
+	 * @param file connected
+	 * @param entity connected, files are connected in both directions
+	 * @return list of documents containing edge ids
+	 */
+	private List<ODocument> findFileEdges(IFile file, SegradaAnnotatedEntity entity) {
+		ORecordId fileId = OrientDbStatement.rid(file.getId());
+		ORecordId entityId = OrientDbStatement.rid(entity.getId());
+
+		if (entity.getModelName().equals("File"))
+			return OrientDbStatement.named("File.findEdgesToFile",
+					"select @rid as id from ( select expand(bothE('IsFileOf')) from ? ) where out = ? OR in = ?")
+					.query(db, fileId, entityId, entityId);
+		return OrientDbStatement.named("File.findEdge", "select @RID as id from IsFileOf where out = ? and in = ?").query(db, fileId, entityId);
+	}
 
-		return !result.isEmpty();
+	@Override
+	protected String[] getSuggestionFields() {
+		return new String[]{"title", "filename"};
 	}
 
 	@Override
@@ -258,12 +291,13 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 			}
 
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from File where " + createSearchTermFullText(term) + " LIMIT " + maximum);
-			result = db.command(query).execute();
+			List<Object> parameters = new ArrayList<>(2);
+			String sql = "select * from File where " + createSearchTermFullText(term, parameters) + " LIMIT ?";
+			parameters.add(maximum);
+			result = OrientDbStatement.named("File.findBySearchTerm", sql).query(db, parameters.toArray());
 		} else { // no term, just find top X entries
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from File " + getDefaultOrder(true) + " LIMIT " + maximum);
-			result = db.command(query).execute();
+			result = OrientDbStatement.named("File.findFirst", "select * from File " + getDefaultOrder(true) + " LIMIT ?").query(db, maximum);
 		}
 
 		// browse entities
@@ -281,13 +315,14 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 
 		// aggregate filters
 		List<String> constraints = new ArrayList<>();
+		List<Object> parameters = new ArrayList<>();
 		// search term
 		if (filters.get("search") != null) {
-			constraints.add(createSearchTermFullText((String) filters.get("search")));
+			constraints.add(createSearchTermFullText((String) filters.get("search"), parameters));
 		}
 
 		// tags
-		String tagSQL = buildTagFilterSQL((String[]) filters.get("tags"), filters.containsKey("withSubTags") && (boolean) filters.get("withSubTags"), false);
+		String tagSQL = buildTagFilterSQL((String[]) filters.get("tags"), filters.containsKey("withSubTags") && (boolean) filters.get("withSubTags"), false, parameters);
 		if (!tagSQL.isEmpty()) constraints.add(tagSQL);
 
 		// sorting
@@ -301,17 +336,18 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 		}
 
 		// let helper do most of the work
-		return super.paginate(page, entriesPerPage, constraints, customOrder);
+		return super.paginate(page, entriesPerPage, constraints, parameters, customOrder, null);
 	}
 
 	/**
 	 * create search term for full text search
 	 * @param term term(s) to search for
+	 * @param parameters list the query of the search term is added to
 	 * @return search term part
 	 */
-	private static String createSearchTermFullText(String term) {
+	private static String createSearchTermFullText(String term, List<Object> parameters) {
 		// create query term for lucene full text search
-		StringBuilder sb = new StringBuilder(" [title, filename] LUCENE '");
+		StringBuilder sb = new StringBuilder();
 		boolean first = true;
 		for (String termPart : term.toLowerCase().split("\\s+")) {
 			if (termPart.contains(":")) termPart = "\"" + termPart + "\"";
@@ -322,9 +358,9 @@ public class OrientDbFileRepository extends AbstractAnnotatedOrientDbRepository<
 			else sb.append(' ');
 			sb.append(termPart);
 		}
-		sb.append('\'');
+		parameters.add(sb.toString());
 
-		return sb.toString();
+		return " [title, filename] LUCENE ?";
 	}
 
 	@Override
@@ -3,18 +3,17 @@ package org.segrada.service.repository.orientdb;
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.segrada.model.Location;
 import org.segrada.model.prototype.ILocation;
 import org.segrada.service.repository.LocationRepository;
 import org.segrada.service.repository.orientdb.base.AbstractSegradaOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.AbstractLazyLoadedObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -101,8 +100,7 @@ public class OrientDbLocationRepository extends AbstractSegradaOrientDbRepositor
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select @rid as id from Location where parent = ?" + getDefaultOrder(true));
-		List<ODocument> result = db.command(query).execute(new ORecordId(id));
+		List<ODocument> result = OrientDbStatement.named("Location.findByParent", "select @rid as id from Location where parent = ?" + getDefaultOrder(true)).query(db, new ORecordId(id));
 
 		List<ILocation> list = new ArrayList<>();
 
@@ -113,6 +111,21 @@ public class OrientDbLocationRepository extends AbstractSegradaOrientDbRepositor
 		return list;
 	}
 
+	/**
+	 * find locations of a list of parents in a single query
+	 * @param ids of parents
+	 * @return map of parent ids to lists of locations (parents without locations are missing)
+	 */
+	public Map<String, List<ILocation>> findByParents(Collection<String> ids) {
+		if (ids == null || ids.isEmpty()) return new HashMap<>();
+
+		initDb();
+
+		List<ODocument> result = OrientDbStatement.named("Location.findByParents", "select * from Location where parent IN ?" + getDefaultOrder(true)).query(db, toRecordIds(ids));
+
+		return convertAndGroupByParent(result, "parent", null);
+	}
+
 	/**
 	 * lazy load instance
 	 * @param id of entity
@@ -165,9 +178,9 @@ public class OrientDbLocationRepository extends AbstractSegradaOrientDbRepositor
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select *,$distance from Location where [latitude,longitude,$spatial] NEAR [" +
-				latitude + "," + longitude + ",{\"maxDistance\":" + radius + "}]");
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Location.findNear",
+				"select *,$distance from Location where [latitude,longitude,$spatial] NEAR [?, ?, {\"maxDistance\": ?}]")
+				.query(db, latitude, longitude, radius);
 
 		List<ILocation> list = new ArrayList<>();
 
@@ -194,9 +207,8 @@ public class OrientDbLocationRepository extends AbstractSegradaOrientDbRepositor
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Location where [latitude,longitude] WITHIN [[" +
-				latitude1 + "," + longitude1 + "], [" + latitude2 + "," + longitude2 + "]]");
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Location.findWithin", "select * from Location where [latitude,longitude] WITHIN [[?, ?], [?, ?]]")
+				.query(db, latitude1, longitude1, latitude2, longitude2);
 
 		List<ILocation> list = new ArrayList<>();
 
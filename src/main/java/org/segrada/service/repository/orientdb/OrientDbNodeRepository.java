@@ -1,8 +1,8 @@
 package org.segrada.service.repository.orientdb;
 
 import com.google.inject.Inject;
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
 import org.apache.lucene.search.TermQuery;
@@ -12,10 +12,11 @@ import org.segrada.model.prototype.INode;
 import org.segrada.service.repository.NodeRepository;
 import org.segrada.service.repository.RelationRepository;
 import org.segrada.service.repository.orientdb.base.AbstractCoreOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.PaginationInfo;
+import org.segrada.service.util.TagHierarchy;
 import org.segrada.util.FlexibleDateParser;
-import org.segrada.util.OrientStringEscape;
 import org.segrada.util.Sluggify;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +63,11 @@ public class OrientDbNodeRepository extends AbstractCoreOrientDbRepository<INode
 		return "Node";
 	}
 
+	@Override
+	protected boolean isEntityCacheSupported() {
+		return true;
+	}
+
 	@Override
 	public INode convertToEntity(ODocument document) {
 		Node node = new Node();
@@ -102,19 +108,14 @@ public class OrientDbNodeRepository extends AbstractCoreOrientDbRepository<INode
 	}
 
 	@Override
-	public boolean delete(INode entity) {
-		if (super.delete(entity)) {
-			// delete connected relations
-			RelationRepository relationRepository = repositoryFactory.produceRepository(OrientDbRelationRepository.class);
-			if (relationRepository == null) {
-				logger.error("Could not produce RelationRepository while deleting node.");
-				return false;
-			}
-			relationRepository.deleteByRelation(entity);
-
-			return true;
+	protected List<ORecordId> findCascadedVertices(INode entity) {
+		// delete connected relations - their link edges are edges of the node and deleted with it
+		RelationRepository relationRepository = repositoryFactory.produceRepository(OrientDbRelationRepository.class);
+		if (relationRepository == null) {
+			throw new IllegalStateException("Could not produce RelationRepository while deleting node.");
 		}
-		return false;
+
+		return OrientDbStatement.rids(relationRepository.findIdsByRelation(entity));
 	}
 
 	@Override
@@ -122,6 +123,16 @@ public class OrientDbNodeRepository extends AbstractCoreOrientDbRepository<INode
 		return (addOrderBy?" ORDER BY":"").concat(" titleasc");
 	}
 
+	@Override
+	protected Collection<String> getKeysetFields() {
+		return allowedSorts; // all sorts are indexed and never null
+	}
+
+	@Override
+	protected String[] getSuggestionFields() {
+		return new String[]{"title", "alternativeTitles"};
+	}
+
 	@Override
 	public List<INode> findBySearchTerm(@Nullable String term, int maximum, boolean returnWithoutTerm) {
 		return findBySearchTermAndTags(term, maximum, returnWithoutTerm, null);
@@ -138,43 +149,47 @@ public class OrientDbNodeRepository extends AbstractCoreOrientDbRepository<INode
 
 		// contain by tag ids - case
 		StringBuilder queryString;
+		List<Object> parameters = new ArrayList<>();
 		if (tagIds != null && tagIds.length > 0) {
-			queryString = new StringBuilder("select * from ( traverse out('IsTagOf') from [");
-			boolean first = true;
+			// sub tags are taken from tag hierarchy, so only nodes directly connected to tags have to be traversed
+			OrientDbTagRepository tagRepository = repositoryFactory.produceRepository(OrientDbTagRepository.class);
+			TagHierarchy hierarchy = tagRepository == null ? null : tagRepository.getTagHierarchy();
+			Set<String> allTagIds = new LinkedHashSet<>();
 			for (String tagId : tagIds) {
 				// parse tag id - avoid sql injections
 				Matcher matcher = AbstractSegradaEntity.PATTERN_ORIENTID.matcher(tagId);
 				if (matcher.find()) {
-					if (first) first = false;
-					else queryString.append(",");
-					queryString.append(tagId);
+					allTagIds.add(tagId);
+					if (hierarchy != null) allTagIds.addAll(hierarchy.getDescendantIds(tagId));
 				} else {
 					logger.warn("Could not parse to tagId: " + tagId);
 				}
 			}
-			queryString.append("]) where @class = 'Node'");
+			queryString = new StringBuilder("select * from ( traverse out('IsTagOf') from ?");
+			parameters.add(OrientDbStatement.rids(allTagIds));
+			if (hierarchy != null) queryString.append(" MAXDEPTH 1");
+			queryString.append(") where @class = 'Node'");
 
 			// with search term
 			if (term != null && !term.isEmpty()) {
-				String escapedTerm = OrientStringEscape.escapeOrientSql(term);
-				queryString.append("and (title LIKE '%")
-						.append(escapedTerm).append("%' OR alternativeTitles LIKE '%")
-						.append(escapedTerm).append("%')");
+				queryString.append("and (title LIKE ? OR alternativeTitles LIKE ?)");
+				parameters.add("%" + term + "%");
+				parameters.add("%" + term + "%");
 			}
 
-			queryString.append(" LIMIT ").append(maximum);
+			queryString.append(" LIMIT ?");
 		} else { // no tags, do search in normal way
 			String where;
-			if (term != null && !term.isEmpty()) where = "where " + createSearchTermFullText(term); // create search term
+			if (term != null && !term.isEmpty()) where = "where " + createSearchTermFullText(term, parameters); // create search term
 			else where = getDefaultOrder(true); // no term, just find top X entries
 
 			// create query
-			queryString = new StringBuilder().append("select * from Node ").append(where).append(" LIMIT ").append(maximum);
+			queryString = new StringBuilder().append("select * from Node ").append(where).append(" LIMIT ?");
 		}
+		parameters.add(maximum);
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>(queryString.toString());
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Node.findBySearchTermAndTags", queryString.toString()).query(db, parameters.toArray());
 
 		// browse entities
 		for (ODocument document : result) {
@@ -191,9 +206,10 @@ public class OrientDbNodeRepository extends AbstractCoreOrientDbRepository<INode
 
 		// aggregate filters
 		List<String> constraints = new ArrayList<>();
+		List<Object> parameters = new ArrayList<>();
 		// search term
 		if (filters.get("search") != null) {
-			constraints.add(createSearchTermFullText((String) filters.get("search")));
+			constraints.add(createSearchTermFullText((String) filters.get("search"), parameters));
 		}
 
 
@@ -206,16 +222,22 @@ public class OrientDbNodeRepository extends AbstractCoreOrientDbRepository<INode
 		if (filters.containsKey("minEntry")) { // parse from input
 			FlexibleDateParser parser = new FlexibleDateParser();
 			Long minJD = parser.inputToJd((String) filters.get("minEntry"), "G", false);
-			if (minJD > Long.MIN_VALUE) constraints.add("minJD >= " + minJD);
+			if (minJD > Long.MIN_VALUE) {
+				constraints.add("minJD >= ?");
+				parameters.add(minJD);
+			}
 		}
 		if (filters.containsKey("maxEntry")) { // parse from input
 			FlexibleDateParser parser = new FlexibleDateParser();
 			Long maxJD = parser.inputToJd((String) filters.get("maxEntry"), "G", true);
-			if (maxJD < Long.MAX_VALUE) constraints.add("maxJD <= " + maxJD);
+			if (maxJD < Long.MAX_VALUE) {
+				constraints.add("maxJD <= ?");
+				parameters.add(maxJD);
+			}
 		}
 
 		// tags
-		String tagSQL = buildTagFilterSQL((String[]) filters.get("tags"), filters.containsKey("withSubTags") && (boolean) filters.get("withSubTags"), false);
+		String tagSQL = buildTagFilterSQL((String[]) filters.get("tags"), filters.containsKey("withSubTags") && (boolean) filters.get("withSubTags"), false, parameters);
 		if (!tagSQL.isEmpty()) constraints.add(tagSQL);
 
 		// sorting
@@ -229,17 +251,18 @@ public class OrientDbNodeRepository extends AbstractCoreOrientDbRepository<INode
 		}
 
 		// let helper do most of the work
-		return super.paginate(page, entriesPerPage, constraints, customOrder);
+		return super.paginate(page, entriesPerPage, constraints, parameters, customOrder, (String) filters.get("cursor"));
 	}
 
 	/**
 	 * create search term for full text search
 	 * @param term term(s) to search for
+	 * @param parameters list the query of the search term is added to
 	 * @return search term part
 	 */
-	private static String createSearchTermFullText(String term) {
+	private static String createSearchTermFullText(String term, List<Object> parameters) {
 		// create query term for lucene full text search
-		StringBuilder sb = new StringBuilder(" [title, alternativeTitles] LUCENE '");
+		StringBuilder sb = new StringBuilder();
 		boolean first = true;
 		for (String termPart : term.toLowerCase().split("\\s+")) {
 			if (termPart.contains(":")) termPart = "\"" + termPart + "\"";
@@ -250,8 +273,8 @@ public class OrientDbNodeRepository extends AbstractCoreOrientDbRepository<INode
 			else sb.append(' ');
 			sb.append(termPart);
 		}
-		sb.append('\'');
+		parameters.add(sb.toString());
 
-		return sb.toString();
+		return " [title, alternativeTitles] LUCENE ?";
 	}
 }
@@ -3,20 +3,19 @@ package org.segrada.service.repository.orientdb;
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
 import org.segrada.model.Period;
 import org.segrada.model.prototype.IPeriod;
 import org.segrada.service.repository.PeriodRepository;
 import org.segrada.service.repository.orientdb.base.AbstractSegradaOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.AbstractLazyLoadedObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -127,8 +126,7 @@ public class OrientDbPeriodRepository extends AbstractSegradaOrientDbRepository<
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select @rid as id from Period where parent = ?" + getDefaultOrder(true));
-		List<ODocument> result = db.command(query).execute(new ORecordId(id));
+		List<ODocument> result = OrientDbStatement.named("Period.findByParent", "select @rid as id from Period where parent = ?" + getDefaultOrder(true)).query(db, new ORecordId(id));
 
 		List<IPeriod> list = new ArrayList<>();
 
@@ -139,6 +137,21 @@ public class OrientDbPeriodRepository extends AbstractSegradaOrientDbRepository<
 		return list;
 	}
 
+	/**
+	 * find periods of a list of parents in a single query
+	 * @param ids of parents
+	 * @return map of parent ids to lists of periods (parents without periods are missing)
+	 */
+	public Map<String, List<IPeriod>> findByParents(Collection<String> ids) {
+		if (ids == null || ids.isEmpty()) return new HashMap<>();
+
+		initDb();
+
+		List<ODocument> result = OrientDbStatement.named("Period.findByParents", "select * from Period where parent IN ?" + getDefaultOrder(true)).query(db, toRecordIds(ids));
+
+		return convertAndGroupByParent(result, "parent", null);
+	}
+
 	/**
 	 * lazy load instance
 	 * @param id of entity
@@ -167,19 +180,26 @@ public class OrientDbPeriodRepository extends AbstractSegradaOrientDbRepository<
 	public List<IPeriod> findWithin(Long jdStart, Long jdEnd) {
 		// build query: -1000000 because Long.MIN_VALUE breaks query
 		String constraints;
+		Object[] parameters;
 		if (jdStart != null && jdEnd != null) {
-			constraints = " WHERE (toJD >= " + jdStart + " AND fromJD <= " + jdEnd + ") OR (fromJD < -1000000 AND toJD >= " + jdStart + ") OR (toJD = " + Long.MAX_VALUE + " AND fromJD <= " + jdEnd + ")";
-		} else if (jdStart != null)
-			constraints = " WHERE (fromJD >= " + jdStart + ") OR (fromJD < -1000000 AND toJD >= " + jdStart + ")";
-		else if (jdEnd != null)
-			constraints = " WHERE (toJD <= " + jdEnd + ") OR (toJD = " + Long.MAX_VALUE + " AND fromJD <= " + jdEnd + ")";
-		else constraints = ""; // no constraints
+			constraints = " WHERE (toJD >= ? AND fromJD <= ?) OR (fromJD < -1000000 AND toJD >= ?) OR (toJD = " + Long.MAX_VALUE + " AND fromJD <= ?)";
+			parameters = new Object[]{jdStart, jdEnd, jdStart, jdEnd};
+		} else if (jdStart != null) {
+			constraints = " WHERE (fromJD >= ?) OR (fromJD < -1000000 AND toJD >= ?)";
+			parameters = new Object[]{jdStart, jdStart};
+		} else if (jdEnd != null) {
+			constraints = " WHERE (toJD <= ?) OR (toJD = " + Long.MAX_VALUE + " AND fromJD <= ?)";
+			parameters = new Object[]{jdEnd, jdEnd};
+		} else { // no constraints
+			constraints = "";
+			parameters = new Object[0];
+		}
 
 		initDb();
 
 		// execute query - maximum of 100 hits (hardcoded for now)
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Period" + constraints + getDefaultOrder(true) + " LIMIT 100");
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Period.findWithin", "select * from Period" + constraints + getDefaultOrder(true) + " LIMIT 100")
+				.query(db, parameters);
 
 		List<IPeriod> list = new ArrayList<>();
 
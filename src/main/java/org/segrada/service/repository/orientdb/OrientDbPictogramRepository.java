@@ -2,13 +2,13 @@ package org.segrada.service.repository.orientdb;
 
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
 import org.apache.lucene.search.TermQuery;
 import org.segrada.model.prototype.IPictogram;
 import org.segrada.service.repository.PictogramRepository;
 import org.segrada.service.repository.orientdb.base.AbstractSegradaOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.util.Sluggify;
 
@@ -46,6 +46,11 @@ public class OrientDbPictogramRepository extends AbstractSegradaOrientDbReposito
 		return "Pictogram";
 	}
 
+	@Override
+	protected boolean isEntityCacheSupported() {
+		return true;
+	}
+
 	@Override
 	public IPictogram convertToEntity(ODocument document) {
 		return convertToPictogram(document);
@@ -73,8 +78,7 @@ public class OrientDbPictogramRepository extends AbstractSegradaOrientDbReposito
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Pictogram where title LIKE ?");
-		List<ODocument> result = db.command(query).execute(title);
+		List<ODocument> result = OrientDbStatement.named("Pictogram.findByTitle", "select * from Pictogram where title LIKE ?").query(db, title);
 
 		// no pic found?
 		if (result.isEmpty()) return null;
@@ -83,6 +87,11 @@ public class OrientDbPictogramRepository extends AbstractSegradaOrientDbReposito
 		return convertToEntity(result.get(0));
 	}
 
+	@Override
+	protected String[] getSuggestionFields() {
+		return new String[]{"title"};
+	}
+
 	@Override
 	public List<IPictogram> findBySearchTerm(String term, int maximum, boolean returnWithoutTerm) {
 		List<IPictogram> hits = new ArrayList<>();
@@ -107,12 +116,10 @@ public class OrientDbPictogramRepository extends AbstractSegradaOrientDbReposito
 			}
 
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Pictogram where title LUCENE ? LIMIT " + maximum);
-			result = db.command(query).execute(sb.toString());
+			result = OrientDbStatement.named("Pictogram.findBySearchTerm", "select * from Pictogram where title LUCENE ? LIMIT ?").query(db, sb.toString(), maximum);
 		} else { // no term, just find top X entries
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Pictogram LIMIT " + maximum);
-			result = db.command(query).execute();
+			result = OrientDbStatement.named("Pictogram.findFirst", "select * from Pictogram LIMIT ?").query(db, maximum);
 		}
 
 		// browse entities and populate list
@@ -5,8 +5,6 @@ import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.OCommandSQL;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import com.tinkerpop.blueprints.impls.orient.OrientEdge;
 import org.segrada.model.Node;
 import org.segrada.model.Relation;
@@ -17,12 +15,12 @@ import org.segrada.model.prototype.IRelation;
 import org.segrada.model.prototype.IRelationType;
 import org.segrada.service.repository.NodeRepository;
 import org.segrada.service.repository.RelationRepository;
-import org.segrada.service.repository.RelationTypeRepository;
 import org.segrada.service.repository.orientdb.base.AbstractCoreOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.LookupCache;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.PaginationInfo;
 import org.segrada.util.FlexibleDateParser;
-import org.segrada.util.OrientStringEscape;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
@@ -67,12 +65,17 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 	public String getModelClassName() {
 		return "Relation";
 	}
+
+	@Override
+	protected Collection<String> getKeysetFields() {
+		return allowedSorts; // all sorts are indexed and never null
+	}
 	
 	@Override
 	public IRelation convertToEntity(ODocument document) {
-		// load relation link
-		ODocument relationLink = getRelationLink(document, true);
-		if (relationLink == null) {
+		// get ids of from/to nodes of relation link
+		String[] endpoints = getRelationLinkEndpoints(document);
+		if (endpoints == null) {
 			// this is an invalid entry: delete if from database
 			document.delete(); // this is not elegant, but we can clean such entries on the fly by doing this
 			return null; // exact error was logged below
@@ -80,15 +83,15 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 
 		Relation relation = new Relation();
 		// get from/to - slim entities, just title and id
-		relation.setFromEntity(getRelatedEntity(relationLink, "out"));
-		relation.setToEntity(getRelatedEntity(relationLink, "in"));
+		relation.setFromEntity(getRelatedEntity(endpoints[0], "out"));
+		relation.setToEntity(getRelatedEntity(endpoints[1], "in"));
 
-		// set relation type
+		// set relation type - shared by many relations, so taken from lookup cache
 		ORecordId relationType = document.field("relationType", ORecordId.class);
 		if (relationType != null) {
-			RelationTypeRepository relationTypeRepository = repositoryFactory.produceRepository(OrientDbRelationTypeRepository.class);
+			OrientDbRelationTypeRepository relationTypeRepository = repositoryFactory.produceRepository(OrientDbRelationTypeRepository.class);
 			if (relationTypeRepository != null)
-				relation.setRelationType(relationTypeRepository.find(relationType.getIdentity().toString()));
+				relation.setRelationType(relationTypeRepository.findCached(relationType.getIdentity().toString()));
 			else logger.error("Could not produce RelationTypeRepository while converting relation.");
 		}
 
@@ -132,43 +135,69 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 	}
 
 	/**
-	 * helper to load nodes relation to document
-	 * @param document relationLink document/link
+	 * helper to get ids of from and to nodes of relation link - taken from lookup cache, since the vertices of an
+	 * edge never change (save creates a new edge)
+	 * @param document of relation
+	 * @return array containing id of from and to node (elements may be null) or null if relation link is invalid
+	 */
+	private @Nullable String[] getRelationLinkEndpoints(ODocument document) {
+		Object relationLinkO = document.field("relationLink");
+		String id = relationLinkO instanceof OIdentifiable ? ((OIdentifiable) relationLinkO).getIdentity().toString() : null;
+
+		LookupCache cache = getLookupCache();
+		if (id != null) {
+			String[] endpoints = cache.get(id, String[].class);
+			if (endpoints != null) return endpoints;
+		}
+
+		long generation = cache.getGeneration();
+		ODocument relationLink = getRelationLink(document, true);
+		if (relationLink == null) return null;
+
+		ORecordId from = relationLink.field("out", ORecordId.class);
+		ORecordId to = relationLink.field("in", ORecordId.class);
+		String[] endpoints = new String[]{from == null ? null : from.toString(), to == null ? null : to.toString()};
+		if (from != null && to != null)
+			cache.put(relationLink.getIdentity().toString(), relationLink.getVersion(), endpoints, generation);
+
+		return endpoints;
+	}
+
+	/**
+	 * helper to get slim node (just title and id) relation points to - taken from lookup cache
+	 * @param id of node
 	 * @param direction "in" or "out"
 	 * @return INode instance or null
 	 */
-	private @Nullable INode getRelatedEntity(ODocument document, String direction) {
-		Object nodeO = document.field(direction, ORecordId.class);
-		if (nodeO == null) {
+	private @Nullable INode getRelatedEntity(@Nullable String id, String direction) {
+		if (id == null) {
 			logger.error("Could not create related entity while converting relation with direction " + direction);
 			return null;
 		}
-		if (nodeO instanceof ORecordId) nodeO = repositoryFactory.getDb().load((ORecordId) nodeO);
-		if (nodeO == null) {
-			logger.error("Invalid record in direction " + direction + ": " + document.toString());
-			return null;
-		}
 
-		//convert
-		ODocument nodeDoc = (ODocument) nodeO;
+		LookupCache cache = getLookupCache();
+		INode cached = cache.get(id, INode.class);
+		if (cached == null) {
+			long generation = cache.getGeneration();
+			ODocument nodeDoc = repositoryFactory.getDb().load(new ORecordId(id));
+			if (nodeDoc == null) {
+				logger.error("Invalid record in direction " + direction + ": " + id);
+				return null;
+			}
 
-		// slim node: just set title and id
+			// slim node: just set title and id
+			cached = new Node();
+			cached.setTitle(nodeDoc.field("title"));
+			cached.setId(nodeDoc.getIdentity().toString());
+			cache.put(id, nodeDoc.getVersion(), cached, generation);
+		}
+
+		// cached instance is shared, so return a copy
 		INode node = new Node();
-		node.setTitle(nodeDoc.field("title"));
-		node.setId(nodeDoc.getIdentity().toString());
+		node.setTitle(cached.getTitle());
+		node.setId(cached.getId());
 
 		return node;
-
-		/*
-		old -not performant
-		String id;
-		if (relationO instanceof OIdentifiable) id = ((ORecordId)relationO).getIdentity().toString();
-		else {
-			logger.error("Invalid class type: " + relationO.getClass().getName());
-			return null;
-		}
-
-		return nodeRepository.find(id);*/
 	}
 
 	@Override
@@ -212,8 +241,7 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Relation where relationLink.in = " + node.getId() + " OR relationLink.out = " + node.getId());
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = findByRelationLinks(node.getId());
 
 		// populate set
 		for (ODocument document : result)
@@ -222,6 +250,32 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 		return list;
 	}
 
+	/**
+	 * find ids of relation links connected to node - taken from node vertex, so Relation can be searched by index
+	 * @param nodeId id of node
+	 * @return list of IsRelation edge ids
+	 */
+	private List<String> findRelationLinkIds(String nodeId) {
+		List<String> ids = new ArrayList<>();
+
+		List<ODocument> result = OrientDbStatement.named("Relation.findRelationLinkIds", "select @rid as id from ( select expand(bothE('IsRelation')) from ? )")
+				.query(db, OrientDbStatement.rid(nodeId));
+		for (ODocument document : result)
+			ids.add(document.field("id", String.class));
+
+		return ids;
+	}
+
+	/**
+	 * find relations linked to node
+	 * @param nodeId id of node
+	 * @return list of relation documents
+	 */
+	private List<ODocument> findByRelationLinks(String nodeId) {
+		return OrientDbStatement.named("Relation.findByRelationLinks", "select * from Relation where relationLink IN ?")
+				.query(db, OrientDbStatement.rids(findRelationLinkIds(nodeId)));
+	}
+
 	@Override
 	public List<IRelation> findByRelationType(IRelationType relationType) {
 		List<IRelation> list = new ArrayList<>();
@@ -232,8 +286,8 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Relation where relationType = " + relationType.getId());
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Relation.findByRelationType", "select * from Relation where relationType = ?")
+				.query(db, OrientDbStatement.rid(relationType.getId()));
 
 		// populate set
 		for (ODocument document : result)
@@ -262,8 +316,8 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 			ODocument relationLink = getRelationLink(document, false);
 			if (relationLink == null) { // no relation yet => create new one
 				// create edge and set it to document
-				List<OIdentifiable> edgeList =
-						repositoryFactory.getDb().command(new OCommandSQL("create edge IsRelation from " + entity.getFromEntity().getId() + " to " + entity.getToEntity().getId())).execute();
+				List<OIdentifiable> edgeList = OrientDbStatement.named("Relation.connect", "create edge IsRelation from ? to ?")
+						.execute(repositoryFactory.getDb(), OrientDbStatement.rid(entity.getFromEntity().getId()), OrientDbStatement.rid(entity.getToEntity().getId()));
 				document.field("relationLink", (ORecordId) edgeList.get(0).getIdentity());
 
 				if (logger.isTraceEnabled())
@@ -281,8 +335,8 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 					// delete old edge and create new one
 					relationLink.delete();
 
-					List<OrientEdge> edgeList =
-							repositoryFactory.getDb().command(new OCommandSQL("create edge IsRelation from " + entity.getFromEntity().getId() + " to " + entity.getToEntity().getId())).execute();
+					List<OrientEdge> edgeList = OrientDbStatement.named("Relation.connect", "create edge IsRelation from ? to ?")
+							.execute(repositoryFactory.getDb(), OrientDbStatement.rid(entity.getFromEntity().getId()), OrientDbStatement.rid(entity.getToEntity().getId()));
 					document.field("relationLink", (ORecordId) edgeList.get(0).getId());
 
 					if (logger.isTraceEnabled())
@@ -307,36 +361,102 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 		return false;
 	}
 
+	@Override
+	public ODocument saveNew(IRelation entity) {
+		// sanity: we need from and to entity to do this!
+		if (entity.getFromEntity() == null || entity.getToEntity() == null)
+			throw new IllegalArgumentException("From and/or to-entity not set in relation");
+
+		initDb();
+
+		ODocument document = reallyConvertToDocument(processBeforeSaving(entity));
+
+		// create edge of new relation - edges are not part of the importer's transactions
+		List<OIdentifiable> edgeList = OrientDbStatement.named("Relation.connect", "create edge IsRelation from ? to ?")
+				.execute(repositoryFactory.getDb(), OrientDbStatement.rid(entity.getFromEntity().getId()), OrientDbStatement.rid(entity.getToEntity().getId()));
+		document.field("relationLink", (ORecordId) edgeList.get(0).getIdentity());
+
+		return db.save(document);
+	}
+
+	@Override
+	public List<String> findIdsByRelation(INode node) {
+		List<String> ids = new ArrayList<>();
+
+		// no NPEs
+		if (node == null || node.getId() == null) return ids;
+
+		initDb();
+
+		// ids only, relations are not loaded
+		List<ODocument> result = OrientDbStatement.named("Relation.findIdsByRelationLinks", "select @rid as id from Relation where relationLink IN ?")
+				.query(db, OrientDbStatement.rids(findRelationLinkIds(node.getId())));
+		for (ODocument document : result)
+			ids.add(document.field("id", String.class));
+
+		return ids;
+	}
+
 	@Override
 	public void deleteByRelation(INode node) {
-		// delete source reference pointing to relation node
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Relation where relationLink.in = " + node.getId() + " OR relationLink.out = " + node.getId());
-		List<ODocument> result = db.command(query).execute();
+		if (node == null || node.getId() == null) return;
 
-		// remove relation and link
-		for (ODocument document : result) {
-			ODocument relationLink = getRelationLink(document, true);
-			if (relationLink != null && db.load(relationLink.getIdentity()) != null) relationLink.delete();
+		initDb();
 
-			document.delete();
-		}
+		// link edges are edges of the node
+		deleteRelations(OrientDbStatement.rids(findIdsByRelation(node)), OrientDbStatement.rids(findRelationLinkIds(node.getId())));
 	}
 
 	@Override
 	public void deleteByRelationType(IRelationType relationType) {
-		// delete source reference pointing to relation type
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Relation where relationType = " + relationType.getId());
-		List<ODocument> result = db.command(query).execute();
+		if (relationType == null || relationType.getId() == null) return;
+
+		initDb();
 
-		// remove relation and link
+		List<ODocument> result = OrientDbStatement.named("Relation.findIdsByRelationType", "select @rid as id, relationLink as link from Relation where relationType = ?")
+				.query(db, OrientDbStatement.rid(relationType.getId()));
+
+		List<ORecordId> ids = new ArrayList<>(result.size());
+		List<ORecordId> linkIds = new ArrayList<>(result.size());
 		for (ODocument document : result) {
-			ODocument relationLink = getRelationLink(document, true);
-			if (relationLink != null && db.load(relationLink.getIdentity()) != null) relationLink.delete();
+			ids.add(OrientDbStatement.rid(document.field("id", String.class)));
+			OIdentifiable link = document.field("link", OIdentifiable.class);
+			if (link != null) linkIds.add((ORecordId) link.getIdentity());
+		}
+
+		deleteRelations(ids, linkIds);
+	}
+
+	/**
+	 * delete relations in one transaction: relation vertices with their edges and dependent records, and the link edges
+	 * between the related nodes - relations are not loaded
+	 * @param ids of relation vertices
+	 * @param linkIds of IsRelation edges
+	 */
+	private void deleteRelations(List<ORecordId> ids, List<ORecordId> linkIds) {
+		if (ids.isEmpty() && linkIds.isEmpty()) return;
 
-			document.delete();
+		db.begin();
+		try {
+			if (!linkIds.isEmpty())
+				OrientDbStatement.named("Relation.deleteLinks", "delete edge IsRelation where @rid IN ?").execute(db, linkIds);
+			if (!ids.isEmpty()) {
+				deleteDependentRecords(ids);
+				OrientDbStatement.named("delete.vertices", "delete vertex from (select from ?)").execute(db, ids);
+			}
+			db.commit();
+		} catch (RuntimeException e) {
+			db.rollback();
+			throw e;
 		}
+
+		for (ORecordId id : ids)
+			invalidateCaches(id.toString());
+
+		if (logger.isInfoEnabled())
+			logger.info("Deleted " + ids.size() + " relations");
 	}
-	
+
 	@Override
 	public PaginationInfo<IRelation> paginate(int page, int entriesPerPage, Map<String, Object> filters) {
 		// avoid NPEs
@@ -344,6 +464,7 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 
 		// aggregate filters
 		List<String> constraints = new ArrayList<>();
+		List<Object> parameters = new ArrayList<>();
 		// search term
 		if (filters.containsKey("search")) {
 			//constraints.add(createSearchTermFullText((String) filters.get("search")));
@@ -364,17 +485,23 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 		if (filters.containsKey("minEntry")) { // parse from input
 			FlexibleDateParser parser = new FlexibleDateParser();
 			Long minJD = parser.inputToJd((String) filters.get("minEntry"), "G", false);
-			if (minJD > Long.MIN_VALUE) constraints.add("minJD >= " + minJD);
+			if (minJD > Long.MIN_VALUE) {
+				constraints.add("minJD >= ?");
+				parameters.add(minJD);
+			}
 		}
 		if (filters.containsKey("maxEntry")) { // parse from input
 			FlexibleDateParser parser = new FlexibleDateParser();
 			Long maxJD = parser.inputToJd((String) filters.get("maxEntry"), "G", true);
-			if (maxJD < Long.MAX_VALUE) constraints.add("maxJD <= " + maxJD);
+			if (maxJD < Long.MAX_VALUE) {
+				constraints.add("maxJD <= ?");
+				parameters.add(maxJD);
+			}
 		}
 
 
 		// tags
-		String tagSQL = buildTagFilterSQL((String[]) filters.get("tags"), filters.containsKey("withSubTags") && (boolean) filters.get("withSubTags"), false);
+		String tagSQL = buildTagFilterSQL((String[]) filters.get("tags"), filters.containsKey("withSubTags") && (boolean) filters.get("withSubTags"), false, parameters);
 		if (!tagSQL.isEmpty()) constraints.add(tagSQL);
 
 		// location type uid
@@ -382,7 +509,8 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 			// convert to id
 			String id = AbstractSegradaEntity.convertUidToOrientId((String) filters.get("relationTypeUid"));
 			if (id != null) {
-				constraints.add("relationType = " + id);
+				constraints.add("relationType = ?");
+				parameters.add(OrientDbStatement.rid(id));
 			}
 			//TODO: test
 		}
@@ -391,7 +519,9 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 			// convert to id
 			String id = AbstractSegradaEntity.convertUidToOrientId((String) filters.get("nodeUid"));
 			if (id != null) {
-				constraints.add("(relationLink.in = " + id + " OR relationLink.out = " + id + ")");
+				initDb();
+				constraints.add("relationLink IN ?");
+				parameters.add(OrientDbStatement.rids(findRelationLinkIds(id)));
 			}
 			//TODO: test
 		}
@@ -407,6 +537,6 @@ public class OrientDbRelationRepository extends AbstractCoreOrientDbRepository<I
 		}
 
 		// let helper do most of the work
-		return super.paginate(page, entriesPerPage, constraints, customOrder);
+		return super.paginate(page, entriesPerPage, constraints, parameters, customOrder, (String) filters.get("cursor"));
 	}
 }
@@ -4,7 +4,6 @@ import com.google.inject.Inject;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
 import org.apache.lucene.search.TermQuery;
@@ -16,13 +15,17 @@ import org.segrada.service.repository.RelationRepository;
 import org.segrada.service.repository.RelationTypeRepository;
 import org.segrada.service.repository.TagRepository;
 import org.segrada.service.repository.orientdb.base.AbstractColoredOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.LookupCache;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
+import org.segrada.service.repository.orientdb.base.PrefetchAssociation;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.PaginationInfo;
-import org.segrada.util.OrientStringEscape;
 import org.segrada.util.Sluggify;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.util.*;
 
 /**
@@ -84,6 +87,40 @@ public class OrientDbRelationTypeRepository extends AbstractColoredOrientDbRepos
 		return relationType;
 	}
 
+	@Override
+	protected Set<PrefetchAssociation> getPrefetchAssociations() {
+		return EnumSet.of(PrefetchAssociation.CREATOR_MODIFIER, PrefetchAssociation.TAGS);
+	}
+
+	/**
+	 * find relation type using the lookup cache shared by all requests (used when converting relations) - the
+	 * returned instance is shared, so it must not be changed; creator and modifier only contain ids
+	 * @param id of relation type
+	 * @return relation type or null
+	 */
+	public @Nullable IRelationType findCached(String id) {
+		LookupCache cache = getLookupCache();
+		IRelationType relationType = cache.get(id, IRelationType.class);
+		if (relationType != null) return relationType;
+
+		long generation = cache.getGeneration();
+		try {
+			initDb();
+
+			ODocument document = db.load(new ORecordId(id));
+			if (document == null || !document.getClassName().equals(getModelClassName())) return null;
+
+			// convert without lazy loading proxies bound to this request
+			relationType = convertToDetachedEntity(document);
+
+			cache.put(id, document.getVersion(), relationType, generation);
+			return relationType;
+		} catch (Exception e) {
+			logger.error("Exception thrown while fetching relation type " + id, e);
+		}
+		return null;
+	}
+
 	/**
 	 * helper function to properly aggregate tag data for to and from tags
 	 * @param document source
@@ -201,12 +238,13 @@ public class OrientDbRelationTypeRepository extends AbstractColoredOrientDbRepos
 		List<ODocument> result;
 		if (term != null && !term.isEmpty()) {
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from RelationType where " + createSearchTermFullText(term) + " LIMIT " + maximum);
-			result = db.command(query).execute();
+			List<Object> parameters = new ArrayList<>(2);
+			String sql = "select * from RelationType where " + createSearchTermFullText(term, parameters) + " LIMIT ?";
+			parameters.add(maximum);
+			result = OrientDbStatement.named("RelationType.findBySearchTerm", sql).query(db, parameters.toArray());
 		} else { // no term, just find top X entries
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from RelationType " + getDefaultOrder(true) + " LIMIT " + maximum);
-			result = db.command(query).execute();
+			result = OrientDbStatement.named("RelationType.findFirst", "select * from RelationType " + getDefaultOrder(true) + " LIMIT ?").query(db, maximum);
 		}
 
 		// browse entities
@@ -224,22 +262,16 @@ public class OrientDbRelationTypeRepository extends AbstractColoredOrientDbRepos
 
 		// aggregate filters
 		List<String> constraints = new ArrayList<>();
+		List<Object> parameters = new ArrayList<>();
 		// search term
 		if (filters.get("search") != null) {
-			constraints.add(createSearchTermFullText((String) filters.get("search")));
+			constraints.add(createSearchTermFullText((String) filters.get("search"), parameters));
 		}
 
 		// tags
 		if (filters.get("tags") != null) {
-			StringBuilder sb = new StringBuilder(" in('IsTagOf').title IN [ ");
-			boolean first = true;
-			for (String tag : (String[]) filters.get("tags")) {
-				if (first) first = false;
-				else sb.append(',');
-				sb.append('\'').append(OrientStringEscape.escapeOrientSql(tag)).append('\'');
-			}
-
-			constraints.add(sb.append("]").toString());
+			constraints.add(" in('IsTagOf').title IN ?");
+			parameters.add(Arrays.asList((String[]) filters.get("tags")));
 		}
 
 		// sorting
@@ -253,17 +285,18 @@ public class OrientDbRelationTypeRepository extends AbstractColoredOrientDbRepos
 		}
 
 		// let helper do most of the work
-		return super.paginate(page, entriesPerPage, constraints, customOrder);
+		return super.paginate(page, entriesPerPage, constraints, parameters, customOrder, null);
 	}
 
 	/**
 	 * create search term for full text search
 	 * @param term term(s) to search for
+	 * @param parameters list the query of the search term is added to
 	 * @return search term part
 	 */
-	private static String createSearchTermFullText(String term) {
+	private static String createSearchTermFullText(String term, List<Object> parameters) {
 		// create query term for lucene full text search
-		StringBuilder sb = new StringBuilder(" [fromTitle, toTitle] LUCENE '");
+		StringBuilder sb = new StringBuilder();
 		boolean first = true;
 		for (String termPart : term.toLowerCase().split("\\s+")) {
 			if (termPart.contains(":")) termPart = "\"" + termPart + "\"";
@@ -274,9 +307,9 @@ public class OrientDbRelationTypeRepository extends AbstractColoredOrientDbRepos
 			else sb.append(' ');
 			sb.append(termPart);
 		}
-		sb.append('\'');
+		parameters.add(sb.toString());
 
-		return sb.toString();
+		return " [fromTitle, toTitle] LUCENE ?";
 	}
 
 	@Override
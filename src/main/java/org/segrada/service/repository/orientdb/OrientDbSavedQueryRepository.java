@@ -2,15 +2,14 @@ package org.segrada.service.repository.orientdb;
 
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.segrada.model.SavedQuery;
 import org.segrada.model.prototype.ISavedQuery;
 import org.segrada.model.prototype.IUser;
 import org.segrada.service.repository.SavedQueryRepository;
 import org.segrada.service.repository.orientdb.base.AbstractSegradaOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.PaginationInfo;
-import org.segrada.util.OrientStringEscape;
 import org.segrada.util.Sluggify;
 
 import javax.annotation.Nullable;
@@ -131,9 +130,19 @@ public class OrientDbSavedQueryRepository extends AbstractSegradaOrientDbReposit
 
 		// aggregate filters
 		List<String> constraints = new ArrayList<>();
-		if (user != null && user.getId() != null) constraints.add("user = " + user.getId());
-		if (type != null) constraints.add("type = '" + OrientStringEscape.escapeOrientSql(type) + "'");
-		if (title != null) constraints.add("title LIKE '" + OrientStringEscape.escapeOrientSql(title) + "%'");
+		List<Object> parameters = new ArrayList<>();
+		if (user != null && user.getId() != null) {
+			constraints.add("user = ?");
+			parameters.add(OrientDbStatement.rid(user.getId()));
+		}
+		if (type != null) {
+			constraints.add("type = ?");
+			parameters.add(type);
+		}
+		if (title != null) {
+			constraints.add("title LIKE ?");
+			parameters.add(title + "%");
+		}
 
 		// build SQL query
 		String sql = "";
@@ -144,8 +153,8 @@ public class OrientDbSavedQueryRepository extends AbstractSegradaOrientDbReposit
 		if (!sql.isEmpty()) sql = " WHERE " + sql;
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from SavedQuery" + sql + getDefaultOrder(true));
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("SavedQuery.findAllBy", "select * from SavedQuery" + sql + getDefaultOrder(true))
+				.query(db, parameters.toArray());
 
 		for (ODocument doc : result) {
 			list.add(convertToEntity(doc));
@@ -1,23 +1,25 @@
 package org.segrada.service.repository.orientdb;
 
 import com.google.inject.Inject;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.segrada.model.SourceReference;
+import org.segrada.model.prototype.ISource;
 import org.segrada.model.prototype.ISourceReference;
 import org.segrada.model.prototype.SegradaAnnotatedEntity;
 import org.segrada.service.repository.SourceReferenceRepository;
 import org.segrada.service.repository.SourceRepository;
 import org.segrada.service.repository.orientdb.base.AbstractOrientDbRepository;
 import org.segrada.service.repository.orientdb.base.AbstractSegradaOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
+import org.segrada.service.repository.orientdb.base.PrefetchAssociation;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.PaginationInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -39,6 +41,12 @@ import java.util.List;
 public class OrientDbSourceReferenceRepository extends AbstractSegradaOrientDbRepository<ISourceReference> implements SourceReferenceRepository {
 	private static final Logger logger = LoggerFactory.getLogger(OrientDbSourceReferenceRepository.class);
 
+	/**
+	 * sources and references already converted by findByReferences (null otherwise)
+	 */
+	private Map<String, ISource> prefetchedSources = null;
+	private Map<String, SegradaAnnotatedEntity> prefetchedReferences = null;
+
 	/**
 	 * Constructor
 	 */
@@ -58,14 +66,19 @@ public class OrientDbSourceReferenceRepository extends AbstractSegradaOrientDbRe
 
 		// set from/to
 		ORecordId source = document.field("source", ORecordId.class);
-		if (source != null) {
+		if (source != null && prefetchedSources != null && prefetchedSources.containsKey(source.getIdentity().toString())) {
+			sourceReference.setSource(prefetchedSources.get(source.getIdentity().toString()));
+		} else if (source != null) {
 			SourceRepository sourceRepository = repositoryFactory.produceRepository(OrientDbSourceRepository.class);
 			if (sourceRepository != null)
 				sourceReference.setSource(sourceRepository.find(source.getIdentity().toString()));
 			else logger.warn("Could not produce class OrientDbSourceRepository while converting to entity.");
 		}
 		Object referenceField = document.field("reference");
-		if (referenceField != null) {
+		if (referenceField instanceof OIdentifiable && prefetchedReferences != null
+				&& prefetchedReferences.containsKey(((OIdentifiable) referenceField).getIdentity().toString())) {
+			sourceReference.setReference(prefetchedReferences.get(((OIdentifiable) referenceField).getIdentity().toString()));
+		} else if (referenceField != null) {
 			ODocument reference = null;
 			if (referenceField instanceof ODocument) reference = (ODocument) referenceField;
 			else if (referenceField instanceof ORecordId) {
@@ -117,10 +130,61 @@ public class OrientDbSourceReferenceRepository extends AbstractSegradaOrientDbRe
 		return findByX(id, "reference", page, entriesPerPage, referencedClass);
 	}
 
+	/**
+	 * find source references of a list of entities in a single query (plus one for their sources)
+	 * @param references list of entities referenced
+	 * @param entriesPerReference maximum number of source references per entity
+	 * @return map of entity ids to lists of source references ordered by reference text (entities without source
+	 * references are missing)
+	 */
+	public Map<String, List<ISourceReference>> findByReferences(Collection<? extends SegradaAnnotatedEntity> references, int entriesPerReference) {
+		Map<String, SegradaAnnotatedEntity> referenceMap = new HashMap<>();
+		for (SegradaAnnotatedEntity reference : references)
+			if (reference.getId() != null) referenceMap.put(reference.getId(), reference);
+		if (referenceMap.isEmpty()) return new HashMap<>();
+
+		initDb();
+
+		List<ODocument> result = OrientDbStatement.named("SourceReference.findByReferences", "select * from SourceReference where reference IN ?" + getDefaultOrder())
+				.query(db, toRecordIds(referenceMap.keySet()));
+		if (result.isEmpty()) return new HashMap<>();
+
+		// fetch sources at once
+		Map<String, ISource> sourceMap = new HashMap<>();
+		Set<String> sourceIds = new HashSet<>();
+		for (ODocument document : result) {
+			ORecordId source = document.field("source", ORecordId.class);
+			if (source != null) sourceIds.add(source.getIdentity().toString());
+		}
+		OrientDbSourceRepository sourceRepository = repositoryFactory.produceRepository(OrientDbSourceRepository.class);
+		if (sourceRepository != null && !sourceIds.isEmpty()) {
+			List<ODocument> sources = OrientDbStatement.named("Source.findByIds", "select * from Source where @rid IN ?").query(db, toRecordIds(sourceIds));
+			for (ISource source : sourceRepository.convertToEntities(sources, PrefetchAssociation.NON_RECURSIVE))
+				sourceMap.put(source.getId(), source);
+		}
+
+		Map<String, List<ISourceReference>> map;
+		prefetchedSources = sourceMap;
+		prefetchedReferences = referenceMap;
+		try {
+			map = convertAndGroupByParent(result, "reference", null);
+		} finally {
+			prefetchedSources = null;
+			prefetchedReferences = null;
+		}
+
+		// limit number of entries per entity
+		for (Map.Entry<String, List<ISourceReference>> entry : map.entrySet())
+			if (entry.getValue().size() > entriesPerReference)
+				entry.setValue(new ArrayList<>(entry.getValue().subList(0, entriesPerReference)));
+
+		return map;
+	}
+
 	/**
 	 * helper function for both methods above
 	 * @param id of entity
-	 * @param direction either "in" or "out"
+	 * @param direction either "source" or "reference"
 	 * @param referencedClass referenced class to limit search to (or null)
 	 * @return list of source references found
 	 */
@@ -136,17 +200,21 @@ public class OrientDbSourceReferenceRepository extends AbstractSegradaOrientDbRe
 				list // list of entities
 		);
 
-		// limit to certain class?
-		String limitToClass;
+		// limit to certain class? - class name is bound like the id
+		List<Object> parameters = new ArrayList<>(4);
+		parameters.add(new ORecordId(id));
+		String constraint = " where " + direction + " = ?";
 		if (referencedClass != null && !referencedClass.isEmpty()) {
-			limitToClass = " AND reference.@class = '" + referencedClass + "'";
-		} else limitToClass = "";
+			constraint += " AND reference.@class = ?";
+			parameters.add(referencedClass);
+		}
+		String name = "SourceReference.findBy" + Character.toUpperCase(direction.charAt(0)) + direction.substring(1);
 
 		initDb();
 
 		// first, do a count of the entities
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select count(*) from SourceReference where " + direction + " = ?" + limitToClass);
-		List<ODocument> result = db.command(query).execute(new ORecordId(id));
+		List<ODocument> result = OrientDbStatement.named(name, "select count(*) from SourceReference" + constraint)
+				.query(db, parameters.toArray());
 		int total = result.get(0).field("count", Integer.class);
 
 		if (total == 0)
@@ -166,14 +234,13 @@ public class OrientDbSourceReferenceRepository extends AbstractSegradaOrientDbRe
 		if (page < 1) page = 1;
 		else if (page > pages) page = pages;
 
-		// prepare skip/limit strings
-		int skip = (page-1) * entriesPerPage;
-		String skipLimit = (skip>0?" SKIP ".concat(Integer.toString(skip)).concat(" "):"")
-				.concat(" LIMIT ").concat(Integer.toString(entriesPerPage));
+		// skip and limit are bound, too
+		parameters.add((page-1) * entriesPerPage);
+		parameters.add(entriesPerPage);
 
 		// create query itself and fetch entities
-		query = new OSQLSynchQuery<>("select * from SourceReference where " + direction + " = ?" + limitToClass + getDefaultOrder() + skipLimit);
-		result = db.command(query).execute(new ORecordId(id));
+		result = OrientDbStatement.named(name, "select * from SourceReference" + constraint + getDefaultOrder() + " SKIP ? LIMIT ?")
+				.query(db, parameters.toArray());
 
 		for (ODocument document : result) {
 			list.add(convertToEntity(document));
@@ -1,9 +1,8 @@
 package org.segrada.service.repository.orientdb;
 
 import com.google.inject.Inject;
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.OCommandSQL;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
 import org.apache.lucene.search.TermQuery;
@@ -11,9 +10,9 @@ import org.segrada.model.Source;
 import org.segrada.model.prototype.ISource;
 import org.segrada.service.repository.SourceRepository;
 import org.segrada.service.repository.orientdb.base.AbstractAnnotatedOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.PaginationInfo;
-import org.segrada.util.OrientStringEscape;
 import org.segrada.util.Sluggify;
 
 import java.util.*;
@@ -54,6 +53,11 @@ public class OrientDbSourceRepository extends AbstractAnnotatedOrientDbRepositor
 		return "Source";
 	}
 
+	@Override
+	protected boolean isEntityCacheSupported() {
+		return true;
+	}
+
 	@Override
 	public ISource convertToEntity(ODocument document) {
 		Source source = new Source();
@@ -107,6 +111,11 @@ public class OrientDbSourceRepository extends AbstractAnnotatedOrientDbRepositor
 		return (addOrderBy?" ORDER BY":"").concat(" shortTitleAsc");
 	}
 
+	@Override
+	protected Collection<String> getKeysetFields() {
+		return Collections.singletonList("shortTitleasc");
+	}
+
 	@Override
 	public ISource findByRef(String ref) {
 		if (ref == null || "".equals(ref)) return null;
@@ -114,8 +123,7 @@ public class OrientDbSourceRepository extends AbstractAnnotatedOrientDbRepositor
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Source where shortRef = ?");
-		List<ODocument> result = db.command(query).execute(ref);
+		List<ODocument> result = OrientDbStatement.named("Source.findByRef", "select * from Source where shortRef = ?").query(db, ref);
 
 		// no pic found?
 		if (result.isEmpty()) return null;
@@ -131,8 +139,8 @@ public class OrientDbSourceRepository extends AbstractAnnotatedOrientDbRepositor
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Source where longTitle LIKE ? OR shortTitle LIKE ?" + getDefaultOrder(true));
-		List<ODocument> result = db.command(query).execute(title, title);
+		List<ODocument> result = OrientDbStatement.named("Source.findByTitle", "select * from Source where longTitle LIKE ? OR shortTitle LIKE ?" + getDefaultOrder(true))
+				.query(db, title, title);
 
 		List<ISource> list = new ArrayList<>();
 
@@ -144,16 +152,16 @@ public class OrientDbSourceRepository extends AbstractAnnotatedOrientDbRepositor
 	}
 
 	@Override
-	public boolean delete(ISource entity) {
-		if (entity == null) return true;
+	protected void deleteDependentRecords(List<ORecordId> ids) {
+		super.deleteDependentRecords(ids);
 
-		if (super.delete(entity)) {
-			// delete source references pointing to me, too
-			repositoryFactory.getDb().command(new OCommandSQL("delete from SourceReference where source = " + entity.getId())).execute();
+		// delete source references pointing to me, too
+		OrientDbStatement.named("SourceReference.deleteBySources", "delete from SourceReference where source IN ?").execute(db, ids);
+	}
 
-			return true;
-		}
-		return false;
+	@Override
+	protected String[] getSuggestionFields() {
+		return new String[]{"longTitle", "shortTitle", "shortRef"};
 	}
 
 	@Override
@@ -169,12 +177,13 @@ public class OrientDbSourceRepository extends AbstractAnnotatedOrientDbRepositor
 		List<ODocument> result;
 		if (term != null && !term.isEmpty()) {
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Source where " + createSearchTermFullText(term) + " LIMIT " + maximum);
-			result = db.command(query).execute();
+			List<Object> parameters = new ArrayList<>(2);
+			String sql = "select * from Source where " + createSearchTermFullText(term, parameters) + " LIMIT ?";
+			parameters.add(maximum);
+			result = OrientDbStatement.named("Source.findBySearchTerm", sql).query(db, parameters.toArray());
 		} else { // no term, just find top X entries
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Source " + getDefaultOrder(true) + " LIMIT " + maximum);
-			result = db.command(query).execute();
+			result = OrientDbStatement.named("Source.findFirst", "select * from Source " + getDefaultOrder(true) + " LIMIT ?").query(db, maximum);
 		}
 
 		// browse entities
@@ -192,16 +201,18 @@ public class OrientDbSourceRepository extends AbstractAnnotatedOrientDbRepositor
 
 		// aggregate filters
 		List<String> constraints = new ArrayList<>();
+		List<Object> parameters = new ArrayList<>();
 		// search term
 		if (filters.containsKey("search")) {
-			constraints.add(createSearchTermFullText((String) filters.get("search")));
+			constraints.add(createSearchTermFullText((String) filters.get("search"), parameters));
 		}
 		if (filters.containsKey("shortRef")) {
-			constraints.add("shortRef LIKE '%" + OrientStringEscape.escapeOrientSql((String) filters.get("shortRef")) + "%'");
+			constraints.add("shortRef LIKE ?");
+			parameters.add("%" + filters.get("shortRef") + "%");
 		}
 
 		// tags
-		String tagSQL = buildTagFilterSQL((String[]) filters.get("tags"), filters.containsKey("withSubTags") && (boolean) filters.get("withSubTags"), false);
+		String tagSQL = buildTagFilterSQL((String[]) filters.get("tags"), filters.containsKey("withSubTags") && (boolean) filters.get("withSubTags"), false, parameters);
 		if (!tagSQL.isEmpty()) constraints.add(tagSQL);
 
 		// sorting
@@ -215,16 +226,17 @@ public class OrientDbSourceRepository extends AbstractAnnotatedOrientDbRepositor
 		}
 
 		// let helper do most of the work
-		return super.paginate(page, entriesPerPage, constraints, customOrder);
+		return super.paginate(page, entriesPerPage, constraints, parameters, customOrder, (String) filters.get("cursor"));
 	}
 
 	/**
 	 * create search term for full text search
 	 * @param term term(s) to search for
+	 * @param parameters list the query of the search term is added to
 	 * @return search term part
 	 */
-	private static String createSearchTermFullText(String term) {
-		StringBuilder sb = new StringBuilder(" [longTitle,shortRef,shortTitle] LUCENE '");
+	private static String createSearchTermFullText(String term, List<Object> parameters) {
+		StringBuilder sb = new StringBuilder();
 		boolean first = true;
 		for (String termPart : term.toLowerCase().split("\\s+")) {
 			if (termPart.contains(":")) termPart = "\"" + termPart + "\"";
@@ -235,8 +247,8 @@ public class OrientDbSourceRepository extends AbstractAnnotatedOrientDbRepositor
 			else sb.append(' ');
 			sb.append(termPart);
 		}
-		sb.append('\'');
+		parameters.add(sb.toString());
 
-		return sb.toString();
+		return " [longTitle,shortRef,shortTitle] LUCENE ?";
 	}
 }
@@ -2,9 +2,8 @@ package org.segrada.service.repository.orientdb;
 
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.OCommandSQL;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
 import org.apache.lucene.search.TermQuery;
@@ -14,16 +13,20 @@ import org.segrada.model.prototype.SegradaTaggable;
 import org.segrada.service.repository.TagRepository;
 import org.segrada.service.repository.orientdb.base.AbstractOrientDbRepository;
 import org.segrada.service.repository.orientdb.base.AbstractSegradaOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.LookupCache;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
+import org.segrada.service.repository.orientdb.base.PrefetchAssociation;
 import org.segrada.service.repository.orientdb.exception.CircularConnectionException;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.PaginationInfo;
-import org.segrada.util.OrientStringEscape;
+import org.segrada.service.util.TagHierarchy;
 import org.segrada.util.Sluggify;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -45,6 +48,11 @@ import java.util.*;
 public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITag> implements TagRepository {
 	private static final Logger logger = LoggerFactory.getLogger(OrientDbTagRepository.class);
 
+	/**
+	 * tag hierarchies by database url - shared by all repository instances of the process
+	 */
+	private static final Map<String, TagHierarchy> tagHierarchies = new ConcurrentHashMap<>();
+
 	/**
 	 * Constructor
 	 */
@@ -76,6 +84,11 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		return tag;
 	}
 
+	@Override
+	protected Set<PrefetchAssociation> getPrefetchAssociations() {
+		return EnumSet.of(PrefetchAssociation.CREATOR_MODIFIER, PrefetchAssociation.TAGS);
+	}
+
 	@Override
 	public ODocument convertToDocument(ITag entity) {
 		ODocument document = createOrLoadDocument(entity);
@@ -94,6 +107,9 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 	protected ITag processAfterSaving(ODocument updated, ITag entity) {
 		entity = super.processAfterSaving(updated, entity);
 
+		// add new tags to hierarchy before connecting them
+		tagHierarchy().addTag(entity.getId());
+
 		// connect tags
 		updateEntityTags(entity);
 		// connect child tags, if needed
@@ -102,6 +118,77 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		return entity;
 	}
 
+	@Override
+	public boolean delete(ITag entity) {
+		if (super.delete(entity)) {
+			tagHierarchy().removeTag(entity.getId());
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	protected void invalidateCaches(String id) {
+		super.invalidateCaches(id);
+		// tag titles are part of cached entities like relation types
+		getLookupCache().invalidateAll();
+		LookupCache.invalidateModelCaches(db.getURL(), null);
+	}
+
+	/**
+	 * @return tag hierarchy of database without checking it
+	 */
+	private TagHierarchy tagHierarchy() {
+		initDb();
+
+		return tagHierarchies.computeIfAbsent(db.getURL(), url -> new TagHierarchy());
+	}
+
+	/**
+	 * get in-memory tag hierarchy of database - loaded on first call and reloaded if the number of tags does not match
+	 * the database any more (e.g. after changes made outside of this repository)
+	 * @return tag hierarchy
+	 */
+	public TagHierarchy getTagHierarchy() {
+		TagHierarchy hierarchy = tagHierarchy();
+
+		if (hierarchy.size() != db.countClass(getModelClassName()))
+			rebuildTagHierarchy(hierarchy);
+
+		return hierarchy;
+	}
+
+	/**
+	 * load tag hierarchy from database - called on startup
+	 */
+	public void rebuildTagHierarchy() {
+		rebuildTagHierarchy(tagHierarchy());
+	}
+
+	/**
+	 * load tag hierarchy from database
+	 * @param hierarchy to rebuild
+	 */
+	private void rebuildTagHierarchy(TagHierarchy hierarchy) {
+		long start = System.currentTimeMillis();
+
+		List<String> tagIds = new ArrayList<>();
+		List<ODocument> result = OrientDbStatement.named("Tag.findAllIds", "select @rid as id from Tag").query(db);
+		for (ODocument document : result)
+			tagIds.add(document.field("id", String.class));
+
+		List<String[]> connections = new ArrayList<>();
+		result = OrientDbStatement.named("Tag.findAllConnections",
+				"select out.@rid as parent, in.@rid as child from IsTagOf where out.@class = 'Tag' AND in.@class = 'Tag'").query(db);
+		for (ODocument document : result)
+			connections.add(new String[]{document.field("parent", String.class), document.field("child", String.class)});
+
+		hierarchy.rebuild(tagIds, connections);
+
+		if (logger.isInfoEnabled())
+			logger.info("Loaded tag hierarchy with " + tagIds.size() + " tags and " + connections.size() + " connections in " + (System.currentTimeMillis() - start) + "ms");
+	}
+
 	/**
 	 * Connect child tags
 	 * @param entity to update
@@ -147,8 +234,8 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Tag where title" + (useSlug?"asc":"") + " LIKE ?");
-		List<ODocument> result = db.command(query).execute(title);
+		List<ODocument> result = OrientDbStatement.named("Tag.findByTitle", "select * from Tag where title" + (useSlug?"asc":"") + " LIKE ?")
+				.query(db, title);
 
 		// no entry found?
 		if (result.isEmpty()) return null;
@@ -157,6 +244,11 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		return convertToEntity(result.get(0));
 	}
 
+	@Override
+	protected String[] getSuggestionFields() {
+		return new String[]{"title"};
+	}
+
 	@Override
 	public List<ITag> findBySearchTerm(String term, int maximum, boolean returnWithoutTerm) {
 		List<ITag> hits = new ArrayList<>();
@@ -181,12 +273,10 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 			}
 
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Tag where title LUCENE ? LIMIT " + maximum);
-			result = db.command(query).execute(sb.toString());
+			result = OrientDbStatement.named("Tag.findBySearchTerm", "select * from Tag where title LUCENE ? LIMIT ?").query(db, sb.toString(), maximum);
 		} else { // no term, just find top X entries
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Tag " + getDefaultOrder(true) + " LIMIT " + maximum);
-			result = db.command(query).execute();
+			result = OrientDbStatement.named("Tag.findFirst", "select * from Tag " + getDefaultOrder(true) + " LIMIT ?").query(db, maximum);
 		}
 
 		// browse entities
@@ -259,6 +349,18 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 	 * @return list of documents
 	 */
 	protected List<ODocument> findTagDocumentsByCriteria(String field, String[] searchCriteria, boolean onlyNonExistent) {
+		return findOrCreateTagDocuments(field, searchCriteria, onlyNonExistent, !onlyNonExistent);
+	}
+
+	/**
+	 * find tag documents by field using a single query, optionally creating missing tags
+	 * @param field field like title or id
+	 * @param searchCriteria titles or ids list
+	 * @param create if true, missing tags are created (only sensible for titles)
+	 * @param returnExisting if true, existing documents are returned, too
+	 * @return list of documents in order of search criteria
+	 */
+	private List<ODocument> findOrCreateTagDocuments(String field, String[] searchCriteria, boolean create, boolean returnExisting) {
 		initDb();
 
 		List<ODocument> list = new ArrayList<>();
@@ -266,29 +368,68 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		// avoid NPEs
 		if (searchCriteria == null || searchCriteria.length == 0) return list;
 
-		// find each tag
+		boolean byId = field.equalsIgnoreCase("@rid");
+
+		// normalize criteria, keeping the order of the list - titles are case insensitive (see collation of Tag.title)
+		Map<String, String> criteria = new LinkedHashMap<>();
+		List<Object> parameters = new ArrayList<>();
 		for (String tag : searchCriteria) {
+			if (tag == null) continue;
 			tag = tag.trim();
 			if (tag.isEmpty()) continue; // skip empty tags
+			if (byId && !ORecordId.isA(tag)) {
+				logger.info("findTagsByTagList: Skipping invalid id " + tag);
+				continue;
+			}
 
-			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from Tag where " + field + " LIKE ?");
-			List<ODocument> result = db.command(query).execute(tag);
+			String key = byId ? tag : tag.toLowerCase(Locale.ENGLISH);
+			if (criteria.containsKey(key)) continue;
+			criteria.put(key, tag);
+			parameters.add(byId ? new ORecordId(tag) : tag);
+		}
+		if (criteria.isEmpty()) return list;
 
-			// no tag found and do we want to create new tags?
-			if (onlyNonExistent) {
-				if (result.isEmpty()) { // only if nothing is found
-					Tag tagEntity = new Tag();
-					tagEntity.setTitle(tag);
-					this.save(tagEntity);
+		// find all tags using a single query
+		List<ODocument> result = OrientDbStatement.named("Tag.findByTagList", "select * from Tag where " + (byId ? "@rid" : "title") + " IN ?")
+				.query(db, parameters);
 
-					list.add(convertToDocument(tagEntity));
-				}
-			} else {
-				if (!result.isEmpty())
-					list.add(result.get(0));
-				else logger.info("findTagsByTagList: Skipping unknown tag " + tag);
+		Map<String, ODocument> found = new HashMap<>();
+		for (ODocument document : result) {
+			String key = byId ? document.getIdentity().toString() : document.<String>field("title").toLowerCase(Locale.ENGLISH);
+			found.put(key, document);
+		}
+
+		// collect tags in order of criteria, create missing ones in one transaction
+		List<ITag> created = new ArrayList<>();
+		List<ODocument> createdDocuments = new ArrayList<>();
+		if (create) db.begin();
+		try {
+			for (Map.Entry<String, String> entry : criteria.entrySet()) {
+				ODocument document = found.get(entry.getKey());
+				if (document != null) {
+					if (returnExisting) list.add(document);
+				} else if (create) {
+					Tag tagEntity = new Tag();
+					tagEntity.setTitle(entry.getValue());
+					processBeforeSaving(tagEntity);
+					document = db.save(convertToDocument(tagEntity));
+
+					created.add(tagEntity);
+					createdDocuments.add(document);
+					list.add(document);
+				} else logger.info("findTagsByTagList: Skipping unknown tag " + entry.getValue());
 			}
+			if (create) db.commit();
+		} catch (RuntimeException e) {
+			if (create) db.rollback();
+			throw e;
+		}
+
+		// ids are persistent after commit
+		for (int i = 0; i < created.size(); i++) {
+			super.processAfterSaving(createdDocuments.get(i), created.get(i));
+			tagHierarchy().addTag(created.get(i).getId());
+			updateSuggestion(createdDocuments.get(i));
 		}
 
 		return list;
@@ -296,16 +437,11 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 
 	@Override
 	public String[] findTagIdsByParent(String id) {
-		List<SegradaTaggable> list = findByTag(id, true, new String[]{"Tag"});
-
-		// aggregate ids
-		String[] tagIds = new String[list.size()];
-		int i = 0;
+		if (id == null) return new String[]{};
 
-		for (SegradaTaggable entity : list)
-			tagIds[i++] = entity.getId();
+		List<String> list = getTagHierarchy().getSubTreeIds(id);
 
-		return tagIds;
+		return list.toArray(new String[list.size()]);
 	}
 
 	@Override
@@ -319,41 +455,47 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 
 		// execute query
 		List<ODocument> result;
+		boolean byClass = classes != null && classes.length > 0;
+		List<Object> parameters = new ArrayList<>(2);
 		if (traverse) {
+			// sub tags are known already, so only entities directly connected to them have to be traversed
+			List<String> tagIds = getTagHierarchy().getSubTreeIds(id);
+			String sql;
+			if (tagIds.isEmpty()) {
+				sql = "select * from ( traverse out('IsTagOf') from ? )";
+				parameters.add(OrientDbStatement.rid(id));
+			} else {
+				sql = "select * from ( traverse out('IsTagOf') from ? MAXDEPTH 1 )";
+				parameters.add(OrientDbStatement.rids(tagIds));
+			}
+
 			// create where statement
-			String where;
-			if (classes != null && classes.length > 0) {
-				StringBuilder sb = new StringBuilder(" where");
-				for (int i = 0; i < classes.length; i++) {
-					if (i > 0) sb.append(" OR ");
-					sb.append(" @class = '").append(OrientStringEscape.escapeOrientSql(classes[i])).append('\'');
-				}
-				where = sb.toString();
-			} else where = "";
+			if (byClass) {
+				sql += " where @class IN ?";
+				parameters.add(Arrays.asList(classes));
+			}
 
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from ( traverse out('IsTagOf') from " + id + " )" + where);
-			result = db.command(query).execute();
+			result = OrientDbStatement.named("Tag.findByTagTraversed", sql).query(db, parameters.toArray());
 		} else {
 			// create where statement
 			String where;
-			if (classes != null && classes.length > 0) {
-				StringBuilder sb = new StringBuilder("(");
-				for (int i = 0; i < classes.length; i++) {
-					if (i > 0) sb.append(" OR ");
-					sb.append(" in.@class = '").append(OrientStringEscape.escapeOrientSql(classes[i])).append('\'');
-				}
-				where = sb.append(") AND ").toString();
+			if (byClass) {
+				where = "in.@class IN ? AND";
+				parameters.add(Arrays.asList(classes));
 			} else where = "";
+			parameters.add(OrientDbStatement.rid(id));
 
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select in from IsTagOf where " + where + " out = " + id);
-			result = db.command(query).execute();
+			result = OrientDbStatement.named("Tag.findByTag", "select in from IsTagOf where " + where + " out = ?").query(db, parameters.toArray());
 		}
 
+		Set<String> found = new HashSet<>();
  		for (ODocument document : result) {
 			// get dynamic repository
 			ODocument doc;
 		    if (traverse) doc = document;
 		    else doc = document.field("in");
+			// tags might be reached as start and as child of another tag
+			if (!found.add(doc.getIdentity().toString())) continue;
 			AbstractOrientDbRepository repository = repositoryFactory.produceRepository(doc.getClassName());
 			if (repository != null)
 				list.add((SegradaTaggable) repository.convertToEntity(doc));
@@ -404,12 +546,26 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		// only directly connected tags?
 		List<ODocument> result;
 		if (onlyDirect) {
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select out." + field + " as field from IsTagOf where out.@class = 'Tag' AND in = " + entity.getId());
-			result = db.command(query).execute();
+			result = OrientDbStatement.named("Tag.findDirectlyConnected", "select out." + field + " as field from IsTagOf where out.@class = 'Tag' AND in = ?")
+					.query(db, OrientDbStatement.rid(entity.getId()));
 		} else {
-			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select " + field + " as field from ( traverse in('IsTagOf') from " + entity.getId() + ") where @class = 'Tag'");
-			result = db.command(query).execute();
+			// tag itself or directly connected tags plus their parents from tag hierarchy
+			TagHierarchy hierarchy = getTagHierarchy();
+			Set<String> tagIds = new LinkedHashSet<>();
+			if (hierarchy.contains(entity.getId())) {
+				tagIds.add(entity.getId());
+				tagIds.addAll(hierarchy.getAncestorIds(entity.getId()));
+			} else {
+				for (String tagId : findTagXConnectedToModel(entity, true, "@RID")) {
+					tagIds.add(tagId);
+					tagIds.addAll(hierarchy.getAncestorIds(tagId));
+				}
+			}
+
+			if (field.equalsIgnoreCase("@rid") || tagIds.isEmpty()) return tagIds.toArray(new String[tagIds.size()]);
+
+			result = OrientDbStatement.named("Tag.findFieldsByIds", "select " + field + " as field from Tag where @rid IN ?")
+					.query(db, OrientDbStatement.rids(tagIds));
 		}
 
 		String[] results = new String[result.size()];
@@ -422,6 +578,32 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		return results;
 	}
 
+	/**
+	 * find titles of directly connected tags for a list of entities in a single query
+	 * @param ids of entities
+	 * @return map of entity ids to arrays of tag titles (entities without tags are missing)
+	 */
+	public Map<String, String[]> findTagTitlesConnectedToModels(Collection<String> ids) {
+		Map<String, String[]> map = new HashMap<>();
+		if (ids == null || ids.isEmpty()) return map;
+
+		initDb();
+		// workaround for testing TODO: remove?
+		ODatabaseRecordThreadLocal.INSTANCE.set(db);
+
+		List<ODocument> result = OrientDbStatement.named("Tag.findTitlesConnectedToModels",
+				"select in.@rid as id, out.title as title from IsTagOf where out.@class = 'Tag' AND in IN ?").query(db, toRecordIds(ids));
+
+		Map<String, List<String>> titles = new HashMap<>();
+		for (ODocument document : result)
+			titles.computeIfAbsent(document.field("id", String.class), k -> new ArrayList<>()).add(document.field("title", String.class));
+
+		for (Map.Entry<String, List<String>> entry : titles.entrySet())
+			map.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+
+		return map;
+	}
+
 	@Override
 	public void connectTag(ITag parent, SegradaTaggable child) {
 		if (parent == null || parent.getId() == null || child == null || child.getId() == null) {
@@ -431,24 +613,115 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 
 		initDb();
 
-		// check of childId is actually parent of parentId (circular tag path not allowed)
 		if (child instanceof ITag) {
-			ITag testChild = (ITag) child;
-			if (isParentOf(testChild, parent))
+			TagHierarchy hierarchy = getTagHierarchy();
+
+			// check of childId is actually parent of parentId (circular tag path not allowed)
+			if (hierarchy.wouldCreateCircle(parent.getId(), child.getId()))
 				throw new CircularConnectionException("Circular connection of tags: " + parent + "=>" + child);
+
+			// no doubly connected tags
+			if (hierarchy.isConnected(parent.getId(), child.getId())) return;
+
+			// add edge
+			createTagEdges(OrientDbStatement.rid(parent.getId()), child.getId());
+			hierarchy.connect(parent.getId(), child.getId());
+		} else {
+			// no doubly connected tags
+			if (isTagConnectedTo(parent.getId(), child.getId())) return;
+
+			// add edge
+			createTagEdges(OrientDbStatement.rid(parent.getId()), child.getId());
 		}
+		invalidateTagConnectionCaches(child.getId());
+	}
 
-		// no doubly connected tags:
-		// does the child have a vertex to parent already?
-		Iterable<ODocument> spath = db.command(new OSQLSynchQuery<>(
-				"select shortestPath(" + parent.getId() + "," + child.getId() + ",'OUT')")).execute();
-		ODocument sp = spath.iterator().next();
-		List path = sp.field("shortestPath");
+	@Override
+	public void updateTagConnections(SegradaTaggable child, String[] titles) {
+		if (child == null || child.getId() == null) {
+			logger.warn("updateTagConnections with null warning: " + child);
+			return;
+		}
+
+		initDb();
 
-		if (!path.isEmpty() && path.size() <= 2) return;
+		// resolve all titles at once - missing tags are created
+		List<ODocument> tags = findOrCreateTagDocuments("title", titles, true, true);
 
-		// add edge
-		db.command(new OCommandSQL("create edge IsTagOf from " + parent.getId() + " to " + child.getId())).execute();
+		Set<String> tagIds = new LinkedHashSet<>();
+		for (ODocument document : tags)
+			tagIds.add(document.getIdentity().toString());
+
+		// circular tag path not allowed: check against tag hierarchy
+		TagHierarchy hierarchy = child instanceof ITag ? getTagHierarchy() : null;
+		if (hierarchy != null) {
+			for (String tagId : tagIds)
+				if (hierarchy.wouldCreateCircle(tagId, child.getId()))
+					throw new CircularConnectionException("Circular connection of tags: " + tagId + "=>" + child);
+		}
+
+		// diff existing connections
+		List<ODocument> result = OrientDbStatement.named("Tag.findConnectionsOf", "select @rid as id, out.@rid as tag from IsTagOf where out.@class = 'Tag' AND in = ?")
+				.query(db, OrientDbStatement.rid(child.getId()));
+
+		Set<String> keptTagIds = new HashSet<>();
+		Set<String> staleTagIds = new HashSet<>();
+		List<String> staleEdges = new ArrayList<>();
+		for (ODocument document : result) {
+			String tagId = document.field("tag", String.class);
+			// remove from set of tags to add - if already removed, this is a stale or duplicate edge
+			if (tagIds.remove(tagId)) keptTagIds.add(tagId);
+			else {
+				staleEdges.add(document.field("id", String.class));
+				if (!keptTagIds.contains(tagId)) staleTagIds.add(tagId);
+			}
+		}
+
+		// apply changes
+		if (!staleEdges.isEmpty())
+			OrientDbStatement.named("Tag.deleteEdges", "delete edge IsTagOf where @rid IN ?").execute(db, OrientDbStatement.rids(staleEdges));
+		if (!tagIds.isEmpty())
+			createTagEdges(OrientDbStatement.rids(tagIds), child.getId());
+
+		// update tag hierarchy
+		if (hierarchy != null) {
+			for (String tagId : staleTagIds) hierarchy.disconnect(tagId, child.getId());
+			for (String tagId : tagIds) hierarchy.connect(tagId, child.getId());
+		}
+		if (!staleEdges.isEmpty() || !tagIds.isEmpty()) invalidateTagConnectionCaches(child.getId());
+	}
+
+	/**
+	 * connect tags to an entity saved by a bulk import - the entity must be new and must not be a tag, so there are
+	 * no existing connections to diff and no circles to check
+	 * @param tagIds ids of tags to connect
+	 * @param childId id of new entity
+	 */
+	public void connectTagsToNewEntity(Collection<String> tagIds, String childId) {
+		if (tagIds.isEmpty()) return;
+
+		initDb();
+
+		createTagEdges(OrientDbStatement.rids(tagIds), childId);
+	}
+
+	/**
+	 * create IsTagOf edges
+	 * @param from record id or list of record ids of tags
+	 * @param childId id of entity
+	 */
+	private void createTagEdges(Object from, String childId) {
+		OrientDbStatement.named("Tag.connect", "create edge IsTagOf from ? to ?").execute(db, from, OrientDbStatement.rid(childId));
+	}
+
+	/**
+	 * invalidate caches after tags of an entity have been changed
+	 * @param childId id of entity
+	 */
+	private void invalidateTagConnectionCaches(String childId) {
+		invalidatePaginationCache(); // tag filters changed
+		getLookupCache().invalidate(childId); // tag titles of cached entity changed
+		LookupCache.invalidateModelCaches(db.getURL(), childId);
 	}
 
 	@Override
@@ -461,12 +734,14 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select @RID as id from IsTagOf where out.@class = 'Tag' AND out = " +  tagId + " AND in = " + childId + " LIMIT 1");
-		List<ODocument> result = db.command(query).execute();
+		List<ODocument> result = OrientDbStatement.named("Tag.findEdge", "select @RID as id from IsTagOf where out.@class = 'Tag' AND out = ? AND in = ? LIMIT 1")
+				.query(db, OrientDbStatement.rid(tagId), OrientDbStatement.rid(childId));
 
 		if (!result.isEmpty()) {
 			// remove edge
-			db.command(new OCommandSQL("delete edge " + result.get(0).field("id", String.class))).execute();
+			OrientDbStatement.named("Tag.deleteEdge", "delete edge IsTagOf where @rid = ?").execute(db, (Object) result.get(0).field("id"));
+			tagHierarchy().disconnect(tagId, childId);
+			invalidateTagConnectionCaches(childId);
 		}
 	}
 
@@ -481,15 +756,17 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		if (node == null || possibleParent == null) return false;
 		if (node.equals(possibleParent)) return false;
 
-		initDb();
+		TagHierarchy hierarchy = getTagHierarchy();
 
-		// check shortest path
-		Iterable<ODocument> spath = db.command(new OSQLSynchQuery<>(
-				"select shortestPath(" + possibleParent.getId() + "," + node.getId() + ",'OUT')")).execute();
-		ODocument sp = spath.iterator().next();
-		List path = sp.field("shortestPath");
+		// tags are checked in hierarchy directly, other entities via their tags
+		if (hierarchy.contains(node.getId()))
+			return hierarchy.isAncestorOf(possibleParent.getId(), node.getId());
+
+		for (String tagId : findTagIdsConnectedToModel(node, true))
+			if (tagId.equals(possibleParent.getId()) || hierarchy.isAncestorOf(possibleParent.getId(), tagId))
+				return true;
 
-		return !path.isEmpty();
+		return false;
 	}
 
 	@Override
@@ -501,8 +778,8 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		if (tagUid.equals(nodeUid)) return false;
 
 		// check shortest path
-		Iterable<ODocument> spath = db.command(new OSQLSynchQuery<>(
-				"select count(*) from IsTagOf where in = " + nodeUid + " and out = " + tagUid)).execute();
+		Iterable<ODocument> spath = OrientDbStatement.named("Tag.isConnectedTo", "select count(*) from IsTagOf where in = ? and out = ?")
+				.query(db, OrientDbStatement.rid(nodeUid), OrientDbStatement.rid(tagUid));
 		ODocument sp = spath.iterator().next();
 		Long count = sp.field("count");
 
@@ -516,21 +793,16 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 
 		// aggregate filters
 		List<String> constraints = new ArrayList<>();
+		List<Object> parameters = new ArrayList<>();
 		// search term
 		if (filters.get("search") != null) {
-			constraints.add("title LIKE '%" + OrientStringEscape.escapeOrientSql((String)filters.get("search")) + "%'");
+			constraints.add("title LIKE ?");
+			parameters.add("%" + filters.get("search") + "%");
 		}
 		// tags
 		if (filters.get("tags") != null) {
-			StringBuilder sb = new StringBuilder(" in('IsTagOf').title IN [ ");
-			boolean first = true;
-			for (String tag : (String[]) filters.get("tags")) {
-				if (first) first = false;
-				else sb.append(',');
-				sb.append('\'').append(OrientStringEscape.escapeOrientSql(tag)).append('\'');
-			}
-
-			constraints.add(sb.append("]").toString());
+			constraints.add(" in('IsTagOf').title IN ?");
+			parameters.add(Arrays.asList((String[]) filters.get("tags")));
 		}
 
 		// sorting
@@ -544,6 +816,6 @@ public class OrientDbTagRepository extends AbstractSegradaOrientDbRepository<ITa
 		}
 
 		// let helper do most of the work
-		return super.paginate(page, entriesPerPage, constraints, customOrder);
+		return super.paginate(page, entriesPerPage, constraints, parameters, customOrder, null);
 	}
 }
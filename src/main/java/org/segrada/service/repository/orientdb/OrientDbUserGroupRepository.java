@@ -3,12 +3,12 @@ package org.segrada.service.repository.orientdb;
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.segrada.model.UserGroup;
 import org.segrada.model.prototype.IUser;
 import org.segrada.model.prototype.IUserGroup;
 import org.segrada.service.repository.UserGroupRepository;
 import org.segrada.service.repository.orientdb.base.AbstractSegradaOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.util.Sluggify;
 import org.slf4j.Logger;
@@ -73,6 +73,11 @@ public class OrientDbUserGroupRepository extends AbstractSegradaOrientDbReposito
 		return "UserGroup";
 	}
 
+	@Override
+	protected boolean isEntityCacheSupported() {
+		return true;
+	}
+
 	@Override
 	protected String getDefaultOrder(boolean addOrderBy) {
 		return (addOrderBy?" ORDER BY":"").concat(" titleasc");
@@ -85,8 +90,7 @@ public class OrientDbUserGroupRepository extends AbstractSegradaOrientDbReposito
 		initDb();
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from UserGroup where special LIKE ?");
-		List<ODocument> result = db.command(query).execute(special);
+		List<ODocument> result = OrientDbStatement.named("UserGroup.findSpecial", "select * from UserGroup where special LIKE ?").query(db, special);
 
 		if (result.isEmpty()) return null;
 
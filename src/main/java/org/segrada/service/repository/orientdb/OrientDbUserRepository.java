@@ -3,14 +3,13 @@ package org.segrada.service.repository.orientdb;
 import com.google.inject.Inject;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.segrada.model.base.AbstractSegradaEntity;
 import org.segrada.model.prototype.IUser;
 import org.segrada.service.repository.UserRepository;
 import org.segrada.service.repository.orientdb.base.AbstractSegradaOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.PaginationInfo;
-import org.segrada.util.OrientStringEscape;
 import org.segrada.util.Sluggify;
 
 import java.util.HashMap;
@@ -49,6 +48,16 @@ public class OrientDbUserRepository extends AbstractSegradaOrientDbRepository<IU
 		return "User";
 	}
 
+	@Override
+	protected boolean isEntityCacheSupported() {
+		return true;
+	}
+
+	@Override
+	protected void attachCachedEntity(ODocument document, IUser entity) {
+		attachCachedUser(document, entity);
+	}
+
 	@Override
 	public IUser convertToEntity(ODocument document) {
 		return convertToUser(document);
@@ -77,8 +86,7 @@ public class OrientDbUserRepository extends AbstractSegradaOrientDbRepository<IU
 		if (login == null) return null;
 
 		// execute query
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from User where login LIKE ?");
-		List<ODocument> result = db.command(query).execute(login.toLowerCase());
+		List<ODocument> result = OrientDbStatement.named("User.findByLogin", "select * from User where login LIKE ?").query(db, login.toLowerCase());
 
 		// no user found?
 		if (result.isEmpty()) return null;
@@ -94,14 +102,16 @@ public class OrientDbUserRepository extends AbstractSegradaOrientDbRepository<IU
 
 		// aggregate filters
 		List<String> constraints = new ArrayList<>();
+		List<Object> parameters = new ArrayList<>();
 		// search term
 		if (filters.get("search") != null) {
-			String term = "'" + OrientStringEscape.escapeOrientSql((String) filters.get("search")) + "'";
-			constraints.add("(login LIKE " + term + " OR name LIKE " + term + ")");
+			constraints.add("(login LIKE ? OR name LIKE ?)");
+			parameters.add(filters.get("search"));
+			parameters.add(filters.get("search"));
 		}
 
 		// let helper do most of the work
-		return super.paginate(page, entriesPerPage, constraints, null);
+		return super.paginate(page, entriesPerPage, constraints, parameters, null, null);
 	}
 
 	@Override
@@ -6,13 +6,11 @@ import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.OCommandSQL;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.joda.time.DateTime;
 import org.segrada.service.repository.RememberMeRepository;
-import org.segrada.util.OrientStringEscape;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -98,8 +96,7 @@ public class OrientRememberMeRepository implements RememberMeRepository {
 			selector = RandomStringUtils.randomAlphanumeric(12);
 			// does this selector exist in database?
 			// tags pointing to document still exist?
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from RememberMeToken where selector = ?");
-			List<ODocument> result = db.command(query).execute(selector);
+			List<ODocument> result = OrientDbStatement.named("RememberMeToken.findBySelector", "select * from RememberMeToken where selector = ?").query(db, selector);
 			if (result != null && !result.isEmpty())
 				selector = null; // exists: start again!
 		} while (selector == null);
@@ -125,8 +122,7 @@ public class OrientRememberMeRepository implements RememberMeRepository {
 		}
 
 		// find token
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from RememberMeToken where selector = ?");
-		List<ODocument> result = db.command(query).execute(t.selector);
+		List<ODocument> result = OrientDbStatement.named("RememberMeToken.findBySelector", "select * from RememberMeToken where selector = ?").query(db, t.selector);
 
 		if (result == null || result.size() != 1) {
 			logger.error("Token " + token + " is not found");
@@ -142,8 +138,7 @@ public class OrientRememberMeRepository implements RememberMeRepository {
 		}
 
 		// ok, now remove token
-		String commandQuery = "DELETE FROM RememberMeToken WHERE selector = '" + OrientStringEscape.escapeOrientSql(t.selector) + "'";
-		db.command(new OCommandSQL(commandQuery)).execute();
+		OrientDbStatement.named("RememberMeToken.deleteBySelector", "DELETE FROM RememberMeToken WHERE selector = ?").execute(db, t.selector);
 
 		return true;
 	}
@@ -158,8 +153,7 @@ public class OrientRememberMeRepository implements RememberMeRepository {
 		}
 
 		// find token
-		OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select * from RememberMeToken where selector = ?");
-		List<ODocument> result = db.command(query).execute(t.selector);
+		List<ODocument> result = OrientDbStatement.named("RememberMeToken.findBySelector", "select * from RememberMeToken where selector = ?").query(db, t.selector);
 
 		if (result == null || result.size() != 1) {
 			logger.error("Token " + token + " is not found");
@@ -1,8 +1,7 @@
 package org.segrada.service.repository.orientdb.base;
 
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.OCommandSQL;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.segrada.model.prototype.IComment;
 import org.segrada.model.prototype.IFile;
 import org.segrada.model.prototype.ISourceReference;
@@ -13,17 +12,15 @@ import org.segrada.service.repository.SourceReferenceRepository;
 import org.segrada.service.repository.orientdb.OrientDbCommentRepository;
 import org.segrada.service.repository.orientdb.OrientDbFileRepository;
 import org.segrada.service.repository.orientdb.OrientDbSourceReferenceRepository;
+import org.segrada.service.repository.orientdb.OrientDbTagRepository;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.util.AbstractLazyLoadedObject;
 import org.segrada.service.util.PaginationInfo;
-import org.segrada.util.OrientStringEscape;
+import org.segrada.service.util.TagHierarchy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.Nullable;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -45,6 +42,11 @@ import java.util.Set;
 abstract public class AbstractAnnotatedOrientDbRepository<T extends SegradaAnnotatedEntity> extends AbstractColoredOrientDbRepository<T> {
 	private static final Logger logger = LoggerFactory.getLogger(AbstractAnnotatedOrientDbRepository.class);
 
+	/**
+	 * maximum number of source references loaded with an entity
+	 */
+	private static final int MAX_SOURCE_REFERENCES = 1000;
+
 	/**
 	 * Constructor
 	 */
@@ -61,14 +63,70 @@ abstract public class AbstractAnnotatedOrientDbRepository<T extends SegradaAnnot
 			// set tags
 			entity.setTags(lazyLoadTags(entity));
 			// set source references
-			entity.setSourceReferences(lazyLoadSourceReferences(entity, 1, 1000)); // TODO: should we change this into something more intelligent?
-			// set source references
+			if (!isPrefetching(PrefetchAssociation.SOURCE_REFERENCES))
+				entity.setSourceReferences(lazyLoadSourceReferences(entity, 1, MAX_SOURCE_REFERENCES)); // TODO: should we change this into something more intelligent?
+			// set comments
+			if (!isPrefetching(PrefetchAssociation.COMMENTS))
+				entity.setComments(lazyLoadComments(entity));
+			// set files
+			if (!isPrefetching(PrefetchAssociation.FILES))
+				entity.setFiles(lazyLoadFiles(entity));
+		}
+	}
+
+	@Override
+	protected void attachCachedEntity(ODocument document, T entity) {
+		super.attachCachedEntity(document, entity);
+
+		// tag titles are cached, tag changes invalidate the cache
+		if (entity.getId() != null) {
+			entity.setSourceReferences(lazyLoadSourceReferences(entity, 1, MAX_SOURCE_REFERENCES));
 			entity.setComments(lazyLoadComments(entity));
-			// set source references
 			entity.setFiles(lazyLoadFiles(entity));
 		}
 	}
 
+	@Override
+	protected Set<PrefetchAssociation> getPrefetchAssociations() {
+		Set<PrefetchAssociation> associations = super.getPrefetchAssociations();
+		associations.add(PrefetchAssociation.TAGS);
+		associations.add(PrefetchAssociation.SOURCE_REFERENCES);
+		associations.add(PrefetchAssociation.COMMENTS);
+		associations.add(PrefetchAssociation.FILES);
+		return associations;
+	}
+
+	@Override
+	protected void prefetchAssociations(List<T> entities, Set<PrefetchAssociation> associations) {
+		super.prefetchAssociations(entities, associations);
+
+		List<String> ids = new ArrayList<>(entities.size());
+		for (T entity : entities)
+			if (entity.getId() != null) ids.add(entity.getId());
+		if (ids.isEmpty()) return;
+
+		if (associations.contains(PrefetchAssociation.SOURCE_REFERENCES)) {
+			OrientDbSourceReferenceRepository sourceReferenceRepository = repositoryFactory.produceRepository(OrientDbSourceReferenceRepository.class);
+			Map<String, List<ISourceReference>> map = sourceReferenceRepository.findByReferences(entities, MAX_SOURCE_REFERENCES); //TODO limit to access
+			for (T entity : entities)
+				if (entity.getId() != null) entity.setSourceReferences(map.getOrDefault(entity.getId(), new ArrayList<>()));
+		}
+
+		if (associations.contains(PrefetchAssociation.COMMENTS)) {
+			OrientDbCommentRepository commentRepository = repositoryFactory.produceRepository(OrientDbCommentRepository.class);
+			Map<String, List<IComment>> map = commentRepository.findByReferences(ids);
+			for (T entity : entities)
+				if (entity.getId() != null) entity.setComments(map.getOrDefault(entity.getId(), new ArrayList<>()));
+		}
+
+		if (associations.contains(PrefetchAssociation.FILES)) {
+			OrientDbFileRepository fileRepository = repositoryFactory.produceRepository(OrientDbFileRepository.class);
+			Map<String, List<IFile>> map = fileRepository.findByReferences(ids, getModelClassName().equals("File")); //TODO limit to access
+			for (T entity : entities)
+				if (entity.getId() != null) entity.setFiles(map.getOrDefault(entity.getId(), new ArrayList<>()));
+		}
+	}
+
 	/**
 	 * lazily load source references for an entity
 	 * @param entity connected as reference
@@ -164,20 +222,11 @@ abstract public class AbstractAnnotatedOrientDbRepository<T extends SegradaAnnot
 	}
 
 	@Override
-	public boolean delete(@Nullable T entity) {
-		if (entity == null) return true;
+	protected void deleteDependentRecords(List<ORecordId> ids) {
+		super.deleteDependentRecords(ids);
 
-		if (super.delete(entity)) {
-			// delete connected edges
-			//repositoryFactory.getDb().command(new OCommandSQL("delete edge where in = " + entity.getId() + " OR out = " + entity.getId())).execute();
-			// this is already done in AbstractOrientDbRepository
-
-			// delete source reference pointing to me, too
-			repositoryFactory.getDb().command(new OCommandSQL("delete from SourceReference where reference = " + entity.getId())).execute();
-
-			return true;
-		}
-		return false;
+		// delete source references pointing to deleted records, too
+		OrientDbStatement.named("SourceReference.deleteByReferences", "delete from SourceReference where reference IN ?").execute(db, ids);
 	}
 
 	/**
@@ -185,23 +234,14 @@ abstract public class AbstractAnnotatedOrientDbRepository<T extends SegradaAnnot
 	 * @param tags list of tag titles
 	 * @param withSubTags include subtags as well?
 	 * @param in direction in instead of out (default)
+	 * @param parameters list the value of the placeholder in the returned string is added to
 	 * @return SQL string part
 	 */
-	protected String buildTagFilterSQL(String[] tags, boolean withSubTags, boolean in) {
+	protected String buildTagFilterSQL(String[] tags, boolean withSubTags, boolean in, List<Object> parameters) {
 		//TODO test!
 
 		// tags
 		if (tags != null && tags.length > 0) {
-			// create search for titles
-			StringBuilder sb = new StringBuilder("title IN [ ");
-			boolean first = true;
-			for (String tag : tags) {
-				if (first) first = false;
-				else sb.append(',');
-				sb.append('\'').append(OrientStringEscape.escapeOrientSql(tag)).append('\'');
-			}
-			sb.append(']');
-
 			// with sub tags?
 			if (withSubTags) {
 				//TODO: add test
@@ -209,27 +249,22 @@ abstract public class AbstractAnnotatedOrientDbRepository<T extends SegradaAnnot
 				Set<String> subTagIds = new HashSet<>();
 
 				// get ids of tag
-				OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select @rid from Tag where " + sb.toString());
-				List<ODocument> tagIdsDocs = db.command(query).execute();
+				List<ODocument> tagIdsDocs = OrientDbStatement.named("Tag.findIdsByTitles", "select @rid from Tag where title IN ?")
+						.query(db, Arrays.asList(tags));
+				OrientDbTagRepository tagRepository = repositoryFactory.produceRepository(OrientDbTagRepository.class);
+				TagHierarchy hierarchy = tagRepository.getTagHierarchy();
 				for (ODocument tagDoc : tagIdsDocs) {
-					// traverse sub tags
-					OSQLSynchQuery<ODocument> query2 = new OSQLSynchQuery<>("SELECT @rid FROM (traverse " + (in?"in":"out") + "('IsTagOf') from " + tagDoc.field("rid", String.class) + " MAXDEPTH 1 WHILE @class = 'Tag') WHERE @class = 'Tag'");
-					List<ODocument> subTagDocs = db.command(query2).execute();
-					for (ODocument subTagDoc : subTagDocs) // add ids to set
-						subTagIds.add(subTagDoc.field("rid", String.class));
-				}
-
-				sb = new StringBuilder(" in('IsTagOf') IN [ ");
-				first = true;
-				for (String tagId : subTagIds) {
-					if (first) first = false;
-					else sb.append(',');
-					sb.append(tagId);
+					// add tag and its direct sub tags (or parents) from tag hierarchy
+					String tagId = tagDoc.field("rid", String.class);
+					subTagIds.add(tagId);
+					subTagIds.addAll(in ? hierarchy.getParentIds(tagId) : hierarchy.getChildIds(tagId));
 				}
 
-				return sb.append("] ").toString();
+				parameters.add(OrientDbStatement.rids(subTagIds));
+				return " in('IsTagOf') IN ? ";
 			} else { //"normal" search
-				return " in('IsTagOf')." + sb.toString();
+				parameters.add(Arrays.asList(tags));
+				return " in('IsTagOf').title IN ?";
 			}
 		}
 
@@ -63,13 +63,23 @@ abstract public class AbstractColoredOrientDbRepository<T extends SegradaColored
 		// set pictogram
 		ORecordId pictogram = document.field("pictogram", ORecordId.class);
 		if (pictogram != null) {
-			entity.setPictogram(lazyLoadPictogram(pictogram));
+			// detached entities get the pictogram itself, it does not refer to anything else
+			if (isDetached()) {
+				ODocument pictogramDocument = db.getRecord(pictogram);
+				entity.setPictogram(pictogramDocument != null ? convertToPictogram(pictogramDocument) : null);
+			} else entity.setPictogram(lazyLoadPictogram(pictogram));
 		}
 	}
 
+	@Override
+	protected void attachCachedEntity(ODocument document, T entity) {
+		super.attachCachedEntity(document, entity);
+		populateEntityWithColored(document, entity);
+	}
+
 	/**
-	 * lazy load user
-	 * @param id record id of user
+	 * lazy load pictogram
+	 * @param id record id of pictogram
 	 * @return user instance or null
 	 */
 	protected IPictogram lazyLoadPictogram(final ORecordId id) {
@@ -80,7 +90,8 @@ abstract public class AbstractColoredOrientDbRepository<T extends SegradaColored
 					new AbstractLazyLoadedObject() {
 						@Override
 						protected Object loadObject() {
-							return convertToPictogram(db.getRecord(id));
+							return convertCached(db.getRecord(id), "Pictogram", AbstractColoredOrientDbRepository.this::convertToPictogram,
+									AbstractColoredOrientDbRepository.this::populateEntityWithCreatedModified);
 						}
 					}
 			);
@@ -1,7 +1,7 @@
 package org.segrada.service.repository.orientdb.base;
 
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.OCommandSQL;
 import org.segrada.model.base.AbstractCoreModel;
 import org.segrada.model.prototype.ILocation;
 import org.segrada.model.prototype.IPeriod;
@@ -15,7 +15,10 @@ import org.segrada.service.util.AbstractLazyLoadedObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -102,6 +105,16 @@ abstract public class AbstractCoreOrientDbRepository<T extends SegradaCoreEntity
 		// periods and locations are not saved here, because they have their own repositories
 	}
 
+	@Override
+	protected void attachCachedEntity(ODocument document, T entity) {
+		super.attachCachedEntity(document, entity);
+
+		if (entity.getId() != null) {
+			entity.setLocations(lazyLoadLocations(entity));
+			entity.setPeriods(lazyLoadPeriods(entity));
+		}
+	}
+
 	/**
 	 * helper to change ODocument back to entity
 	 * @param document to be converted
@@ -109,8 +122,10 @@ abstract public class AbstractCoreOrientDbRepository<T extends SegradaCoreEntity
 	 */
 	protected void populateEntityWithCore(ODocument document, AbstractCoreModel entity) {
 		if (entity.getId() != null) {
-			entity.setLocations(lazyLoadLocations(entity));
-			entity.setPeriods(lazyLoadPeriods(entity));
+			if (!isPrefetching(PrefetchAssociation.LOCATIONS))
+				entity.setLocations(lazyLoadLocations(entity));
+			if (!isPrefetching(PrefetchAssociation.PERIODS))
+				entity.setPeriods(lazyLoadPeriods(entity));
 		}
 
 		// get fields
@@ -134,6 +149,38 @@ abstract public class AbstractCoreOrientDbRepository<T extends SegradaCoreEntity
 		}
 	}
 
+	@Override
+	protected Set<PrefetchAssociation> getPrefetchAssociations() {
+		Set<PrefetchAssociation> associations = super.getPrefetchAssociations();
+		associations.add(PrefetchAssociation.LOCATIONS);
+		associations.add(PrefetchAssociation.PERIODS);
+		return associations;
+	}
+
+	@Override
+	protected void prefetchAssociations(List<T> entities, Set<PrefetchAssociation> associations) {
+		super.prefetchAssociations(entities, associations);
+
+		List<String> ids = new ArrayList<>(entities.size());
+		for (T entity : entities)
+			if (entity.getId() != null) ids.add(entity.getId());
+		if (ids.isEmpty()) return;
+
+		if (associations.contains(PrefetchAssociation.LOCATIONS)) {
+			OrientDbLocationRepository locationRepository = repositoryFactory.produceRepository(OrientDbLocationRepository.class);
+			Map<String, List<ILocation>> map = locationRepository.findByParents(ids);
+			for (T entity : entities)
+				if (entity.getId() != null) entity.setLocations(map.getOrDefault(entity.getId(), new ArrayList<>()));
+		}
+
+		if (associations.contains(PrefetchAssociation.PERIODS)) {
+			OrientDbPeriodRepository periodRepository = repositoryFactory.produceRepository(OrientDbPeriodRepository.class);
+			Map<String, List<IPeriod>> map = periodRepository.findByParents(ids);
+			for (T entity : entities)
+				if (entity.getId() != null) entity.setPeriods(map.getOrDefault(entity.getId(), new ArrayList<>()));
+		}
+	}
+
 	/**
 	 * lazily load locations for an entity
 	 * @param entity connected as reference
@@ -189,14 +236,11 @@ abstract public class AbstractCoreOrientDbRepository<T extends SegradaCoreEntity
 	}
 
 	@Override
-	public boolean delete(T entity) {
-		if (super.delete(entity)) {
-			// delete connected locations and periods
-			db.command(new OCommandSQL("delete from Location where parent = " + entity.getId())).execute();
-			db.command(new OCommandSQL("delete from Period where parent = " + entity.getId())).execute();
+	protected void deleteDependentRecords(List<ORecordId> ids) {
+		super.deleteDependentRecords(ids);
 
-			return true;
-		}
-		return false;
+		// delete connected locations and periods
+		OrientDbStatement.named("Location.deleteByParents", "delete from Location where parent IN ?").execute(db, ids);
+		OrientDbStatement.named("Period.deleteByParents", "delete from Period where parent IN ?").execute(db, ids);
 	}
 }
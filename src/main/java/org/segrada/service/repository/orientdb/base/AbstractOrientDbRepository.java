@@ -1,20 +1,23 @@
 package org.segrada.service.repository.orientdb.base;
 
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.segrada.model.base.AbstractSegradaEntity;
 import org.segrada.model.prototype.SegradaEntity;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.service.repository.prototype.CRUDRepository;
 import org.segrada.service.util.PaginationInfo;
+import org.segrada.service.util.TitleSuggester;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -36,6 +39,21 @@ import java.util.stream.Collectors;
 abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extends AbstractOrientDbBaseRepository implements CRUDRepository<T> {
 	private static final Logger logger = LoggerFactory.getLogger(AbstractOrientDbRepository.class);
 
+	/**
+	 * title suggesters by database url
+	 */
+	private static final Map<String, TitleSuggester> titleSuggesters = new ConcurrentHashMap<>();
+
+	/**
+	 * associations prefetched while a list of documents is converted (null while converting single documents)
+	 */
+	private Set<PrefetchAssociation> prefetching = null;
+
+	/**
+	 * true while documents are converted to detached entities
+	 */
+	private boolean detached = false;
+
 	/**
 	 * Constructor
 	 * @param repositoryFactory injected
@@ -72,6 +90,155 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 	 */
 	abstract public ODocument convertToDocument(T entity);
 
+	/**
+	 * Convert list of documents to entities and prefetch the associations declared by getPrefetchAssociations
+	 * for the whole list
+	 * @param documents to be converted
+	 * @return list of converted entities
+	 */
+	public List<T> convertToEntities(List<ODocument> documents) {
+		return convertToEntities(documents, getPrefetchAssociations());
+	}
+
+	/**
+	 * Convert list of documents to entities and prefetch certain associations for the whole list
+	 * @param documents to be converted
+	 * @param associations to prefetch - associations not in this set are lazy loaded
+	 * @return list of converted entities
+	 */
+	public List<T> convertToEntities(List<ODocument> documents, Set<PrefetchAssociation> associations) {
+		List<T> entities = new ArrayList<>(documents.size());
+
+		// tell populate methods which associations will be set afterwards
+		Set<PrefetchAssociation> previous = prefetching;
+		prefetching = associations;
+		try {
+			for (ODocument document : documents)
+				entities.add(convertToEntity(document));
+		} finally {
+			prefetching = previous;
+		}
+
+		if (!entities.isEmpty() && !associations.isEmpty())
+			prefetchAssociations(entities, associations);
+
+		return entities;
+	}
+
+	/**
+	 * Convert document to entity that does not refer to this repository (e.g. to be cached across requests): no lazy
+	 * loading proxies are created - associations loaded as lists are left null, creators and modifiers are id-only
+	 * stubs, tag titles and single linked entities (pictograms, user groups) are loaded as detached entities
+	 * @param document to be converted
+	 * @return converted entity
+	 */
+	protected T convertToDetachedEntity(ODocument document) {
+		return convertDetached(document, this::convertToEntity);
+	}
+
+	/**
+	 * convert document to detached entity using any converter of this repository, see convertToDetachedEntity
+	 * @param document to be converted
+	 * @param converter converting the document
+	 * @return converted entity
+	 */
+	protected <E> E convertDetached(ODocument document, Function<ODocument, E> converter) {
+		Set<PrefetchAssociation> previousPrefetching = prefetching;
+		boolean previousDetached = detached;
+		// tag titles contain no references, so they are loaded right away
+		prefetching = EnumSet.complementOf(EnumSet.of(PrefetchAssociation.TAGS));
+		detached = true;
+		try {
+			return converter.apply(document);
+		} finally {
+			prefetching = previousPrefetching;
+			detached = previousDetached;
+		}
+	}
+
+	/**
+	 * @return true if documents are currently converted to detached entities - populate methods must not create lazy
+	 * loading proxies then
+	 */
+	protected boolean isDetached() {
+		return detached;
+	}
+
+	/**
+	 * helper for batch lookups: convert ids to record ids to be used as query parameter
+	 * @param ids list of ids
+	 * @return list of record ids
+	 */
+	protected List<ORecordId> toRecordIds(Collection<String> ids) {
+		List<ORecordId> rids = new ArrayList<>(ids.size());
+		for (String id : ids) rids.add(new ORecordId(id));
+		return rids;
+	}
+
+	/**
+	 * helper for batch lookups: convert documents of query rows to entities and group them by parent id
+	 * @param rows query result
+	 * @param parentField field containing id or link of parent
+	 * @param childField field containing document or link to convert (null to convert row itself)
+	 * @return map of parent ids to lists of entities in order of the rows
+	 */
+	protected Map<String, List<T>> convertAndGroupByParent(List<ODocument> rows, String parentField, @Nullable String childField) {
+		// convert each document once, even if it is connected to several parents
+		Map<String, ODocument> documents = new LinkedHashMap<>();
+		List<String[]> pairs = new ArrayList<>(rows.size());
+		for (ODocument row : rows) {
+			Object parent = row.field(parentField);
+			ODocument document = childField == null ? row : null;
+			if (childField != null) {
+				Object child = row.field(childField);
+				if (child instanceof OIdentifiable) document = ((OIdentifiable) child).getRecord();
+			}
+			if (parent == null || document == null) continue;
+
+			String parentId = parent instanceof OIdentifiable ? ((OIdentifiable) parent).getIdentity().toString() : parent.toString();
+			String id = document.getIdentity().toString();
+			documents.putIfAbsent(id, document);
+			pairs.add(new String[]{parentId, id});
+		}
+
+		List<ODocument> documentList = new ArrayList<>(documents.values());
+		List<T> entities = convertToEntities(documentList, PrefetchAssociation.NON_RECURSIVE);
+		Map<String, T> entityMap = new HashMap<>();
+		for (int i = 0; i < entities.size(); i++)
+			entityMap.put(documentList.get(i).getIdentity().toString(), entities.get(i));
+
+		Map<String, List<T>> map = new HashMap<>();
+		for (String[] pair : pairs)
+			map.computeIfAbsent(pair[0], k -> new ArrayList<>()).add(entityMap.get(pair[1]));
+
+		return map;
+	}
+
+	/**
+	 * associations fetched for whole lists of entities by this repository - can be overwritten
+	 * @return set of associations
+	 */
+	protected Set<PrefetchAssociation> getPrefetchAssociations() {
+		return EnumSet.noneOf(PrefetchAssociation.class);
+	}
+
+	/**
+	 * @param association to check
+	 * @return true if documents are currently converted as list and association is going to be prefetched
+	 */
+	protected boolean isPrefetching(PrefetchAssociation association) {
+		return prefetching != null && prefetching.contains(association);
+	}
+
+	/**
+	 * fetch associations for list of converted entities - can be overwritten
+	 * @param entities converted entities
+	 * @param associations to prefetch
+	 */
+	protected void prefetchAssociations(List<T> entities, Set<PrefetchAssociation> associations) {
+		// do nothing by default
+	}
+
 	/**
 	 * get class reference of model class
 	 * @return class name
@@ -163,6 +330,9 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 			// process after saving
 			processAfterSaving(updated, entity);
 
+			invalidateCaches(updated.getIdentity().toString());
+			updateSuggestion(updated);
+
 			if (logger.isInfoEnabled())
 				logger.info("Saved entity: " + entity.toString());
 
@@ -174,6 +344,33 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 		return false;
 	}
 
+	/**
+	 * save new entity for bulk imports: tags are not connected and caches are not touched, so the importer may save
+	 * documents within its own transactions - ids of the returned documents are final after committing, pass the
+	 * documents to finishBulkSave then
+	 * @param entity new entity to be saved
+	 * @return saved document
+	 */
+	public ODocument saveNew(T entity) {
+		initDb();
+
+		return db.save(convertToDocument(processBeforeSaving(entity)));
+	}
+
+	/**
+	 * complete documents saved by saveNew after their transaction has been committed: adds them to suggestions and
+	 * invalidates cached pages once
+	 * @param documents saved and committed
+	 */
+	public void finishBulkSave(Collection<ODocument> documents) {
+		initDb();
+
+		for (ODocument document : documents)
+			updateSuggestion(document);
+
+		if (!documents.isEmpty()) invalidatePaginationCache();
+	}
+
 	/**
 	 * Count all entities
 	 * @return number of entities
@@ -186,9 +383,7 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 			String sql = "select count(*) from ".concat(getModelClassName()).concat(getDefaultQueryParameters());
 
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>(sql);
-			List<ODocument> list = db.command(query).execute();
-			ODocument doc = list.get(0);
+			ODocument doc = OrientDbStatement.named(getModelClassName() + ".count", sql).queryFirst(db);
 
 			return doc.field("count", Long.class);
 		} catch (Exception e) {
@@ -211,15 +406,9 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 			String sql = "select * from ".concat(getModelClassName()).concat(getDefaultQueryParameters()).concat(getDefaultOrder());
 
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>(sql);
-			List<ODocument> list = db.command(query).execute();
+			List<ODocument> list = OrientDbStatement.named(getModelClassName() + ".findAll", sql).query(db);
 
-			// preallocate size
-			entities = new ArrayList<>(list.size());
-
-			for (ODocument document : list) {
-				entities.add(convertToEntity(document));
-			}
+			entities = convertToEntities(list);
 		} catch (Exception e) {
 			logger.error("Exception thrown while fetching all entities.", e);
 		}
@@ -240,20 +429,22 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 			initDb();
 
 			String queryAdd = getDefaultQueryParameters();
+			List<Object> parameters = new ArrayList<>(2);
 			if (uid != null) {
 				if ((queryAdd == null || "".equals(queryAdd))) queryAdd = " WHERE ";
 				else queryAdd = " AND ";
-				queryAdd += "@rid > " + convertUidToId(uid);
+				queryAdd += "@rid > ?";
+				parameters.add(OrientDbStatement.rid(convertUidToId(uid)));
 			}
+			parameters.add(number <= 0?10:number);
 
 			// create query
 			String sql = "select * from ".concat(getModelClassName())
 					.concat(queryAdd)
-					.concat(" ORDER BY @rid LIMIT " + (number <= 0?10:number));
+					.concat(" ORDER BY @rid LIMIT ?");
 
 			// execute query
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>(sql);
-			List<ODocument> list = db.command(query).execute();
+			List<ODocument> list = OrientDbStatement.named(getModelClassName() + ".findNextEntriesFrom", sql).query(db, parameters.toArray());
 
 			// no hits?
 			if (list == null || list.size() == 0)
@@ -272,6 +463,84 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 		return entities;
 	}
 
+	/**
+	 * Split all ids of this class into ranges of at most partitionSize entries by cluster positions
+	 * @param partitionSize maximum number of entries per range
+	 * @return list of inclusive ranges as id pairs, e.g. ["#13:0", "#13:999"]
+	 */
+	public List<String[]> findIdRanges(int partitionSize) {
+		List<String[]> ranges = new ArrayList<>();
+		if (partitionSize <= 0) partitionSize = 1000;
+
+		try {
+			initDb();
+
+			OClass oClass = db.getMetadata().getSchema().getClass(getModelClassName());
+			if (oClass == null) return ranges;
+
+			for (int clusterId : oClass.getPolymorphicClusterIds()) {
+				// first and last position in cluster - negative if empty
+				long[] range = db.getStorage().getClusterDataRange(clusterId);
+				if (range == null || range.length < 2 || range[0] < 0 || range[1] < range[0]) continue;
+
+				// align to partition size, so ranges do not shift when records are added
+				for (long start = range[0] - range[0] % partitionSize; start <= range[1]; start += partitionSize)
+					ranges.add(new String[]{"#" + clusterId + ":" + start, "#" + clusterId + ":" + (start + partitionSize - 1)});
+			}
+		} catch (Exception e) {
+			logger.error("Exception thrown while partitioning entities.", e);
+		}
+
+		return ranges;
+	}
+
+	/**
+	 * Find entries within id range (inclusive) up to number entries
+	 * @param fromId first id of range
+	 * @param toId last id of range
+	 * @param afterId last id of previous call to continue with or null to start with fromId
+	 * @param number maximum number of entries
+	 * @return list of entries or null if none exist
+	 */
+	public List<T> findEntriesInRange(String fromId, String toId, @Nullable String afterId, int number) {
+		List<T> entities = null;
+
+		try {
+			initDb();
+
+			String queryAdd = getDefaultQueryParameters();
+			if (queryAdd == null || "".equals(queryAdd)) queryAdd = " WHERE ";
+			else queryAdd += " AND ";
+
+			// rid ranges limit the clusters and positions scanned by OrientDB
+			queryAdd += (afterId == null ? "@rid >= ?" : "@rid > ?") + " AND @rid <= ?";
+
+			// create query
+			String sql = "select * from ".concat(getModelClassName())
+					.concat(queryAdd)
+					.concat(" ORDER BY @rid LIMIT ?");
+
+			// execute query
+			List<ODocument> list = OrientDbStatement.named(getModelClassName() + ".findEntriesInRange", sql).query(db,
+					OrientDbStatement.rid(afterId == null ? fromId : afterId), OrientDbStatement.rid(toId), number <= 0?10:number);
+
+			// no hits?
+			if (list == null || list.size() == 0)
+				return null;
+
+			// preallocate size
+			entities = new ArrayList<>(list.size());
+
+			for (ODocument document : list) {
+				entities.add(convertToEntity(document));
+			}
+		} catch (Exception e) {
+			logger.error("Exception thrown while fetching entities in range.", e);
+		}
+
+		return entities;
+	}
+
 	/**
 	 * find single entity by Orient Id
 	 * @param id string representation of orient db, e.g. "#11:1"
@@ -294,6 +563,8 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 			}
 
 			// correct class => convert to correct entity
+			if (isEntityCacheSupported())
+				return convertCached(document, getModelClassName(), this::convertToEntity, this::attachCachedEntity);
 			return convertToEntity(document);
 		} catch (Exception e) {
 			logger.error("Exception thrown while fetching one entity.", e);
@@ -302,7 +573,8 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 	}
 
 	/**
-	 * delete record from database
+	 * delete record from database - the record, cascaded vertices and dependent records are deleted in a single
+	 * transaction, vertices are deleted with their edges
 	 * @param entity to be deleted
 	 * @return true if deletion succeeded
 	 */
@@ -315,20 +587,72 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 			if (logger.isInfoEnabled())
 				logger.info("Deleting entity : " + entity.toString());
 
-			// delete connected edges, if there are any
-			OSQLSynchQuery<ODocument> query = new OSQLSynchQuery<>("select from E where in = " + entity.getId() + " OR out = " + entity.getId());
-			for (ODocument edge : (List<ODocument>) db.command(query).execute())
-					edge.delete();
-			// The following code renders an NPE
-			//repositoryFactory.getDb().command(new OCommandSQL("delete edge where in = " + entity.getId() + " OR out = " + entity.getId())).execute();
+			List<ORecordId> ids = new ArrayList<>();
+			ids.add(new ORecordId(entity.getId()));
+			ids.addAll(findCascadedVertices(entity));
+
+			boolean deleted;
+			db.begin();
+			try {
+				deleteDependentRecords(ids);
+				deleted = deleteRecords(ids);
+				db.commit();
+			} catch (RuntimeException e) {
+				db.rollback();
+				throw e;
+			}
+
+			for (ORecordId id : ids)
+				invalidateCaches(id.toString());
+			if (getSuggestionFields() != null) getTitleSuggester().remove(entity.getId());
 
-			return db.delete(new ORecordId(entity.getId())) != null;
+			if (logger.isInfoEnabled() && ids.size() > 1)
+				logger.info("Deleted " + (ids.size() - 1) + " cascaded records of " + entity.getId());
+
+			return deleted;
 		} catch (Exception e) {
-			logger.warn("Could not delete entry (search engine entry deleted if applicable): " + entity.getId());
+			logger.warn("Could not delete entry: " + entity.getId(), e);
 		}
 		return false;
 	}
 
+	/**
+	 * find vertices to be deleted together with entity - can be overwritten
+	 * @param entity to be deleted
+	 * @return ids of vertices to delete as well
+	 */
+	protected List<ORecordId> findCascadedVertices(T entity) {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * delete records depending on the deleted records (like periods) - can be overwritten, called within the delete
+	 * transaction before the records themselves are deleted
+	 * @param ids of entity and cascaded vertices
+	 */
+	protected void deleteDependentRecords(List<ORecordId> ids) {
+		// nothing by default
+	}
+
+	/**
+	 * delete records: vertices are deleted together with their edges by "delete vertex", which takes the edges from the
+	 * edge lists of the vertex and removes them from the opposite vertices, too - other documents are deleted directly
+	 * @param ids of records to delete
+	 * @return true if at least one record has been deleted
+	 */
+	private boolean deleteRecords(List<ORecordId> ids) {
+		OClass oClass = db.getMetadata().getSchema().getClass(getModelClassName());
+		if (oClass != null && oClass.isVertexType()) {
+			Number deleted = OrientDbStatement.named("delete.vertices", "delete vertex from (select from ?)").execute(db, ids);
+			return deleted != null && deleted.intValue() > 0;
+		}
+
+		boolean deleted = false;
+		for (ORecordId id : ids)
+			deleted |= db.delete(id) != null;
+		return deleted;
+	}
+
 	/**
 	 * Return sql query parameters like "WHERE active = true - can be overwritten
 	 * @param addWhere
@@ -372,27 +696,58 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 	 * @return PaginationInfo containing hits
 	 */
 	protected PaginationInfo<T> paginate(int page, int entriesPerPage, List<String> constraints, String customOrder) {
-		// create constraint string
-		StringBuilder sb = new StringBuilder();
-		if (!constraints.isEmpty()) {
-			boolean first = true;
-			for (String constraint : constraints) {
-				sb.append(first?" WHERE ":" AND ");
-				sb.append(constraint);
-				if (first) first = false;
-			}
-		}
-		String constraint = " from ".concat(getModelClassName()).concat(sb.toString());
+		return paginate(page, entriesPerPage, constraints, Collections.emptyList(), customOrder, null);
+	}
+
+	/**
+	 * pagination helper function
+	 * @param page to show
+	 * @param entriesPerPage maximum entries per page
+	 * @param constraints constraint list to concatenate
+	 * @param customOrder custom order string or null for default
+	 * @param cursor cursor of previous page (see PaginationInfo.getCursor) or null
+	 * @return PaginationInfo containing hits
+	 */
+	protected PaginationInfo<T> paginate(int page, int entriesPerPage, List<String> constraints, String customOrder, @Nullable String cursor) {
+		return paginate(page, entriesPerPage, constraints, Collections.emptyList(), customOrder, cursor);
+	}
+
+	/**
+	 * pagination helper function - if the order is a single keyset field (see getKeysetFields), pages are fetched by
+	 * seeking behind the last entry of the previous page (known from cursor or cached from an earlier call)
+	 * @param page to show
+	 * @param entriesPerPage maximum entries per page
+	 * @param constraints constraint list to concatenate - containing ? placeholders for values
+	 * @param parameters values of placeholders in constraints in order
+	 * @param customOrder custom order string or null for default
+	 * @param cursor cursor of previous page (see PaginationInfo.getCursor) or null
+	 * @return PaginationInfo containing hits
+	 */
+	protected PaginationInfo<T> paginate(int page, int entriesPerPage, List<String> constraints, List<Object> parameters, String customOrder, @Nullable String cursor) {
+		String constraint = " from ".concat(getModelClassName()).concat(buildWhere(constraints));
+		String name = getModelClassName() + ".paginate";
 
 		List<T> entities = new ArrayList<>();
 
 		try {
 			initDb();
 
-			// first, do a count of the entities
+			// get cache, if enabled
+			long ttl = getPaginationCacheTTL();
+			PaginationCache cache = ttl > 0 ? PaginationCache.forDatabase(db.getURL()) : null;
+			long generation = cache != null ? cache.getGeneration() : 0L;
+
+			// first, do a count of the entities (or get cached count) - cached by statement and values
 			String sql = "select count(*) as count".concat(constraint);
-			if (logger.isTraceEnabled()) logger.trace(sql);
-			int total = ((ODocument) db.query(new OSQLSynchQuery<ODocument>(sql)).get(0)).field("count", Integer.class);
+			String cacheKey = sql.concat(parameters.toString());
+			Integer cachedTotal = cache != null ? cache.getTotal(cacheKey, ttl) : null;
+			int total;
+			if (cachedTotal != null) total = cachedTotal;
+			else {
+				if (constraints.isEmpty()) total = (int) db.countClass(getModelClassName()); // read from cluster metadata
+				else total = OrientDbStatement.named(name + ".count", sql).queryFirst(db, parameters.toArray()).field("count", Integer.class);
+				if (cache != null) cache.putTotal(cacheKey, total, generation);
+			}
 
 			if (total == 0)
 				return new PaginationInfo<>(
@@ -411,23 +766,50 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 			if (page < 1) page = 1;
 			else if (page > pages) page = pages;
 
-			// prepare skip/limit strings
-			int skip = (page-1) * entriesPerPage;
-			String skipLimit = (skip>0?" SKIP ".concat(Integer.toString(skip)).concat(" "):"")
-					.concat(" LIMIT ").concat(Integer.toString(entriesPerPage));
-
 			// custom order?
 			if (customOrder != null && !customOrder.isEmpty()) customOrder = " ORDER BY ".concat(customOrder);
 			else customOrder = getDefaultOrder(); // no, just use default order
 
-			// create query itself and fetch entities
-			sql = "select *".concat(constraint).concat(customOrder).concat(skipLimit);
-			if (logger.isTraceEnabled()) logger.trace(sql);
-
-			// execute query
-			List<ODocument> list = db.command(new OSQLSynchQuery<>(sql)).execute();
+			KeysetOrder keysetOrder = isKeysetPaginationEnabled() ? KeysetOrder.parse(customOrder, getKeysetFields()) : null;
+			List<ODocument> list;
+			String nextCursor = null;
+
+			if (keysetOrder == null) {
+				// skip and limit are bound, too
+				List<Object> values = new ArrayList<>(parameters);
+				values.add((page-1) * entriesPerPage);
+				values.add(entriesPerPage);
+
+				// create query itself and fetch entities
+				sql = "select *".concat(constraint).concat(customOrder).concat(" SKIP ? LIMIT ?");
+
+				// execute query
+				list = OrientDbStatement.named(name, sql).query(db, values.toArray());
+			} else {
+				// find end of previous page: from cursor or from cache
+				String boundaryKey = "select *".concat(constraint).concat(customOrder).concat(" LIMIT ").concat(Integer.toString(entriesPerPage))
+						.concat(parameters.toString());
+				Object[] boundary = null;
+				if (page > 1) {
+					boundary = keysetOrder.decodeCursor(cursor);
+					if (boundary == null && cache != null) boundary = cache.getBoundary(boundaryKey, page - 1, ttl);
+				}
+
+				if (page == 1 || boundary != null) list = fetchKeysetPage(constraints, parameters, keysetOrder, boundary, entriesPerPage);
+				else list = fetchKeysetPageBySkipping(constraints, parameters, keysetOrder, (page-1) * entriesPerPage, entriesPerPage);
+
+				// remember end of this page
+				if (!list.isEmpty()) {
+					ODocument last = list.get(list.size() - 1);
+					Object value = last.field(keysetOrder.getField());
+					if (value != null) {
+						if (cache != null) cache.putBoundary(boundaryKey, page, new Object[]{value, last.getIdentity()}, generation);
+						if (page < pages) nextCursor = keysetOrder.encodeCursor(value, last.getIdentity().toString());
+					}
+				}
+			}
 
-			entities.addAll(list.stream().map(this::convertToEntity).collect(Collectors.toList()));
+			entities.addAll(convertToEntities(list));
 
 			/**
 			 * return pagination list
@@ -437,7 +819,8 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 					pages, // pages
 					total, // total entries
 					entriesPerPage, // per page
-					entities // list of entities
+					entities, // list of entities
+					nextCursor // cursor of next page
 			);
 		} catch (Exception e) {
 			logger.error("Exception thrown while fetching paginated entities.", e);
@@ -446,6 +829,326 @@ abstract public class AbstractOrientDbRepository<T extends SegradaEntity> extend
 		}
 	}
 
+	/**
+	 * fields that can be used for keyset pagination - can be overwritten
+	 * fields must not be null, nor case insensitive, and should be indexed
+	 * @return collection of field names
+	 */
+	protected Collection<String> getKeysetFields() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @return true if keyset pagination is enabled in settings
+	 */
+	protected boolean isKeysetPaginationEnabled() {
+		return !"false".equalsIgnoreCase(repositoryFactory.getApplicationSettings().getSetting("pagination.keyset", "true"));
+	}
+
+	/**
+	 * @return time to live of cached counts and page boundaries in milliseconds (0 to disable)
+	 */
+	protected long getPaginationCacheTTL() {
+		try {
+			return Long.parseLong(repositoryFactory.getApplicationSettings().getSetting("pagination.cacheTTL", "60")) * 1000L;
+		} catch (NumberFormatException e) {
+			return 60000L;
+		}
+	}
+
+	/**
+	 * invalidate cached counts and page boundaries - to be called on each change
+	 */
+	protected void invalidatePaginationCache() {
+		PaginationCache.forDatabase(db.getURL()).invalidate();
+	}
+
+	/**
+	 * @return lookup cache shared by all repositories of this database
+	 */
+	protected LookupCache getLookupCache() {
+		return LookupCache.forDatabase(db.getURL(), repositoryFactory.getApplicationSettings().getSettingAsInt("lookupCache.maxEntries", 5000));
+	}
+
+	/**
+	 * invalidate caches after a record has been changed
+	 * @param id of changed record
+	 */
+	protected void invalidateCaches(String id) {
+		invalidatePaginationCache();
+		getLookupCache().invalidate(id);
+		LookupCache.invalidateModelCaches(db.getURL(), id);
+	}
+
+	/**
+	 * @return true if find may take converted entities of this repository from the entity cache - repositories have
+	 * to attach their request bound associations in attachCachedEntity for this
+	 */
+	protected boolean isEntityCacheSupported() {
+		return false;
+	}
+
+	/**
+	 * @param model name of model class
+	 * @return entity cache shared by all requests or null if disabled for model (setting "entityCache.[model]")
+	 */
+	protected @Nullable LookupCache getEntityCache(String model) {
+		int maxEntries = repositoryFactory.getApplicationSettings().getSettingAsInt("entityCache." + model, 0);
+		if (maxEntries <= 0) return null;
+
+		return LookupCache.forModel(db.getURL(), model, maxEntries);
+	}
+
+	/**
+	 * convert document using the entity cache of a model: entities of unchanged records are copied from the cache
+	 * instead of being converted again, so the cached instance is never handed out
+	 * @param document to be converted
+	 * @param model name of model class
+	 * @param converter converting documents of the model - called in detached mode for entities to be cached
+	 * @param attacher replacing associations of a copied entity that are bound to a request (lazy loading proxies)
+	 * @return converted entity
+	 */
+	@SuppressWarnings("unchecked")
+	protected <E extends SegradaEntity> E convertCached(ODocument document, String model, Function<ODocument, E> converter, BiConsumer<ODocument, E> attacher) {
+		LookupCache cache = document == null ? null : getEntityCache(model);
+		// changes not committed yet must not be shared
+		if (cache == null || !document.getIdentity().isPersistent() || document.isDirty() || db.getTransaction().isActive())
+			return converter.apply(document);
+
+		String id = document.getIdentity().toString();
+		SegradaEntity cached = cache.get(id, document.getVersion(), SegradaEntity.class);
+		if (cached == null) {
+			long generation = cache.getGeneration();
+			// cached instance must not refer to this request - only copies get request bound associations
+			cached = convertDetached(document, converter);
+			cache.put(id, document.getVersion(), cached, generation);
+		}
+
+		try {
+			E entity = EntityCopier.copy((E) cached);
+			attacher.accept(document, entity);
+			return entity;
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			logger.warn("Could not copy cached entity " + id + ", not caching model " + model, e);
+			cache.invalidate(id);
+		}
+		return converter.apply(document);
+	}
+
+	/**
+	 * replace associations of an entity copied from the entity cache that are bound to a request, e.g. lazy loading
+	 * proxies - the entity contains all other data of the document already
+	 * @param document entity has been converted from
+	 * @param entity copy of cached entity
+	 */
+	protected void attachCachedEntity(ODocument document, T entity) {
+		// nothing to attach by default
+	}
+
+	/**
+	 * fields offered by the title suggester - the first non empty field is the title of a suggestion
+	 * @return field names or null if entities are not suggested
+	 */
+	protected @Nullable String[] getSuggestionFields() {
+		return null;
+	}
+
+	/**
+	 * @return title suggester shared by all repositories of this database
+	 */
+	protected TitleSuggester getTitleSuggester() {
+		initDb();
+
+		return titleSuggesters.computeIfAbsent(db.getURL(), url -> new TitleSuggester());
+	}
+
+	/**
+	 * find entities by title, alternative titles and the like from memory - for typeahead fields
+	 * @param term search term
+	 * @param maximum maximum number of suggestions
+	 * @return suggestions (empty if entities are not suggested)
+	 */
+	public List<TitleSuggester.Suggestion> suggest(String term, int maximum) {
+		if (getSuggestionFields() == null) return new ArrayList<>();
+
+		return getTitleSuggester().suggest(term, maximum, Collections.singleton(getModelClassName()));
+	}
+
+	/**
+	 * load suggestions of all entities from database - called on startup
+	 */
+	public void rebuildSuggestions() {
+		String[] fields = getSuggestionFields();
+		if (fields == null) return;
+
+		initDb();
+		long start = System.currentTimeMillis();
+
+		Map<String, String[]> textsById = new HashMap<>();
+		List<ODocument> result = OrientDbStatement.named(getModelClassName() + ".suggestions", "select @rid as id, " + String.join(", ", fields) + " from " + getModelClassName()).query(db);
+		for (ODocument document : result)
+			textsById.put(document.field("id", String.class), getSuggestionTexts(document, fields));
+
+		getTitleSuggester().rebuild(getModelClassName(), textsById);
+
+		if (logger.isInfoEnabled())
+			logger.info("Loaded " + textsById.size() + " " + getModelClassName() + " suggestions in " + (System.currentTimeMillis() - start) + "ms");
+	}
+
+	/**
+	 * update suggestion of saved document
+	 * @param document saved
+	 */
+	protected void updateSuggestion(ODocument document) {
+		String[] fields = getSuggestionFields();
+		if (fields != null)
+			getTitleSuggester().put(getModelClassName(), document.getIdentity().toString(), getSuggestionTexts(document, fields));
+	}
+
+	/**
+	 * read suggestion fields of document
+	 * @param document to read
+	 * @param fields to read
+	 * @return field values
+	 */
+	private static String[] getSuggestionTexts(ODocument document, String[] fields) {
+		String[] texts = new String[fields.length];
+		for (int i = 0; i < fields.length; i++)
+			texts[i] = document.field(fields[i], String.class);
+		return texts;
+	}
+
+	/**
+	 * fetch page following boundary in keyset order
+	 * @param constraints constraint list to concatenate
+	 * @param parameters values of placeholders in constraints
+	 * @param order keyset order
+	 * @param boundary sort key value and rid of last entry of previous page (null for first page)
+	 * @param entriesPerPage maximum entries per page
+	 * @return documents of page
+	 */
+	private List<ODocument> fetchKeysetPage(List<String> constraints, List<Object> parameters, KeysetOrder order, @Nullable Object[] boundary, int entriesPerPage) {
+		List<ODocument> list = new ArrayList<>(entriesPerPage);
+		List<ODocument> following;
+
+		if (boundary == null) {
+			following = queryKeyset(constraints, parameters, null, order.getField() + order.getDirection(), 0, entriesPerPage);
+		} else {
+			// remaining entries having the same key as the boundary (ordered by rid)
+			list.addAll(queryKeyset(constraints, parameters, order.getField() + " = ? AND @rid " + order.getSeekOperator() + " ?",
+					"@rid" + order.getDirection(), 0, entriesPerPage, boundary[0], boundary[1]));
+			if (list.size() >= entriesPerPage) return list;
+
+			// entries having following keys - index order, so no sorting needed
+			following = queryKeyset(constraints, parameters, order.getField() + " " + order.getSeekOperator() + " ?",
+					order.getField() + order.getDirection(), 0, entriesPerPage - list.size(), boundary[0]);
+		}
+		list.addAll(following);
+
+		// last key might have more entries than fit on page - make sure to take those with lowest rids
+		if (list.size() == entriesPerPage && !following.isEmpty())
+			replaceTiedEntries(list, constraints, parameters, order, false, 0);
+
+		return list;
+	}
+
+	/**
+	 * fetch page in keyset order without known boundary by skipping entries (page jumps)
+	 * @param constraints constraint list to concatenate
+	 * @param parameters values of placeholders in constraints
+	 * @param order keyset order
+	 * @param skip number of entries to skip
+	 * @param entriesPerPage maximum entries per page
+	 * @return documents of page
+	 */
+	private List<ODocument> fetchKeysetPageBySkipping(List<String> constraints, List<Object> parameters, KeysetOrder order, int skip, int entriesPerPage) {
+		List<ODocument> list = new ArrayList<>(queryKeyset(constraints, parameters, null, order.getField() + order.getDirection(), skip, entriesPerPage));
+		if (list.isEmpty()) return list;
+
+		// order of entries having the same key is arbitrary in index - sort first and last key by rid
+		Object first = list.get(0).field(order.getField());
+		if (first == null) return list;
+		List<String> precedingConstraints = new ArrayList<>(constraints);
+		precedingConstraints.add(order.getField() + " " + order.getPrecedingOperator() + " ?");
+		List<Object> values = new ArrayList<>(parameters);
+		values.add(first);
+		String sql = "select count(*) as count from " + getModelClassName() + buildWhere(precedingConstraints);
+		int preceding = OrientDbStatement.named(getModelClassName() + ".paginate.keyset.count", sql).queryFirst(db, values.toArray()).field("count", Integer.class);
+
+		replaceTiedEntries(list, constraints, parameters, order, true, skip - preceding);
+		if (list.size() == entriesPerPage && !first.equals(list.get(list.size() - 1).field(order.getField())))
+			replaceTiedEntries(list, constraints, parameters, order, false, 0);
+
+		return list;
+	}
+
+	/**
+	 * replace leading or trailing entries of list having the same key by entries of this key ordered by rid
+	 * @param list documents of page
+	 * @param constraints constraint list to concatenate
+	 * @param parameters values of placeholders in constraints
+	 * @param order keyset order
+	 * @param leading replace leading entries instead of trailing ones
+	 * @param offset position of first entry within all entries having this key
+	 */
+	private void replaceTiedEntries(List<ODocument> list, List<String> constraints, List<Object> parameters, KeysetOrder order, boolean leading, int offset) {
+		int size = list.size();
+		Object key = list.get(leading ? 0 : size - 1).field(order.getField());
+		if (key == null) return;
+
+		// count tied entries
+		int tied = 0;
+		while (tied < size && key.equals(list.get(leading ? tied : size - 1 - tied).field(order.getField()))) tied++;
+
+		List<ODocument> sorted = queryKeyset(constraints, parameters, order.getField() + " = ?", "@rid" + order.getDirection(),
+				offset, tied, key);
+		if (sorted.size() != tied) return; // changed meanwhile
+
+		for (int i = 0; i < tied; i++)
+			list.set(leading ? i : size - tied + i, sorted.get(i));
+	}
+
+	/**
+	 * helper to query entries for keyset pagination
+	 * @param constraints constraint list to concatenate
+	 * @param parameters values of placeholders in constraints
+	 * @param keyConstraint additional constraint or null
+	 * @param order order string
+	 * @param skip number of entries to skip
+	 * @param limit maximum number of entries
+	 * @param args values of placeholders in key constraint
+	 * @return list of documents
+	 */
+	private List<ODocument> queryKeyset(List<String> constraints, List<Object> parameters, @Nullable String keyConstraint, String order, int skip, int limit, Object... args) {
+		List<String> all = new ArrayList<>(constraints);
+		if (keyConstraint != null) all.add(keyConstraint);
+
+		List<Object> values = new ArrayList<>(parameters);
+		Collections.addAll(values, args);
+		values.add(skip);
+		values.add(limit);
+
+		String sql = "select * from " + getModelClassName() + buildWhere(all) + " ORDER BY " + order + " SKIP ? LIMIT ?";
+
+		return OrientDbStatement.named(getModelClassName() + ".paginate.keyset", sql).query(db, values.toArray());
+	}
+
+	/**
+	 * create where part of query from constraints - constraints are put in parentheses if there are more than one, so
+	 * an OR within one of them does not bind to the others (e.g. keyset constraints added to the caller's)
+	 * @param constraints constraint list to concatenate
+	 * @return where string (empty if no constraints)
+	 */
+	private String buildWhere(List<String> constraints) {
+		if (constraints.isEmpty()) return "";
+		if (constraints.size() == 1) return " WHERE " + constraints.get(0);
+
+		StringBuilder sb = new StringBuilder();
+		for (String constraint : constraints)
+			sb.append(sb.length() == 0 ? " WHERE (" : " AND (").append(constraint).append(')');
+		return sb.toString();
+	}
+
 	@Override
 	public String convertUidToId(String uid) {
 		return AbstractSegradaEntity.convertUidToOrientId(uid);
@@ -15,10 +15,7 @@ import org.segrada.session.Identity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -76,9 +73,107 @@ abstract public class AbstractSegradaOrientDbRepository<T extends SegradaEntity>
 		ORecordId oCreator = document.field("creator", ORecordId.class);
 		ORecordId oModifier = document.field("modifier",  ORecordId.class);
 
-		// push
-		if (oCreator != null) entity.setCreator(lazyLoadUser(oCreator));
-		if (oModifier != null) entity.setModifier(lazyLoadUser(oModifier));
+		// push - when prefetching, users only keep their ids and are replaced by prefetchCreatorsAndModifiers
+		if (isPrefetching(PrefetchAssociation.CREATOR_MODIFIER)) {
+			if (oCreator != null) entity.setCreator(createUserStub(oCreator));
+			if (oModifier != null) entity.setModifier(createUserStub(oModifier));
+		} else {
+			if (oCreator != null) entity.setCreator(lazyLoadUser(oCreator));
+			if (oModifier != null) entity.setModifier(lazyLoadUser(oModifier));
+		}
+	}
+
+	/**
+	 * create user instance only containing id
+	 * @param id record id of user
+	 * @return user instance
+	 */
+	private IUser createUserStub(ORecordId id) {
+		IUser user = new User();
+		user.setId(id.toString());
+		return user;
+	}
+
+	@Override
+	protected Set<PrefetchAssociation> getPrefetchAssociations() {
+		return EnumSet.of(PrefetchAssociation.CREATOR_MODIFIER);
+	}
+
+	@Override
+	protected void attachCachedEntity(ODocument document, T entity) {
+		super.attachCachedEntity(document, entity);
+		populateEntityWithCreatedModified(document, entity);
+	}
+
+	@Override
+	protected void prefetchAssociations(List<T> entities, Set<PrefetchAssociation> associations) {
+		super.prefetchAssociations(entities, associations);
+
+		if (associations.contains(PrefetchAssociation.CREATOR_MODIFIER))
+			prefetchCreatorsAndModifiers(entities);
+		if (associations.contains(PrefetchAssociation.TAGS) && entities.get(0) instanceof SegradaTaggable)
+			prefetchTags(entities);
+	}
+
+	/**
+	 * load creators and modifiers of list of entities in a single query
+	 * @param entities list of entities containing user stubs
+	 */
+	private void prefetchCreatorsAndModifiers(List<T> entities) {
+		Set<ORecordId> ids = new LinkedHashSet<>();
+		for (T entity : entities) {
+			if (entity.getCreator() != null) ids.add(new ORecordId(entity.getCreator().getId()));
+			if (entity.getModifier() != null) ids.add(new ORecordId(entity.getModifier().getId()));
+		}
+		if (ids.isEmpty()) return;
+
+		Map<String, IUser> users = new HashMap<>();
+		try {
+			List<ODocument> result = OrientDbStatement.named("User.findByIds", "select * from User where @rid IN ?").query(db, new ArrayList<>(ids));
+			for (ODocument document : result)
+				users.put(document.getIdentity().toString(), convertToUser(document));
+		} catch (Exception e) {
+			logger.error("Could not prefetch creators and modifiers", e);
+		}
+
+		// users not found are lazy loaded
+		for (T entity : entities) {
+			if (entity.getCreator() != null) entity.setCreator(prefetchedUser(entity.getCreator().getId(), users));
+			if (entity.getModifier() != null) entity.setModifier(prefetchedUser(entity.getModifier().getId(), users));
+		}
+	}
+
+	/**
+	 * @param id of user
+	 * @param users prefetched users
+	 * @return prefetched user or lazy loading proxy
+	 */
+	private IUser prefetchedUser(String id, Map<String, IUser> users) {
+		IUser user = users.get(id);
+		return user != null ? user : lazyLoadUser(new ORecordId(id));
+	}
+
+	/**
+	 * load tag titles of list of entities in a single query
+	 * @param entities list of taggable entities
+	 */
+	private void prefetchTags(List<T> entities) {
+		OrientDbTagRepository tagRepository = repositoryFactory.produceRepository(OrientDbTagRepository.class);
+		if (tagRepository == null) {
+			logger.error("Could not load TagRepository");
+			return;
+		}
+
+		List<String> ids = new ArrayList<>(entities.size());
+		for (T entity : entities)
+			if (entity.getId() != null) ids.add(entity.getId());
+
+		Map<String, String[]> tags = tagRepository.findTagTitlesConnectedToModels(ids);
+		for (T entity : entities)
+			if (entity.getId() != null) {
+				String[] titles = tags.get(entity.getId());
+				((SegradaTaggable) entity).setTags(titles != null ? titles : new String[0]);
+			}
 	}
 
 	/**
@@ -94,7 +189,8 @@ abstract public class AbstractSegradaOrientDbRepository<T extends SegradaEntity>
 					new AbstractLazyLoadedObject() {
 						@Override
 						protected Object loadObject() {
-							return convertToUser(db.getRecord(id));
+							return convertCached(db.getRecord(id), "User", AbstractSegradaOrientDbRepository.this::convertToUser,
+									AbstractSegradaOrientDbRepository.this::attachCachedUser);
 						}
 					}
 			);
@@ -117,7 +213,8 @@ abstract public class AbstractSegradaOrientDbRepository<T extends SegradaEntity>
 					new AbstractLazyLoadedObject() {
 						@Override
 						protected Object loadObject() {
-							return convertToUserGroup(db.getRecord(id));
+							return convertCached(db.getRecord(id), "UserGroup", AbstractSegradaOrientDbRepository.this::convertToUserGroup,
+									AbstractSegradaOrientDbRepository.this::populateEntityWithCreatedModified);
 						}
 					}
 			);
@@ -151,6 +248,9 @@ abstract public class AbstractSegradaOrientDbRepository<T extends SegradaEntity>
 		}
 		return null;*/
 		//TODO: make it work?
+		// tags of lists are set by prefetchTags
+		if (isPrefetching(PrefetchAssociation.TAGS)) return null;
+
 		TagRepository tagRepository = repositoryFactory.produceRepository(OrientDbTagRepository.class);
 		if (tagRepository != null)
 			return tagRepository.findTagTitlesConnectedToModel(entity, true);
@@ -173,27 +273,18 @@ abstract public class AbstractSegradaOrientDbRepository<T extends SegradaEntity>
 		TagRepository tagRepository = repositoryFactory.produceRepository(OrientDbTagRepository.class);
 		if (tagRepository == null) return;
 
-		// create new tags, if needed
-		tagRepository.createNewTagsByTitles(entity.getTags());
-
-		// find all tags by title
-		List<ITag> tags = tagRepository.findTagsByTitles(entity.getTags());
-
-		// keeps added ids
-		Set<String> addedIds = new HashSet<>();
-
-		// add all tags to entity
-		for (ITag tag : tags) {
-			tagRepository.connectTag(tag, entity);
-			addedIds.add(tag.getId());
-		}
+		// create new tags, add new and delete old connections
+		tagRepository.updateTagConnections(entity, entity.getTags());
+	}
 
-		// now find all tag ids and see if there are some that have been deleted
-		String[] tagIds = tagRepository.findTagIdsConnectedToModel(entity, true);
-		for (String id : tagIds) {
-			if (!addedIds.contains(id)) // not in set connected - delete
-				tagRepository.removeTag(id, entity);
-		}
+	/**
+	 * replace lazy loading proxies of a user copied from the entity cache
+	 * @param document user has been converted from
+	 * @param user copy of cached user
+	 */
+	protected void attachCachedUser(ODocument document, IUser user) {
+		user.setGroup(lazyLoadUserGroup(document.field("group", ORecordId.class)));
+		populateEntityWithCreatedModified(document, user);
 	}
 
 	/**
@@ -207,7 +298,12 @@ abstract public class AbstractSegradaOrientDbRepository<T extends SegradaEntity>
 		user.setLogin(document.field("login", String.class));
 		user.setPassword(document.field("password", String.class));
 		user.setName(document.field("name", String.class));
-		user.setGroup(lazyLoadUserGroup(document.field("group", ORecordId.class)));
+		// detached users get the group itself, it does not refer to anything else
+		ORecordId group = document.field("group", ORecordId.class);
+		if (isDetached()) {
+			ODocument groupDocument = group != null ? db.getRecord(group) : null;
+			user.setGroup(groupDocument != null ? convertToUserGroup(groupDocument) : null);
+		} else user.setGroup(lazyLoadUserGroup(group));
 		user.setLastLogin(document.field("lastLogin", Long.class));
 		user.setActive(document.field("active", Boolean.class));
 
@@ -0,0 +1,90 @@
+package org.segrada.service.repository.orientdb.base;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Copies model beans field by field, so instances kept in entity caches are never handed out - arrays, lists and
+ * maps are copied, too, further objects are shared
+ */
+final class EntityCopier {
+	/**
+	 * instance fields by class
+	 */
+	private static final Map<Class<?>, List<Field>> fields = new ConcurrentHashMap<>();
+
+	private EntityCopier() {
+	}
+
+	/**
+	 * copy entity
+	 * @param entity to copy (class needs a constructor without arguments)
+	 * @return copy of entity
+	 * @throws ReflectiveOperationException if entity could not be copied
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> E copy(E entity) throws ReflectiveOperationException {
+		Class<?> type = entity.getClass();
+		E copy = (E) type.newInstance();
+
+		for (Field field : fields.computeIfAbsent(type, EntityCopier::findFields))
+			field.set(copy, copyValue(field, field.get(entity)));
+
+		return copy;
+	}
+
+	/**
+	 * @param field to set
+	 * @param value of field
+	 * @return copied value of containers, value itself otherwise
+	 */
+	private static Object copyValue(Field field, Object value) {
+		// lazy loading proxies are not touched - they are replaced by the repository anyway
+		if (value == null || Proxy.isProxyClass(value.getClass())) return value;
+
+		Object copy = null;
+		if (value instanceof Object[]) copy = ((Object[]) value).clone();
+		else if (value instanceof List) copy = new ArrayList<>((List<?>) value);
+		else if (value instanceof Set) copy = new LinkedHashSet<>((Set<?>) value);
+		else if (value instanceof Map) copy = new LinkedHashMap<>((Map<?, ?>) value);
+
+		// keep value if container type does not fit field
+		return copy != null && field.getType().isInstance(copy) ? copy : value;
+	}
+
+	/**
+	 * @param type class of entity
+	 * @return non static, non final fields of class and its super classes
+	 */
+	private static List<Field> findFields(Class<?> type) {
+		List<Field> list = new ArrayList<>();
+
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) continue;
+				field.setAccessible(true);
+				list.add(field);
+			}
+		}
+
+		return list;
+	}
+}
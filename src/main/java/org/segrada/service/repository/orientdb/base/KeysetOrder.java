@@ -0,0 +1,142 @@
+package org.segrada.service.repository.orientdb.base;
+
+import com.orientechnologies.orient.core.id.ORecordId;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Order on a single sort key with @rid as tie-breaker, used for keyset pagination - pages are fetched by seeking
+ * behind the last entry of the previous page instead of skipping all previous entries
+ */
+public class KeysetOrder {
+	/**
+	 * pattern of simple order strings like " ORDER BY titleasc DESC"
+	 */
+	private static final Pattern ORDER_PATTERN = Pattern.compile("^\\s*(?:ORDER\\s+BY\\s+)?([A-Za-z0-9_]+)(?:\\s+(ASC|DESC))?\\s*$", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * parse order string
+	 * @param order order string, e.g. " ORDER BY titleasc DESC" or "minJD ASC"
+	 * @param keysetFields fields that may be used as sort key (must not contain null values or be case insensitive)
+	 * @return keyset order or null if order is not suitable for keyset pagination
+	 */
+	public static @Nullable KeysetOrder parse(@Nullable String order, Collection<String> keysetFields) {
+		if (order == null) return null;
+
+		Matcher matcher = ORDER_PATTERN.matcher(order);
+		if (!matcher.matches()) return null;
+
+		// find field - OrientDB field names in queries are case insensitive, document fields are not
+		for (String field : keysetFields) {
+			if (field.equalsIgnoreCase(matcher.group(1)))
+				return new KeysetOrder(field, matcher.group(2) != null && matcher.group(2).equalsIgnoreCase("DESC"));
+		}
+		return null;
+	}
+
+	/**
+	 * sort field
+	 */
+	private final String field;
+
+	/**
+	 * descending order?
+	 */
+	private final boolean descending;
+
+	/**
+	 * Constructor
+	 */
+	public KeysetOrder(String field, boolean descending) {
+		this.field = field;
+		this.descending = descending;
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+
+	/**
+	 * @return " ASC" or " DESC"
+	 */
+	public String getDirection() {
+		return descending ? " DESC" : " ASC";
+	}
+
+	/**
+	 * @return comparison operator selecting entries following a key
+	 */
+	public String getSeekOperator() {
+		return descending ? "<" : ">";
+	}
+
+	/**
+	 * @return comparison operator selecting entries preceding a key
+	 */
+	public String getPrecedingOperator() {
+		return descending ? ">" : "<";
+	}
+
+	/**
+	 * create cursor token pointing behind an entry
+	 * @param value sort key value of entry
+	 * @param rid record id of entry
+	 * @return url safe token or null if value type is not supported
+	 */
+	public @Nullable String encodeCursor(@Nullable Object value, String rid) {
+		String typedValue;
+		if (value instanceof String) typedValue = "s" + value;
+		else if (value instanceof Long || value instanceof Integer) typedValue = "l" + value;
+		else return null;
+
+		String token = field + (descending ? "-" : "+") + "|" + rid + "|" + typedValue;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * decode cursor token
+	 * @param cursor token created by encodeCursor
+	 * @return boundary (sort key value, record id) or null if token is invalid or belongs to another order
+	 */
+	public @Nullable Object[] decodeCursor(@Nullable String cursor) {
+		if (cursor == null || cursor.isEmpty()) return null;
+
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+			if (parts.length != 3 || !parts[0].equals(field + (descending ? "-" : "+")) || !ORecordId.isA(parts[1]) || parts[2].isEmpty())
+				return null;
+
+			Object value;
+			if (parts[2].charAt(0) == 's') value = parts[2].substring(1);
+			else if (parts[2].charAt(0) == 'l') value = Long.valueOf(parts[2].substring(1));
+			else return null;
+
+			return new Object[]{value, new ORecordId(parts[1])};
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
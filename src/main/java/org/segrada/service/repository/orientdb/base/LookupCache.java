@@ -0,0 +1,302 @@
+package org.segrada.service.repository.orientdb.base;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Cache of small, frequently looked up records by record id (e.g. relation types or slim nodes when converting
+ * relations) - one instance per database shared by all requests, so cached values must not refer to a database
+ * instance and have to be treated as read only; entries are invalidated when their record is saved or deleted.
+ * Converted entities of a model are cached in separate instances per model (see forModel).
+ */
+public class LookupCache {
+	/**
+	 * caches by database url
+	 */
+	private static final Map<String, LookupCache> caches = new ConcurrentHashMap<>();
+
+	/**
+	 * entity caches by database url and model name
+	 */
+	private static final Map<String, Map<String, LookupCache>> modelCaches = new ConcurrentHashMap<>();
+
+	/**
+	 * get cache of a database
+	 * @param url of database
+	 * @param maxEntries maximum number of records to cache (0 to disable caching)
+	 * @return cache instance
+	 */
+	public static LookupCache forDatabase(String url, int maxEntries) {
+		LookupCache cache = caches.computeIfAbsent(url, k -> new LookupCache(maxEntries));
+		cache.maxEntries = maxEntries;
+		return cache;
+	}
+
+	/**
+	 * get cache of a database if it has been created already
+	 * @param url of database
+	 * @return cache instance or null
+	 */
+	public static @Nullable LookupCache getExisting(String url) {
+		return caches.get(url);
+	}
+
+	/**
+	 * get entity cache of a model
+	 * @param url of database
+	 * @param model name of model class, e.g. "Node"
+	 * @param maxEntries maximum number of entities to cache (0 to disable caching)
+	 * @return cache instance
+	 */
+	public static LookupCache forModel(String url, String model, int maxEntries) {
+		LookupCache cache = modelCaches.computeIfAbsent(url, k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(model, k -> new LookupCache(maxEntries));
+		if (cache.maxEntries != maxEntries) {
+			cache.maxEntries = maxEntries;
+			if (maxEntries <= 0) cache.invalidateAll();
+		}
+		return cache;
+	}
+
+	/**
+	 * @param url of database
+	 * @return entity caches of a database by model name (empty if none has been created)
+	 */
+	public static Map<String, LookupCache> getModelCaches(String url) {
+		Map<String, LookupCache> map = modelCaches.get(url);
+		return map == null ? Collections.emptyMap() : Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * @return statistics of all entity caches by database url and model name
+	 */
+	public static Map<String, Object> getModelStatistics() {
+		Map<String, Object> statistics = new TreeMap<>();
+		for (Map.Entry<String, Map<String, LookupCache>> database : modelCaches.entrySet()) {
+			Map<String, Object> models = new TreeMap<>();
+			for (Map.Entry<String, LookupCache> model : database.getValue().entrySet())
+				models.put(model.getKey(), model.getValue().getStatistics());
+			statistics.put(database.getKey(), models);
+		}
+		return statistics;
+	}
+
+	/**
+	 * remove record from all entity caches of a database - ids are unique, so the model does not have to be known
+	 * @param url of database
+	 * @param id record id or null to remove all entities
+	 */
+	public static void invalidateModelCaches(String url, @Nullable String id) {
+		for (LookupCache cache : getModelCaches(url).values()) {
+			if (id == null) cache.invalidateAll();
+			else cache.invalidate(id);
+		}
+	}
+
+	/**
+	 * maximum number of records to cache
+	 */
+	private volatile int maxEntries;
+
+	/**
+	 * counter increased on each invalidation - values loaded in older generations are not cached
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * statistics
+	 */
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * cached entries by record id (least recently used entries are evicted)
+	 */
+	private final Map<String, Entry> entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			if (size() <= maxEntries) return false;
+			evictions.incrementAndGet();
+			return true;
+		}
+	});
+
+	/**
+	 * Constructor
+	 */
+	public LookupCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return current generation - pass to put after loading a record
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * get cached value
+	 * @param id record id
+	 * @param type expected type of value
+	 * @return value or null if not cached
+	 */
+	public @Nullable <V> V get(String id, Class<V> type) {
+		Entry entry = entries.get(id);
+		if (entry != null && type.isInstance(entry.value)) {
+			hits.incrementAndGet();
+			return type.cast(entry.value);
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * get cached value of a certain record version - entries of other versions are removed
+	 * @param id record id
+	 * @param version current version of record
+	 * @param type expected type of value
+	 * @return value or null if not cached
+	 */
+	public @Nullable <V> V get(String id, int version, Class<V> type) {
+		synchronized (entries) {
+			Entry entry = entries.get(id);
+			if (entry != null && entry.version == version && type.isInstance(entry.value)) {
+				hits.incrementAndGet();
+				return type.cast(entry.value);
+			}
+			if (entry != null) entries.remove(id); // outdated
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * cache value - older versions do not replace newer ones
+	 * @param id record id
+	 * @param version record version the value was created from
+	 * @param value to cache
+	 * @param generation generation before record was loaded
+	 */
+	public void put(String id, int version, Object value, long generation) {
+		if (maxEntries <= 0) return;
+
+		synchronized (entries) {
+			// changed meanwhile?
+			if (generation != this.generation.get()) return;
+
+			Entry entry = entries.get(id);
+			if (entry == null || entry.version <= version) entries.put(id, new Entry(version, value));
+		}
+	}
+
+	/**
+	 * remove record from cache - to be called when record is changed or deleted
+	 * @param id record id
+	 */
+	public void invalidate(String id) {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			entries.remove(id);
+		}
+	}
+
+	/**
+	 * remove all entries
+	 */
+	public void invalidateAll() {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return number of cached records
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of entries removed because cache was full
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @return ratio of lookups answered by the cache (0 to 1)
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0d : (double) h / total;
+	}
+
+	/**
+	 * @return map of metrics, e.g. for status pages
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("size", size());
+		statistics.put("maxEntries", maxEntries);
+		statistics.put("hits", getHits());
+		statistics.put("misses", getMisses());
+		statistics.put("hitRate", getHitRate());
+		statistics.put("evictions", getEvictions());
+
+		return statistics;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LookupCache{size=%d, hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d}", size(), getHits(), getMisses(), getHitRate() * 100, getEvictions());
+	}
+
+	/**
+	 * cached value of a single record
+	 */
+	private static class Entry {
+		private final int version;
+		private final Object value;
+
+		private Entry(int version, Object value) {
+			this.version = version;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package org.segrada.service.repository.orientdb.base;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Named SQL statement with bound parameters - values (rids, titles, JD bounds, limits) are never concatenated into
+ * the SQL text, so the text of a statement stays the same, OrientDB parses it once and takes it from its statement
+ * cache afterwards; statements are shared by all repositories and count their executions by name
+ */
+public final class OrientDbStatement {
+	private static final Logger logger = LoggerFactory.getLogger(OrientDbStatement.class);
+
+	/**
+	 * maximum number of distinct statements registered - statements built from filters have some variants, but
+	 * reaching this number means values are concatenated into statements somewhere
+	 */
+	public static final int MAX_STATEMENTS = 2000;
+
+	/**
+	 * statements by SQL text
+	 */
+	private static final Map<String, OrientDbStatement> statements = new ConcurrentHashMap<>();
+
+	/**
+	 * warned about too many statements already?
+	 */
+	private static volatile boolean warned = false;
+
+	/**
+	 * get statement - created on first call, shared afterwards
+	 * @param name of statement, e.g. "Tag.findByTitle" - variants of a statement (built from filters) share a name
+	 * @param sql SQL text containing ? placeholders for all values
+	 * @return statement instance
+	 */
+	public static OrientDbStatement named(String name, String sql) {
+		OrientDbStatement statement = statements.get(sql);
+		if (statement != null) return statement;
+
+		statement = new OrientDbStatement(name, sql);
+		if (statements.size() >= MAX_STATEMENTS) {
+			if (!warned) {
+				warned = true;
+				logger.warn("More than " + MAX_STATEMENTS + " distinct SQL statements, statement " + name + " is not registered: " + sql);
+			}
+			return statement;
+		}
+
+		OrientDbStatement existing = statements.putIfAbsent(sql, statement);
+		return existing != null ? existing : statement;
+	}
+
+	/**
+	 * @param id string representation of record id, e.g. "#11:1"
+	 * @return record id to be bound as parameter (strings are not accepted as targets, e.g. "from ?")
+	 */
+	public static ORecordId rid(String id) {
+		return new ORecordId(id);
+	}
+
+	/**
+	 * @param ids string representations of record ids
+	 * @return list of record ids to be bound as parameter, e.g. "@rid IN ?"
+	 */
+	public static List<ORecordId> rids(Collection<String> ids) {
+		List<ORecordId> rids = new ArrayList<>(ids.size());
+		for (String id : ids)
+			rids.add(new ORecordId(id));
+		return rids;
+	}
+
+	/**
+	 * @return statistics of statements by name: executions, failures, total time in milliseconds and number of
+	 * variants (SQL texts)
+	 */
+	public static Map<String, Object> getStatistics() {
+		Map<String, long[]> byName = new TreeMap<>();
+		for (OrientDbStatement statement : statements.values()) {
+			long[] values = byName.computeIfAbsent(statement.name, k -> new long[4]);
+			values[0] += statement.executions.get();
+			values[1] += statement.failures.get();
+			values[2] += statement.nanos.get();
+			values[3]++;
+		}
+
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		for (Map.Entry<String, long[]> entry : byName.entrySet()) {
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("executions", entry.getValue()[0]);
+			values.put("failures", entry.getValue()[1]);
+			values.put("totalMillis", entry.getValue()[2] / 1000000L);
+			values.put("variants", entry.getValue()[3]);
+			statistics.put(entry.getKey(), values);
+		}
+		return statistics;
+	}
+
+	/**
+	 * reset counters of all statements
+	 */
+	public static void resetStatistics() {
+		for (OrientDbStatement statement : statements.values()) {
+			statement.executions.set(0L);
+			statement.failures.set(0L);
+			statement.nanos.set(0L);
+		}
+	}
+
+	private final String name;
+
+	private final String sql;
+
+	/**
+	 * counters
+	 */
+	private final AtomicLong executions = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong nanos = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * @param name of statement
+	 * @param sql SQL text
+	 */
+	private OrientDbStatement(String name, String sql) {
+		this.name = name;
+		this.sql = sql;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return number of executions of this statement
+	 */
+	public long getExecutions() {
+		return executions.get();
+	}
+
+	/**
+	 * run query
+	 * @param db database instance
+	 * @param params values bound to the placeholders in order
+	 * @return list of documents
+	 */
+	public List<ODocument> query(ODatabaseDocumentTx db, Object... params) {
+		long start = System.nanoTime();
+		try {
+			if (logger.isTraceEnabled()) logger.trace(name + ": " + sql);
+			return db.command(new OSQLSynchQuery<ODocument>(sql)).execute(params);
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			throw e;
+		} finally {
+			executions.incrementAndGet();
+			nanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * run query returning the first document only
+	 * @param db database instance
+	 * @param params values bound to the placeholders in order
+	 * @return first document or null
+	 */
+	public @Nullable ODocument queryFirst(ODatabaseDocumentTx db, Object... params) {
+		List<ODocument> result = query(db, params);
+		return result == null || result.isEmpty() ? null : result.get(0);
+	}
+
+	/**
+	 * run command (create, update, delete)
+	 * @param db database instance
+	 * @param params values bound to the placeholders in order
+	 * @return command result, e.g. number of changed records
+	 */
+	public <R> R execute(ODatabaseDocumentTx db, Object... params) {
+		long start = System.nanoTime();
+		try {
+			if (logger.isTraceEnabled()) logger.trace(name + ": " + sql);
+			return db.command(new OCommandSQL(sql)).execute(params);
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			throw e;
+		} finally {
+			executions.incrementAndGet();
+			nanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "OrientDbStatement{" + name + ": " + sql + "}";
+	}
+}
@@ -0,0 +1,160 @@
+package org.segrada.service.repository.orientdb.base;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Cache of total counts and page boundaries (sort key and rid of last entry of a page) of paginated queries -
+ * one instance per database, invalidated completely on each change made through repositories
+ */
+public class PaginationCache {
+	/**
+	 * maximum number of queries cached per database
+	 */
+	private static final int MAX_ENTRIES = 500;
+
+	/**
+	 * caches by database url
+	 */
+	private static final Map<String, PaginationCache> caches = new ConcurrentHashMap<>();
+
+	/**
+	 * get cache of a database
+	 * @param url of database
+	 * @return cache instance
+	 */
+	public static PaginationCache forDatabase(String url) {
+		return caches.computeIfAbsent(url, k -> new PaginationCache());
+	}
+
+	/**
+	 * counter increased on each invalidation - values computed in older generations are not cached
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * cached entries by query (least recently used entries are evicted)
+	 */
+	private final Map<String, Entry> entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	});
+
+	/**
+	 * @return current generation - pass to put methods after computing values
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * remove all entries
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+		entries.clear();
+	}
+
+	/**
+	 * get cached total count of query
+	 * @param query count query
+	 * @param ttl maximum age of entry in milliseconds
+	 * @return total or null if not cached
+	 */
+	public @Nullable Integer getTotal(String query, long ttl) {
+		Entry entry = getEntry(query, ttl);
+		return entry == null ? null : entry.total;
+	}
+
+	/**
+	 * cache total count of query
+	 * @param query count query
+	 * @param total count
+	 * @param generation generation when total was computed
+	 */
+	public void putTotal(String query, int total, long generation) {
+		Entry entry = getOrCreateEntry(query, generation);
+		if (entry != null) entry.total = total;
+	}
+
+	/**
+	 * get cached boundary of page
+	 * @param query select query including order, excluding skip/limit
+	 * @param page page number
+	 * @param ttl maximum age of entry in milliseconds
+	 * @return boundary (sort key value, rid) or null if not cached
+	 */
+	public @Nullable Object[] getBoundary(String query, int page, long ttl) {
+		Entry entry = getEntry(query, ttl);
+		return entry == null ? null : entry.boundaries.get(page);
+	}
+
+	/**
+	 * cache boundary of page
+	 * @param query select query including order, excluding skip/limit
+	 * @param page page number
+	 * @param boundary sort key value and rid of last entry of page
+	 * @param generation generation when page was fetched
+	 */
+	public void putBoundary(String query, int page, Object[] boundary, long generation) {
+		Entry entry = getOrCreateEntry(query, generation);
+		if (entry != null) entry.boundaries.put(page, boundary);
+	}
+
+	/**
+	 * @return number of cached queries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	private @Nullable Entry getEntry(String query, long ttl) {
+		Entry entry = entries.get(query);
+		if (entry == null) return null;
+
+		// expired?
+		if (System.currentTimeMillis() - entry.created > ttl) {
+			entries.remove(query);
+			return null;
+		}
+		return entry;
+	}
+
+	private @Nullable Entry getOrCreateEntry(String query, long generation) {
+		synchronized (entries) {
+			// changed meanwhile?
+			if (generation != this.generation.get()) return null;
+
+			return entries.computeIfAbsent(query, k -> new Entry());
+		}
+	}
+
+	/**
+	 * cached values of a single query
+	 */
+	private static class Entry {
+		private final long created = System.currentTimeMillis();
+		private volatile Integer total;
+		private final Map<Integer, Object[]> boundaries = new ConcurrentHashMap<>();
+	}
+}
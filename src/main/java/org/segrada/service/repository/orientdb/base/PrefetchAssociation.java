@@ -0,0 +1,37 @@
+package org.segrada.service.repository.orientdb.base;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Associations of entities that can be fetched for a whole list of entities at once (one query per association)
+ */
+public enum PrefetchAssociation {
+	CREATOR_MODIFIER,
+	TAGS,
+	SOURCE_REFERENCES,
+	COMMENTS,
+	FILES,
+	LOCATIONS,
+	PERIODS;
+
+	/**
+	 * associations that do not convert further entities - prefetched for entities converted while prefetching
+	 */
+	public static final Set<PrefetchAssociation> NON_RECURSIVE = Collections.unmodifiableSet(EnumSet.of(CREATOR_MODIFIER, TAGS));
+}
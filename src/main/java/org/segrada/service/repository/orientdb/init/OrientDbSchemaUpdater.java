@@ -45,7 +45,7 @@ public class OrientDbSchemaUpdater {
 	/**
 	 * current version of db
 	 */
-	private static final int CURRENT_VERSION = 5;
+	private static final int CURRENT_VERSION = 7;
 
 	/**
 	 * graph factory instance
@@ -376,6 +376,16 @@ public class OrientDbSchemaUpdater {
 			versionLocal = 5;
 		}
 
+		// no database population here, just migration (edge indexes)
+		if (versionLocal <= 5) {
+			versionLocal = 6;
+		}
+
+		// no database population here, just migration (period range indexes)
+		if (versionLocal <= 6) {
+			versionLocal = 7;
+		}
+
 		// upsert config defaults
 		String query = "UPDATE Config SET key = 'version', value = '" + Integer.toString(versionLocal) + "' UPSERT WHERE key = 'version'";
 		db.command(new OCommandSQL(query)).execute();
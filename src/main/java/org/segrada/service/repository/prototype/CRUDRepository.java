@@ -49,6 +49,24 @@ public interface CRUDRepository<T extends SegradaEntity> extends SegradaReposito
 	 */
 	List<T> findNextEntriesFrom(String uid, int number);
 
+	/**
+	 * Split all ids of this entity type into ranges of at most partitionSize entries - used to process entities in
+	 * parallel. Ranges are aligned to multiples of partitionSize, so they stay the same when entries are added.
+	 * @param partitionSize maximum number of entries per range
+	 * @return list of inclusive ranges as id pairs, e.g. ["#13:0", "#13:999"]
+	 */
+	List<String[]> findIdRanges(int partitionSize);
+
+	/**
+	 * Find entries within id range (inclusive) up to number entries
+	 * @param fromId first id of range
+	 * @param toId last id of range
+	 * @param afterId last id of previous call to continue with or null to start with fromId
+	 * @param number maximum number of entries
+	 * @return list of entries or null if none exist
+	 */
+	List<T> findEntriesInRange(String fromId, String toId, String afterId, int number);
+
 	/**
 	 * find single instance by id
 	 * @param id of entity to find
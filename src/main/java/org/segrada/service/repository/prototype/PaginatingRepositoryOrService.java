@@ -23,5 +23,13 @@ import java.util.Map;
  * Repositories and services enabled to paginate have this
  */
 public interface PaginatingRepositoryOrService<T extends SegradaEntity> {
+	/**
+	 * get page of entities
+	 * @param page page to show starting with 1
+	 * @param entriesPerPage entries per page
+	 * @param filters filter options - filter "cursor" may contain the cursor of the previous page (see
+	 *                PaginationInfo.getCursor) to fetch the page by keyset instead of skipping previous entries
+	 * @return pagination info
+	 */
 	PaginationInfo<T> paginate(int page, int entriesPerPage, Map<String, Object> filters);
 }
@@ -1,6 +1,7 @@
 package org.segrada.service.repository.prototype;
 
 import org.segrada.model.prototype.SegradaEntity;
+import org.segrada.service.util.TitleSuggester;
 
 import java.util.List;
 
@@ -30,4 +31,12 @@ public interface SearchTermRepository<T extends SegradaEntity> {
 	 * @return list of entities
 	 */
 	List<T> findBySearchTerm(String term, int maximum, boolean returnWithoutTerm);
+
+	/**
+	 * Find titles of entities for typeahead fields - answered from memory
+	 * @param term search term
+	 * @param maximum maximum hits to return
+	 * @return list of suggestions
+	 */
+	List<TitleSuggester.Suggestion> suggest(String term, int maximum);
 }
@@ -18,6 +18,25 @@ package org.segrada.service.util;
  * Lazy loaded object - used in orient db
  */
 public abstract class AbstractLazyLoadedObject implements java.lang.reflect.InvocationHandler {
+	/**
+	 * number of lazy loads fired in current thread (reset per request)
+	 */
+	private static final ThreadLocal<int[]> loadCount = ThreadLocal.withInitial(() -> new int[1]);
+
+	/**
+	 * @return number of lazy loads fired in current thread since last reset
+	 */
+	public static int getLoadCount() {
+		return loadCount.get()[0];
+	}
+
+	/**
+	 * reset lazy load counter of current thread
+	 */
+	public static void resetLoadCount() {
+		loadCount.get()[0] = 0;
+	}
+
 	/**
 	 * Target object
 	 */
@@ -34,6 +53,7 @@ public abstract class AbstractLazyLoadedObject implements java.lang.reflect.Invo
 	public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) throws Throwable {
 		if (target == null) {
 			target = loadObject();
+			loadCount.get()[0]++;
 		}
 		return method.invoke(target, args);
 	}
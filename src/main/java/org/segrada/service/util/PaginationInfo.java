@@ -3,6 +3,7 @@ package org.segrada.service.util;
 import org.segrada.model.prototype.SegradaEntity;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
@@ -47,15 +48,41 @@ public class PaginationInfo<T extends SegradaEntity> {
 	 */
 	private final List<T> entities;
 
+	/**
+	 * cursor pointing to the next page (keyset pagination) or null
+	 */
+	private final String cursor;
+
+	/**
+	 * facet counts by field and value (search results only) or null
+	 */
+	private final Map<String, Map<String, Integer>> facets;
+
 	/**
 	 * constructor
 	 */
 	public PaginationInfo(int page, int pages, int total, int entriesPerPage, List<T> entities) {
+		this(page, pages, total, entriesPerPage, entities, null);
+	}
+
+	/**
+	 * constructor
+	 */
+	public PaginationInfo(int page, int pages, int total, int entriesPerPage, List<T> entities, String cursor) {
+		this(page, pages, total, entriesPerPage, entities, cursor, null);
+	}
+
+	/**
+	 * constructor
+	 */
+	public PaginationInfo(int page, int pages, int total, int entriesPerPage, List<T> entities, String cursor, Map<String, Map<String, Integer>> facets) {
 		this.page = page;
 		this.pages = pages;
 		this.total = total;
 		this.entriesPerPage = entriesPerPage;
 		this.entities = entities;
+		this.cursor = cursor;
+		this.facets = facets;
 	}
 
 	/**
@@ -126,4 +153,18 @@ public class PaginationInfo<T extends SegradaEntity> {
 	public List<T> getEntities() {
 		return entities;
 	}
+
+	/**
+	 * @return cursor to pass as filter "cursor" when fetching the next page (null if not supported or last page)
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * @return number of hits per value by facet field (e.g. className, tag), most frequent values first - null if not requested
+	 */
+	public Map<String, Map<String, Integer>> getFacets() {
+		return facets;
+	}
 }
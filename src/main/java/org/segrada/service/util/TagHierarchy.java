@@ -0,0 +1,453 @@
+package org.segrada.service.util;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * In-memory graph of tags and their parent/child connections: tags are mapped to int slots with adjacency arrays and
+ * precomputed ancestor/descendant bitsets, so hierarchy and cycle checks do not need database queries. Thread safe.
+ */
+public class TagHierarchy {
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * tag id => slot
+	 */
+	private final Map<String, Integer> slots = new HashMap<>();
+
+	/**
+	 * slot => tag id (null for free slots)
+	 */
+	private String[] ids = new String[0];
+
+	/**
+	 * adjacency arrays in order of connection
+	 */
+	private int[][] children = new int[0][];
+	private int[] childCount = new int[0];
+	private int[][] parents = new int[0][];
+	private int[] parentCount = new int[0];
+
+	/**
+	 * transitive closure, not including slot itself
+	 */
+	private BitSet[] ancestors = new BitSet[0];
+	private BitSet[] descendants = new BitSet[0];
+
+	/**
+	 * free slots to reuse and number of slots in use (including free ones)
+	 */
+	private int[] free = new int[0];
+	private int freeCount = 0;
+	private int used = 0;
+
+	/**
+	 * replace whole hierarchy - connections creating circles are skipped
+	 * @param tagIds all tag ids
+	 * @param connections pairs of parent and child ids
+	 */
+	public void rebuild(Collection<String> tagIds, Collection<String[]> connections) {
+		lock.writeLock().lock();
+		try {
+			slots.clear();
+			ids = new String[0];
+			children = new int[0][];
+			childCount = new int[0];
+			parents = new int[0][];
+			parentCount = new int[0];
+			ancestors = new BitSet[0];
+			descendants = new BitSet[0];
+			freeCount = 0;
+			used = 0;
+
+			for (String id : tagIds) slot(id);
+			for (String[] connection : connections) {
+				if (connection.length == 2) connectSlots(slot(connection[0]), slot(connection[1]));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of tags
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return slots.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param id of tag
+	 * @return true if tag is known
+	 */
+	public boolean contains(String id) {
+		lock.readLock().lock();
+		try {
+			return slots.containsKey(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * add tag without connections
+	 * @param id of tag
+	 */
+	public void addTag(String id) {
+		if (id == null) return;
+
+		lock.writeLock().lock();
+		try {
+			slot(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * remove tag and all of its connections
+	 * @param id of tag
+	 */
+	public void removeTag(String id) {
+		lock.writeLock().lock();
+		try {
+			Integer slot = slots.remove(id);
+			if (slot == null) return;
+
+			// remove connections
+			while (parentCount[slot] > 0) disconnectSlots(parents[slot][parentCount[slot] - 1], slot);
+			while (childCount[slot] > 0) disconnectSlots(slot, children[slot][childCount[slot] - 1]);
+
+			// free slot
+			ids[slot] = null;
+			if (freeCount == free.length) free = Arrays.copyOf(free, Math.max(8, freeCount * 2));
+			free[freeCount++] = slot;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * connect parent and child, unknown tags are added
+	 * @param parentId id of parent tag
+	 * @param childId id of child tag
+	 * @return false if connection would create a circle
+	 */
+	public boolean connect(String parentId, String childId) {
+		if (parentId == null || childId == null) return false;
+
+		lock.writeLock().lock();
+		try {
+			return connectSlots(slot(parentId), slot(childId));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * remove connection between parent and child
+	 * @param parentId id of parent tag
+	 * @param childId id of child tag
+	 */
+	public void disconnect(String parentId, String childId) {
+		lock.writeLock().lock();
+		try {
+			Integer parent = slots.get(parentId);
+			Integer child = slots.get(childId);
+			if (parent != null && child != null) disconnectSlots(parent, child);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param parentId id of parent tag
+	 * @param childId id of child tag
+	 * @return true if tags are connected directly
+	 */
+	public boolean isConnected(String parentId, String childId) {
+		lock.readLock().lock();
+		try {
+			Integer parent = slots.get(parentId);
+			Integer child = slots.get(childId);
+			return parent != null && child != null && indexOf(children[parent], childCount[parent], child) >= 0;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param ancestorId id of possible ancestor
+	 * @param id of tag
+	 * @return true if ancestorId is a direct or indirect parent of id
+	 */
+	public boolean isAncestorOf(String ancestorId, String id) {
+		lock.readLock().lock();
+		try {
+			Integer ancestor = slots.get(ancestorId);
+			Integer slot = slots.get(id);
+			return ancestor != null && slot != null && ancestors[slot].get(ancestor);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param parentId id of parent tag
+	 * @param childId id of child tag
+	 * @return true if connecting parent and child would create a circle
+	 */
+	public boolean wouldCreateCircle(String parentId, String childId) {
+		return parentId != null && (parentId.equals(childId) || isAncestorOf(childId, parentId));
+	}
+
+	/**
+	 * @param id of tag
+	 * @return ids of all direct and indirect parents
+	 */
+	public Set<String> getAncestorIds(String id) {
+		lock.readLock().lock();
+		try {
+			Integer slot = slots.get(id);
+			return slot == null ? new HashSet<>() : toIds(ancestors[slot]);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param id of tag
+	 * @return ids of all direct and indirect children
+	 */
+	public Set<String> getDescendantIds(String id) {
+		lock.readLock().lock();
+		try {
+			Integer slot = slots.get(id);
+			return slot == null ? new HashSet<>() : toIds(descendants[slot]);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param id of tag
+	 * @return ids of direct parents in order of connection
+	 */
+	public List<String> getParentIds(String id) {
+		lock.readLock().lock();
+		try {
+			Integer slot = slots.get(id);
+			return slot == null ? new ArrayList<>() : toIds(parents[slot], parentCount[slot]);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param id of tag
+	 * @return ids of direct children in order of connection
+	 */
+	public List<String> getChildIds(String id) {
+		lock.readLock().lock();
+		try {
+			Integer slot = slots.get(id);
+			return slot == null ? new ArrayList<>() : toIds(children[slot], childCount[slot]);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * get tag and all of its children in depth first order (like traversing the tree)
+	 * @param id of tag
+	 * @return list of ids starting with id, empty if tag is unknown
+	 */
+	public List<String> getSubTreeIds(String id) {
+		lock.readLock().lock();
+		try {
+			List<String> list = new ArrayList<>();
+			Integer slot = slots.get(id);
+			if (slot == null) return list;
+
+			BitSet visited = new BitSet(used);
+			Deque<Integer> stack = new ArrayDeque<>();
+			stack.push(slot);
+			while (!stack.isEmpty()) {
+				int current = stack.pop();
+				if (visited.get(current)) continue;
+				visited.set(current);
+				list.add(ids[current]);
+
+				// push in reverse order to visit children in order of connection
+				for (int i = childCount[current] - 1; i >= 0; i--)
+					if (!visited.get(children[current][i])) stack.push(children[current][i]);
+			}
+
+			return list;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * get slot of id, create it if needed - has to be called with write lock held
+	 */
+	private int slot(String id) {
+		Integer slot = slots.get(id);
+		if (slot != null) return slot;
+
+		if (freeCount > 0) slot = free[--freeCount];
+		else {
+			if (used == ids.length) grow(Math.max(16, used * 2));
+			slot = used++;
+		}
+
+		ids[slot] = id;
+		childCount[slot] = 0;
+		parentCount[slot] = 0;
+		ancestors[slot] = new BitSet();
+		descendants[slot] = new BitSet();
+		slots.put(id, slot);
+
+		return slot;
+	}
+
+	/**
+	 * grow slot arrays
+	 */
+	private void grow(int capacity) {
+		int old = ids.length;
+		ids = Arrays.copyOf(ids, capacity);
+		children = Arrays.copyOf(children, capacity);
+		childCount = Arrays.copyOf(childCount, capacity);
+		parents = Arrays.copyOf(parents, capacity);
+		parentCount = Arrays.copyOf(parentCount, capacity);
+		ancestors = Arrays.copyOf(ancestors, capacity);
+		descendants = Arrays.copyOf(descendants, capacity);
+		for (int i = old; i < capacity; i++) {
+			children[i] = new int[2];
+			parents[i] = new int[2];
+		}
+	}
+
+	/**
+	 * connect slots and update closure incrementally
+	 */
+	private boolean connectSlots(int parent, int child) {
+		if (parent == child || ancestors[parent].get(child)) return false;
+		if (indexOf(children[parent], childCount[parent], child) >= 0) return true;
+
+		children[parent] = append(children[parent], childCount[parent]++, child);
+		parents[child] = append(parents[child], parentCount[child]++, parent);
+
+		// parent and its ancestors get child and its descendants
+		BitSet newDescendants = (BitSet) descendants[child].clone();
+		newDescendants.set(child);
+		BitSet newAncestors = (BitSet) ancestors[parent].clone();
+		newAncestors.set(parent);
+
+		for (int i = newAncestors.nextSetBit(0); i >= 0; i = newAncestors.nextSetBit(i + 1))
+			descendants[i].or(newDescendants);
+		for (int i = newDescendants.nextSetBit(0); i >= 0; i = newDescendants.nextSetBit(i + 1))
+			ancestors[i].or(newAncestors);
+
+		return true;
+	}
+
+	/**
+	 * disconnect slots and recompute closure of affected slots
+	 */
+	private void disconnectSlots(int parent, int child) {
+		int index = indexOf(children[parent], childCount[parent], child);
+		if (index < 0) return;
+
+		remove(children[parent], childCount[parent], index);
+		childCount[parent]--;
+		remove(parents[child], parentCount[child], indexOf(parents[child], parentCount[child], parent));
+		parentCount[child]--;
+
+		// other paths might still exist, so recalculate closure for all slots above and below connection
+		BitSet above = (BitSet) ancestors[parent].clone();
+		above.set(parent);
+		BitSet below = (BitSet) descendants[child].clone();
+		below.set(child);
+
+		for (int i = above.nextSetBit(0); i >= 0; i = above.nextSetBit(i + 1))
+			descendants[i] = reachable(i, children, childCount);
+		for (int i = below.nextSetBit(0); i >= 0; i = below.nextSetBit(i + 1))
+			ancestors[i] = reachable(i, parents, parentCount);
+	}
+
+	/**
+	 * @return all slots reachable from start using adjacency arrays, not including start
+	 */
+	private BitSet reachable(int start, int[][] adjacency, int[] count) {
+		BitSet reached = new BitSet(used);
+		int[] stack = new int[Math.max(16, count[start])];
+		int top = 0;
+		stack[top++] = start;
+
+		while (top > 0) {
+			int current = stack[--top];
+			for (int i = 0; i < count[current]; i++) {
+				int next = adjacency[current][i];
+				if (reached.get(next)) continue;
+				reached.set(next);
+				if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+				stack[top++] = next;
+			}
+		}
+
+		return reached;
+	}
+
+	private Set<String> toIds(BitSet bits) {
+		Set<String> set = new HashSet<>();
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+			set.add(ids[i]);
+		return set;
+	}
+
+	private List<String> toIds(int[] slotList, int count) {
+		List<String> list = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			list.add(ids[slotList[i]]);
+		return list;
+	}
+
+	private static int indexOf(int[] array, int count, int value) {
+		for (int i = 0; i < count; i++)
+			if (array[i] == value) return i;
+		return -1;
+	}
+
+	private static int[] append(int[] array, int count, int value) {
+		if (count == array.length) array = Arrays.copyOf(array, Math.max(2, count * 2));
+		array[count] = value;
+		return array;
+	}
+
+	private static void remove(int[] array, int count, int index) {
+		System.arraycopy(array, index + 1, array, index, count - index - 1);
+	}
+}
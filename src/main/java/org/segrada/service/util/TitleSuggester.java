@@ -0,0 +1,320 @@
+package org.segrada.service.util;
+
+import org.segrada.model.base.AbstractSegradaEntity;
+
+import javax.annotation.Nullable;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * In-memory typeahead index of titles and alternative titles: normalized words are kept in a sorted map, so records
+ * having words starting with each word of the search term are found without database queries. Records are added,
+ * replaced and removed one by one, so the index can be kept up to date on each change. Thread safe.
+ */
+public class TitleSuggester {
+	/**
+	 * separates words
+	 */
+	private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/**
+	 * combining marks removed when normalizing
+	 */
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * record id => entry
+	 */
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	/**
+	 * normalized word => entries containing word
+	 */
+	private final TreeMap<String, Set<Entry>> words = new TreeMap<>();
+
+	/**
+	 * replace all records of a class
+	 * @param className model class name, e.g. "Node"
+	 * @param textsById texts of each record by record id - the first non empty text is the title
+	 */
+	public void rebuild(String className, Map<String, String[]> textsById) {
+		lock.writeLock().lock();
+		try {
+			List<String> ids = new ArrayList<>();
+			for (Entry entry : entries.values())
+				if (entry.className.equals(className)) ids.add(entry.id);
+			for (String id : ids) removeEntry(id);
+
+			for (Map.Entry<String, String[]> record : textsById.entrySet())
+				addEntry(className, record.getKey(), record.getValue());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * add or replace record
+	 * @param className model class name, e.g. "Node"
+	 * @param id record id
+	 * @param texts title and alternative titles - the first non empty text is the title
+	 */
+	public void put(String className, String id, String... texts) {
+		lock.writeLock().lock();
+		try {
+			removeEntry(id);
+			addEntry(className, id, texts);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * remove record
+	 * @param id record id
+	 */
+	public void remove(String id) {
+		lock.writeLock().lock();
+		try {
+			removeEntry(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of records
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * find records having words starting with each word of the term - records whose title starts with the term come
+	 * first, then records matching by title, then records matching by alternative titles, shorter titles first
+	 * @param term search term
+	 * @param maximum maximum number of suggestions
+	 * @param classNames classes to return records of (null for all)
+	 * @return suggestions, empty if term does not contain any words
+	 */
+	public List<Suggestion> suggest(@Nullable String term, int maximum, @Nullable Collection<String> classNames) {
+		String[] termWords = normalizeWords(term);
+		if (termWords.length == 0 || maximum <= 0) return new ArrayList<>();
+
+		// longest word has the fewest candidates
+		String longest = termWords[0];
+		for (String word : termWords)
+			if (word.length() > longest.length()) longest = word;
+		String normalizedTerm = String.join(" ", termWords);
+
+		// worst match on top, so it can be replaced by better ones
+		PriorityQueue<Match> best = new PriorityQueue<>(maximum + 1, Collections.reverseOrder());
+		Set<Entry> seen = new HashSet<>();
+
+		lock.readLock().lock();
+		try {
+			for (Set<Entry> candidates : words.subMap(longest, true, longest + Character.MAX_VALUE, false).values()) {
+				for (Entry entry : candidates) {
+					// entry found by another word already?
+					if (!seen.add(entry) || (classNames != null && !classNames.contains(entry.className))) continue;
+
+					int rank = entry.rank(termWords, normalizedTerm);
+					if (rank < 0) continue;
+
+					best.add(new Match(entry, rank));
+					if (best.size() > maximum) best.poll();
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		List<Match> matches = new ArrayList<>(best);
+		Collections.sort(matches);
+		List<Suggestion> suggestions = new ArrayList<>(matches.size());
+		for (Match match : matches)
+			suggestions.add(match.entry.suggestion);
+		return suggestions;
+	}
+
+	/**
+	 * lower case words without diacritics, ß as ss
+	 * @param text to split
+	 * @return normalized words
+	 */
+	public static String[] normalizeWords(@Nullable String text) {
+		if (text == null || text.isEmpty()) return new String[0];
+
+		String normalized = MARKS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)).replaceAll("")
+				.replace("ß", "ss");
+		List<String> list = new ArrayList<>();
+		for (String word : WORD_SEPARATOR.split(normalized))
+			if (!word.isEmpty()) list.add(word);
+		return list.toArray(new String[list.size()]);
+	}
+
+	/**
+	 * add entry to maps - to be called with write lock held
+	 */
+	private void addEntry(String className, String id, String[] texts) {
+		String title = null;
+		Set<String> entryWords = new LinkedHashSet<>();
+		int titleWords = 0;
+		for (String text : texts) {
+			if (text == null || text.trim().isEmpty()) continue;
+			if (title == null) {
+				title = text.trim();
+				Collections.addAll(entryWords, normalizeWords(title));
+				titleWords = entryWords.size();
+			} else Collections.addAll(entryWords, normalizeWords(text));
+		}
+		if (title == null) return;
+
+		Entry entry = new Entry(new Suggestion(className, id, title), entryWords.toArray(new String[entryWords.size()]), titleWords);
+		entries.put(id, entry);
+		for (String word : entry.words)
+			words.computeIfAbsent(word, k -> new HashSet<>()).add(entry);
+	}
+
+	/**
+	 * remove entry from maps - to be called with write lock held
+	 */
+	private void removeEntry(String id) {
+		Entry entry = entries.remove(id);
+		if (entry == null) return;
+
+		for (String word : entry.words) {
+			Set<Entry> set = words.get(word);
+			if (set != null) {
+				set.remove(entry);
+				if (set.isEmpty()) words.remove(word);
+			}
+		}
+	}
+
+	/**
+	 * suggested record
+	 */
+	public static class Suggestion {
+		private final String className;
+		private final String id;
+		private final String title;
+
+		public Suggestion(String className, String id, String title) {
+			this.className = className;
+			this.id = id;
+			this.title = title;
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getUid() {
+			return AbstractSegradaEntity.convertOrientIdToUid(id);
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		@Override
+		public String toString() {
+			return "{" + className + "}" + id + ", " + title;
+		}
+	}
+
+	/**
+	 * indexed record
+	 */
+	private static class Entry {
+		private final Suggestion suggestion;
+		private final String className;
+		private final String id;
+		private final String normalizedTitle;
+
+		/**
+		 * distinct words, words of title first
+		 */
+		private final String[] words;
+		private final int titleWords;
+
+		private Entry(Suggestion suggestion, String[] words, int titleWords) {
+			this.suggestion = suggestion;
+			this.className = suggestion.className;
+			this.id = suggestion.id;
+			this.normalizedTitle = String.join(" ", normalizeWords(suggestion.title));
+			this.words = words;
+			this.titleWords = titleWords;
+		}
+
+		/**
+		 * rank entry for term
+		 * @param termWords normalized words of term
+		 * @param normalizedTerm normalized words joined by spaces
+		 * @return 0 if title starts with term, 1 if all words match title, 2 if all words match, -1 if not matching
+		 */
+		private int rank(String[] termWords, String normalizedTerm) {
+			if (normalizedTitle.startsWith(normalizedTerm)) return 0;
+
+			int rank = 1;
+			for (String termWord : termWords) {
+				int found = -1;
+				for (int i = 0; i < words.length && found < 0; i++)
+					if (words[i].startsWith(termWord)) found = i;
+				if (found < 0) return -1;
+				if (found >= titleWords) rank = 2;
+			}
+			return rank;
+		}
+	}
+
+	/**
+	 * entry ranked for a term - better matches are smaller
+	 */
+	private static class Match implements Comparable<Match> {
+		private final Entry entry;
+		private final int rank;
+
+		private Match(Entry entry, int rank) {
+			this.entry = entry;
+			this.rank = rank;
+		}
+
+		@Override
+		public int compareTo(Match o) {
+			if (rank != o.rank) return Integer.compare(rank, o.rank);
+			int c = Integer.compare(entry.normalizedTitle.length(), o.entry.normalizedTitle.length());
+			if (c != 0) return c;
+			c = entry.normalizedTitle.compareTo(o.entry.normalizedTitle);
+			return c != 0 ? c : entry.id.compareTo(o.entry.id);
+		}
+	}
+}
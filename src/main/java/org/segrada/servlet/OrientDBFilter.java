@@ -1,7 +1,9 @@
 package org.segrada.servlet;
 
 import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
 import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.id.ORID;
@@ -16,9 +18,25 @@ import org.segrada.model.User;
 import org.segrada.model.UserGroup;
 import org.segrada.model.prototype.IUser;
 import org.segrada.model.prototype.IUserGroup;
+import org.segrada.search.SearchEngine;
 import org.segrada.search.lucene.LuceneSearchEngine;
+import org.segrada.search.solr.SolrSearchEngine;
+import org.segrada.service.base.AbstractFullTextService;
+import org.segrada.service.importer.BulkImportJob;
+import org.segrada.service.index.DetachedServiceFactory;
+import org.segrada.service.index.ReindexJob;
+import org.segrada.service.index.SearchIndexUpdateQueue;
 import org.segrada.service.repository.RememberMeRepository;
+import org.segrada.service.repository.factory.RepositoryFactory;
+import org.segrada.service.repository.orientdb.OrientDbFileRepository;
+import org.segrada.service.repository.orientdb.OrientDbNodeRepository;
+import org.segrada.service.repository.orientdb.OrientDbPictogramRepository;
+import org.segrada.service.repository.orientdb.OrientDbSourceRepository;
+import org.segrada.service.repository.orientdb.OrientDbTagRepository;
+import org.segrada.service.repository.orientdb.base.AbstractOrientDbRepository;
+import org.segrada.service.repository.orientdb.base.LookupCache;
 import org.segrada.service.repository.orientdb.init.OrientDbSchemaUpdater;
+import org.segrada.service.util.AbstractLazyLoadedObject;
 import org.segrada.session.ApplicationSettings;
 import org.segrada.session.Identity;
 import org.segrada.util.PasswordEncoder;
@@ -30,6 +48,9 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -54,6 +75,13 @@ import java.util.regex.Pattern;
 public class OrientDBFilter implements Filter {
 	private final static Logger logger = LoggerFactory.getLogger(OrientDBFilter.class.getName());
 
+	/**
+	 * repositories whose entities are offered by the title suggester
+	 */
+	private static final List<Class<? extends AbstractOrientDbRepository>> SUGGESTED_REPOSITORIES = Arrays.asList(
+			OrientDbNodeRepository.class, OrientDbTagRepository.class, OrientDbFileRepository.class,
+			OrientDbSourceRepository.class, OrientDbPictogramRepository.class);
+
 	/**
 	 * filter configuration
 	 */
@@ -95,6 +123,39 @@ public class OrientDBFilter implements Filter {
 		updater.buildOrUpdateSchema();
 		updater.populateWithData(passwordEncoder);
 
+		// load tag hierarchy and title suggestions into memory
+		DetachedServiceFactory detachedServiceFactory = injector.getInstance(DetachedServiceFactory.class);
+		ODatabaseDocumentTx tagDb = detachedServiceFactory.openDatabase();
+		try {
+			RepositoryFactory repositoryFactory = detachedServiceFactory.createRepositoryFactory(tagDb);
+			OrientDbTagRepository tagRepository = repositoryFactory.produceRepository(OrientDbTagRepository.class);
+			if (tagRepository != null) tagRepository.rebuildTagHierarchy();
+
+			for (Class<? extends AbstractOrientDbRepository> repositoryClass : SUGGESTED_REPOSITORIES) {
+				AbstractOrientDbRepository repository = repositoryFactory.produceRepository(repositoryClass);
+				if (repository != null) repository.rebuildSuggestions();
+			}
+		} finally {
+			tagDb.close();
+		}
+
+		// resume reindexing interrupted by shutdown or crash - before replaying updates, so they reach the new index
+		ReindexJob reindexJob = injector.getInstance(ReindexJob.class);
+		if (reindexJob.resume())
+			logger.info("Resumed interrupted reindexing");
+		else if (injector.getInstance(SearchEngine.class).isIndexOutdated()) {
+			// migrate index written with another layout (e.g. term vectors) - search stays available meanwhile
+			List<String> serviceClasses = new ArrayList<>();
+			for (AbstractFullTextService service : injector.getInstance(Key.get(new TypeLiteral<Map<String, AbstractFullTextService>>() {})).values())
+				serviceClasses.add(service.getClass().getName());
+			if (reindexJob.start(serviceClasses, false))
+				logger.info("Search index layout is outdated - rebuilding index in background");
+		}
+
+		// start asynchronous search index updates - replays pending updates of last run
+		if (applicationSettings.getSettingAsBoolean("index.queue.enabled", true))
+			injector.getInstance(SearchIndexUpdateQueue.class).start();
+
 		// add exclude patterns
 		String pattern = filterConfig.getInitParameter("excludePatterns");
 		excludePatterns = Pattern.compile(pattern);
@@ -169,12 +230,22 @@ public class OrientDBFilter implements Filter {
 			}
 		}
 
+		// count lazy loads of this request
+		AbstractLazyLoadedObject.resetLoadCount();
+
 		// do whatever has to be done
 		try {
 			filterChain.doFilter(servletRequest, servletResponse);
 		} finally {
+			if (logger.isDebugEnabled()) {
+				LookupCache lookupCache = LookupCache.getExisting(db.getURL());
+				if (lookupCache != null) logger.debug(lookupCache.toString());
+			}
+
 			// close database instance
 			db.close();
+			if (logger.isDebugEnabled() && AbstractLazyLoadedObject.getLoadCount() > 0)
+				logger.debug(AbstractLazyLoadedObject.getLoadCount() + " lazy loads fired for " + url);
 			//graph.shutdown(); // do not shutdown graph!
 			if (logger.isTraceEnabled())
 				logger.trace("DB instance destroyed");
@@ -246,6 +317,27 @@ public class OrientDBFilter implements Filter {
 		// set server status
 		SegradaApplication.setServerStatus(SegradaApplication.STATUS_STOPPING);
 
+		// stop reindexing - finished ranges are kept to resume on next start
+		try {
+			injector.getInstance(ReindexJob.class).shutdown(10000L);
+		} catch (Exception e) {
+			logger.warn("Could not shut down ReindexJob properly.", e);
+		}
+
+		// stop bulk import - rows read so far are saved and indexed
+		try {
+			injector.getInstance(BulkImportJob.class).shutdown(10000L);
+		} catch (Exception e) {
+			logger.warn("Could not shut down BulkImportJob properly.", e);
+		}
+
+		// write pending search index updates while database is still open
+		try {
+			injector.getInstance(SearchIndexUpdateQueue.class).shutdown(10000L);
+		} catch (Exception e) {
+			logger.warn("Could not shut down SearchIndexUpdateQueue properly.", e);
+		}
+
 		try {
 			OrientGraphFactory orientGraphFactory = injector.getInstance(OrientGraphFactory.class);
 			if (orientGraphFactory != null) {
@@ -261,14 +353,20 @@ public class OrientDBFilter implements Filter {
 
 		logger.info("OrientDB has been shut down.");
 
-		// also shut down lucene
+		// also shut down lucene - get bound search engine, so we close the writer actually in use
 		try {
-			LuceneSearchEngine luceneSearchEngine = injector.getInstance(LuceneSearchEngine.class);
-			luceneSearchEngine.destroy();
+			SearchEngine searchEngine = injector.getInstance(SearchEngine.class);
+			if (searchEngine instanceof LuceneSearchEngine) {
+				((LuceneSearchEngine) searchEngine).destroy();
+
+				logger.info("LuceneSearchEngine has been shut down.");
+			} else if (searchEngine instanceof SolrSearchEngine) {
+				((SolrSearchEngine) searchEngine).destroy();
 
-			logger.info("LuceneSearchEngine has been shut down.");
+				logger.info("SolrSearchEngine has been shut down.");
+			}
 		} catch (Exception e) {
-			logger.warn("Could not shut down LuceneSearchEngine properly.", e);
+			logger.warn("Could not shut down search engine properly.", e);
 		}
 
 		// remove injector
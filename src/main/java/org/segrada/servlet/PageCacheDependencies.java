@@ -0,0 +1,315 @@
+package org.segrada.servlet;
+
+import com.google.inject.Singleton;
+import net.sf.ehcache.Ehcache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Keeps track of what cached pages depend on, so saving an entity evicts affected pages only: Pages depend on the
+ * uids in their url and content and - except for single entity pages like show/uid - on the list of their model.
+ */
+@Singleton
+public class PageCacheDependencies {
+	private static final Logger logger = LoggerFactory.getLogger(PageCacheDependencies.class);
+
+	/**
+	 * models shown on many pages without linking their uid - changes flush the whole cache
+	 */
+	private static final Set<String> globalModels = new HashSet<>(Arrays.asList("tag", "color", "relation_type", "user", "user_group"));
+
+	/**
+	 * models whose pages might change on any change of data
+	 */
+	private static final String[] alwaysAffectedModels = new String[]{"index", "search"};
+
+	/**
+	 * uids like 12-3 in urls and page contents
+	 */
+	private static final Pattern uidPattern = Pattern.compile("(?<![0-9\\-])[0-9]+-[0-9]+(?![0-9\\-])");
+
+	/**
+	 * pages showing single entity - they do not depend on the list of their model
+	 */
+	private static final Pattern entityPagePattern = Pattern.compile("^/[a-z_]+/(show|edit|get|download|thumbnail|file)/[0-9]+-[0-9]+$");
+
+	/**
+	 * counters per url pattern
+	 */
+	private static class Statistics {
+		private final AtomicLong hits = new AtomicLong(0);
+
+		private final AtomicLong misses = new AtomicLong(0);
+
+		private final AtomicLong evictions = new AtomicLong(0);
+	}
+
+	/**
+	 * dependencies of a cached page
+	 */
+	private static class Entry {
+		private final String pattern;
+
+		private final Set<String> dependencies;
+
+		Entry(String pattern, Set<String> dependencies) {
+			this.pattern = pattern;
+			this.dependencies = dependencies;
+		}
+	}
+
+	/**
+	 * cache keys mapped by dependency
+	 */
+	private final Map<String, Set<String>> keysByDependency = new HashMap<>();
+
+	/**
+	 * dependencies mapped by cache key
+	 */
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	private final Map<String, Statistics> statistics = new TreeMap<>();
+
+	/**
+	 * create dependency on an entity
+	 * @param uid of entity
+	 * @return dependency
+	 */
+	public static String uidDependency(String uid) {
+		return "uid:" + uid;
+	}
+
+	/**
+	 * create dependency on list of model
+	 * @param model url part of model, e.g. "node" or "source_reference"
+	 * @return dependency
+	 */
+	public static String modelDependency(String model) {
+		return "model:" + model;
+	}
+
+	/**
+	 * convert model name to url part, e.g. SourceReference to source_reference
+	 * @param modelName name of model
+	 * @return url part
+	 */
+	public static String modelToUrlPart(String modelName) {
+		return modelName.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+	}
+
+	/**
+	 * get url pattern used for statistics, e.g. /node/show/* for /node/show/12-3
+	 * @param urlPart url without context path
+	 * @return pattern
+	 */
+	public static String urlPattern(String urlPart) {
+		String[] parts = urlPart.split("/");
+		StringBuilder sb = new StringBuilder();
+
+		// first empty part is skipped
+		for (int i = 1; i < parts.length; i++) {
+			sb.append('/');
+			if (i > 2 || uidPattern.matcher(parts[i]).matches()) {
+				sb.append('*');
+				break;
+			}
+			sb.append(parts[i]);
+		}
+
+		return sb.length() == 0 ? "/" : sb.toString();
+	}
+
+	/**
+	 * get dependencies defined by url
+	 * @param urlPart url without context path
+	 * @return set of dependencies
+	 */
+	public static Set<String> urlDependencies(String urlPart) {
+		Set<String> dependencies = new HashSet<>();
+
+		// model lists
+		if (!entityPagePattern.matcher(urlPart).matches()) {
+			String[] parts = urlPart.split("/");
+			dependencies.add(modelDependency(parts.length < 2 || parts[1].isEmpty() ? "index" : parts[1]));
+		}
+
+		addUidDependencies(urlPart, dependencies);
+
+		return dependencies;
+	}
+
+	/**
+	 * add uids found in text as dependencies
+	 * @param text to scan
+	 * @param dependencies to add to
+	 */
+	public static void addUidDependencies(CharSequence text, Set<String> dependencies) {
+		Matcher matcher = uidPattern.matcher(text);
+		while (matcher.find())
+			dependencies.add(uidDependency(matcher.group()));
+	}
+
+	/**
+	 * register dependencies of cached page
+	 * @param key cache key
+	 * @param pattern url pattern
+	 * @param dependencies of page
+	 */
+	public synchronized void register(String key, String pattern, Set<String> dependencies) {
+		remove(key);
+
+		entries.put(key, new Entry(pattern, dependencies));
+		for (String dependency : dependencies)
+			keysByDependency.computeIfAbsent(dependency, k -> new HashSet<>()).add(key);
+	}
+
+	/**
+	 * forget cached page - called when page is removed from cache
+	 * @param key cache key
+	 */
+	public synchronized void remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry == null) return;
+
+		for (String dependency : entry.dependencies) {
+			Set<String> keys = keysByDependency.get(dependency);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) keysByDependency.remove(dependency);
+			}
+		}
+	}
+
+	/**
+	 * forget all pages - called when cache is flushed
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		keysByDependency.clear();
+	}
+
+	/**
+	 * @return number of pages tracked
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * evict pages affected by change of entities
+	 * @param cache page cache
+	 * @param model url part of model changed, e.g. "node" (lists of this model are evicted)
+	 * @param uids of entities changed (pages depending on them are evicted)
+	 * @return number of pages evicted
+	 */
+	public int invalidate(Ehcache cache, String model, String... uids) {
+		if (cache == null) return 0;
+
+		// some models are shown everywhere
+		if (model == null || globalModels.contains(model)) {
+			cache.removeAll();
+			return -1;
+		}
+
+		Set<String> dependencies = new HashSet<>();
+		dependencies.add(modelDependency(model));
+		for (String alwaysAffected : alwaysAffectedModels)
+			dependencies.add(modelDependency(alwaysAffected));
+		for (String uid : uids)
+			if (uid != null && !uid.isEmpty()) dependencies.add(uidDependency(uid));
+
+		return evict(cache, dependencies);
+	}
+
+	/**
+	 * evict pages depending on any of the dependencies
+	 * @param cache page cache
+	 * @param dependencies to look for
+	 * @return number of pages evicted
+	 */
+	public int evict(Ehcache cache, Collection<String> dependencies) {
+		List<String> keys = new ArrayList<>();
+		synchronized (this) {
+			for (String dependency : dependencies) {
+				Set<String> dependent = keysByDependency.get(dependency);
+				if (dependent != null) keys.addAll(dependent);
+			}
+
+			for (String key : new HashSet<>(keys)) {
+				Entry entry = entries.get(key);
+				if (entry != null) getStatistics(entry.pattern).evictions.incrementAndGet();
+				remove(key);
+			}
+		}
+
+		// remove outside of lock - cache listener calls remove again
+		int evicted = 0;
+		for (String key : new HashSet<>(keys))
+			if (cache.remove(key)) evicted++;
+
+		if (logger.isDebugEnabled())
+			logger.debug("Evicted " + evicted + " cached pages depending on " + dependencies);
+
+		return evicted;
+	}
+
+	/**
+	 * count cache hit
+	 * @param pattern url pattern
+	 */
+	public void hit(String pattern) {
+		getStatistics(pattern).hits.incrementAndGet();
+	}
+
+	/**
+	 * count cache miss
+	 * @param pattern url pattern
+	 */
+	public void miss(String pattern) {
+		getStatistics(pattern).misses.incrementAndGet();
+	}
+
+	/**
+	 * @return hits, misses and evictions per url pattern
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> result = new LinkedHashMap<>();
+
+		synchronized (statistics) {
+			for (Map.Entry<String, Statistics> entry : statistics.entrySet()) {
+				Map<String, Object> values = new LinkedHashMap<>();
+				values.put("hits", entry.getValue().hits.get());
+				values.put("misses", entry.getValue().misses.get());
+				values.put("evictions", entry.getValue().evictions.get());
+				result.put(entry.getKey(), values);
+			}
+		}
+
+		return result;
+	}
+
+	private Statistics getStatistics(String pattern) {
+		synchronized (statistics) {
+			return statistics.computeIfAbsent(pattern, k -> new Statistics());
+		}
+	}
+}
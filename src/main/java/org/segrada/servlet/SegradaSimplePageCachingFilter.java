@@ -2,20 +2,28 @@ package org.segrada.servlet;
 
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.constructs.web.AlreadyGzippedException;
 import net.sf.ehcache.constructs.web.PageInfo;
 import net.sf.ehcache.constructs.web.filter.SimplePageCachingFilter;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
 import org.apache.commons.codec.binary.Hex;
 import org.segrada.session.Identity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.regex.MatchResult;
@@ -37,7 +45,8 @@ import java.util.regex.Pattern;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  *
- * Customized cache filter that filters out certain pages which should not be cached
+ * Customized cache filter that filters out certain pages which should not be cached and records what cached pages
+ * depend on (see {@link PageCacheDependencies})
  */
 @Singleton
 public class SegradaSimplePageCachingFilter extends SimplePageCachingFilter {
@@ -46,7 +55,7 @@ public class SegradaSimplePageCachingFilter extends SimplePageCachingFilter {
 	/**
 	 * excluded patterns
 	 */
-	private static final Pattern excludePatterns = Pattern.compile("/(clear_cache|reindex|locale/)");
+	private static final Pattern excludePatterns = Pattern.compile("/(clear_cache|reindex|locale/|admin/)");
 
 	/**
 	 * url parts that add a session key to the cache key in order to function properly
@@ -58,6 +67,14 @@ public class SegradaSimplePageCachingFilter extends SimplePageCachingFilter {
 	 */
 	private static final Pattern jSessionFilter = Pattern.compile(";jsessionid=[a-zA-Z0-9]+$");
 
+	/**
+	 * request attributes to pass cache key and dependencies from calculateKey to buildPage
+	 */
+	private static final String KEY_ATTRIBUTE = SegradaSimplePageCachingFilter.class.getName() + ".key";
+	private static final String PATTERN_ATTRIBUTE = SegradaSimplePageCachingFilter.class.getName() + ".pattern";
+	private static final String DEPENDENCIES_ATTRIBUTE = SegradaSimplePageCachingFilter.class.getName() + ".dependencies";
+	private static final String BUILT_ATTRIBUTE = SegradaSimplePageCachingFilter.class.getName() + ".built";
+
 	/**
 	 * reference to injector
 	 */
@@ -71,6 +88,41 @@ public class SegradaSimplePageCachingFilter extends SimplePageCachingFilter {
 		SegradaSimplePageCachingFilter.injector = injector;
 	}
 
+	@Override
+	public void doInit(FilterConfig filterConfig) throws CacheException {
+		super.doInit(filterConfig);
+
+		// forget dependencies of pages leaving the cache
+		blockingCache.getCacheEventNotificationService().registerListener(new CacheEventListenerAdapter() {
+			@Override
+			public void notifyElementRemoved(Ehcache cache, Element element) throws CacheException {
+				getDependencies().remove((String) element.getObjectKey());
+			}
+
+			@Override
+			public void notifyElementExpired(Ehcache cache, Element element) {
+				getDependencies().remove((String) element.getObjectKey());
+			}
+
+			@Override
+			public void notifyElementEvicted(Ehcache cache, Element element) {
+				getDependencies().remove((String) element.getObjectKey());
+			}
+
+			@Override
+			public void notifyRemoveAll(Ehcache cache) {
+				getDependencies().clear();
+			}
+		});
+	}
+
+	/**
+	 * @return dependency tracker of cached pages
+	 */
+	protected PageCacheDependencies getDependencies() {
+		return injector.getInstance(PageCacheDependencies.class);
+	}
+
 	@Override
 	protected void doFilter(HttpServletRequest servletRequest, HttpServletResponse servletResponse, FilterChain filterChain) throws Exception {
 		// exclude?
@@ -96,6 +148,45 @@ public class SegradaSimplePageCachingFilter extends SimplePageCachingFilter {
 		}
 	}
 
+	@Override
+	protected PageInfo buildPageInfo(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws Exception {
+		PageInfo pageInfo = super.buildPageInfo(request, response, chain);
+
+		// page had to be built => miss
+		String pattern = (String) request.getAttribute(PATTERN_ATTRIBUTE);
+		if (pattern != null) {
+			if (request.getAttribute(BUILT_ATTRIBUTE) != null) getDependencies().miss(pattern);
+			else getDependencies().hit(pattern);
+		}
+
+		return pageInfo;
+	}
+
+	@Override
+	protected PageInfo buildPage(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws AlreadyGzippedException, Exception {
+		PageInfo pageInfo = super.buildPage(request, response, chain);
+
+		// page to be cached? => register dependencies
+		String key = (String) request.getAttribute(KEY_ATTRIBUTE);
+		if (key != null && request.getAttribute(BUILT_ATTRIBUTE) == null) {
+			request.setAttribute(BUILT_ATTRIBUTE, Boolean.TRUE);
+
+			if (pageInfo.isOk()) {
+				@SuppressWarnings("unchecked")
+				Set<String> dependencies = (Set<String>) request.getAttribute(DEPENDENCIES_ATTRIBUTE);
+
+				// entities linked in page
+				String contentType = pageInfo.getContentType();
+				if (contentType != null && (contentType.startsWith("text/") || contentType.contains("json")))
+					PageCacheDependencies.addUidDependencies(new String(pageInfo.getUngzippedBody(), StandardCharsets.UTF_8), dependencies);
+
+				getDependencies().register(key, (String) request.getAttribute(PATTERN_ATTRIBUTE), dependencies);
+			}
+		}
+
+		return pageInfo;
+	}
+
 	/**
 	 * calculate key for page from httpRequest
 	 * @param httpRequest the request
@@ -187,7 +278,14 @@ public class SegradaSimplePageCachingFilter extends SimplePageCachingFilter {
 		else id = identity.getId();
 
 		// create key
-		return httpRequest.getMethod() + language + urlPart + id + encode(queryString);
+		String key = httpRequest.getMethod() + language + urlPart + id + encode(queryString);
+
+		// remember what page depends on - registered when page is built
+		httpRequest.setAttribute(KEY_ATTRIBUTE, key);
+		httpRequest.setAttribute(PATTERN_ATTRIBUTE, PageCacheDependencies.urlPattern(urlPart));
+		httpRequest.setAttribute(DEPENDENCIES_ATTRIBUTE, PageCacheDependencies.urlDependencies(urlPart));
+
+		return key;
 	}
 
 	/**
@@ -36,6 +36,48 @@ public interface ApplicationSettings {
 	 */
 	@Nullable String getSetting(String key, @Nullable String defaultValue);
 
+	/**
+	 * retrieve a numeric setting - with default value
+	 * @param key to look for
+	 * @param defaultValue to return if setting is empty or not a number
+	 * @return value retrieved or default
+	 */
+	default long getSettingAsLong(String key, long defaultValue) {
+		String value = getSetting(key, null);
+		if (value == null) return defaultValue;
+
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * retrieve a numeric setting - with default value
+	 * @param key to look for
+	 * @param defaultValue to return if setting is empty or not a number
+	 * @return value retrieved or default
+	 */
+	default int getSettingAsInt(String key, int defaultValue) {
+		long value = getSettingAsLong(key, defaultValue);
+		if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) return defaultValue;
+		return (int) value;
+	}
+
+	/**
+	 * retrieve a boolean setting - with default value
+	 * @param key to look for
+	 * @param defaultValue to return if setting is empty
+	 * @return true if setting is "true" (ignoring case), default if empty
+	 */
+	default boolean getSettingAsBoolean(String key, boolean defaultValue) {
+		String value = getSetting(key, null);
+		if (value == null) return defaultValue;
+
+		return value.trim().equalsIgnoreCase("true");
+	}
+
 	/**
 	 * persist setting
 	 * @param key to look for
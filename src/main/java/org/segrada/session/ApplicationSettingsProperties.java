@@ -48,8 +48,36 @@ public class ApplicationSettingsProperties implements ApplicationSettings {
 		buildMap.put("SEGRADA_ORIENTDB_PASSWORD", "orientDB.password");
 		buildMap.put("SEGRADA_ORIENTDB_REMOTE_ROOT", "orientDB.remote_root");
 		buildMap.put("SEGRADA_ORIENTDB_REMOTE_PASSWORD", "orientDB.remote_pw");
+		buildMap.put("SEGRADA_ORIENTDB_STATEMENT_CACHE_SIZE", "orientDB.statementCacheSize");
 		buildMap.put("SEGRADA_REQUIRE_LOGIN", "requireLogin");
 		buildMap.put("SEGRADA_LUCENE_ANALYZER", "lucene.analyzer");
+		buildMap.put("SEGRADA_LUCENE_DIRECTORY", "lucene.directory");
+		buildMap.put("SEGRADA_LUCENE_NRT_CACHE_MAX_MERGE_SIZE", "lucene.nrtCache.maxMergeSizeMB");
+		buildMap.put("SEGRADA_LUCENE_NRT_CACHE_MAX_CACHED", "lucene.nrtCache.maxCachedMB");
+		buildMap.put("SEGRADA_LUCENE_COMMIT_INTERVAL", "lucene.commitInterval");
+		buildMap.put("SEGRADA_LUCENE_COMMIT_MAX_CHANGES", "lucene.commitMaxChanges");
+		buildMap.put("SEGRADA_LUCENE_REFRESH_INTERVAL", "lucene.refreshInterval");
+		buildMap.put("SEGRADA_LUCENE_HIGHLIGHTER", "lucene.highlighter");
+		buildMap.put("SEGRADA_LUCENE_FILTER_CACHE_MAX_ENTRIES", "lucene.filterCache.maxEntries");
+		buildMap.put("SEGRADA_LUCENE_FILTER_CACHE_MAX_MB", "lucene.filterCache.maxMB");
+		buildMap.put("SEGRADA_LUCENE_RESULT_CACHE_MAX_ENTRIES", "lucene.resultCache.maxEntries");
+		buildMap.put("SEGRADA_LUCENE_RESULT_CACHE_TTL", "lucene.resultCache.ttl");
+		buildMap.put("SEGRADA_INDEX_QUEUE_ENABLED", "index.queue.enabled");
+		buildMap.put("SEGRADA_INDEX_QUEUE_CAPACITY", "index.queue.capacity");
+		buildMap.put("SEGRADA_INDEX_QUEUE_BATCH_SIZE", "index.queue.batchSize");
+		buildMap.put("SEGRADA_REINDEX_THREADS", "reindex.threads");
+		buildMap.put("SEGRADA_REINDEX_PARTITION_SIZE", "reindex.partitionSize");
+		buildMap.put("SEGRADA_IMPORT_BATCH_SIZE", "import.batchSize");
+		buildMap.put("SEGRADA_IMPORT_MAX_ERRORS", "import.maxErrors");
+		buildMap.put("SEGRADA_PAGINATION_KEYSET", "pagination.keyset");
+		buildMap.put("SEGRADA_PAGINATION_CACHE_TTL", "pagination.cacheTTL");
+		buildMap.put("SEGRADA_LOOKUP_CACHE_MAX_ENTRIES", "lookupCache.maxEntries");
+		buildMap.put("SEGRADA_ENTITY_CACHE_NODE", "entityCache.Node");
+		buildMap.put("SEGRADA_ENTITY_CACHE_SOURCE", "entityCache.Source");
+		buildMap.put("SEGRADA_ENTITY_CACHE_PICTOGRAM", "entityCache.Pictogram");
+		buildMap.put("SEGRADA_ENTITY_CACHE_COLOR", "entityCache.Color");
+		buildMap.put("SEGRADA_ENTITY_CACHE_USER", "entityCache.User");
+		buildMap.put("SEGRADA_ENTITY_CACHE_USER_GROUP", "entityCache.UserGroup");
 		buildMap.put("SEGRADA_SERVER_PORT", "server.port");
 		buildMap.put("SEGRADA_SERVER_CONTEXT", "server.context");
 		buildMap.put("SEGRADA_SOLR_SERVER", "solr.server");
@@ -60,6 +88,10 @@ public class ApplicationSettingsProperties implements ApplicationSettings {
 		buildMap.put("SEGRADA_SOLR_FIELD_TAG", "solr.field_tag");
 		buildMap.put("SEGRADA_SOLR_FIELD_COLOR", "solr.field_color");
 		buildMap.put("SEGRADA_SOLR_FIELD_ICON", "solr.icon");
+		buildMap.put("SEGRADA_SOLR_COMMIT_WITHIN", "solr.commitWithin");
+		buildMap.put("SEGRADA_SOLR_QUEUE_THREADS", "solr.queue.threads");
+		buildMap.put("SEGRADA_SOLR_QUEUE_CAPACITY", "solr.queue.capacity");
+		buildMap.put("SEGRADA_SOLR_QUEUE_BATCH_SIZE", "solr.queue.batchSize");
 		buildMap.put("SEGRADA_MAP_ENGINE", "map.engine");
 		buildMap.put("SEGRADA_BINARY_DATA_SERVICE", "binaryDataService");
 		buildMap.put("SEGRADA_HADOOP_CONFIGURATION_FILES", "binaryDataService.hadoop.configurationFiles");
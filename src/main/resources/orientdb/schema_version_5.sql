@@ -0,0 +1,21 @@
+######################################################################################################################
+# Index edge endpoints, so edges can be looked up by connected vertices without scanning the whole edge class
+create property IsTagOf.out Link
+create property IsTagOf.in Link
+create index IsTagOf.out_in on IsTagOf (out, in) NOTUNIQUE
+create index IsTagOf.in_out on IsTagOf (in, out) NOTUNIQUE
+
+create property IsCommentOf.out Link
+create property IsCommentOf.in Link
+create index IsCommentOf.out_in on IsCommentOf (out, in) NOTUNIQUE
+create index IsCommentOf.in_out on IsCommentOf (in, out) NOTUNIQUE
+
+create property IsFileOf.out Link
+create property IsFileOf.in Link
+create index IsFileOf.out_in on IsFileOf (out, in) NOTUNIQUE
+create index IsFileOf.in_out on IsFileOf (in, out) NOTUNIQUE
+
+create property IsRelation.out Link
+create property IsRelation.in Link
+create index IsRelation.out_in on IsRelation (out, in) NOTUNIQUE
+create index IsRelation.in_out on IsRelation (in, out) NOTUNIQUE
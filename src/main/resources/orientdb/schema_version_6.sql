@@ -0,0 +1,6 @@
+######################################################################################################################
+# Index period ranges of nodes and relations, so lists sorted by minJD/maxJD can seek instead of sorting the class
+create index Node.minJD NOTUNIQUE
+create index Node.maxJD NOTUNIQUE
+create index Relation.minJD NOTUNIQUE
+create index Relation.maxJD NOTUNIQUE
@@ -0,0 +1,116 @@
+package org.segrada.benchmark;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
+import com.tinkerpop.blueprints.impls.orient.OrientVertex;
+import org.segrada.service.repository.orientdb.init.OrientDbSchemaUpdater;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Benchmark of edge endpoint lookups with and without the edge indexes of schema version 5 - not run as unit test,
+ * start main method with test class path (arguments: number of nodes, number of lookups)
+ */
+public class EdgeIndexBenchmark {
+	private static final String[] INDEXES = {"IsTagOf.out_in", "IsTagOf.in_out", "IsCommentOf.out_in", "IsCommentOf.in_out",
+			"IsFileOf.out_in", "IsFileOf.in_out"};
+
+	public static void main(String[] args) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+		OrientGraphFactory factory = new OrientGraphFactory("memory:segradabenchmark", "admin", "admin").setupPool(1, 10);
+		OrientDbSchemaUpdater updater = new OrientDbSchemaUpdater(factory, "memory:segradabenchmark");
+		updater.initializeDatabase();
+		updater.buildOrUpdateSchema();
+
+		// generate graph: tags, nodes with three tags each, files and comments connected to nodes
+		System.out.println("Generating graph with " + nodes + " nodes...");
+		Random random = new Random(42);
+		OrientGraphNoTx graph = factory.getNoTx();
+		OrientVertex[] tags = new OrientVertex[Math.max(1, nodes / 40)];
+		for (int i = 0; i < tags.length; i++) tags[i] = graph.addVertex("class:V");
+		OrientVertex[] nodeVertices = new OrientVertex[nodes];
+		for (int i = 0; i < nodes; i++) {
+			nodeVertices[i] = graph.addVertex("class:V");
+			for (int j = 0; j < 3; j++) tags[random.nextInt(tags.length)].addEdge("IsTagOf", nodeVertices[i]);
+		}
+		OrientVertex[] files = new OrientVertex[nodes / 10];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = graph.addVertex("class:V");
+			files[i].addEdge("IsFileOf", nodeVertices[random.nextInt(nodes)]);
+			files[i].addEdge("IsFileOf", nodeVertices[random.nextInt(nodes)]);
+		}
+		for (int i = 0; i < nodes / 4; i++)
+			graph.addVertex("class:V").addEdge("IsCommentOf", nodeVertices[random.nextInt(nodes)]);
+		graph.shutdown();
+
+		ODatabaseDocumentTx db = factory.getDatabase();
+		try {
+			String[] nodeIds = new String[lookups];
+			String[] tagIds = new String[lookups];
+			String[] fileIds = new String[lookups];
+			for (int i = 0; i < lookups; i++) {
+				nodeIds[i] = nodeVertices[random.nextInt(nodes)].getIdentity().toString();
+				tagIds[i] = tags[random.nextInt(tags.length)].getIdentity().toString();
+				fileIds[i] = files[random.nextInt(files.length)].getIdentity().toString();
+			}
+
+			// warm up
+			run(db, nodeIds, tagIds, fileIds, true);
+
+			System.out.println("With edge indexes:");
+			run(db, nodeIds, tagIds, fileIds, false);
+
+			for (String index : INDEXES)
+				db.command(new OCommandSQL("drop index " + index)).execute();
+
+			System.out.println("Without edge indexes (before schema version 5):");
+			run(db, nodeIds, tagIds, fileIds, false);
+		} finally {
+			db.close();
+			factory.close();
+		}
+	}
+
+	private static void run(ODatabaseDocumentTx db, String[] nodeIds, String[] tagIds, String[] fileIds, boolean silent) {
+		measure(db, "tags of node       select out from IsTagOf where in = ?", "select out from IsTagOf where in = %s", nodeIds, null, silent);
+		measure(db, "entities of tag    select in from IsTagOf where out = ?", "select in from IsTagOf where out = %s", tagIds, null, silent);
+		measure(db, "comments of node   select out from IsCommentOf where in = ?", "select out as comment from IsCommentOf where in = %s", nodeIds, null, silent);
+		measure(db, "file connected     select from IsFileOf where out = ? and in = ?", "select @rid as id from IsFileOf where out = %s and in = %s", fileIds, nodeIds, silent);
+		measure(db, "edges (old delete) select from E where in = ? OR out = ?", "select from E where in = %1$s OR out = %1$s", nodeIds, null, silent);
+		measure(db, "edges (new delete) select expand(bothE()) from ?", "select expand(bothE()) from %s", nodeIds, null, silent);
+	}
+
+	private static void measure(ODatabaseDocumentTx db, String title, String sql, String[] ids, String[] secondIds, boolean silent) {
+		long start = System.nanoTime();
+		long rows = 0;
+		for (int i = 0; i < ids.length; i++) {
+			String query = secondIds == null ? String.format(sql, ids[i]) : String.format(sql, ids[i], secondIds[i]);
+			List<ODocument> result = db.command(new OSQLSynchQuery<ODocument>(query)).execute();
+			rows += result.size();
+		}
+		long micros = (System.nanoTime() - start) / 1000 / ids.length;
+
+		if (!silent) System.out.println(String.format("  %-72s %8d us/query (%d rows)", title, micros, rows));
+	}
+}
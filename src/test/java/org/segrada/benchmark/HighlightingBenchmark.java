@@ -0,0 +1,127 @@
+package org.segrada.benchmark;
+
+import org.apache.lucene.store.MMapDirectory;
+import org.segrada.search.SearchIndexDocument;
+import org.segrada.search.lucene.LuceneSearchEngine;
+import org.segrada.search.lucene.LuceneSegradaAnalyzer;
+import org.segrada.test.TestFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Benchmark comparing index size and search latency of the vector and postings highlighters - not run as unit test,
+ * start main method with test class path (arguments: number of documents, words per document, number of queries)
+ */
+public class HighlightingBenchmark {
+	public static void main(String[] args) throws Exception {
+		int documents = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int length = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int queries = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+		// vocabulary with skewed word frequencies, sentences of 5 to 25 words
+		Random random = new Random(42);
+		String[] words = new String[20000];
+		for (int i = 0; i < words.length; i++) words[i] = Integer.toString(i * 7919 + 100000, 36);
+
+		String[] terms = new String[queries];
+		for (int i = 0; i < terms.length; i++)
+			terms[i] = words[skewed(random, words.length)] + (i % 2 == 0 ? " " + words[skewed(random, words.length)] : "");
+
+		System.out.println(String.format("%d documents with %d words, %d queries (page of 20 hits, highlighted)", documents, length, queries));
+		System.out.println(String.format("  %-10s %10s %10s %10s %18s", "highlighter", "index MB", "p50 ms", "p95 ms", "in document p95 ms"));
+		for (String highlighter : new String[]{LuceneSearchEngine.HIGHLIGHTER_VECTOR, LuceneSearchEngine.HIGHLIGHTER_POSTINGS}) {
+			Path path = Files.createTempDirectory("segrada-highlighting-benchmark");
+			try {
+				boolean vector = LuceneSearchEngine.HIGHLIGHTER_VECTOR.equals(highlighter);
+				LuceneSearchEngine engine = new LuceneSearchEngine(new MMapDirectory(path), new LuceneSegradaAnalyzer(), 0, 0, 0, vector);
+
+				// same documents for each highlighter
+				Random documentRandom = new Random(7);
+				List<SearchIndexDocument> batch = new ArrayList<>();
+				for (int i = 0; i < documents; i++) {
+					batch.add(new SearchIndexDocument("#12:" + i, "Node", text(documentRandom, words, 3), "", text(documentRandom, words, length),
+							null, null, null, 1f));
+					if (batch.size() == 1000) {
+						engine.indexAll(batch);
+						batch.clear();
+					}
+				}
+				engine.indexAll(batch);
+				engine.destroy();
+				double size = size(path) / 1024d / 1024d;
+
+				engine = new LuceneSearchEngine(new MMapDirectory(path), new LuceneSegradaAnalyzer(), 0, 0, 0, vector);
+
+				// warm up, then measure
+				Map<String, String> filters = new HashMap<>();
+				filters.put("operator", "or");
+				for (String term : terms) engine.search(term, filters);
+				long[] latencies = new long[terms.length];
+				for (int i = 0; i < terms.length; i++) {
+					long start = System.nanoTime();
+					engine.search(terms[i], filters);
+					latencies[i] = System.nanoTime() - start;
+				}
+
+				long[] documentLatencies = new long[Math.min(100, terms.length)];
+				for (int i = 0; i < documentLatencies.length; i++) {
+					long start = System.nanoTime();
+					engine.searchInDocument(terms[i], "#12:" + (i % documents));
+					documentLatencies[i] = System.nanoTime() - start;
+				}
+				engine.destroy();
+
+				System.out.println(String.format("  %-10s %10.1f %10.2f %10.2f %18.2f", highlighter, size,
+						percentile(latencies, 50), percentile(latencies, 95), percentile(documentLatencies, 95)));
+			} finally {
+				TestFiles.deleteRecursively(path);
+			}
+		}
+	}
+
+	private static String text(Random random, String[] words, int length) {
+		StringBuilder sb = new StringBuilder();
+		int sentence = 0;
+		for (int i = 0; i < length; i++) {
+			if (i > 0) sb.append(' ');
+			sb.append(words[skewed(random, words.length)]);
+			if (++sentence >= 5 + random.nextInt(20)) {
+				sb.append('.');
+				sentence = 0;
+			}
+		}
+		return sb.toString();
+	}
+
+	private static int skewed(Random random, int max) {
+		double r = random.nextDouble();
+		return (int) (r * r * r * max);
+	}
+
+	private static double percentile(long[] nanos, int percentile) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1000000d;
+	}
+
+	private static long size(Path path) throws IOException {
+		return Files.walk(path).filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+	}
+}
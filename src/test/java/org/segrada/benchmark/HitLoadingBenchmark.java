@@ -0,0 +1,159 @@
+package org.segrada.benchmark;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.segrada.search.SearchHit;
+import org.segrada.search.SearchIndexDocument;
+import org.segrada.search.lucene.LuceneSearchEngine;
+import org.segrada.search.lucene.LuceneSegradaAnalyzer;
+import org.segrada.test.TestFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Benchmark loading the fields of a page of hits from whole stored documents, selected stored fields and doc values on
+ * an index containing large file texts - not run as unit test, start main method with test class path (arguments:
+ * number of documents, words per file text, number of pages)
+ */
+public class HitLoadingBenchmark {
+	private static final Set<String> DISPLAY_FIELDS = new HashSet<>(Arrays.asList("id", "className", "title", "subTitles",
+			"tag", "color", "iconFileIdentifier"));
+
+	public static void main(String[] args) throws Exception {
+		int documents = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+		int fileLength = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		int pages = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+		Random random = new Random(42);
+		String[] words = new String[20000];
+		for (int i = 0; i < words.length; i++) words[i] = Integer.toString(i * 7919 + 100000, 36);
+
+		Path path = Files.createTempDirectory("segrada-hit-loading-benchmark");
+		try {
+			// every fourth document is a file with a large full text, others are short nodes
+			HitLoader engine = new HitLoader(new MMapDirectory(path), new LuceneSegradaAnalyzer());
+			List<SearchIndexDocument> batch = new ArrayList<>();
+			for (int i = 0; i < documents; i++) {
+				boolean file = i % 4 == 0;
+				batch.add(new SearchIndexDocument("#12:" + i, file ? "File" : "Node", text(random, words, 3), text(random, words, 5),
+						text(random, words, file ? fileLength : 100), new String[]{"#13:" + (i % 50)}, 0x123456, file ? "icon" + i : null, 1f));
+				if (batch.size() == 200) {
+					engine.indexAll(batch);
+					batch.clear();
+				}
+			}
+			engine.indexAll(batch);
+
+			System.out.println(String.format("%d documents (every fourth with %d words), %d pages of 20 hits", documents, fileLength, pages));
+			System.out.println(String.format("  %-16s %10s %10s %10s", "loading", "p50 ms", "p95 ms", "total ms"));
+
+			IndexSearcher iSearcher = engine.acquire();
+			try {
+				IndexReader iReader = iSearcher.getIndexReader();
+				ScoreDoc[] all = iSearcher.search(new MatchAllDocsQuery(), documents).scoreDocs;
+
+				// random pages, same for each variant
+				int[][] pageDocs = new int[pages][20];
+				Random pageRandom = new Random(7);
+				for (int[] page : pageDocs)
+					for (int i = 0; i < page.length; i++) page[i] = all[pageRandom.nextInt(all.length)].doc;
+
+				for (String variant : new String[]{"whole document", "selected fields", "doc values"}) {
+					// warm up, then measure
+					for (int[] page : pageDocs) loadPage(variant, engine, iReader, page);
+					long[] latencies = new long[pages];
+					for (int i = 0; i < pages; i++) {
+						long start = System.nanoTime();
+						loadPage(variant, engine, iReader, pageDocs[i]);
+						latencies[i] = System.nanoTime() - start;
+					}
+					long total = 0;
+					for (long latency : latencies) total += latency;
+					System.out.println(String.format("  %-16s %10.3f %10.3f %10.1f", variant, percentile(latencies, 50),
+							percentile(latencies, 95), total / 1000000d));
+				}
+			} finally {
+				engine.release(iSearcher);
+			}
+			engine.destroy();
+		} finally {
+			TestFiles.deleteRecursively(path);
+		}
+	}
+
+	private static int loadPage(String variant, HitLoader engine, IndexReader iReader, int[] docs) throws IOException {
+		int loaded = 0;
+		for (int doc : docs) {
+			switch (variant) {
+				case "whole document":
+					loaded += iReader.document(doc).get("title").length();
+					break;
+				case "selected fields":
+					loaded += iReader.document(doc, DISPLAY_FIELDS).get("title").length();
+					break;
+				default:
+					loaded += engine.load(iReader, doc).getTitle().length();
+			}
+		}
+		return loaded;
+	}
+
+	private static String text(Random random, String[] words, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i > 0) sb.append(i % 15 == 0 ? ". " : " ");
+			double r = random.nextDouble();
+			sb.append(words[(int) (r * r * r * words.length)]);
+		}
+		return sb.toString();
+	}
+
+	private static double percentile(long[] nanos, int percentile) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1000000d;
+	}
+
+	/**
+	 * engine exposing hit loading and searchers
+	 */
+	private static class HitLoader extends LuceneSearchEngine {
+		private HitLoader(Directory directory, Analyzer analyzer) {
+			super(directory, analyzer);
+		}
+
+		private SearchHit load(IndexReader iReader, int doc) throws IOException {
+			return loadSearchHit(iReader, doc);
+		}
+
+		private IndexSearcher acquire() throws IOException {
+			return searcherManager.acquire();
+		}
+
+		private void release(IndexSearcher iSearcher) {
+			releaseSearcher(iSearcher);
+		}
+	}
+}
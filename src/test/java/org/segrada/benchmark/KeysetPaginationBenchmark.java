@@ -0,0 +1,122 @@
+package org.segrada.benchmark;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import org.segrada.model.prototype.INode;
+import org.segrada.service.repository.orientdb.OrientDbNodeRepository;
+import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
+import org.segrada.service.repository.orientdb.init.OrientDbSchemaUpdater;
+import org.segrada.service.util.PaginationInfo;
+import org.segrada.session.Identity;
+import org.segrada.test.OrientDbTestApplicationSettings;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Benchmark of node pagination at different depths with skip/limit and with keyset pagination - not run as unit
+ * test, start main method with test class path (arguments: number of nodes, number of repetitions)
+ */
+public class KeysetPaginationBenchmark {
+	private static final int PER_PAGE = 15;
+
+	public static void main(String[] args) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		OrientGraphFactory factory = new OrientGraphFactory("memory:segradabenchmark", "admin", "admin").setupPool(1, 10);
+		OrientDbSchemaUpdater updater = new OrientDbSchemaUpdater(factory, "memory:segradabenchmark");
+		updater.initializeDatabase();
+		updater.buildOrUpdateSchema();
+
+		ODatabaseDocumentTx db = factory.getDatabase();
+		try {
+			// generate nodes with about three nodes per title and random periods
+			System.out.println("Generating " + nodes + " nodes...");
+			Random random = new Random(42);
+			for (int i = 0; i < nodes; i++) {
+				String title = "n" + Integer.toString(random.nextInt(Math.max(1, nodes / 3)), 36);
+				new ODocument("Node").field("title", title).field("titleasc", title).field("alternativeTitles", "")
+						.field("description", "").field("descriptionMarkup", "default").field("color", 0)
+						.field("minJD", (long) random.nextInt(1000000)).field("maxJD", (long) random.nextInt(1000000))
+						.field("created", 1L).field("modified", 1L).save();
+			}
+
+			OrientDbNodeRepository skipping = new OrientDbRepositoryFactory(db, new BenchmarkSettings(false), new Identity())
+					.produceRepository(OrientDbNodeRepository.class);
+			OrientDbNodeRepository keyset = new OrientDbRepositoryFactory(db, new BenchmarkSettings(true), new Identity())
+					.produceRepository(OrientDbNodeRepository.class);
+
+			int pages = nodes / PER_PAGE;
+			int[] depths = {2, pages / 10, pages / 2, pages};
+			for (String sort : new String[]{"titleasc", "minJD"}) {
+				// warm up
+				run(skipping, keyset, sort, depths, 2, true);
+
+				System.out.println("Sorted by " + sort + ":");
+				run(skipping, keyset, sort, depths, repetitions, false);
+			}
+		} finally {
+			db.close();
+			factory.close();
+		}
+	}
+
+	private static void run(OrientDbNodeRepository skipping, OrientDbNodeRepository keyset, String sort, int[] depths, int repetitions, boolean silent) {
+		for (int page : depths) {
+			Map<String, Object> filters = new HashMap<>();
+			filters.put("sort", sort);
+			filters.put("dir", "asc");
+
+			long skip = measure(skipping, page, filters, repetitions);
+
+			// cursor of previous page
+			PaginationInfo<INode> previous = keyset.paginate(page - 1, PER_PAGE, filters);
+			filters.put("cursor", previous.getCursor());
+			long seek = measure(keyset, page, filters, repetitions);
+
+			if (!silent) System.out.println(String.format("  page %6d   skip/limit %8d us   keyset (cursor, cached count) %8d us", page, skip, seek));
+		}
+	}
+
+	private static long measure(OrientDbNodeRepository repository, int page, Map<String, Object> filters, int repetitions) {
+		long start = System.nanoTime();
+		for (int i = 0; i < repetitions; i++)
+			repository.paginate(page, PER_PAGE, filters);
+		return (System.nanoTime() - start) / 1000 / repetitions;
+	}
+
+	/**
+	 * settings with keyset pagination and count cache switched on or off
+	 */
+	private static class BenchmarkSettings extends OrientDbTestApplicationSettings {
+		private final boolean keyset;
+
+		BenchmarkSettings(boolean keyset) {
+			this.keyset = keyset;
+		}
+
+		@Override
+		public String getSetting(String key, String defaultValue) {
+			if (key.equals("pagination.keyset")) return Boolean.toString(keyset);
+			if (key.equals("pagination.cacheTTL")) return keyset ? "60" : "0";
+			return super.getSetting(key, defaultValue);
+		}
+	}
+}
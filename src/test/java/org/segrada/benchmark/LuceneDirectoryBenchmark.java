@@ -0,0 +1,120 @@
+package org.segrada.benchmark;
+
+import org.apache.lucene.store.Directory;
+import org.segrada.search.SearchIndexDocument;
+import org.segrada.search.lucene.LuceneDirectoryFactory;
+import org.segrada.search.lucene.LuceneSearchEngine;
+import org.segrada.search.lucene.LuceneSegradaAnalyzer;
+import org.segrada.test.TestFiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Benchmark of search throughput of the lucene.directory types on a generated index on disk - not run as unit test,
+ * start main method with test class path (arguments: number of documents, number of threads, seconds per type)
+ */
+public class LuceneDirectoryBenchmark {
+	private static final String[] TYPES = {LuceneDirectoryFactory.SIMPLE, LuceneDirectoryFactory.NIO, LuceneDirectoryFactory.MMAP,
+			LuceneDirectoryFactory.MMAP + "+nrt"};
+
+	public static void main(String[] args) throws Exception {
+		int documents = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		Path path = Files.createTempDirectory("segrada-lucene-benchmark");
+		try {
+			// generate index from a vocabulary with skewed word frequencies
+			System.out.println("Generating index with " + documents + " documents in " + path + "...");
+			Random random = new Random(42);
+			String[] words = new String[5000];
+			for (int i = 0; i < words.length; i++) words[i] = Integer.toString(i * 7919 + 100000, 36);
+
+			LuceneSearchEngine engine = new LuceneSearchEngine(LuceneDirectoryFactory.createDirectory(LuceneDirectoryFactory.SIMPLE, path, 0, 0), new LuceneSegradaAnalyzer());
+			List<SearchIndexDocument> batch = new ArrayList<>();
+			for (int i = 0; i < documents; i++) {
+				batch.add(new SearchIndexDocument("#12:" + i, i % 3 == 0 ? "Source" : "Node", text(random, words, 3),
+						text(random, words, 5), text(random, words, 150), new String[]{"#10:" + random.nextInt(100)}, null, null, 1f));
+				if (batch.size() == 1000) {
+					engine.indexAll(batch);
+					batch.clear();
+				}
+			}
+			engine.indexAll(batch);
+			engine.destroy();
+
+			// queries: one or two words, some of them restricted by class
+			String[] terms = new String[1000];
+			for (int i = 0; i < terms.length; i++)
+				terms[i] = words[skewed(random, words.length)] + (i % 2 == 0 ? " " + words[skewed(random, words.length)] : "");
+
+			System.out.println(String.format("Search throughput with %d threads:", threads));
+			for (String type : TYPES) {
+				// warm up, then measure
+				run(type, path, terms, threads, Math.max(1, seconds / 3), true);
+				run(type, path, terms, threads, seconds, false);
+			}
+		} finally {
+			TestFiles.deleteRecursively(path);
+		}
+	}
+
+	private static void run(String type, Path path, String[] terms, int threads, int seconds, boolean silent) throws Exception {
+		boolean nrt = type.endsWith("+nrt");
+		Directory directory = LuceneDirectoryFactory.createDirectory(nrt ? type.substring(0, type.length() - 4) : type, path, nrt ? 5 : 0, nrt ? 60 : 0);
+		LuceneSearchEngine engine = new LuceneSearchEngine(directory, new LuceneSegradaAnalyzer());
+
+		AtomicLong queries = new AtomicLong();
+		long end = System.currentTimeMillis() + seconds * 1000L;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			final int offset = t * 97;
+			executor.submit(() -> {
+				Map<String, String> filters = new HashMap<>();
+				for (int i = offset; System.currentTimeMillis() < end; i++) {
+					filters.clear();
+					if (i % 4 == 0) filters.put("class", "Node");
+					engine.search(terms[i % terms.length], filters);
+					queries.incrementAndGet();
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+		engine.destroy();
+
+		if (!silent) System.out.println(String.format("  %-10s %8.0f queries/s", type, queries.get() / (double) seconds));
+	}
+
+	private static String text(Random random, String[] words, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i > 0) sb.append(' ');
+			sb.append(words[skewed(random, words.length)]);
+		}
+		return sb.toString();
+	}
+
+	private static int skewed(Random random, int max) {
+		double r = random.nextDouble();
+		return (int) (r * r * r * max);
+	}
+}
@@ -0,0 +1,97 @@
+package org.segrada.benchmark;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
+import com.tinkerpop.blueprints.impls.orient.OrientVertex;
+import org.segrada.service.repository.orientdb.base.OrientDbStatement;
+import org.segrada.service.repository.orientdb.init.OrientDbSchemaUpdater;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Benchmark of short lookups with values concatenated into the SQL text (parsed on each call) and with bound values
+ * (parsed once, taken from the statement cache afterwards) - not run as unit test, start main method with test class
+ * path (arguments: number of nodes, number of lookups)
+ */
+public class StatementParsingBenchmark {
+	public static void main(String[] args) {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		OrientGraphFactory factory = new OrientGraphFactory("memory:segradabenchmark", "admin", "admin").setupPool(1, 10);
+		OrientDbSchemaUpdater updater = new OrientDbSchemaUpdater(factory, "memory:segradabenchmark");
+		updater.initializeDatabase();
+		updater.buildOrUpdateSchema();
+
+		// generate graph: tags connected to nodes
+		System.out.println("Generating graph with " + nodes + " nodes...");
+		Random random = new Random(42);
+		OrientGraphNoTx graph = factory.getNoTx();
+		OrientVertex[] tags = new OrientVertex[Math.max(1, nodes / 40)];
+		for (int i = 0; i < tags.length; i++) tags[i] = graph.addVertex("class:V");
+		String[] nodeIds = new String[nodes];
+		for (int i = 0; i < nodes; i++) {
+			OrientVertex node = graph.addVertex("class:V");
+			tags[random.nextInt(tags.length)].addEdge("IsTagOf", node);
+			nodeIds[i] = node.getIdentity().toString();
+		}
+		graph.shutdown();
+
+		ODatabaseDocumentTx db = factory.getDatabase();
+		try {
+			String[] ids = new String[lookups];
+			for (int i = 0; i < lookups; i++) ids[i] = nodeIds[random.nextInt(nodes)];
+
+			// warm up
+			run(db, ids, true);
+			run(db, ids, false);
+		} finally {
+			db.close();
+			factory.close();
+		}
+	}
+
+	private static void run(ODatabaseDocumentTx db, String[] ids, boolean silent) {
+		// concatenated: every statement text is new
+		long start = System.nanoTime();
+		long rows = 0;
+		for (String id : ids) {
+			List<ODocument> result = db.command(new OSQLSynchQuery<ODocument>("select out from IsTagOf where in = " + id + " LIMIT " + (ids.length % 7 + 1))).execute();
+			rows += result.size();
+		}
+		report("concatenated  select out from IsTagOf where in = #x:y LIMIT n", start, ids.length, rows, silent);
+
+		// bound: statement text is the same for all calls
+		OrientDbStatement statement = OrientDbStatement.named("Benchmark.findTags", "select out from IsTagOf where in = ? LIMIT ?");
+		start = System.nanoTime();
+		rows = 0;
+		for (String id : ids) {
+			List<ODocument> result = statement.query(db, OrientDbStatement.rid(id), ids.length % 7 + 1);
+			rows += result.size();
+		}
+		report("bound         select out from IsTagOf where in = ? LIMIT ?", start, ids.length, rows, silent);
+	}
+
+	private static void report(String title, long start, int lookups, long rows, boolean silent) {
+		long micros = (System.nanoTime() - start) / 1000 / lookups;
+		if (!silent) System.out.println(String.format("  %-72s %8d us/query (%d rows)", title, micros, rows));
+	}
+}
@@ -0,0 +1,72 @@
+package org.segrada.benchmark;
+
+import org.segrada.service.util.TitleSuggester;
+
+import java.util.*;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Benchmark of typeahead lookups in the title suggester - not run as unit test, start main method with test class
+ * path (arguments: number of records, number of lookups)
+ */
+public class SuggesterBenchmark {
+	public static void main(String[] args) throws Exception {
+		int records = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		// titles of 1 to 4 words from a skewed vocabulary
+		Random random = new Random(42);
+		String[] words = new String[20000];
+		for (int i = 0; i < words.length; i++) words[i] = Integer.toString(i * 7919 + 100000, 36);
+
+		TitleSuggester suggester = new TitleSuggester();
+		long start = System.nanoTime();
+		for (int i = 0; i < records; i++) {
+			StringBuilder title = new StringBuilder();
+			for (int j = 0, n = 1 + random.nextInt(4); j < n; j++) {
+				if (j > 0) title.append(' ');
+				title.append(words[skewed(random, words.length)]);
+			}
+			suggester.put(i % 3 == 0 ? "Source" : "Node", "#11:" + i, title.toString());
+		}
+		System.out.println(String.format("%d records loaded in %.1f ms", records, (System.nanoTime() - start) / 1000000d));
+
+		// prefixes of 2 to 5 characters as typed
+		String[] terms = new String[lookups];
+		for (int i = 0; i < terms.length; i++) {
+			String word = words[skewed(random, words.length)];
+			terms[i] = word.substring(0, Math.min(word.length(), 2 + random.nextInt(4)));
+		}
+
+		Set<String> classes = Collections.singleton("Node");
+		for (String term : terms) suggester.suggest(term, 30, classes);
+		long[] latencies = new long[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			long s = System.nanoTime();
+			suggester.suggest(terms[i], 30, classes);
+			latencies[i] = System.nanoTime() - s;
+		}
+		Arrays.sort(latencies);
+
+		System.out.println(String.format("%d lookups: p50 %.3f ms, p95 %.3f ms, p99 %.3f ms", lookups,
+				latencies[lookups / 2] / 1000000d, latencies[lookups * 95 / 100] / 1000000d, latencies[lookups * 99 / 100] / 1000000d));
+	}
+
+	private static int skewed(Random random, int max) {
+		double r = random.nextDouble();
+		return (int) (r * r * r * max);
+	}
+}
@@ -0,0 +1,22 @@
+package org.segrada.search;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexDocumentTest {
+	@Test
+	public void testSplitIntoPassages() throws Exception {
+		assertEquals(0, SearchIndexDocument.splitIntoPassages(null, 10).length);
+		assertEquals(0, SearchIndexDocument.splitIntoPassages(" \n", 10).length);
+
+		// pages are kept, including empty ones in between
+		assertArrayEquals(new String[]{"first page", "", "third page"},
+				SearchIndexDocument.splitIntoPassages("first page\f\fthird page\f\n", 5));
+
+		// chunks end at paragraphs or words
+		assertArrayEquals(new String[]{"aaaa bbbb", "cccc dddd", "eeee"},
+				SearchIndexDocument.splitIntoPassages("aaaa bbbb\n\ncccc dddd eeee", 12));
+		assertArrayEquals(new String[]{"abcdef", "ghij"}, SearchIndexDocument.splitIntoPassages("abcdefghij", 6));
+	}
+}
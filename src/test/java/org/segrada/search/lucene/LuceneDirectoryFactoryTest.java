@@ -0,0 +1,75 @@
+package org.segrada.search.lucene;
+
+import org.apache.lucene.store.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.segrada.test.TestFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class LuceneDirectoryFactoryTest {
+	private Path directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("segrada");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// remove temporary files
+		TestFiles.deleteRecursively(directory);
+	}
+
+	@Test
+	public void testCreateDirectory() throws Exception {
+		Path path = directory.resolve("lucene");
+
+		assertCreates(MMapDirectory.class, "mmap", path);
+		assertCreates(MMapDirectory.class, null, path);
+		assertCreates(MMapDirectory.class, "unknown", path);
+		assertCreates(NIOFSDirectory.class, " NIO ", path);
+		assertCreates(SimpleFSDirectory.class, "simple", path);
+		assertCreates(FSDirectory.class, "auto", path);
+
+		// caching wrapper
+		Directory luceneDirectory = LuceneDirectoryFactory.createDirectory("nio", path, 5, 60);
+		assertTrue(luceneDirectory instanceof NRTCachingDirectory);
+		assertTrue(FilterDirectory.unwrap(luceneDirectory) instanceof NIOFSDirectory);
+		luceneDirectory.close();
+
+		// no caching if one of the sizes is 0
+		assertCreates(NIOFSDirectory.class, "nio", path, 5, 0);
+		assertCreates(NIOFSDirectory.class, "nio", path, 0, 60);
+	}
+
+	@Test
+	public void testIndexBuilderOfCachingDirectory() throws Exception {
+		Directory luceneDirectory = LuceneDirectoryFactory.createDirectory("mmap", directory.resolve("lucene"), 5, 60);
+		LuceneSearchEngine searchEngine = new LuceneSearchEngine(luceneDirectory, new LuceneSegradaAnalyzer());
+		try {
+			// index is built next to the wrapped directory on disk
+			Directory builderDirectory = searchEngine.createBuilderDirectory();
+			assertTrue(builderDirectory instanceof FSDirectory);
+			assertEquals(directory.resolve("lucene_reindex"), ((FSDirectory) builderDirectory).getDirectory());
+			builderDirectory.close();
+		} finally {
+			searchEngine.destroy();
+		}
+	}
+
+	private static void assertCreates(Class<? extends Directory> type, String setting, Path path) throws IOException {
+		assertCreates(type, setting, path, 0, 0);
+	}
+
+	private static void assertCreates(Class<? extends Directory> type, String setting, Path path, double maxMergeSizeMB, double maxCachedMB) throws IOException {
+		Directory luceneDirectory = LuceneDirectoryFactory.createDirectory(setting, path, maxMergeSizeMB, maxCachedMB);
+		assertTrue(type.isInstance(luceneDirectory));
+		luceneDirectory.close();
+	}
+}
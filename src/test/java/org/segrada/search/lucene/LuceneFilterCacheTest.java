@@ -0,0 +1,46 @@
+package org.segrada.search.lucene;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LuceneFilterCacheTest {
+	@Test
+	public void testPolicy() throws Exception {
+		LuceneFilterCache cache = new LuceneFilterCache(10, 1024L * 1024L, "className", "tag");
+		QueryCachingPolicy policy = cache.getPolicy();
+
+		assertTrue(policy.shouldCache(new TermQuery(new Term("className", "Node")), null));
+		assertTrue(policy.shouldCache(new TermQuery(new Term("tag", "#1:1")), null));
+		assertFalse(policy.shouldCache(new TermQuery(new Term("content", "text")), null));
+		assertFalse(policy.shouldCache(new MatchAllDocsQuery(), null));
+
+		BooleanQuery booleanQuery = new BooleanQuery(true);
+		assertFalse(policy.shouldCache(booleanQuery, null));
+		booleanQuery.add(new TermQuery(new Term("className", "Node")), BooleanClause.Occur.SHOULD);
+		booleanQuery.add(new TermQuery(new Term("className", "Source")), BooleanClause.Occur.SHOULD);
+		assertTrue(policy.shouldCache(booleanQuery, null));
+		booleanQuery.add(new TermQuery(new Term("title", "Source")), BooleanClause.Occur.SHOULD);
+		assertFalse(policy.shouldCache(booleanQuery, null));
+	}
+
+	@Test
+	public void testCreateTermsFilter() throws Exception {
+		assertNull(LuceneSearchEngine.createTermsFilter("className", null));
+		assertNull(LuceneSearchEngine.createTermsFilter("className", " , "));
+		assertEquals(new TermQuery(new Term("className", "Node")), LuceneSearchEngine.createTermsFilter("className", " Node,"));
+
+		// normalized
+		assertEquals(LuceneSearchEngine.createTermsFilter("className", "Node,Source,File"),
+				LuceneSearchEngine.createTermsFilter("className", "File, Source,Node,Node"));
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		LuceneFilterCache cache = new LuceneFilterCache(10, 1024L * 1024L, "className");
+		assertEquals(0d, cache.getHitRate(), 0d);
+		assertTrue(cache.toString().startsWith("LuceneFilterCache{size=0"));
+	}
+}
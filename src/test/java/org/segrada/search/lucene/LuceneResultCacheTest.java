@@ -0,0 +1,69 @@
+package org.segrada.search.lucene;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LuceneResultCacheTest {
+	@Test
+	public void testGeneration() throws Exception {
+		LuceneResultCache<String> cache = new LuceneResultCache<>(10, 0L);
+		assertTrue(cache.isEnabled());
+
+		assertNull(cache.get("a", 1L));
+		cache.put("a", 1L, "A");
+		assertEquals("A", cache.get("a", 1L));
+
+		// other generation does not see entry
+		assertNull(cache.get("a", 2L));
+
+		// older generation is not cached, newer one replaces all entries
+		cache.put("b", 0L, "B");
+		assertNull(cache.get("b", 0L));
+		cache.put("b", 2L, "B");
+		assertEquals(1, cache.size());
+		assertNull(cache.get("a", 1L));
+		assertEquals("B", cache.get("b", 2L));
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+		cache.put("c", 1L, "C");
+		assertEquals("C", cache.get("c", 1L));
+
+		assertEquals(3, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertEquals(3d / 7, cache.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void testBounds() throws Exception {
+		LuceneResultCache<String> cache = new LuceneResultCache<>(2, 0L);
+		cache.put("a", 1L, "A");
+		cache.put("b", 1L, "B");
+		cache.get("a", 1L);
+		cache.put("c", 1L, "C");
+
+		// least recently used entry is evicted
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b", 1L));
+		assertEquals("A", cache.get("a", 1L));
+		assertEquals("C", cache.get("c", 1L));
+
+		LuceneResultCache<String> disabled = new LuceneResultCache<>(0, 0L);
+		assertFalse(disabled.isEnabled());
+		disabled.put("a", 1L, "A");
+		assertNull(disabled.get("a", 1L));
+		assertEquals(0, disabled.size());
+	}
+
+	@Test
+	public void testTtl() throws Exception {
+		LuceneResultCache<String> cache = new LuceneResultCache<>(10, 20L);
+		cache.put("a", 1L, "A");
+		assertEquals("A", cache.get("a", 1L));
+
+		Thread.sleep(50L);
+		assertNull(cache.get("a", 1L));
+		assertEquals(0, cache.size());
+	}
+}
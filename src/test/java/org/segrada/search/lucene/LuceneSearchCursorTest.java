@@ -0,0 +1,47 @@
+package org.segrada.search.lucene;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LuceneSearchCursorTest {
+	@Test
+	public void testEncodeDecode() throws Exception {
+		LuceneSearchCursor cursor = new LuceneSearchCursor(3, 42L, -12345, new ScoreDoc(1234, 0.12345678f));
+		String token = cursor.encode();
+
+		// url safe
+		assertTrue(token.matches("[A-Za-z0-9_-]+"));
+
+		LuceneSearchCursor decoded = LuceneSearchCursor.decode(token);
+		assertNotNull(decoded);
+		assertEquals(3, decoded.getPage());
+		assertEquals(1234, decoded.getLastHit().doc);
+		assertEquals(Float.floatToIntBits(0.12345678f), Float.floatToIntBits(decoded.getLastHit().score));
+
+		// negative scores keep their bits, too
+		decoded = LuceneSearchCursor.decode(new LuceneSearchCursor(1, 1L, 1, new ScoreDoc(1, -2.5f)).encode());
+		assertNotNull(decoded);
+		assertEquals(-2.5f, decoded.getLastHit().score, 0f);
+	}
+
+	@Test
+	public void testContinues() throws Exception {
+		LuceneSearchCursor cursor = new LuceneSearchCursor(3, 42L, 7, new ScoreDoc(1, 1f));
+
+		assertTrue(cursor.continues(4, 42L, 7));
+		assertFalse(cursor.continues(3, 42L, 7));
+		assertFalse(cursor.continues(5, 42L, 7));
+		assertFalse(cursor.continues(4, 43L, 7));
+		assertFalse(cursor.continues(4, 42L, 8));
+	}
+
+	@Test
+	public void testDecodeInvalid() throws Exception {
+		assertNull(LuceneSearchCursor.decode(null));
+		assertNull(LuceneSearchCursor.decode(""));
+		assertNull(LuceneSearchCursor.decode("invalid!"));
+		assertNull(LuceneSearchCursor.decode("aW52YWxpZA"));
+	}
+}
@@ -1,13 +1,27 @@
 package org.segrada.search.lucene;
 
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.junit.Before;
 import org.junit.Test;
 import org.segrada.search.SearchHit;
+import org.segrada.search.SearchIndexBuilder;
+import org.segrada.search.SearchIndexDocument;
 import org.segrada.service.util.PaginationInfo;
+import org.segrada.test.TestFiles;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -333,7 +347,572 @@ public class LuceneSearchEngineTest {
 		String[] highlights = searchEngine.searchInDocument("labore", "4");
 
 		assertEquals(2, highlights.length);
-		assertEquals("elitr, sed diam nonumy eirmod tempor invidunt ut x <b>labore</b> et dolore magna aliquyam erat, sed diam voluptua", highlights[0]);
-		assertEquals("elitr, sed diam nonumy eirmod tempor invidunt ut <b>labore</b> et dolore magna aliquyam erat, sed diam voluptua", highlights[1]);
+		assertEquals("sed diam nonumy eirmod tempor invidunt ut x <b>labore</b> et dolore magna aliquyam erat, sed diam voluptua.", highlights[0]);
+		assertEquals("elitr, sed diam nonumy eirmod tempor invidunt ut <b>labore</b> et dolore magna aliquyam erat, sed diam voluptua.", highlights[1]);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testCountBasedCommit() throws Exception {
+		Directory directory = new RAMDirectory();
+		LuceneSearchEngine engine = new LuceneSearchEngine(directory, new LuceneSegradaAnalyzer(), 0, 2, 0);
+
+		engine.index("5", "DummyClass", "Hello World 1", "xyzzy", "xyzzy", new String[]{}, null, null, 1.0f);
+		engine.index("6", "DummyClass", "Hello World 2", "xyzzy", "xyzzy", new String[]{}, null, null, 1.0f);
+
+		// two changes have been committed
+		DirectoryReader reader = DirectoryReader.open(directory);
+		assertEquals(2, reader.numDocs());
+		reader.close();
+
+		// third change is not committed yet, but visible to searches
+		engine.index("7", "DummyClass", "Hello World 3", "xyzzy", "xyzzy", new String[]{}, null, null, 1.0f);
+
+		reader = DirectoryReader.open(directory);
+		assertEquals(2, reader.numDocs());
+		reader.close();
+
+		assertEquals(3, engine.search("xyzzy", null).getTotal());
+
+		engine.destroy();
+		engine.destroy(); // second call should be ignored
+	}
+
+	@Test
+	public void testRefreshInterval() throws Exception {
+		LuceneSearchEngine engine = new LuceneSearchEngine(new RAMDirectory(), new LuceneSegradaAnalyzer(), 0, 0, 50);
+
+		engine.index("8", "DummyClass", "Hello World", "xyzzy", "xyzzy", new String[]{}, null, null, 1.0f);
+
+		// searcher is refreshed by background thread
+		long timeout = System.currentTimeMillis() + 5000;
+		while (engine.getById("8") == null && System.currentTimeMillis() < timeout)
+			Thread.sleep(10);
+
+		assertNotNull(engine.getById("8"));
+
+		engine.destroy();
+	}
+
+	@Test
+	public void testIndexAllRemoveAll() throws Exception {
+		assertTrue(searchEngine.indexAll(Arrays.asList(
+				new SearchIndexDocument("9", "DummyClass", "Hello World 1", "xyzzy", "xyzzy", new String[]{"tag1"}, null, null, 1.0f),
+				new SearchIndexDocument("10", "DummyClass", "Hello World 2", "xyzzy", "xyzzy", null, 1, "icon", 1.0f),
+				new SearchIndexDocument("9", "DummyClass", "Hello World 3", "xyzzy", "xyzzy", null, null, null, 1.0f)
+		)));
+
+		// same id written twice should result in one document
+		assertEquals(2, searchEngine.search("xyzzy", null).getTotal());
+		assertEquals("Hello World 3", searchEngine.getById("9").getTitle());
+
+		searchEngine.removeAll(Arrays.asList("9", "10", "doesNotExist"));
+
+		assertEquals(0, searchEngine.search("xyzzy", null).getTotal());
+	}
+
+	@Test
+	public void testDeepPaging() throws Exception {
+		// more hits than collected by former fixed top 1000, many of them with equal scores
+		List<SearchIndexDocument> documents = new ArrayList<>();
+		for (int i = 0; i < 2510; i++) {
+			StringBuilder content = new StringBuilder("lorem");
+			for (int j = 0; j <= i % 7; j++) content.append(" xyzzy");
+			documents.add(new SearchIndexDocument(Integer.toString(i), "DummyClass", "Doc " + i, "", content.toString(), null, null, null, 1.0f));
+		}
+		assertTrue(searchEngine.indexAll(documents));
+
+		Map<String, String> filters = new HashMap<>();
+		filters.put("limit", "100");
+
+		// last page by page number
+		filters.put("page", "26");
+		PaginationInfo<SearchHit> lastPage = searchEngine.search("xyzzy", filters);
+		assertEquals(26, lastPage.getPage());
+		assertEquals(26, lastPage.getPages());
+		assertEquals(2510, lastPage.getTotal());
+		assertEquals(10, lastPage.getEntities().size());
+		assertNull(lastPage.getCursor());
+
+		// page through all hits using cursors
+		Set<String> ids = new HashSet<>();
+		List<String> cursorOrder = new ArrayList<>();
+		filters.put("page", "1");
+		PaginationInfo<SearchHit> page = searchEngine.search("xyzzy", filters);
+		while (true) {
+			for (SearchHit hit : page.getEntities()) {
+				assertTrue("Duplicate hit " + hit.getId(), ids.add(hit.getId()));
+				cursorOrder.add(hit.getId());
+			}
+			if (page.getCursor() == null) break;
+
+			filters.put("page", Integer.toString(page.getPage() + 1));
+			filters.put("cursor", page.getCursor());
+			page = searchEngine.search("xyzzy", filters);
+		}
+		assertEquals(26, page.getPage());
+		assertEquals(2510, ids.size());
+
+		// same order as page numbers without cursor
+		filters.remove("cursor");
+		filters.put("page", "13");
+		List<SearchHit> hits = searchEngine.search("xyzzy", filters).getEntities();
+		for (int i = 0; i < hits.size(); i++)
+			assertEquals(cursorOrder.get(1200 + i), hits.get(i).getId());
+
+		// cursors of other searches or pages are ignored
+		String cursor = searchEngine.search("xyzzy", filters).getCursor();
+		assertNotNull(cursor);
+		filters.put("cursor", cursor);
+		filters.put("page", "20");
+		assertEquals(cursorOrder.get(1900), searchEngine.search("xyzzy", filters).getEntities().get(0).getId());
+		filters.put("page", "14");
+		List<SearchHit> otherSearch = searchEngine.search("lorem", filters).getEntities();
+		filters.remove("cursor");
+		List<SearchHit> otherSearchWithoutCursor = searchEngine.search("lorem", filters).getEntities();
+		assertEquals(otherSearchWithoutCursor.size(), otherSearch.size());
+		for (int i = 0; i < otherSearch.size(); i++)
+			assertEquals(otherSearchWithoutCursor.get(i).getId(), otherSearch.get(i).getId());
+		filters.put("cursor", "invalid");
+		assertEquals(cursorOrder.get(1300), searchEngine.search("xyzzy", filters).getEntities().get(0).getId());
+	}
+
+	@Test
+	public void testFacets() throws Exception {
+		assertTrue(searchEngine.indexAll(Arrays.asList(
+				new SearchIndexDocument("1", "Node", "Apple", "", "fruit", new String[]{"tag1", "tag2"}, null, null, 1.0f),
+				new SearchIndexDocument("2", "Node", "Pear", "", "fruit", new String[]{"tag1"}, null, null, 1.0f),
+				new SearchIndexDocument("3", "Source", "Fruit book", "", "fruit", null, null, null, 1.0f),
+				new SearchIndexDocument("4", "Node", "Carrot", "", "vegetable", new String[]{"tag2"}, null, null, 1.0f)
+		)));
+
+		// not requested
+		assertNull(searchEngine.search("fruit", null).getFacets());
+
+		Map<String, String> filters = new HashMap<>();
+		filters.put("facets", "true");
+		PaginationInfo<SearchHit> result = searchEngine.search("fruit", filters);
+		Map<String, Map<String, Integer>> facets = result.getFacets();
+		assertNotNull(facets);
+		assertEquals(3, result.getTotal());
+		assertEquals(Integer.valueOf(2), facets.get("className").get("Node"));
+		assertEquals(Integer.valueOf(1), facets.get("className").get("Source"));
+		assertEquals("Node", facets.get("className").keySet().iterator().next()); // most frequent first
+		assertEquals(Integer.valueOf(2), facets.get("tag").get("tag1"));
+		assertEquals(Integer.valueOf(1), facets.get("tag").get("tag2"));
+
+		// counts of filtered hits only
+		filters.put("class", "Node");
+		facets = searchEngine.search("fruit", filters).getFacets();
+		assertEquals(1, facets.get("className").size());
+		assertEquals(Integer.valueOf(2), facets.get("className").get("Node"));
+
+		// counted on cursor pages, too
+		filters.remove("class");
+		filters.put("limit", "1");
+		result = searchEngine.search("fruit", filters);
+		filters.put("page", "2");
+		filters.put("cursor", result.getCursor());
+		result = searchEngine.search("fruit", filters);
+		assertEquals(1, result.getEntities().size());
+		assertEquals(Integer.valueOf(2), result.getFacets().get("className").get("Node"));
+
+		// no hits
+		facets = searchEngine.search("doesnotexist", filters).getFacets();
+		assertTrue(facets.get("className").isEmpty());
+		assertTrue(facets.get("tag").isEmpty());
+	}
+
+	@Test
+	public void testFilterCache() throws Exception {
+		assertTrue(searchEngine.indexAll(Arrays.asList(
+				new SearchIndexDocument("1", "Node", "Apple", "", "fruit", new String[]{"tag1", "tag2"}, null, null, 1.0f),
+				new SearchIndexDocument("2", "Source", "Pear", "", "fruit", new String[]{"tag1"}, null, null, 1.0f),
+				new SearchIndexDocument("3", "File", "Fruit book", "", "fruit", null, null, null, 1.0f)
+		)));
+		LuceneFilterCache filterCache = searchEngine.getFilterCache();
+		assertNotNull(filterCache);
+		// repeated searches should reach the filter cache
+		searchEngine.configureResultCache(0, 0);
+
+		Map<String, String> filters = new HashMap<>();
+		filters.put("class", "Node,Source");
+		assertEquals(2, searchEngine.search("fruit", filters).getTotal());
+		long misses = filterCache.getMissCount();
+		assertTrue(misses > 0);
+		assertEquals(0, filterCache.getHitCount());
+
+		// same filter in other order and spacing is found in cache
+		filters.put("class", "Source, Node,");
+		assertEquals(2, searchEngine.search("fruit", filters).getTotal());
+		assertEquals(misses, filterCache.getMissCount());
+		assertTrue(filterCache.getHitCount() > 0);
+
+		// tag filter combined with class filter
+		filters.put("tags", "tag2,tag1");
+		assertEquals(2, searchEngine.search("fruit", filters).getTotal());
+		filters.put("tags", "tag2");
+		assertEquals(1, searchEngine.search("fruit", filters).getTotal());
+		filters.put("class", "Source");
+		assertEquals(0, searchEngine.search("fruit", filters).getTotal());
+
+		// changes of the index are reflected
+		searchEngine.index("4", "Source", "Grape", "", "fruit", new String[]{"tag2"}, null, null, 1.0f);
+		assertEquals(1, searchEngine.search("fruit", filters).getTotal());
+
+		// disabled cache
+		LuceneSearchEngine uncachedEngine = new LuceneSearchEngine(new RAMDirectory(), new LuceneSegradaAnalyzer(), 0, 0, 0, false, 0, 0);
+		uncachedEngine.index("1", "Node", "Apple", "", "fruit", null, null, null, 1.0f);
+		filters.clear();
+		filters.put("class", "Node");
+		assertEquals(1, uncachedEngine.search("fruit", filters).getTotal());
+		assertNull(uncachedEngine.getFilterCache());
+		uncachedEngine.destroy();
+	}
+
+	@Test
+	public void testResultCache() throws Exception {
+		searchEngine.index("1", "Node", "Apple", "", "red fruit", null, null, null, 1.0f);
+		searchEngine.index("2", "Node", "Pear", "", "green fruit", null, null, null, 1.0f);
+		LuceneResultCache<?> resultCache = searchEngine.getResultCache();
+		LuceneResultCache<?> highlightCache = searchEngine.getHighlightCache();
+
+		Map<String, String> filters = new HashMap<>();
+		assertEquals(2, searchEngine.search("fruit", filters).getTotal());
+		assertEquals(0, resultCache.getHits());
+		assertEquals(1, resultCache.getMisses());
+
+		// same search is answered by cache, documents are loaded nevertheless
+		PaginationInfo<SearchHit> cached = searchEngine.search("fruit", filters);
+		assertEquals(2, cached.getTotal());
+		assertEquals(2, cached.getEntities().size());
+		assertEquals(1, resultCache.getHits());
+
+		// other page size is another search
+		filters.put("limit", "1");
+		assertEquals(1, searchEngine.search("fruit", filters).getEntities().size());
+		assertEquals(1, resultCache.getHits());
+		filters.remove("limit");
+
+		String[] fragments = searchEngine.searchInDocument("red", "1");
+		assertEquals(1, fragments.length);
+		assertArrayEquals(fragments, searchEngine.searchInDocument("red", "1"));
+		assertEquals(1, highlightCache.getHits());
+
+		// changes of the index invalidate cached results
+		searchEngine.index("3", "Node", "Cherry", "", "red fruit", null, null, null, 1.0f);
+		assertEquals(3, searchEngine.search("fruit", filters).getTotal());
+		assertEquals(1, resultCache.getHits());
+		searchEngine.index("1", "Node", "Apple", "", "yellow fruit", null, null, null, 1.0f);
+		assertEquals(0, searchEngine.searchInDocument("red", "1").length);
+		assertEquals(1, highlightCache.getHits());
+	}
+
+	@Test
+	public void testIndexBuilder() throws Exception {
+		searchEngine.index("1", "DummyClass", "Old", "xyzzy", "xyzzy", null, null, null, 1.0f);
+		searchEngine.index("2", "DummyClass", "Stale", "xyzzy", "xyzzy", null, null, null, 1.0f);
+
+		SearchIndexBuilder builder = searchEngine.openIndexBuilder(false);
+		assertFalse(builder.isResumed());
+
+		// only one build at a time
+		try {
+			searchEngine.openIndexBuilder(false);
+			fail("Second builder should not be opened");
+		} catch (IOException e) {
+			// expected
+		}
+
+		assertTrue(builder.indexAll(Arrays.asList(
+				new SearchIndexDocument("1", "DummyClass", "Rebuilt", "xyzzy", "xyzzy", null, null, null, 1.0f),
+				new SearchIndexDocument("3", "DummyClass", "Rebuilt", "xyzzy", "xyzzy", null, null, null, 1.0f)
+		)));
+		builder.checkpoint();
+
+		// live index is still searchable and unchanged
+		assertEquals(2, searchEngine.search("xyzzy", null).getTotal());
+		assertEquals("Old", searchEngine.getById("1").getTitle());
+
+		// live change during build must not be overwritten by older version read by build
+		searchEngine.index("4", "DummyClass", "Live", "xyzzy", "xyzzy", null, null, null, 1.0f);
+		assertTrue(builder.indexAll(Collections.singletonList(
+				new SearchIndexDocument("4", "DummyClass", "Older", "xyzzy", "xyzzy", null, null, null, 1.0f))));
+
+		builder.publish();
+
+		// stale document is gone, rebuilt and live documents are there
+		assertEquals(3, searchEngine.search("xyzzy", null).getTotal());
+		assertNull(searchEngine.getById("2"));
+		assertEquals("Rebuilt", searchEngine.getById("1").getTitle());
+		assertEquals("Live", searchEngine.getById("4").getTitle());
+
+		// new build can be opened again
+		searchEngine.openIndexBuilder(false).discard();
+		assertEquals(3, searchEngine.search("xyzzy", null).getTotal());
+	}
+
+	@Test
+	public void testIndexBuilderCommitFailure() throws Exception {
+		boolean[] failing = new boolean[1];
+		Directory directory = new RAMDirectory();
+		LuceneSearchEngine engine = new LuceneSearchEngine(directory, new LuceneSegradaAnalyzer(), 0, 2, 0) {
+			@Override
+			protected Directory createBuilderDirectory() {
+				return new RAMDirectory() {
+					@Override
+					public void sync(Collection<String> names) throws IOException {
+						if (failing[0]) throw new IOException("Disk full");
+						super.sync(names);
+					}
+				};
+			}
+		};
+		SearchIndexBuilder builder = engine.openIndexBuilder(false);
+
+		// live index is not committed if mirrored changes could not be committed to new index
+		failing[0] = true;
+		engine.index("1", "DummyClass", "First", "xyzzy", "xyzzy", null, null, null, 1.0f);
+		engine.index("2", "DummyClass", "Second", "xyzzy", "xyzzy", null, null, null, 1.0f);
+		assertEquals(0, countCommitted(directory));
+
+		// changes are still pending and committed next time
+		failing[0] = false;
+		engine.commitIfPending();
+		assertEquals(2, countCommitted(directory));
+
+		builder.discard();
+		engine.destroy();
+	}
+
+	private static int countCommitted(Directory directory) throws IOException {
+		if (!DirectoryReader.indexExists(directory)) return 0;
+		try (DirectoryReader reader = DirectoryReader.open(directory)) {
+			return reader.numDocs();
+		}
+	}
+
+	@Test
+	public void testResumeIndexBuilder() throws Exception {
+		Path path = Files.createTempDirectory("segrada");
+		Path builderPath = path.resolveSibling(path.getFileName() + "_reindex");
+		try {
+			// commit after each change
+			LuceneSearchEngine firstEngine = new LuceneSearchEngine(new MMapDirectory(path), new LuceneSegradaAnalyzer(), 0, 1, 0);
+			firstEngine.index("1", "DummyClass", "Old", "xyzzy", "xyzzy", null, null, null, 1.0f);
+			firstEngine.index("2", "DummyClass", "Old", "xyzzy", "xyzzy", null, null, null, 1.0f);
+
+			SearchIndexBuilder builder = firstEngine.openIndexBuilder(false);
+			assertTrue(builder.indexAll(Collections.singletonList(
+					new SearchIndexDocument("3", "DummyClass", "Rebuilt", "xyzzy", "xyzzy", null, null, null, 1.0f))));
+			builder.checkpoint();
+
+			// live changes after checkpoint, then build is interrupted
+			firstEngine.index("1", "DummyClass", "Live", "xyzzy", "xyzzy", null, null, null, 1.0f);
+			firstEngine.remove("2");
+			firstEngine.destroy();
+
+			searchEngine = new LuceneSearchEngine(new MMapDirectory(path), new LuceneSegradaAnalyzer(), 0, 0, 0);
+			builder = searchEngine.openIndexBuilder(true);
+			assertTrue(builder.isResumed());
+
+			// older versions read by resumed build do not overwrite live changes made before interruption
+			assertTrue(builder.indexAll(Arrays.asList(
+					new SearchIndexDocument("1", "DummyClass", "Older", "xyzzy", "xyzzy", null, null, null, 1.0f),
+					new SearchIndexDocument("2", "DummyClass", "Older", "xyzzy", "xyzzy", null, null, null, 1.0f)
+			)));
+			builder.publish();
+
+			assertEquals(2, searchEngine.search("xyzzy", null).getTotal());
+			assertEquals("Live", searchEngine.getById("1").getTitle());
+			assertNull(searchEngine.getById("2"));
+			assertEquals("Rebuilt", searchEngine.getById("3").getTitle());
+			searchEngine.destroy();
+		} finally {
+			TestFiles.deleteRecursively(path);
+			TestFiles.deleteRecursively(builderPath);
+		}
+	}
+
+	@Test
+	public void testHitFields() throws Exception {
+		searchEngine.index("1", "Node", "Apple", "Malus", "fruit", new String[]{"tag2", "tag1"}, 0x123456, "icon1", 1.0f);
+		searchEngine.index("2", "Source", "Pear", null, "fruit", null, null, null, 1.0f);
+
+		Map<String, SearchHit> hits = new HashMap<>();
+		for (SearchHit hit : searchEngine.search("fruit", null).getEntities())
+			hits.put(hit.getId(), hit);
+
+		SearchHit hit = hits.get("1");
+		assertEquals("Node", hit.getClassName());
+		assertEquals("Apple", hit.getTitle());
+		assertEquals("Malus", hit.getSubTitles());
+		assertEquals(new HashSet<>(Arrays.asList("tag1", "tag2")), new HashSet<>(Arrays.asList(hit.getTagIds())));
+		assertEquals(Integer.valueOf(0x123456), hit.getColor());
+		assertEquals("icon1", hit.getIconFileIdentifier());
+
+		hit = hits.get("2");
+		assertEquals("Source", hit.getClassName());
+		assertEquals("Pear", hit.getTitle());
+		assertNull(hit.getSubTitles());
+		assertEquals(0, hit.getTagIds().length);
+		assertNull(hit.getColor());
+		assertNull(hit.getIconFileIdentifier());
+	}
+
+	@Test
+	public void testHitFieldsOfOldIndex() throws Exception {
+		// index written with stored fields only
+		Directory directory = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new LuceneSegradaAnalyzer()));
+		Document doc = new Document();
+		doc.add(new StringField("id", "1", Field.Store.YES));
+		doc.add(new StringField("className", "Node", Field.Store.YES));
+		doc.add(new TextField("title", "Apple", Field.Store.YES));
+		FieldType contentType = new FieldType(TextField.TYPE_STORED);
+		contentType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+		doc.add(new Field("content", "fruit", contentType));
+		doc.add(new StringField("tag", "tag1", Field.Store.YES));
+		doc.add(new IntField("color", 0x123456, IntField.TYPE_STORED));
+		writer.addDocument(doc);
+		writer.close();
+
+		searchEngine = new LuceneSearchEngine(directory, new LuceneSegradaAnalyzer());
+		assertTrue(searchEngine.isIndexOutdated());
+
+		SearchHit hit = searchEngine.search("fruit", null).getEntities().get(0);
+		assertEquals("1", hit.getId());
+		assertEquals("Node", hit.getClassName());
+		assertEquals("Apple", hit.getTitle());
+		assertArrayEquals(new String[]{"tag1"}, hit.getTagIds());
+		assertEquals(Integer.valueOf(0x123456), hit.getColor());
+	}
+
+	@Test
+	public void testHighlighterLayout() throws Exception {
+		Path path = Files.createTempDirectory("segrada");
+		try {
+			// index written with term vectors
+			LuceneSearchEngine vectorEngine = new LuceneSearchEngine(new MMapDirectory(path), new LuceneSegradaAnalyzer(), 0, 0, 0, true);
+			vectorEngine.index("1", "DummyClass", "First", "", "First apples here. Nothing else.", null, null, null, 1.0f);
+			vectorEngine.index("2", "DummyClass", "Second", "", "Pears only. Second apples here.", null, null, null, 1.0f);
+			assertFalse(vectorEngine.isIndexOutdated());
+			assertEquals(1, vectorEngine.search("apples", null).getEntities().get(0).getHighlightText().length);
+			vectorEngine.destroy();
+
+			// postings highlighter works on old index, but it should be rebuilt without term vectors
+			searchEngine = new LuceneSearchEngine(new MMapDirectory(path), new LuceneSegradaAnalyzer(), 0, 0, 0);
+			assertTrue(searchEngine.isIndexOutdated());
+
+			// fragments of each hit are its own
+			for (SearchHit hit : searchEngine.search("apples", null).getEntities()) {
+				assertEquals(1, hit.getHighlightText().length);
+				assertTrue(hit.getHighlightText()[0].contains(hit.getId().equals("1") ? "First" : "Second"));
+				assertTrue(hit.getHighlightText()[0].contains("<b>apples</b>"));
+			}
+
+			// hits matching title only do not get fragments
+			assertEquals(0, searchEngine.search("first", null).getEntities().stream().filter(hit -> hit.getId().equals("2")).count());
+			assertEquals(0, searchEngine.search("title:second", null).getEntities().get(0).getHighlightText().length);
+
+			// rebuild index
+			SearchIndexBuilder builder = searchEngine.openIndexBuilder(false);
+			builder.indexAll(Arrays.asList(
+					new SearchIndexDocument("1", "DummyClass", "First", "", "First apples here. Nothing else.", null, null, null, 1.0f),
+					new SearchIndexDocument("2", "DummyClass", "Second", "", "Pears only. Second apples here.", null, null, null, 1.0f)
+			));
+			builder.publish();
+			assertFalse(searchEngine.isIndexOutdated());
+			assertEquals(2, searchEngine.search("apples", null).getTotal());
+			searchEngine.destroy();
+		} finally {
+			TestFiles.deleteRecursively(path);
+		}
+	}
+
+	@Test
+	public void testPassages() throws Exception {
+		String[] pages = new String[]{"Introduction to the fruit trade.", "", "Trade of apples and pears.", "Apples are red."};
+		assertTrue(searchEngine.indexAll(Collections.singletonList(
+				new SearchIndexDocument("1", "File", "Book", "", "A book", null, null, null, 1.0f, pages))));
+		searchEngine.index("2", "File", "Leaflet", "", "Pears only", null, null, null, 1.0f);
+
+		// entity is found by its passages, passages are never hits of their own
+		PaginationInfo<SearchHit> result = searchEngine.search("apples", null);
+		assertEquals(1, result.getTotal());
+		assertEquals("1", result.getEntities().get(0).getId());
+		assertTrue(result.getEntities().get(0).getHighlightText()[0].toLowerCase().contains("<b>apples</b>"));
+		assertEquals(2, searchEngine.search("pears", null).getTotal());
+		assertEquals(2, searchEngine.search(null, null).getTotal());
+
+		// title only searches do not look into passages
+		Map<String, String> filters = new HashMap<>();
+		filters.put("fields", "title");
+		assertEquals(0, searchEngine.search("apples", filters).getTotal());
+
+		// matches are grouped by passage
+		Map<Integer, String[]> passages = searchEngine.searchPassagesInDocument("apples", "1");
+		assertEquals(Arrays.asList(3, 4), new ArrayList<>(passages.keySet()));
+		assertEquals(2, searchEngine.searchInDocument("apples", "1").length);
+		assertEquals(Collections.singleton(0), searchEngine.searchPassagesInDocument("book", "1").keySet());
+
+		// unchanged passages are recognized and not written again
+		SearchIndexDocument renamed = new SearchIndexDocument("1", "File", "Renamed book", "", "A book", null, null, null, 1.0f, pages.clone());
+		String hash = LuceneSearchEngine.createPassagesHash(renamed);
+		assertEquals(Collections.singleton("1"), searchEngine.findIndexedPassages(Collections.singletonMap("1", hash)));
+		assertTrue(searchEngine.indexAll(Collections.singletonList(renamed)));
+		assertEquals("Renamed book", searchEngine.search("apples", null).getEntities().get(0).getTitle());
+		assertNotEquals(hash, LuceneSearchEngine.createPassagesHash(
+				new SearchIndexDocument("1", "File", "Book", "", "A book", null, null, null, 2.0f, pages)));
+
+		// empty passages remove old ones
+		assertTrue(searchEngine.indexAll(Collections.singletonList(
+				new SearchIndexDocument("1", "File", "Book", "", "A book", null, null, null, 1.0f, new String[0]))));
+		assertEquals(0, searchEngine.search("apples", null).getTotal());
+
+		// passages are removed with their entity
+		assertTrue(searchEngine.indexAll(Collections.singletonList(
+				new SearchIndexDocument("1", "File", "Book", "", "A book", null, null, null, 1.0f, pages))));
+		searchEngine.remove("1");
+		assertEquals(0, searchEngine.search("apples", null).getTotal());
+		assertEquals(1, searchEngine.search("pears", null).getTotal());
+	}
+
+	@Test
+	public void testPassagesOfCachedSearch() throws Exception {
+		// count completed queries - passage join runs the passage query when it is created
+		int[] created = new int[1];
+		searchEngine = new LuceneSearchEngine(new RAMDirectory(), new LuceneSegradaAnalyzer()) {
+			@Override
+			protected Query createFilteredQuery(IndexSearcher iSearcher, Query query, Query passageQuery, List<Query> searchFilters) throws IOException {
+				created[0]++;
+				return super.createFilteredQuery(iSearcher, query, passageQuery, searchFilters);
+			}
+		};
+
+		assertTrue(searchEngine.indexAll(Arrays.asList(
+				new SearchIndexDocument("1", "File", "Book", "", "A book", null, null, null, 1.0f, new String[]{"Apples are red."}),
+				new SearchIndexDocument("2", "File", "Other book", "", "Another book", null, null, null, 1.0f, new String[]{"Pears.", "Green apples."}),
+				new SearchIndexDocument("3", "File", "Apples", "", "Apples everywhere", null, null, null, 1.0f)
+		)));
+
+		// hits found by passages are highlighted with their best passage
+		Map<String, String> filters = new HashMap<>();
+		Map<String, String[]> highlights = new HashMap<>();
+		for (SearchHit hit : searchEngine.search("apples", filters).getEntities())
+			highlights.put(hit.getId(), hit.getHighlightText());
+		assertEquals(3, highlights.size());
+		assertTrue(highlights.get("1")[0].contains("red"));
+		assertTrue(highlights.get("2")[0].contains("Green"));
+		assertTrue(highlights.get("3")[0].contains("<b>Apples</b>"));
+		assertEquals(1, created[0]);
+
+		// same search is answered by cache without joining passages again
+		assertEquals(3, searchEngine.search("apples", filters).getTotal());
+		assertEquals(1, searchEngine.getResultCache().getHits());
+		assertEquals(1, created[0]);
+
+		filters.put("class", "File");
+		assertEquals(3, searchEngine.search("apples", filters).getTotal());
+		assertEquals(2, created[0]);
+	}
+}
@@ -0,0 +1,188 @@
+package org.segrada.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.segrada.search.SearchIndexBuilder;
+import org.segrada.search.SearchIndexDocument;
+import org.segrada.search.lucene.LuceneSegradaAnalyzer;
+import org.segrada.session.ApplicationSettings;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SolrSearchEngineTest {
+	/**
+	 * client recording update requests instead of sending them
+	 */
+	private static class RecordingSolrClient extends SolrClient {
+		private final List<UpdateRequest> requests = Collections.synchronizedList(new ArrayList<>());
+
+		private volatile int failures = 0;
+
+		@Override
+		public NamedList<Object> request(SolrRequest request, String collection) {
+			if (failures > 0) {
+				failures--;
+				throw new RuntimeException("Solr is busy");
+			}
+			if (request instanceof UpdateRequest) requests.add((UpdateRequest) request);
+			return new NamedList<>();
+		}
+
+		@Override
+		public void shutdown() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		int countCommits() {
+			int commits = 0;
+			synchronized (requests) {
+				for (UpdateRequest request : requests)
+					if (request.getAction() == AbstractUpdateRequest.ACTION.COMMIT) commits++;
+			}
+			return commits;
+		}
+
+		List<String> addedIds() {
+			List<String> ids = new ArrayList<>();
+			synchronized (requests) {
+				for (UpdateRequest request : requests)
+					if (request.getDocuments() != null)
+						request.getDocuments().forEach(document -> ids.add((String) document.getFieldValue("id")));
+			}
+			return ids;
+		}
+	}
+
+	private RecordingSolrClient client;
+
+	private SolrSearchEngine searchEngine;
+
+	private final Map<String, String> settings = new HashMap<>();
+
+	@Before
+	public void setUp() throws Exception {
+		settings.clear();
+		settings.put("solr.queue.flushDelay", "0");
+		settings.put("solr.queue.retryDelay", "1");
+		client = new RecordingSolrClient();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (searchEngine != null) searchEngine.destroy();
+	}
+
+	private SolrSearchEngine createEngine() {
+		ApplicationSettings applicationSettings = new ApplicationSettings() {
+			@Override
+			public String getSetting(String key) {
+				return settings.get(key);
+			}
+
+			@Override
+			public String getSetting(String key, String defaultValue) {
+				return settings.getOrDefault(key, defaultValue);
+			}
+
+			@Override
+			public void setSetting(String key, String newValue) {
+				settings.put(key, newValue);
+			}
+
+			@Override
+			public Collection<String> getKeys() {
+				return settings.keySet();
+			}
+		};
+
+		return new SolrSearchEngine(applicationSettings, new LuceneSegradaAnalyzer(), client);
+	}
+
+	@Test
+	public void testIndexWithinCommit() throws Exception {
+		searchEngine = createEngine();
+
+		for (int i = 0; i < 10; i++)
+			assertTrue(searchEngine.index("#1:" + i, "Node", "Title " + i, null, "content", new String[]{"tag"}, null, null, 1f));
+		searchEngine.remove("#1:3");
+		searchEngine.removeAll(Arrays.asList("#1:4", "#1:5"));
+
+		assertTrue(searchEngine.getUpdateQueue().flush(5000L));
+
+		// no explicit commits, all requests commit within the configured time
+		assertEquals(0, client.countCommits());
+		Set<String> deleted = new HashSet<>();
+		synchronized (client.requests) {
+			for (UpdateRequest request : client.requests) {
+				assertEquals(1000, request.getCommitWithin());
+				if (request.getDeleteById() != null) deleted.addAll(request.getDeleteById());
+			}
+		}
+		assertEquals(new HashSet<>(Arrays.asList("#1:3", "#1:4", "#1:5")), deleted);
+
+		// pending additions have been replaced by deletions
+		assertEquals(7, client.addedIds().size());
+		assertFalse(client.addedIds().contains("#1:3"));
+	}
+
+	@Test
+	public void testSoftCommit() throws Exception {
+		settings.put("solr.commitWithin", "0");
+		settings.put("solr.queue.capacity", "0");
+		searchEngine = createEngine();
+
+		// queue disabled: documents are sent and committed within request
+		assertTrue(searchEngine.index("#1:1", "Node", "Title", null, "content", null, null, null, 1f));
+		assertEquals(1, client.requests.size());
+		assertEquals(1, client.countCommits());
+		assertEquals("true", client.requests.get(0).getParams().get(UpdateParams.SOFT_COMMIT));
+	}
+
+	@Test
+	public void testIndexAll() throws Exception {
+		searchEngine = createEngine();
+		client.failures = 2;
+
+		List<SearchIndexDocument> documents = new ArrayList<>();
+		for (int i = 0; i < 50; i++)
+			documents.add(new SearchIndexDocument("#1:" + i, "Node", "Title " + i, null, "content", null, null, null, 1f));
+
+		// one request after two failed attempts
+		assertTrue(searchEngine.indexAll(documents));
+		assertEquals(1, client.requests.size());
+		assertEquals(50, client.addedIds().size());
+
+		// give up after maximum number of attempts
+		client.failures = 10;
+		assertFalse(searchEngine.indexAll(documents));
+		client.failures = 0;
+	}
+
+	@Test
+	public void testIndexBuilderCommitsPendingUpdates() throws Exception {
+		searchEngine = createEngine();
+
+		assertTrue(searchEngine.index("#1:1", "Node", "Title", null, "content", null, null, null, 1f));
+
+		SearchIndexBuilder builder = searchEngine.openIndexBuilder(false);
+		builder.publish();
+		builder.close();
+
+		// update has been sent before commit
+		assertEquals(Collections.singletonList("#1:1"), client.addedIds());
+		assertEquals(1, client.countCommits());
+		assertEquals(AbstractUpdateRequest.ACTION.COMMIT, client.requests.get(client.requests.size() - 1).getAction());
+	}
+}
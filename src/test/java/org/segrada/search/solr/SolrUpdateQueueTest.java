@@ -0,0 +1,155 @@
+package org.segrada.search.solr;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SolrUpdateQueueTest {
+	/**
+	 * sent documents and deletions
+	 */
+	private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+	private void record(Collection<SolrInputDocument> documents, Collection<String> deleteIds) {
+		for (SolrInputDocument document : documents)
+			sent.add("add:" + document.getFieldValue("id") + ":" + document.getFieldValue("title"));
+		for (String id : deleteIds)
+			sent.add("delete:" + id);
+	}
+
+	private static SolrInputDocument document(String id, String title) {
+		SolrInputDocument document = new SolrInputDocument();
+		document.addField("id", id);
+		document.addField("title", title);
+		return document;
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		SolrUpdateQueue queue = new SolrUpdateQueue(this::record, 1, 0, 10, 0, 0, 1, 0);
+		queue.start();
+
+		// queue disabled: caller has to send directly
+		assertFalse(queue.isRunning());
+		assertFalse(queue.enqueueAdd("1", document("1", "a")));
+		assertTrue(queue.sendNow(Collections.singletonList(document("1", "a")), Collections.emptyList()));
+		assertEquals(Collections.singletonList("add:1:a"), sent);
+	}
+
+	@Test
+	public void testCoalesceAndSend() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		SolrUpdateQueue queue = new SolrUpdateQueue((documents, deleteIds) -> {
+			latch.await(5, TimeUnit.SECONDS);
+			record(documents, deleteIds);
+		}, 1, 10, 10, 100, 0, 1, 0);
+		queue.start();
+
+		assertTrue(queue.enqueueAdd("1", document("1", "a")));
+		assertTrue(queue.enqueueAdd("2", document("2", "b")));
+		assertTrue(queue.enqueueAdd("1", document("1", "c")));
+		assertTrue(queue.enqueueDelete("2"));
+
+		assertEquals(2, queue.size());
+		assertEquals(2L, queue.getStatistics().get("coalesced"));
+
+		latch.countDown();
+		assertTrue(queue.flush(5000L));
+		queue.shutdown(5000L);
+
+		// latest state per document in a single batch
+		assertEquals(Arrays.asList("add:1:c", "delete:2"), sent);
+		assertEquals(1L, queue.getStatistics().get("batches"));
+	}
+
+	@Test
+	public void testBackPressure() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		SolrUpdateQueue queue = new SolrUpdateQueue((documents, deleteIds) -> {
+			started.countDown();
+			latch.await(5, TimeUnit.SECONDS);
+			record(documents, deleteIds);
+		}, 1, 1, 1, 0, 50, 1, 0);
+		queue.start();
+
+		// first update is taken by worker, which blocks
+		assertTrue(queue.enqueueAdd("1", document("1", "a")));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		// second update fills queue, third one times out
+		assertTrue(queue.enqueueAdd("2", document("2", "b")));
+		long start = System.currentTimeMillis();
+		assertFalse(queue.enqueueAdd("3", document("3", "c")));
+		assertTrue(System.currentTimeMillis() - start >= 40);
+		assertEquals(1L, queue.getStatistics().get("rejected"));
+
+		latch.countDown();
+		queue.shutdown(5000L);
+
+		assertEquals(Arrays.asList("add:1:a", "add:2:b"), sent);
+	}
+
+	@Test
+	public void testRetry() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		SolrUpdateQueue queue = new SolrUpdateQueue((documents, deleteIds) -> {
+			if (attempts.incrementAndGet() < 3) throw new RuntimeException("Solr is busy");
+			record(documents, deleteIds);
+		}, 1, 10, 10, 0, 0, 3, 10);
+		queue.start();
+
+		assertTrue(queue.enqueueDelete("1"));
+		assertTrue(queue.flush(5000L));
+		queue.shutdown(5000L);
+
+		assertEquals(3, attempts.get());
+		assertEquals(Collections.singletonList("delete:1"), sent);
+		assertEquals(2L, queue.getStatistics().get("retried"));
+		assertEquals(0L, queue.getStatistics().get("failed"));
+
+		// give up after maximum number of attempts
+		attempts.set(-10);
+		assertFalse(queue.sendNow(Collections.emptyList(), Collections.singletonList("2")));
+		assertEquals(1L, queue.getStatistics().get("failed"));
+	}
+
+	@Test
+	public void testConcurrentWorkers() throws Exception {
+		Map<String, String> index = new HashMap<>();
+		SolrUpdateQueue queue = new SolrUpdateQueue((documents, deleteIds) -> {
+			Thread.sleep(1);
+			synchronized (index) {
+				for (SolrInputDocument document : documents)
+					index.put((String) document.getFieldValue("id"), (String) document.getFieldValue("title"));
+				for (String id : deleteIds) index.remove(id);
+			}
+		}, 4, 50, 5, 0, 5000, 1, 0);
+		queue.start();
+
+		// updates of the same documents by several threads - each thread writes its own title last
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 500; i++)
+					queue.enqueueAdd("doc" + (thread * 20 + i % 20), document("doc" + (thread * 20 + i % 20), "v" + i));
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) thread.join();
+
+		assertTrue(queue.flush(10000L));
+		queue.shutdown(5000L);
+
+		assertEquals(80, index.size());
+		for (String title : index.values()) assertTrue(title.startsWith("v48") || title.startsWith("v49"));
+		assertEquals(0L, queue.getStatistics().get("rejected"));
+	}
+}
@@ -24,6 +24,7 @@ import org.segrada.test.OrientDBTestInstance;
 import org.segrada.test.OrientDbTestApplicationSettings;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -134,6 +135,22 @@ public class AbstractFullTextServiceTest {
 		assertNull(hit);
 	}
 
+	@Test
+	public void testFailedDelete() throws Exception {
+		ISource source = new Source();
+		source.setShortTitle("shortTitle");
+		source.setShortRef("shortRef");
+
+		service.save(source);
+
+		// record is gone already, so nothing is deleted
+		factory.getDb().command(new OCommandSQL("delete vertex " + source.getId())).execute();
+		assertFalse(service.delete(source));
+
+		// search index is left untouched
+		assertNotNull(searchEngine.getById(source.getUid()));
+	}
+
 	@Test
 	public void testReindexAll() throws Exception {
 		ISource source = new Source();
@@ -180,6 +197,27 @@ public class AbstractFullTextServiceTest {
 		assertNotNull(hit);
 	}
 
+	@Test
+	public void testIndexByIds() throws Exception {
+		ISource source = new Source();
+		source.setShortTitle("shortTitle");
+		source.setShortRef("shortRef");
+		source.setLongTitle("longTitle");
+		source.setDescription("Description");
+		source.setDescriptionMarkup("default");
+
+		service.save(source);
+
+		searchEngine.clearAllIndexes();
+
+		// unknown ids are ignored
+		assertTrue(service.indexByIds(Arrays.asList(source.getId(), "#99:99")));
+
+		// in index?
+		SearchHit hit = searchEngine.getById(source.getUid());
+		assertNotNull(hit);
+	}
+
 	@Test
 	public void testPrepareIndexEntity() throws Exception {
 		methodCalled = false;
@@ -0,0 +1,183 @@
+package org.segrada.service.exporter;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.segrada.model.File;
+import org.segrada.model.Node;
+import org.segrada.model.Relation;
+import org.segrada.model.RelationType;
+import org.segrada.service.repository.orientdb.OrientDbFileRepository;
+import org.segrada.service.repository.orientdb.OrientDbNodeRepository;
+import org.segrada.service.repository.orientdb.OrientDbRelationRepository;
+import org.segrada.service.repository.orientdb.OrientDbRelationTypeRepository;
+import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
+import org.segrada.session.Identity;
+import org.segrada.test.OrientDBTestInstance;
+import org.segrada.test.OrientDbTestApplicationSettings;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DatabaseExporterTest {
+	/**
+	 * reference to test instance of orientdb in memory
+	 */
+	private OrientDBTestInstance orientDBTestInstance = new OrientDBTestInstance();
+
+	/**
+	 * reference to factory
+	 */
+	private OrientDbRepositoryFactory factory;
+
+	private Node alice;
+
+	private Node bob;
+
+	private Relation relation;
+
+	@Before
+	public void setUp() throws Exception {
+		// set up schema if needed
+		orientDBTestInstance.setUpSchemaIfNeeded();
+
+		// open database
+		ODatabaseDocumentTx db = orientDBTestInstance.getDatabase();
+
+		factory = new OrientDbRepositoryFactory(db, new OrientDbTestApplicationSettings(), new Identity());
+
+		// small graph: two nodes, a relation and a file
+		alice = new Node();
+		alice.setTitle("Alice");
+		factory.produceRepository(OrientDbNodeRepository.class).save(alice);
+		bob = new Node();
+		bob.setTitle("Bob");
+		factory.produceRepository(OrientDbNodeRepository.class).save(bob);
+
+		RelationType relationType = new RelationType();
+		relationType.setFromTitle("knows");
+		relationType.setToTitle("is known by");
+		factory.produceRepository(OrientDbRelationTypeRepository.class).save(relationType);
+
+		relation = new Relation();
+		relation.setRelationType(relationType);
+		relation.setFromEntity(alice);
+		relation.setToEntity(bob);
+		factory.produceRepository(OrientDbRelationRepository.class).save(relation);
+
+		File file = new File();
+		file.setFilename("test.txt");
+		file.setTitle("Test file");
+		file.setMimeType("text/plain");
+		file.setFullText("full text content");
+		factory.produceRepository(OrientDbFileRepository.class).save(file);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// truncate db
+		factory.getDb().command(new OCommandSQL("delete vertex V")).execute();
+		factory.getDb().command(new OCommandSQL("delete edge E")).execute();
+
+		// close db
+		try {
+			factory.getDb().close();
+		} catch (Exception e) {
+			// do nothing
+		}
+	}
+
+	@Test
+	public void testExportJsonLines() throws Exception {
+		List<JSONObject> lines = exportJsonLines(null, null);
+		assertEquals(6, lines.size());
+
+		// fixed class order, edges last
+		assertEquals("RelationType", lines.get(0).getString("@class"));
+		assertEquals("Node", lines.get(1).getString("@class"));
+		assertEquals(alice.getId(), lines.get(1).getString("@rid"));
+		assertEquals("Alice", lines.get(1).getString("title"));
+		assertEquals(bob.getId(), lines.get(2).getString("@rid"));
+		assertEquals("File", lines.get(3).getString("@class"));
+		assertEquals("Relation", lines.get(4).getString("@class"));
+		assertEquals(relation.getId(), lines.get(4).getString("@rid"));
+
+		// file metadata without contents, no edge lists on vertices
+		assertEquals("test.txt", lines.get(3).getString("filename"));
+		assertFalse(lines.get(3).has("fullText"));
+		assertFalse(lines.get(1).has("out_IsRelation"));
+		assertTrue(lines.get(1).getLong("created") > 0L);
+
+		// edges refer to their vertices
+		JSONObject edge = lines.get(5);
+		assertEquals("IsRelation", edge.getString("@class"));
+		assertEquals(alice.getId(), edge.getString("out"));
+		assertEquals(bob.getId(), edge.getString("in"));
+		assertEquals(edge.getString("@rid"), lines.get(4).getString("relationLink"));
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		// resume after first node
+		List<JSONObject> lines = exportJsonLines("Node", alice.getId());
+		assertEquals(4, lines.size());
+		assertEquals(bob.getId(), lines.get(0).getString("@rid"));
+
+		// resume at edges
+		lines = exportJsonLines("IsRelation", null);
+		assertEquals(1, lines.size());
+
+		try {
+			exportJsonLines("Unknown", null);
+			fail("Unknown class should not be accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testExportGraphML() throws Exception {
+		StringWriter out = new StringWriter();
+		DatabaseExporter exporter = new DatabaseExporter(factory.getDb());
+		assertEquals(6L, exporter.export(new GraphMLExportWriter(out), null, null));
+		assertEquals("IsRelation", exporter.getLastClass());
+
+		DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+		builderFactory.setNamespaceAware(true);
+		Document document = builderFactory.newDocumentBuilder().parse(new InputSource(new StringReader(out.toString())));
+
+		assertEquals("graphml", document.getDocumentElement().getLocalName());
+		assertEquals(5, document.getElementsByTagName("node").getLength());
+
+		NodeList edges = document.getElementsByTagName("edge");
+		assertEquals(1, edges.getLength());
+		assertEquals(alice.getId(), ((Element) edges.item(0)).getAttribute("source"));
+		assertEquals(bob.getId(), ((Element) edges.item(0)).getAttribute("target"));
+
+		// keys declared from schema, file contents left out
+		assertFalse(out.toString().contains("full text content"));
+		assertTrue(out.toString().contains("attr.name=\"title\""));
+	}
+
+	private List<JSONObject> exportJsonLines(String fromClass, String afterRid) throws Exception {
+		StringWriter out = new StringWriter();
+		new DatabaseExporter(factory.getDb()).export(new JsonLinesExportWriter(out), fromClass, afterRid);
+
+		List<JSONObject> lines = new ArrayList<>();
+		for (String line : out.toString().split("\n"))
+			if (!line.isEmpty()) lines.add(new JSONObject(line));
+		return lines;
+	}
+}
@@ -0,0 +1,171 @@
+package org.segrada.service.importer;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OCommandSQL;
+import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.segrada.model.Node;
+import org.segrada.model.RelationType;
+import org.segrada.model.prototype.INode;
+import org.segrada.model.prototype.IRelation;
+import org.segrada.model.prototype.ISource;
+import org.segrada.service.repository.orientdb.OrientDbNodeRepository;
+import org.segrada.service.repository.orientdb.OrientDbRelationRepository;
+import org.segrada.service.repository.orientdb.OrientDbRelationTypeRepository;
+import org.segrada.service.repository.orientdb.OrientDbSourceRepository;
+import org.segrada.service.repository.orientdb.OrientDbTagRepository;
+import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
+import org.segrada.session.Identity;
+import org.segrada.test.OrientDBTestInstance;
+import org.segrada.test.OrientDbTestApplicationSettings;
+
+import java.io.StringReader;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BulkImporterTest {
+	/**
+	 * reference to test instance of orientdb in memory
+	 */
+	private OrientDBTestInstance orientDBTestInstance = new OrientDBTestInstance();
+
+	/**
+	 * reference to factory
+	 */
+	private OrientDbRepositoryFactory factory;
+
+	/**
+	 * errors reported by importer
+	 */
+	private final Map<Long, String> errors = new TreeMap<>();
+
+	@Before
+	public void setUp() throws Exception {
+		// set up schema if needed
+		orientDBTestInstance.setUpSchemaIfNeeded();
+
+		// open database
+		ODatabaseDocumentTx db = orientDBTestInstance.getDatabase();
+
+		factory = new OrientDbRepositoryFactory(db, new OrientDbTestApplicationSettings(), new Identity());
+		errors.clear();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// truncate db
+		factory.getDb().command(new OCommandSQL("delete vertex V")).execute();
+		factory.getDb().command(new OCommandSQL("delete edge E")).execute();
+		factory.getDb().command(new OCommandSQL("truncate class RelationType")).execute();
+
+		// close db
+		try {
+			factory.getDb().close();
+		} catch (Exception e) {
+			// do nothing
+		}
+	}
+
+	@Test
+	public void testImport() throws Exception {
+		// existing entities referred to by rows
+		Node existing = new Node();
+		existing.setTitle("Existing node");
+		assertTrue(factory.produceRepository(OrientDbNodeRepository.class).save(existing));
+
+		RelationType relationType = new RelationType();
+		relationType.setFromTitle("is parent of");
+		relationType.setToTitle("is child of");
+		assertTrue(factory.produceRepository(OrientDbRelationTypeRepository.class).save(relationType));
+
+		String jsonl = "{\"type\": \"tag\", \"title\": \"Person\", \"tags\": [\"Entity\"]}\n" +
+				"{\"type\": \"node\", \"key\": \"n1\", \"title\": \"Alice\", \"tags\": [\"Person\", \"Imported\"]}\n" +
+				"{\"type\": \"node\", \"key\": \"n2\", \"title\": \"Bob\", \"description\": \"Text\"}\n" +
+				"{\"type\": \"relation\", \"relationType\": \"is parent of\", \"from\": \"n1\", \"to\": \"n2\", \"tags\": [\"Imported\"]}\n" +
+				"{\"type\": \"relation\", \"relationType\": \"IS CHILD OF\", \"from\": \"n2\", \"to\": \"existing node\"}\n" +
+				"{\"type\": \"source\", \"shortTitle\": \"Source\", \"shortRef\": \"src\", \"tags\": \"Imported\"}\n" +
+				"{\"type\": \"node\", \"description\": \"no title\"}\n" +
+				"{\"type\": \"relation\", \"relationType\": \"unknown\", \"from\": \"n1\", \"to\": \"n2\"}\n" +
+				"{\"type\": \"relation\", \"relationType\": \"is parent of\", \"from\": \"n1\", \"to\": \"missing\"}\n" +
+				"{\"type\": \"period\", \"title\": \"x\"}\n";
+
+		// small batches: relations refer to nodes of earlier batches
+		BulkImporter importer = new BulkImporter(factory, 3, null, errors::put);
+		importer.open();
+		try (ImportRowReader reader = new JsonLinesImportRowReader(new StringReader(jsonl))) {
+			ImportRow row;
+			while ((row = reader.next()) != null)
+				importer.add(row);
+		}
+		importer.close();
+
+		// errors of single rows
+		assertEquals(new HashSet<>(Arrays.asList(7L, 8L, 9L, 10L)), errors.keySet());
+
+		Map<String, Long> imported = importer.getImported();
+		assertEquals(Long.valueOf(1L), imported.get(BulkImporter.TYPE_TAG));
+		assertEquals(Long.valueOf(2L), imported.get(BulkImporter.TYPE_NODE));
+		assertEquals(Long.valueOf(1L), imported.get(BulkImporter.TYPE_SOURCE));
+		assertEquals(Long.valueOf(2L), imported.get(BulkImporter.TYPE_RELATION));
+
+		// new ids to index
+		assertEquals(2, importer.getNewIds().get("Node").size());
+		assertEquals(1, importer.getNewIds().get("Source").size());
+		assertEquals(2, importer.getNewIds().get("Relation").size());
+
+		// entities have been saved with their tags
+		OrientDbNodeRepository nodeRepository = factory.produceRepository(OrientDbNodeRepository.class);
+		INode alice = nodeRepository.find(importer.getNewIds().get("Node").get(0));
+		assertEquals("Alice", alice.getTitle());
+		assertNotNull(alice.getCreated());
+		Set<String> tags = new HashSet<>(Arrays.asList(alice.getTags()));
+		assertEquals(new HashSet<>(Arrays.asList("Person", "Imported")), tags);
+
+		INode bob = nodeRepository.find(importer.getNewIds().get("Node").get(1));
+		assertEquals("Text", bob.getDescription());
+
+		ISource source = factory.produceRepository(OrientDbSourceRepository.class).findByRef("src");
+		assertNotNull(source);
+		assertArrayEquals(new String[]{"Imported"}, source.getTags());
+
+		OrientDbRelationRepository relationRepository = factory.produceRepository(OrientDbRelationRepository.class);
+		IRelation relation = relationRepository.find(importer.getNewIds().get("Relation").get(0));
+		assertEquals(alice.getId(), relation.getFromEntity().getId());
+		assertEquals(bob.getId(), relation.getToEntity().getId());
+		assertEquals(relationType.getId(), relation.getRelationType().getId());
+		assertArrayEquals(new String[]{"Imported"}, relation.getTags());
+
+		relation = relationRepository.find(importer.getNewIds().get("Relation").get(1));
+		assertEquals(existing.getId(), relation.getToEntity().getId());
+
+		// tags have been created once and connected to their parents
+		OrientDbTagRepository tagRepository = factory.produceRepository(OrientDbTagRepository.class);
+		List<ODocument> result = factory.getDb().command(new OSQLSynchQuery<>("select from Tag where title = 'Imported'")).execute();
+		assertEquals(1, result.size());
+		assertArrayEquals(new String[]{"Entity"}, tagRepository.findTagTitlesConnectedToModel(tagRepository.findByTitle("Person", false), true));
+	}
+
+	@Test
+	public void testDefaultType() throws Exception {
+		String csv = "title,tags\n" +
+				"First,a\n" +
+				"Second,a|b\n";
+
+		BulkImporter importer = new BulkImporter(factory, 10, BulkImporter.TYPE_NODE, errors::put);
+		importer.open();
+		try (ImportRowReader reader = new CsvImportRowReader(new StringReader(csv), ',')) {
+			ImportRow row;
+			while ((row = reader.next()) != null)
+				importer.add(row);
+		}
+		importer.close();
+
+		assertTrue(errors.isEmpty());
+		assertEquals(Long.valueOf(2L), importer.getImported().get(BulkImporter.TYPE_NODE));
+		assertEquals(2L, factory.produceRepository(OrientDbNodeRepository.class).count());
+	}
+}
@@ -0,0 +1,97 @@
+package org.segrada.service.importer;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class ImportRowReaderTest {
+	@Test
+	public void testCsv() throws Exception {
+		String csv = "\uFEFFtype,title,tags,description\r\n" +
+				"node,Simple,a|b,\r\n" +
+				"\n" +
+				"node,\"Quoted, with comma\",,\"Line one\nline \"\"two\"\"\"\n" +
+				"node,Too,many,fields,here\n" +
+				"node,Short\n" +
+				"node,\"Unclosed";
+
+		ImportRowReader reader = new CsvImportRowReader(new StringReader(csv), ',');
+
+		ImportRow row = reader.next();
+		assertNotNull(row);
+		assertEquals(2L, row.getLine());
+		assertEquals("node", row.get("type"));
+		assertEquals("Simple", row.get("title"));
+		assertArrayEquals(new String[]{"a", "b"}, row.getList("tags"));
+		assertNull(row.get("description"));
+
+		// empty line is skipped, quoted fields contain delimiters, line breaks and quotes
+		row = reader.next();
+		assertNotNull(row);
+		assertEquals(4L, row.getLine());
+		assertEquals("Quoted, with comma", row.get("title"));
+		assertEquals(0, row.getList("tags").length);
+		assertEquals("Line one\nline \"two\"", row.get("description"));
+
+		// malformed row does not stop reading
+		try {
+			reader.next();
+			fail("Row with too many fields has been read");
+		} catch (ImportRowReader.RowFormatException e) {
+			assertEquals(6L, e.getLine());
+		}
+
+		row = reader.next();
+		assertNotNull(row);
+		assertEquals(7L, row.getLine());
+		assertEquals("Short", row.get("title"));
+		assertNull(row.get("tags"));
+
+		try {
+			reader.next();
+			fail("Unclosed quote has been read");
+		} catch (ImportRowReader.RowFormatException e) {
+			assertEquals(8L, e.getLine());
+		}
+
+		assertNull(reader.next());
+		reader.close();
+	}
+
+	@Test
+	public void testJsonLines() throws Exception {
+		String jsonl = "{\"type\": \"node\", \"title\": \"First\", \"tags\": [\"a\", \"b\", null]}\n" +
+				"\n" +
+				"{\"type\": \"node\", \"title\": broken\n" +
+				"{\"type\": \"relation\", \"from\": \"k1\", \"to\": \"k2\", \"weight\": 2, \"tags\": \"x|y\", \"description\": null}\n";
+
+		ImportRowReader reader = new JsonLinesImportRowReader(new StringReader(jsonl));
+
+		ImportRow row = reader.next();
+		assertNotNull(row);
+		assertEquals(1L, row.getLine());
+		assertEquals("First", row.get("title"));
+		assertArrayEquals(new String[]{"a", "b"}, row.getList("tags"));
+		assertEquals("a|b", row.get("tags"));
+
+		try {
+			reader.next();
+			fail("Broken line has been read");
+		} catch (ImportRowReader.RowFormatException e) {
+			assertEquals(3L, e.getLine());
+		}
+
+		row = reader.next();
+		assertNotNull(row);
+		assertEquals(4L, row.getLine());
+		assertEquals("relation", row.get("type"));
+		assertEquals("2", row.get("weight"));
+		assertArrayEquals(new String[]{"x", "y"}, row.getList("tags"));
+		assertNull(row.get("description"));
+
+		assertNull(reader.next());
+		reader.close();
+	}
+}
@@ -0,0 +1,153 @@
+package org.segrada.service.index;
+
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.segrada.search.SearchIndexBuilder;
+import org.segrada.search.SearchIndexDocument;
+import org.segrada.search.lucene.LuceneSearchEngine;
+import org.segrada.search.lucene.LuceneSegradaAnalyzer;
+import org.segrada.test.TestFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReindexJobTest {
+	private Path directory;
+
+	private Path checkpoint;
+
+	private LuceneSearchEngine searchEngine;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("segrada");
+		checkpoint = directory.resolve("reindex.checkpoint");
+		searchEngine = new LuceneSearchEngine(new SimpleFSDirectory(directory.resolve("lucene")), new LuceneSegradaAnalyzer());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		searchEngine.destroy();
+
+		// remove temporary files
+		TestFiles.deleteRecursively(directory);
+	}
+
+	@Test
+	public void testReindexAndResume() throws Exception {
+		searchEngine.index("stale", "DummyClass", "Stale", "xyzzy", "xyzzy", null, null, null, 1.0f);
+
+		// first run fails on second service
+		MockWorker failingWorker = new MockWorker("B");
+		ReindexJob job = new ReindexJob(failingWorker, searchEngine, checkpoint, 1, 2);
+		assertTrue(job.start(Arrays.asList("A", "B"), false));
+		waitFor(job);
+
+		assertEquals(ReindexJob.State.FAILED, job.getState());
+		assertTrue(Files.exists(checkpoint));
+
+		// live index has not been touched
+		assertEquals(1, searchEngine.search("xyzzy", null).getTotal());
+		assertNotNull(searchEngine.getById("stale"));
+
+		// resume with working worker - ranges of first service are not indexed again
+		MockWorker worker = new MockWorker(null);
+		job = new ReindexJob(worker, searchEngine, checkpoint, 1, 2);
+		assertTrue(job.resume());
+		waitFor(job);
+
+		assertEquals(ReindexJob.State.FINISHED, job.getState());
+		assertEquals(Collections.singletonList("B"), worker.indexed);
+		assertFalse(Files.exists(checkpoint));
+
+		// new index contains all entities, stale entry is gone
+		assertEquals(8, searchEngine.search("xyzzy", null).getTotal());
+		assertNull(searchEngine.getById("stale"));
+
+		// progress of resumed ranges is included
+		Map<String, Object> status = job.getStatus();
+		assertEquals(4L, status.get("documents"));
+		Map<String, Object> classStatus = (Map<String, Object>) ((Map<String, Object>) status.get("classes")).get("A");
+		assertEquals(4L, classStatus.get("done"));
+		assertEquals(2, classStatus.get("partitionsDone"));
+
+		// nothing to resume
+		assertFalse(job.resume());
+	}
+
+	@Test
+	public void testParallelAndSingleRun() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		MockWorker worker = new MockWorker(null) {
+			@Override
+			public int index(String serviceClass, String fromId, String toId, SearchIndexBuilder builder) throws Exception {
+				latch.await(5, TimeUnit.SECONDS);
+				return super.index(serviceClass, fromId, toId, builder);
+			}
+		};
+		ReindexJob job = new ReindexJob(worker, searchEngine, checkpoint, 4, 2);
+		assertTrue(job.start(Arrays.asList("A", "B", "C", "D"), false));
+
+		// only one run at a time
+		assertTrue(job.isRunning());
+		assertFalse(job.start(Collections.singletonList("A"), false));
+
+		latch.countDown();
+		waitFor(job);
+
+		assertEquals(ReindexJob.State.FINISHED, job.getState());
+		assertEquals(16, searchEngine.search("xyzzy", null).getTotal());
+	}
+
+	/**
+	 * wait for job to finish
+	 */
+	private void waitFor(ReindexJob job) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 10000L;
+		while (job.isRunning() && System.currentTimeMillis() < timeout)
+			Thread.sleep(10);
+		assertFalse("Job did not finish in time", job.isRunning());
+	}
+
+	/**
+	 * worker providing two ranges of two entities per service
+	 */
+	private static class MockWorker implements ReindexJob.Worker {
+		private final String failOn;
+
+		final List<String> indexed = Collections.synchronizedList(new ArrayList<>());
+
+		MockWorker(String failOn) {
+			this.failOn = failOn;
+		}
+
+		@Override
+		public long count(String serviceClass) throws Exception {
+			return 4L;
+		}
+
+		@Override
+		public List<String[]> partition(String serviceClass, int partitionSize) throws Exception {
+			return Arrays.asList(new String[]{serviceClass + "1", serviceClass + "2"}, new String[]{serviceClass + "3", serviceClass + "4"});
+		}
+
+		@Override
+		public int index(String serviceClass, String fromId, String toId, SearchIndexBuilder builder) throws Exception {
+			if (serviceClass.equals(failOn)) throw new RuntimeException("Failed " + serviceClass);
+			if (!indexed.contains(serviceClass)) indexed.add(serviceClass);
+
+			builder.indexAll(Arrays.asList(
+					new SearchIndexDocument(fromId, serviceClass, fromId, "xyzzy", "xyzzy", null, null, null, 1.0f),
+					new SearchIndexDocument(toId, serviceClass, toId, "xyzzy", "xyzzy", null, null, null, 1.0f)));
+			return 2;
+		}
+	}
+}
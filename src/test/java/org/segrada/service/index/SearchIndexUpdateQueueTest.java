@@ -0,0 +1,154 @@
+package org.segrada.service.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexUpdateQueueTest {
+	/**
+	 * processed updates
+	 */
+	private final List<SearchIndexUpdateQueue.PendingUpdate> processed = Collections.synchronizedList(new ArrayList<>());
+
+	private Path journal;
+
+	@Before
+	public void setUp() throws Exception {
+		journal = Files.createTempFile("segrada", ".journal");
+		processed.clear();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(journal);
+	}
+
+	@Test
+	public void testNotRunning() throws Exception {
+		SearchIndexUpdateQueue queue = new SearchIndexUpdateQueue(processed::addAll, journal, 10, 10, 0, 0);
+
+		// queue not started: caller has to index directly
+		assertFalse(queue.enqueueIndex(Object.class, "#1:1", "1-1"));
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testCoalesceAndProcess() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		SearchIndexUpdateQueue queue = new SearchIndexUpdateQueue(batch -> {
+			latch.await(5, TimeUnit.SECONDS);
+			processed.addAll(batch);
+		}, journal, 10, 10, 100, 0);
+		queue.start();
+
+		assertTrue(queue.enqueueIndex(Object.class, "#1:1", "1-1"));
+		assertTrue(queue.enqueueIndex(Object.class, "#1:2", "1-2"));
+		assertTrue(queue.enqueueIndex(Object.class, "#1:1", "1-1"));
+		assertTrue(queue.enqueueRemove(Object.class, "#1:2", "1-2"));
+
+		assertEquals(2, queue.size());
+		assertEquals(2L, queue.getStatistics().get("coalesced"));
+
+		latch.countDown();
+		queue.shutdown(5000L);
+
+		// latest state per uid
+		assertEquals(2, processed.size());
+		assertEquals("1-1", processed.get(0).getUid());
+		assertFalse(processed.get(0).isRemove());
+		assertEquals("1-2", processed.get(1).getUid());
+		assertTrue(processed.get(1).isRemove());
+
+		// journal is empty after processing
+		assertEquals(0, Files.size(journal));
+	}
+
+	@Test
+	public void testFlushDelay() throws Exception {
+		List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+		SearchIndexUpdateQueue queue = new SearchIndexUpdateQueue(batch -> {
+			batchSizes.add(batch.size());
+			processed.addAll(batch);
+		}, null, 10, 10, 500, 0);
+		queue.start();
+
+		// updates within flush delay wake the worker, but do not cut the delay short
+		for (int i = 1; i <= 5; i++) {
+			assertTrue(queue.enqueueIndex(Object.class, "#1:" + i, "1-" + i));
+			Thread.sleep(20L);
+		}
+
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (processed.size() < 5 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10L);
+		queue.shutdown(5000L);
+
+		assertEquals(Collections.singletonList(5), batchSizes);
+	}
+
+	@Test
+	public void testBackPressure() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		SearchIndexUpdateQueue queue = new SearchIndexUpdateQueue(batch -> {
+			started.countDown();
+			latch.await(5, TimeUnit.SECONDS);
+			processed.addAll(batch);
+		}, null, 1, 1, 0, 50);
+		queue.start();
+
+		// first update is taken by worker
+		assertTrue(queue.enqueueIndex(Object.class, "#1:1", "1-1"));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		// second update fills queue
+		assertTrue(queue.enqueueIndex(Object.class, "#1:2", "1-2"));
+
+		// queue is full now: third update is rejected after timeout, but existing ones may be coalesced
+		assertFalse(queue.enqueueIndex(Object.class, "#1:3", "1-3"));
+		assertEquals(1L, queue.getStatistics().get("rejected"));
+		assertTrue(queue.enqueueRemove(Object.class, "#1:2", "1-2"));
+
+		latch.countDown();
+		queue.shutdown(5000L);
+
+		assertEquals(2, processed.size());
+	}
+
+	@Test
+	public void testReplayJournal() throws Exception {
+		// processor failing all the time - updates stay in journal
+		SearchIndexUpdateQueue queue = new SearchIndexUpdateQueue(batch -> {
+			throw new RuntimeException("Expected failure");
+		}, journal, 10, 10, 0, 0);
+		queue.start();
+
+		assertTrue(queue.enqueueIndex(Object.class, "#1:1", "1-1"));
+		assertTrue(queue.enqueueRemove(Object.class, "#1:2", "1-2"));
+		queue.shutdown(100L);
+
+		assertTrue(Files.size(journal) > 0);
+
+		// new queue replays journal
+		queue = new SearchIndexUpdateQueue(processed::addAll, journal, 10, 10, 0, 0);
+		queue.start();
+		queue.shutdown(5000L);
+
+		assertEquals(2, processed.size());
+		assertEquals(Object.class.getName(), processed.get(0).getServiceClass());
+		assertEquals("#1:1", processed.get(0).getId());
+		assertFalse(processed.get(0).isRemove());
+		assertTrue(processed.get(1).isRemove());
+		assertEquals(0, Files.size(journal));
+	}
+}
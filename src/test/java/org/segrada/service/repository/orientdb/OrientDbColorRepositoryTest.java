@@ -8,12 +8,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.segrada.model.Color;
 import org.segrada.model.prototype.IColor;
+import org.segrada.service.repository.orientdb.base.LookupCache;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.session.Identity;
 import org.segrada.test.OrientDBTestInstance;
 import org.segrada.test.OrientDbTestApplicationSettings;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class OrientDbColorRepositoryTest {
 	/**
@@ -115,4 +116,49 @@ public class OrientDbColorRepositoryTest {
 		assertEquals(" ORDER BY color", repository.getDefaultOrder(true));
 		assertEquals(" color", repository.getDefaultOrder(false));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testFindCached() throws Exception {
+		// enable entity cache for colors
+		OrientDbRepositoryFactory cachingFactory = new OrientDbRepositoryFactory(factory.getDb(), new OrientDbTestApplicationSettings() {
+			@Override
+			public String getSetting(String key, String defaultValue) {
+				if (key.equals("entityCache.Color")) return "10";
+				return super.getSetting(key, defaultValue);
+			}
+		}, new Identity());
+		OrientDbColorRepository cachingRepository = cachingFactory.produceRepository(OrientDbColorRepository.class);
+
+		IColor color = new Color();
+		color.setTitle("title");
+		color.setColor(123456);
+		cachingRepository.save(color);
+
+		LookupCache cache = LookupCache.forModel(factory.getDb().getURL(), "Color", 10);
+		long hits = cache.getHits();
+
+		IColor found = cachingRepository.find(color.getId());
+		IColor second = cachingRepository.find(color.getId());
+		assertEquals(hits + 1, cache.getHits());
+		assertEquals("title", second.getTitle());
+
+		// copies are handed out
+		assertNotSame(found, second);
+		second.setTitle("changed");
+		assertEquals("title", cachingRepository.find(color.getId()).getTitle());
+
+		// saving invalidates cache
+		cachingRepository.save(second);
+		assertEquals("changed", cachingRepository.find(color.getId()).getTitle());
+
+		// changes made elsewhere are detected by record version
+		factory.getDb().command(new OCommandSQL("update Color set title = 'other' where @rid = " + color.getId())).execute();
+		assertEquals("other", cachingRepository.find(color.getId()).getTitle());
+
+		// disabled by default
+		hits = cache.getHits();
+		repository.find(color.getId());
+		repository.find(color.getId());
+		assertEquals(hits, cache.getHits());
+	}
+}
@@ -8,26 +8,22 @@ import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
-import org.segrada.model.Location;
-import org.segrada.model.Node;
-import org.segrada.model.Period;
-import org.segrada.model.Tag;
-import org.segrada.model.prototype.ILocation;
-import org.segrada.model.prototype.INode;
-import org.segrada.model.prototype.IPeriod;
-import org.segrada.model.prototype.ITag;
+import org.segrada.model.*;
+import org.segrada.model.prototype.*;
 import org.segrada.service.repository.LocationRepository;
 import org.segrada.service.repository.PeriodRepository;
 import org.segrada.service.repository.TagRepository;
+import org.segrada.service.repository.orientdb.base.LookupCache;
+import org.segrada.service.repository.orientdb.base.PaginationCache;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
+import org.segrada.service.util.AbstractLazyLoadedObject;
 import org.segrada.service.util.PaginationInfo;
+import org.segrada.service.util.TitleSuggester;
 import org.segrada.session.Identity;
 import org.segrada.test.OrientDBTestInstance;
 import org.segrada.test.OrientDbTestApplicationSettings;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -67,6 +63,9 @@ public class OrientDbNodeRepositoryTest {
 		factory.getDb().command(new OCommandSQL("delete vertex V")).execute();
 		factory.getDb().command(new OCommandSQL("delete edge E")).execute();
 		factory.getDb().command(new OCommandSQL("truncate class RelationType")).execute();
+		factory.getDb().command(new OCommandSQL("truncate class Location")).execute();
+		factory.getDb().command(new OCommandSQL("truncate class Period")).execute();
+		factory.getDb().command(new OCommandSQL("truncate class SourceReference")).execute();
 
 		// close db
 		try {
@@ -151,6 +150,48 @@ public class OrientDbNodeRepositoryTest {
 		assertEquals(" titleasc", repository.getDefaultOrder(false));
 	}
 
+	@Test
+	public void testSuggest() throws Exception {
+		repository.rebuildSuggestions();
+
+		INode node = new Node();
+		node.setTitle("This is the title");
+		node.setAlternativeTitles("and this is its alternatives");
+		node.setDescription("Description");
+		node.setDescriptionMarkup("default");
+		repository.save(node);
+
+		List<TitleSuggester.Suggestion> hits = repository.suggest("tit", 10);
+		assertEquals(1, hits.size());
+		assertEquals(node.getId(), hits.get(0).getId());
+		assertEquals(node.getUid(), hits.get(0).getUid());
+		assertEquals("This is the title", hits.get(0).getTitle());
+		assertEquals(1, repository.suggest("alternat titl", 10).size());
+		assertEquals(0, repository.suggest("complexxxxxx", 10).size());
+
+		// changed title
+		node.setTitle("Another heading");
+		repository.save(node);
+		assertEquals(0, repository.suggest("tit", 10).size());
+		assertEquals(1, repository.suggest("head", 10).size());
+
+		// loaded from database
+		repository.rebuildSuggestions();
+		assertEquals(1, repository.suggest("head", 10).size());
+
+		// other classes are not suggested by node repository
+		OrientDbTagRepository tagRepository = factory.produceRepository(OrientDbTagRepository.class);
+		ITag tag = new Tag();
+		tag.setTitle("Heading");
+		tagRepository.save(tag);
+		assertEquals(1, repository.suggest("head", 10).size());
+		assertEquals(1, tagRepository.suggest("head", 10).size());
+		tagRepository.delete(tag);
+
+		repository.delete(node);
+		assertEquals(0, repository.suggest("head", 10).size());
+	}
+
 	@Test
 	public void testFindBySearchTerm() throws Exception {
 		INode node = new Node();
@@ -375,6 +416,144 @@ public class OrientDbNodeRepositoryTest {
 		//TODO more filters
 	}
 
+	@Test
+	public void testPaginateKeyset() throws Exception {
+		// create nodes with many equal titles - minJD is equal for all of them
+		String[] titles = {"Alpha", "Beta", "Gamma", "Delta"};
+		for (int i = 0; i < 37; i++) {
+			INode node = new Node();
+			node.setTitle(titles[i % 3 == 0 ? 0 : i % titles.length]);
+			node.setAlternativeTitles("");
+			repository.save(node);
+		}
+
+		// expected order: sort key, then rid
+		List<INode> all = repository.findAll();
+		Comparator<INode> byRid = Comparator.comparing(node -> new ORecordId(node.getId()));
+		Comparator<INode> byTitle = Comparator.comparing(INode::getTitle);
+		all.sort(byTitle.thenComparing(byRid));
+		assertPaginatedInOrder(all, "titleasc", "asc");
+		Collections.reverse(all);
+		assertPaginatedInOrder(all, "titleasc", "desc");
+		all.sort(byRid);
+		assertPaginatedInOrder(all, "minJD", "asc");
+	}
+
+	/**
+	 * helper to check pages fetched by cursor, cached boundaries and page jumps
+	 */
+	private void assertPaginatedInOrder(List<INode> expected, String sort, String dir) {
+		Map<String, Object> filters = new HashMap<>();
+		filters.put("sort", sort);
+		filters.put("dir", dir);
+
+		// follow cursors
+		List<INode> list = new ArrayList<>();
+		PaginationInfo<INode> pi = repository.paginate(1, 5, filters);
+		list.addAll(pi.getEntities());
+		for (int page = 2; page <= pi.getPages(); page++) {
+			assertNotNull(pi.getCursor());
+			filters.put("cursor", pi.getCursor());
+			pi = repository.paginate(page, 5, filters);
+			list.addAll(pi.getEntities());
+		}
+		assertNull(pi.getCursor());
+		assertEquals(expected, list);
+		filters.remove("cursor");
+
+		// sequentially without cursor (cached boundaries)
+		list.clear();
+		for (int page = 1; page <= 8; page++)
+			list.addAll(repository.paginate(page, 5, filters).getEntities());
+		assertEquals(expected, list);
+
+		// jump to pages without known boundaries
+		for (int page = 8; page >= 1; page--) {
+			PaginationCache.forDatabase(factory.getDb().getURL()).invalidate();
+			assertEquals(expected.subList((page - 1) * 5, Math.min(page * 5, expected.size())), repository.paginate(page, 5, filters).getEntities());
+		}
+	}
+
+	@Test
+	public void testPaginatePrefetchesAssociations() throws Exception {
+		OrientDbPeriodRepository periodRepository = factory.produceRepository(OrientDbPeriodRepository.class);
+		OrientDbLocationRepository locationRepository = factory.produceRepository(OrientDbLocationRepository.class);
+		OrientDbCommentRepository commentRepository = factory.produceRepository(OrientDbCommentRepository.class);
+		OrientDbSourceRepository sourceRepository = factory.produceRepository(OrientDbSourceRepository.class);
+		OrientDbSourceReferenceRepository sourceReferenceRepository = factory.produceRepository(OrientDbSourceReferenceRepository.class);
+
+		ISource source = new Source();
+		source.setShortTitle("ShortTitle");
+		source.setShortRef("ref:ref");
+		sourceRepository.save(source);
+
+		// first node has all associations, second none
+		INode node1 = new Node();
+		node1.setTitle("Title 1");
+		node1.setTags(new String[]{"Tag 1", "Tag 2"});
+		repository.save(node1);
+		INode node2 = new Node();
+		node2.setTitle("Title 2");
+		repository.save(node2);
+
+		IPeriod period = new Period();
+		period.setFromEntry("1.1585");
+		period.setToEntry("2.1585");
+		period.setParentId(node1.getId());
+		period.setParentModel("Node");
+		periodRepository.save(period);
+
+		ILocation location = new Location();
+		location.setLatitude(23.0);
+		location.setLongitude(12.0);
+		location.setParentId(node1.getId());
+		location.setParentModel("Node");
+		locationRepository.save(location);
+
+		IComment comment = new Comment();
+		comment.setText("comment");
+		comment.setMarkup("default");
+		commentRepository.save(comment);
+		commentRepository.connectCommentToEntity(comment, node1);
+
+		ISourceReference sourceReference = new SourceReference();
+		sourceReference.setReferenceText("pp. 11f");
+		sourceReference.setSource(source);
+		sourceReference.setReference(node1);
+		sourceReferenceRepository.save(sourceReference);
+
+		PaginationInfo<INode> pi = repository.paginate(1, 10, null);
+		assertEquals(2, pi.getEntities().size());
+
+		AbstractLazyLoadedObject.resetLoadCount();
+		for (INode node : pi.getEntities()) {
+			if (node.getId().equals(node1.getId())) {
+				assertEquals(2, node.getTags().length);
+				assertEquals(1, node.getPeriods().size());
+				assertEquals(1, node.getLocations().size());
+				assertEquals(1, node.getComments().size());
+				assertEquals("comment", node.getComments().get(0).getText());
+				assertEquals(1, node.getSourceReferences().size());
+				assertEquals("ShortTitle", node.getSourceReferences().get(0).getSource().getShortTitle());
+				assertTrue(node.getFiles().isEmpty());
+			} else {
+				assertEquals(0, node.getTags().length);
+				assertTrue(node.getPeriods().isEmpty());
+				assertTrue(node.getLocations().isEmpty());
+				assertTrue(node.getComments().isEmpty());
+				assertTrue(node.getSourceReferences().isEmpty());
+				assertTrue(node.getFiles().isEmpty());
+			}
+		}
+		// nothing has been lazy loaded
+		assertEquals(0, AbstractLazyLoadedObject.getLoadCount());
+
+		// single entities are still lazy loaded
+		INode node = repository.find(node1.getId());
+		assertEquals(1, node.getPeriods().size());
+		assertEquals(1, AbstractLazyLoadedObject.getLoadCount());
+	}
+
 	@Test
 	public void testDelete() throws Exception {
 		INode node = new Node();
@@ -425,7 +604,13 @@ public class OrientDbNodeRepositoryTest {
 				.field("created", 1L)
 				.field("modified", 2L).save();
 
-		repository.delete(node);
+		// period of relation
+		ODocument period = new ODocument("Period").field("parent", relationO)
+				.field("type", "period").field("fromJD", 1L).field("toJD", 2L)
+				.field("created", 1L)
+				.field("modified", 2L).save();
+
+		assertTrue(repository.delete(node));
 
 		// try to find relation
 		query = new OSQLSynchQuery<>("select * from " + relationO.getIdentity().toString());
@@ -436,5 +621,60 @@ public class OrientDbNodeRepositoryTest {
 		query = new OSQLSynchQuery<>("select * from " + relationLink.getIdentity().toString());
 		result = factory.getDb().command(query).execute();
 		assertTrue(result.isEmpty());
+
+		// records of cascaded relation are deleted, too
+		query = new OSQLSynchQuery<>("select * from " + period.getIdentity().toString());
+		result = factory.getDb().command(query).execute();
+		assertTrue(result.isEmpty());
+
+		// link has been removed from related node
+		factory.getDb().getLocalCache().clear();
+		ODocument reloaded = factory.getDb().load(node2.getIdentity());
+		assertFalse(((Iterable<?>) reloaded.field("in_IsRelation")).iterator().hasNext());
+	}
+
+	@Test
+	public void testFindCached() throws Exception {
+		// enable entity cache for nodes
+		OrientDbRepositoryFactory cachingFactory = new OrientDbRepositoryFactory(factory.getDb(), new OrientDbTestApplicationSettings() {
+			@Override
+			public String getSetting(String key, String defaultValue) {
+				if (key.equals("entityCache.Node")) return "10";
+				return super.getSetting(key, defaultValue);
+			}
+		}, new Identity());
+		OrientDbNodeRepository cachingRepository = cachingFactory.produceRepository(OrientDbNodeRepository.class);
+
+		INode node = new Node();
+		node.setTitle("title");
+		node.setAlternativeTitles("");
+		node.setDescription("");
+		node.setDescriptionMarkup("default");
+		node.setTags(new String[]{"tag"});
+		cachingRepository.save(node);
+
+		LookupCache cache = LookupCache.forModel(factory.getDb().getURL(), "Node", 10);
+		long hits = cache.getHits();
+		cachingRepository.find(node.getId());
+		INode found = cachingRepository.find(node.getId());
+		assertEquals(hits + 1, cache.getHits());
+
+		// tags are cached, associations are loaded in this request
+		assertArrayEquals(new String[]{"tag"}, found.getTags());
+		int loads = AbstractLazyLoadedObject.getLoadCount();
+		assertTrue(found.getComments().isEmpty());
+		assertEquals(loads + 1, AbstractLazyLoadedObject.getLoadCount());
+
+		// cached instance does not hold lazy loading proxies bound to a request
+		INode cached = cache.get(node.getId(), INode.class);
+		assertNotNull(cached);
+		assertArrayEquals(new String[]{"tag"}, cached.getTags());
+		assertNull(cached.getComments());
+		assertNull(cached.getPeriods());
+
+		// changed tags invalidate cached node
+		TagRepository tagRepository = cachingFactory.produceRepository(OrientDbTagRepository.class);
+		tagRepository.updateTagConnections(found, new String[]{"tag", "other"});
+		assertEquals(2, cachingRepository.find(node.getId()).getTags().length);
 	}
-}
\ No newline at end of file
+}
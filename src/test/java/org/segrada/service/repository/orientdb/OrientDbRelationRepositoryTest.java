@@ -17,6 +17,7 @@ import org.segrada.model.prototype.IRelation;
 import org.segrada.model.prototype.IRelationType;
 import org.segrada.service.repository.NodeRepository;
 import org.segrada.service.repository.RelationTypeRepository;
+import org.segrada.service.repository.orientdb.base.LookupCache;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
 import org.segrada.session.Identity;
 import org.segrada.test.OrientDBTestInstance;
@@ -292,6 +293,19 @@ public class OrientDbRelationRepositoryTest {
 		assertEquals(relationO.getIdentity().toString(), list.get(0).getId());
 		assertEquals(node1.getIdentity().toString(), list.get(0).getFromEntity().getId());
 		assertEquals(node2.getIdentity().toString(), list.get(0).getToEntity().getId());
+
+		// node without relations
+		ODocument node3 = new ODocument("Node").field("title", "title 3").field("titleasc", "title-3")
+				.field("alternativeTitles", "alternativeTitles")
+				.field("description", "Description")
+				.field("descriptionMarkup", "default")
+				.field("color", 0x123456)
+				.field("created", 1L)
+				.field("modified", 2L).save();
+		node = new Node();
+		node.setId(node3.getIdentity().toString());
+
+		assertTrue(repository.findByRelation(node).isEmpty());
 	}
 
 	@Test
@@ -549,4 +563,68 @@ public class OrientDbRelationRepositoryTest {
 		result = factory.getDb().command(query).execute();
 		assertEquals(0, result.size());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testConvertToEntityUsesLookupCache() throws Exception {
+		NodeRepository nodeRepository = factory.produceRepository(OrientDbNodeRepository.class);
+		RelationTypeRepository relationTypeRepository = factory.produceRepository(OrientDbRelationTypeRepository.class);
+		assertNotNull(nodeRepository);
+		assertNotNull(relationTypeRepository);
+
+		INode node1 = new Node();
+		node1.setTitle("Node 1");
+		assertTrue(nodeRepository.save(node1));
+		INode node2 = new Node();
+		node2.setTitle("Node 2");
+		assertTrue(nodeRepository.save(node2));
+		IRelationType relationType = new RelationType();
+		relationType.setFromTitle("from");
+		relationType.setToTitle("to");
+		relationType.setTags(new String[]{"Tag 1"});
+		assertTrue(relationTypeRepository.save(relationType));
+
+		IRelation relation = new Relation();
+		relation.setFromEntity(node1);
+		relation.setToEntity(node2);
+		relation.setRelationType(relationType);
+		assertTrue(repository.save(relation));
+
+		LookupCache cache = LookupCache.getExisting(factory.getDb().getURL());
+		assertNotNull(cache);
+
+		// first conversion fills cache, second one is taken from cache completely
+		IRelation converted = repository.find(relation.getId());
+		assertEquals("Node 1", converted.getFromEntity().getTitle());
+		assertEquals("Node 2", converted.getToEntity().getTitle());
+		assertEquals("from", converted.getRelationType().getFromTitle());
+		assertArrayEquals(new String[]{"Tag 1"}, converted.getRelationType().getTags());
+
+		long hits = cache.getHits();
+		long misses = cache.getMisses();
+		converted = repository.find(relation.getId());
+		assertEquals(hits + 4, cache.getHits()); // relation link, two nodes, relation type
+		assertEquals(misses, cache.getMisses());
+		assertEquals("Node 1", converted.getFromEntity().getTitle());
+
+		// changes invalidate entries
+		node1.setTitle("Node 1 changed");
+		assertTrue(nodeRepository.save(node1));
+		relationType = relationTypeRepository.find(relationType.getId());
+		relationType.setFromTitle("from changed");
+		relationType.setTags(new String[]{"Tag 1", "Tag 2"});
+		assertTrue(relationTypeRepository.save(relationType));
+
+		converted = repository.find(relation.getId());
+		assertEquals("Node 1 changed", converted.getFromEntity().getTitle());
+		assertEquals("from changed", converted.getRelationType().getFromTitle());
+		assertEquals(2, converted.getRelationType().getTags().length);
+
+		// changed relation link
+		relation.setFromEntity(node2);
+		relation.setToEntity(node1);
+		assertTrue(repository.save(relation));
+		converted = repository.find(relation.getId());
+		assertEquals("Node 2", converted.getFromEntity().getTitle());
+		assertEquals("Node 1 changed", converted.getToEntity().getTitle());
+	}
+}
@@ -227,5 +227,10 @@ public class OrientDbSourceReferenceRepositoryTest {
 		list = repository.findByReference(comment.getId(), 1, 15, null);
 		assertTrue(list.getEntities().size() == 1);
 		assertEquals(sourceReference.getId(), list.getEntities().get(0).getId());
+
+		// limit to referenced class - class name is bound, not concatenated
+		assertEquals(1, repository.findBySource(source.getId(), 1, 15, "Comment").getTotal());
+		assertEquals(0, repository.findBySource(source.getId(), 1, 15, "Node").getTotal());
+		assertEquals(0, repository.findBySource(source.getId(), 1, 15, "Node' OR '1' = '1").getTotal());
 	}
 }
\ No newline at end of file
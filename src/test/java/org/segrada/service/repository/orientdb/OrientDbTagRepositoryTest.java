@@ -733,6 +733,51 @@ public class OrientDbTagRepositoryTest {
 		assertFalse(repository.isChildOf(subTag1, root));
 	}
 
+	@Test
+	public void testUpdateTagConnections() throws Exception {
+		ITag root = new Tag();
+		root.setTitle("Root");
+		repository.save(root);
+		ITag child = new Tag();
+		child.setTitle("Child");
+		child.setTags(new String[]{"Root"});
+		repository.save(child);
+
+		// create tags, ignore case, duplicates and empty titles
+		repository.updateTagConnections(child, new String[]{"root", "New 1", " New 2 ", "new 1", ""});
+
+		assertEquals(4, repository.count());
+		assertEquals(1, repository.findByTag(repository.findByTitle("New 1", false).getId(), false, null).size());
+		String[] ids = repository.findTagIdsConnectedToModel(child, true);
+		assertEquals(3, ids.length);
+
+		// remove stale connections and keep existing ones
+		repository.updateTagConnections(child, new String[]{"New 2"});
+
+		ids = repository.findTagIdsConnectedToModel(child, true);
+		assertArrayEquals(new String[]{repository.findByTitle("New 2", false).getId()}, ids);
+
+		// null removes all connections
+		repository.updateTagConnections(child, null);
+		assertEquals(0, repository.findTagIdsConnectedToModel(child, true).length);
+
+		// circular connections are not allowed
+		repository.updateTagConnections(child, new String[]{"Root"});
+		try {
+			repository.updateTagConnections(root, new String[]{"Child"});
+			fail("Circular tags not detected!");
+		} catch (RuntimeException e) {
+			//OK
+		}
+		try {
+			repository.updateTagConnections(root, new String[]{"Root"});
+			fail("Circular tags not detected!");
+		} catch (RuntimeException e) {
+			//OK
+		}
+		assertEquals(0, repository.findTagIdsConnectedToModel(root, true).length);
+	}
+
 	@Test
 	public void testPaginate() throws Exception {
 		//fail("Test not implemented yet.");
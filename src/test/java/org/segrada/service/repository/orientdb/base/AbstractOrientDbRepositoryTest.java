@@ -11,11 +11,17 @@ import org.junit.Test;
 import org.segrada.model.base.AbstractSegradaEntity;
 import org.segrada.model.prototype.SegradaEntity;
 import org.segrada.service.repository.orientdb.factory.OrientDbRepositoryFactory;
+import org.segrada.service.util.PaginationInfo;
 import org.segrada.session.Identity;
 import org.segrada.test.OrientDBTestInstance;
 import org.segrada.test.OrientDbTestApplicationSettings;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -252,6 +258,56 @@ public class AbstractOrientDbRepositoryTest {
 		assertNull(filledList);
 	}
 
+	@Test
+	public void testFindIdRangesAndEntriesInRange() throws Exception {
+		// empty class has no ranges
+		assertTrue(mockOrientDbRepository.findIdRanges(2).isEmpty());
+
+		Set<String> saved = new HashSet<>();
+		for (int i = 0; i < 5; i++) {
+			MockEntity entity = new MockEntity();
+			mockOrientDbRepository.save(entity);
+			saved.add(entity.getId());
+		}
+
+		// page through all ranges one entry at a time
+		Set<String> found = new HashSet<>();
+		for (String[] range : mockOrientDbRepository.findIdRanges(2)) {
+			int inRange = 0;
+			String lastId = null;
+			List<MockEntity> list = mockOrientDbRepository.findEntriesInRange(range[0], range[1], null, 1);
+			while (list != null) {
+				assertEquals(1, list.size());
+				lastId = list.get(0).getId();
+				assertTrue("Entity found twice: " + lastId, found.add(lastId));
+				inRange++;
+
+				list = mockOrientDbRepository.findEntriesInRange(range[0], range[1], lastId, 1);
+			}
+			assertTrue(inRange <= 2);
+		}
+
+		assertEquals(saved, found);
+	}
+
+	@Test
+	public void testPaginateKeysetWithOrConstraint() throws Exception {
+		for (String title : new String[]{"a", "b", "c"})
+			new ODocument("Mock").field("title", title).save();
+
+		// top level OR in constraint must not bind to the keyset constraint of following pages
+		List<String> constraints = Collections.singletonList("title = ? OR title = ?");
+		List<Object> parameters = Arrays.asList("a", "b");
+
+		PaginationInfo<MockEntity> first = mockOrientDbRepository.paginate(1, 1, constraints, parameters, "title", null);
+		assertEquals(2, first.getTotal());
+		assertNotNull(first.getCursor());
+
+		PaginationInfo<MockEntity> second = mockOrientDbRepository.paginate(2, 1, constraints, parameters, "title", first.getCursor());
+		assertEquals(1, second.getEntities().size());
+		assertNotEquals(first.getEntities().get(0).getId(), second.getEntities().get(0).getId());
+	}
+
 	@Test
 	public void testFind() throws Exception {
 		// create and save document
@@ -351,5 +407,10 @@ public class AbstractOrientDbRepositoryTest {
 		public String getModelClassName() {
 			return "Mock";
 		}
+
+		@Override
+		protected Collection<String> getKeysetFields() {
+			return Collections.singletonList("title");
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package org.segrada.service.repository.orientdb.base;
+
+import com.orientechnologies.orient.core.id.ORecordId;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KeysetOrderTest {
+	private static final List<String> fields = Arrays.asList("titleasc", "minJD");
+
+	@Test
+	public void testParse() throws Exception {
+		KeysetOrder order = KeysetOrder.parse(" ORDER BY titleasc", fields);
+		assertNotNull(order);
+		assertEquals("titleasc", order.getField());
+		assertFalse(order.isDescending());
+		assertEquals(" ASC", order.getDirection());
+		assertEquals(">", order.getSeekOperator());
+		assertEquals("<", order.getPrecedingOperator());
+
+		order = KeysetOrder.parse("minjd DESC", fields);
+		assertNotNull(order);
+		assertEquals("minJD", order.getField());
+		assertTrue(order.isDescending());
+		assertEquals(" DESC", order.getDirection());
+		assertEquals("<", order.getSeekOperator());
+		assertEquals(">", order.getPrecedingOperator());
+
+		assertNull(KeysetOrder.parse(null, fields));
+		assertNull(KeysetOrder.parse(" ORDER BY maxJD", fields));
+		assertNull(KeysetOrder.parse(" ORDER BY titleasc, minJD", fields));
+		assertNull(KeysetOrder.parse(" ORDER BY titleasc ASC LIMIT 10", fields));
+	}
+
+	@Test
+	public void testCursor() throws Exception {
+		KeysetOrder order = new KeysetOrder("titleasc", false);
+
+		String cursor = order.encodeCursor("a title|with pipe", "#12:5");
+		assertNotNull(cursor);
+		Object[] boundary = order.decodeCursor(cursor);
+		assertNotNull(boundary);
+		assertEquals("a title|with pipe", boundary[0]);
+		assertEquals(new ORecordId("#12:5"), boundary[1]);
+
+		// other order or field
+		assertNull(new KeysetOrder("titleasc", true).decodeCursor(cursor));
+		assertNull(new KeysetOrder("minJD", false).decodeCursor(cursor));
+
+		// numbers
+		order = new KeysetOrder("minJD", true);
+		cursor = order.encodeCursor(-2451545L, "#13:0");
+		boundary = order.decodeCursor(cursor);
+		assertNotNull(boundary);
+		assertEquals(-2451545L, boundary[0]);
+
+		// unsupported values and invalid tokens
+		assertNull(order.encodeCursor(null, "#13:0"));
+		assertNull(order.encodeCursor(1.5, "#13:0"));
+		assertNull(order.decodeCursor(null));
+		assertNull(order.decodeCursor(""));
+		assertNull(order.decodeCursor("not a cursor!"));
+		assertNull(order.decodeCursor("bWluSkQtfHh8bDE"));
+	}
+}
@@ -0,0 +1,111 @@
+package org.segrada.service.repository.orientdb.base;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LookupCacheTest {
+	@Test
+	public void testForDatabase() throws Exception {
+		assertNull(LookupCache.getExisting("memory:lookupcachetest"));
+		LookupCache cache = LookupCache.forDatabase("memory:lookupcachetest", 10);
+		assertSame(cache, LookupCache.forDatabase("memory:lookupcachetest", 10));
+		assertSame(cache, LookupCache.getExisting("memory:lookupcachetest"));
+	}
+
+	@Test
+	public void testGetAndPut() throws Exception {
+		LookupCache cache = new LookupCache(10);
+
+		assertNull(cache.get("#1:1", String.class));
+		cache.put("#1:1", 1, "value", cache.getGeneration());
+		assertEquals("value", cache.get("#1:1", String.class));
+		assertNull(cache.get("#1:1", Integer.class)); // wrong type
+
+		// older versions do not replace newer ones
+		cache.put("#1:1", 2, "value 2", cache.getGeneration());
+		cache.put("#1:1", 1, "value 1", cache.getGeneration());
+		assertEquals("value 2", cache.get("#1:1", String.class));
+
+		// statistics
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(0.5, cache.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void testBounded() throws Exception {
+		LookupCache cache = new LookupCache(2);
+		cache.put("#1:1", 1, "1", cache.getGeneration());
+		cache.put("#1:2", 1, "2", cache.getGeneration());
+		cache.get("#1:1", String.class); // recently used
+		cache.put("#1:3", 1, "3", cache.getGeneration());
+
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("#1:1", String.class));
+		assertNull(cache.get("#1:2", String.class));
+
+		// disabled
+		cache = new LookupCache(0);
+		cache.put("#1:1", 1, "1", cache.getGeneration());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		LookupCache cache = new LookupCache(10);
+		cache.put("#1:1", 1, "1", cache.getGeneration());
+		cache.put("#1:2", 1, "2", cache.getGeneration());
+
+		// value loaded before invalidation is not cached
+		long generation = cache.getGeneration();
+		cache.invalidate("#1:1");
+		cache.put("#1:1", 1, "1", generation);
+		assertNull(cache.get("#1:1", String.class));
+		assertNotNull(cache.get("#1:2", String.class));
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testGetVersion() throws Exception {
+		LookupCache cache = new LookupCache(10);
+		cache.put("#1:1", 1, "value", cache.getGeneration());
+
+		assertEquals("value", cache.get("#1:1", 1, String.class));
+		// other version: outdated entry is removed
+		assertNull(cache.get("#1:1", 2, String.class));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEvictions() throws Exception {
+		LookupCache cache = new LookupCache(2);
+		for (int i = 1; i <= 5; i++)
+			cache.put("#1:" + i, 1, "value", cache.getGeneration());
+
+		assertEquals(3, cache.getEvictions());
+		assertEquals(3L, cache.getStatistics().get("evictions"));
+		assertEquals(2, cache.getStatistics().get("size"));
+	}
+
+	@Test
+	public void testForModel() throws Exception {
+		LookupCache cache = LookupCache.forModel("memory:lookupcachemodeltest", "Node", 10);
+		assertSame(cache, LookupCache.forModel("memory:lookupcachemodeltest", "Node", 10));
+		assertNotSame(cache, LookupCache.forModel("memory:lookupcachemodeltest", "Source", 10));
+		assertEquals(2, LookupCache.getModelCaches("memory:lookupcachemodeltest").size());
+		assertTrue(LookupCache.getModelStatistics().containsKey("memory:lookupcachemodeltest"));
+
+		// ids are removed from all models
+		cache.put("#1:1", 1, "value", cache.getGeneration());
+		LookupCache.invalidateModelCaches("memory:lookupcachemodeltest", "#1:1");
+		assertEquals(0, cache.size());
+
+		// disabling clears cache
+		cache.put("#1:2", 1, "value", cache.getGeneration());
+		LookupCache.forModel("memory:lookupcachemodeltest", "Node", 0);
+		assertEquals(0, cache.size());
+	}
+}
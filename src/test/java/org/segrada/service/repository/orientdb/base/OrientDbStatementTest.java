@@ -0,0 +1,83 @@
+package org.segrada.service.repository.orientdb.base;
+
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OrientDbStatementTest {
+	private ODatabaseDocumentTx db;
+
+	@Before
+	public void setUp() throws Exception {
+		db = new ODatabaseDocumentTx("memory:orientdbstatementtest").create();
+		db.getMetadata().getSchema().createClass("Entry");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.drop();
+	}
+
+	@Test
+	public void testNamed() throws Exception {
+		OrientDbStatement statement = OrientDbStatement.named("Test.named", "select * from Entry where title = ?");
+		assertSame(statement, OrientDbStatement.named("Test.named", "select * from Entry where title = ?"));
+		assertNotSame(statement, OrientDbStatement.named("Test.named", "select * from Entry where title LIKE ?"));
+		assertEquals("Test.named", statement.getName());
+	}
+
+	@Test
+	public void testQueryAndExecute() throws Exception {
+		OrientDbStatement insert = OrientDbStatement.named("Test.insert", "insert into Entry set title = ?");
+		insert.execute(db, "it's a title");
+		insert.execute(db, "second");
+		ODocument document = insert.execute(db, "third");
+
+		OrientDbStatement query = OrientDbStatement.named("Test.findByTitle", "select * from Entry where title = ?");
+		assertNotNull(query.queryFirst(db, "it's a title")); // no escaping needed
+		assertNull(query.queryFirst(db, "unknown"));
+
+		// rids
+		List<ODocument> result = OrientDbStatement.named("Test.findByIds", "select * from Entry where @rid IN ?")
+				.query(db, OrientDbStatement.rids(Arrays.asList(document.getIdentity().toString())));
+		assertEquals(1, result.size());
+		assertEquals(new ORecordId(document.getIdentity().toString()), OrientDbStatement.rid(document.getIdentity().toString()));
+
+		// limit
+		assertEquals(2, OrientDbStatement.named("Test.findFirst", "select * from Entry LIMIT ?").query(db, 2).size());
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		OrientDbStatement statement = OrientDbStatement.named("Test.statistics", "select title from Entry where title = ?");
+		long executions = statement.getExecutions();
+		statement.query(db, "a");
+		statement.query(db, "b");
+		assertEquals(executions + 2, statement.getExecutions());
+
+		try {
+			OrientDbStatement.named("Test.statistics", "select * from UnknownClass where title = ?").query(db, "a");
+			fail("Unknown class should fail");
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> values = (Map<String, Object>) OrientDbStatement.getStatistics().get("Test.statistics");
+		assertNotNull(values);
+		assertEquals(2L, values.get("variants"));
+		assertTrue((Long) values.get("failures") >= 1L);
+
+		OrientDbStatement.resetStatistics();
+		assertEquals(0L, statement.getExecutions());
+	}
+}
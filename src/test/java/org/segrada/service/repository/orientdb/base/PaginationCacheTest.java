@@ -0,0 +1,56 @@
+package org.segrada.service.repository.orientdb.base;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PaginationCacheTest {
+	@Test
+	public void testForDatabase() throws Exception {
+		assertSame(PaginationCache.forDatabase("memory:cachetest1"), PaginationCache.forDatabase("memory:cachetest1"));
+		assertNotSame(PaginationCache.forDatabase("memory:cachetest1"), PaginationCache.forDatabase("memory:cachetest2"));
+	}
+
+	@Test
+	public void testTotal() throws Exception {
+		PaginationCache cache = new PaginationCache();
+
+		assertNull(cache.getTotal("select count(*) from Node", 1000L));
+
+		cache.putTotal("select count(*) from Node", 42, cache.getGeneration());
+		assertEquals(new Integer(42), cache.getTotal("select count(*) from Node", 1000L));
+		assertNull(cache.getTotal("select count(*) from Source", 1000L));
+
+		// expired
+		assertNull(cache.getTotal("select count(*) from Node", -1L));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testBoundary() throws Exception {
+		PaginationCache cache = new PaginationCache();
+		Object[] boundary = new Object[]{"title", "#12:1"};
+
+		cache.putBoundary("select * from Node", 2, boundary, cache.getGeneration());
+		assertArrayEquals(boundary, cache.getBoundary("select * from Node", 2, 1000L));
+		assertNull(cache.getBoundary("select * from Node", 1, 1000L));
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		PaginationCache cache = new PaginationCache();
+
+		// value computed before change is not cached
+		long generation = cache.getGeneration();
+		cache.invalidate();
+		cache.putTotal("select count(*) from Node", 42, generation);
+		assertNull(cache.getTotal("select count(*) from Node", 1000L));
+
+		cache.putTotal("select count(*) from Node", 42, cache.getGeneration());
+		cache.putBoundary("select * from Node", 1, new Object[]{"title", "#12:1"}, cache.getGeneration());
+		cache.invalidate();
+		assertNull(cache.getTotal("select count(*) from Node", 1000L));
+		assertNull(cache.getBoundary("select * from Node", 1, 1000L));
+		assertEquals(0, cache.size());
+	}
+}
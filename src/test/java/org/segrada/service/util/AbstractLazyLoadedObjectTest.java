@@ -45,6 +45,26 @@ public class AbstractLazyLoadedObjectTest {
 		}
 	}
 
+	@Test
+	public void testLoadCount() throws Exception {
+		Method test = IMockObject.class.getMethod("test");
+		try {
+			AbstractLazyLoadedObject.resetLoadCount();
+			mockAbstractLazyLoadedObject.invoke(IMockObject.class, test, null);
+			mockAbstractLazyLoadedObject.invoke(IMockObject.class, test, null);
+			// loaded once only
+			assertEquals(1, AbstractLazyLoadedObject.getLoadCount());
+
+			new MockAbstractLazyLoadedObject(mockObject).invoke(IMockObject.class, test, null);
+			assertEquals(2, AbstractLazyLoadedObject.getLoadCount());
+
+			AbstractLazyLoadedObject.resetLoadCount();
+			assertEquals(0, AbstractLazyLoadedObject.getLoadCount());
+		} catch (Throwable t) {
+			throw new Exception(t);
+		}
+	}
+
 	/**
 	 * Mock interface to lazy load
 	 */
@@ -0,0 +1,93 @@
+package org.segrada.service.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class TagHierarchyTest {
+	private TagHierarchy hierarchy;
+
+	@Before
+	public void setUp() throws Exception {
+		hierarchy = new TagHierarchy();
+
+		// root => a => a1, a2; root => b => a2
+		hierarchy.rebuild(Arrays.asList("root", "a", "a1", "a2", "b", "single"), Arrays.asList(
+				new String[]{"root", "a"},
+				new String[]{"a", "a1"},
+				new String[]{"a", "a2"},
+				new String[]{"root", "b"},
+				new String[]{"b", "a2"},
+				new String[]{"a2", "root"} // circle, skipped
+		));
+	}
+
+	@Test
+	public void testRebuild() throws Exception {
+		assertEquals(6, hierarchy.size());
+		assertTrue(hierarchy.contains("single"));
+		assertFalse(hierarchy.contains("unknown"));
+
+		assertTrue(hierarchy.isConnected("root", "a"));
+		assertFalse(hierarchy.isConnected("a2", "root"));
+		assertFalse(hierarchy.isConnected("root", "a1"));
+
+		assertEquals(new HashSet<>(Arrays.asList("root", "a", "b")), hierarchy.getAncestorIds("a2"));
+		assertEquals(new HashSet<>(Arrays.asList("a", "a1", "a2", "b")), hierarchy.getDescendantIds("root"));
+		assertEquals(Arrays.asList("a", "b"), hierarchy.getParentIds("a2"));
+		assertEquals(Arrays.asList("a1", "a2"), hierarchy.getChildIds("a"));
+		assertEquals(Arrays.asList("root", "a", "a1", "a2", "b"), hierarchy.getSubTreeIds("root"));
+		assertEquals(Collections.emptyList(), hierarchy.getSubTreeIds("unknown"));
+	}
+
+	@Test
+	public void testCircles() throws Exception {
+		assertTrue(hierarchy.wouldCreateCircle("a2", "root"));
+		assertTrue(hierarchy.wouldCreateCircle("a", "a"));
+		assertFalse(hierarchy.wouldCreateCircle("a1", "b"));
+
+		assertFalse(hierarchy.connect("a1", "root"));
+		assertTrue(hierarchy.connect("a1", "b"));
+		assertTrue(hierarchy.isAncestorOf("a", "b"));
+		assertTrue(hierarchy.wouldCreateCircle("b", "a"));
+	}
+
+	@Test
+	public void testDisconnect() throws Exception {
+		// a2 is still reachable via b
+		hierarchy.disconnect("a", "a2");
+		assertTrue(hierarchy.isAncestorOf("root", "a2"));
+		assertFalse(hierarchy.isAncestorOf("a", "a2"));
+		assertEquals(new HashSet<>(Collections.singletonList("a1")), hierarchy.getDescendantIds("a"));
+
+		hierarchy.disconnect("root", "b");
+		assertFalse(hierarchy.isAncestorOf("root", "a2"));
+		assertEquals(new HashSet<>(Collections.singletonList("b")), hierarchy.getAncestorIds("a2"));
+	}
+
+	@Test
+	public void testAddAndRemoveTag() throws Exception {
+		hierarchy.removeTag("a");
+		assertEquals(5, hierarchy.size());
+		assertFalse(hierarchy.isAncestorOf("root", "a1"));
+		assertTrue(hierarchy.isAncestorOf("root", "a2"));
+		assertEquals(Collections.emptyList(), hierarchy.getParentIds("a1"));
+
+		// slot of removed tag is reused
+		hierarchy.addTag("new");
+		assertEquals(6, hierarchy.size());
+		assertTrue(hierarchy.getDescendantIds("new").isEmpty());
+		assertTrue(hierarchy.connect("new", "root"));
+		assertEquals(new HashSet<>(Arrays.asList("root", "b", "a2")), hierarchy.getDescendantIds("new"));
+
+		// unknown tags are added on connection
+		assertTrue(hierarchy.connect("other", "a1"));
+		assertEquals(7, hierarchy.size());
+		assertTrue(hierarchy.isAncestorOf("other", "a1"));
+	}
+}
@@ -0,0 +1,94 @@
+package org.segrada.service.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TitleSuggesterTest {
+	@Test
+	public void testSuggest() throws Exception {
+		TitleSuggester suggester = new TitleSuggester();
+		suggester.put("Node", "#11:1", "Karl der Große", "Charlemagne, Carolus Magnus");
+		suggester.put("Node", "#11:2", "Karlsruhe");
+		suggester.put("Node", "#11:3", "Großer Kurfürst");
+		suggester.put("Tag", "#12:1", "Karolinger");
+		assertEquals(4, suggester.size());
+
+		// title starting with term first, then shorter titles
+		assertEquals(Arrays.asList("#11:2", "#11:1"), ids(suggester.suggest("karl", 10, null)));
+		assertEquals(Arrays.asList("#11:1"), ids(suggester.suggest("Karl der", 10, null)));
+
+		// words in any order, case and diacritics are ignored
+		assertEquals(Arrays.asList("#11:3", "#11:1"), ids(suggester.suggest("gross", 10, null)));
+		assertEquals(Arrays.asList("#11:3"), ids(suggester.suggest("kurfurst gro", 10, null)));
+
+		// alternative titles are found, but ranked lower than titles
+		assertEquals(Arrays.asList("#11:1"), ids(suggester.suggest("magnus", 10, null)));
+		suggester.put("Node", "#11:4", "Magnus Effekt");
+		assertEquals(Arrays.asList("#11:4", "#11:1"), ids(suggester.suggest("magnus", 10, null)));
+
+		// classes and maximum
+		assertEquals(Arrays.asList("#12:1"), ids(suggester.suggest("ka", 10, Collections.singleton("Tag"))));
+		assertEquals(3, suggester.suggest("ka", 10, null).size());
+		assertEquals(Arrays.asList("#11:2"), ids(suggester.suggest("ka", 1, Collections.singleton("Node"))));
+
+		// no words
+		assertTrue(suggester.suggest("", 10, null).isEmpty());
+		assertTrue(suggester.suggest(" ,. ", 10, null).isEmpty());
+		assertTrue(suggester.suggest(null, 10, null).isEmpty());
+
+		// suggestion data
+		TitleSuggester.Suggestion suggestion = suggester.suggest("karlsruhe", 10, null).get(0);
+		assertEquals("Node", suggestion.getClassName());
+		assertEquals("#11:2", suggestion.getId());
+		assertEquals("11-2", suggestion.getUid());
+		assertEquals("Karlsruhe", suggestion.getTitle());
+	}
+
+	@Test
+	public void testChanges() throws Exception {
+		TitleSuggester suggester = new TitleSuggester();
+		suggester.put("Node", "#11:1", "Apple");
+		suggester.put("Node", "#11:2", "Pear");
+
+		// replace
+		suggester.put("Node", "#11:1", "Cherry");
+		assertTrue(suggester.suggest("apple", 10, null).isEmpty());
+		assertEquals(Arrays.asList("#11:1"), ids(suggester.suggest("cher", 10, null)));
+
+		// remove
+		suggester.remove("#11:2");
+		suggester.remove("#11:99");
+		assertTrue(suggester.suggest("pear", 10, null).isEmpty());
+		assertEquals(1, suggester.size());
+
+		// records without title are skipped
+		suggester.put("Node", "#11:3", null, "", " ");
+		assertEquals(1, suggester.size());
+		suggester.put("Source", "#13:1", "", "Short title", "ref");
+		assertEquals("Short title", suggester.suggest("ref", 10, null).get(0).getTitle());
+
+		// rebuild replaces records of one class only
+		Map<String, String[]> nodes = new HashMap<>();
+		nodes.put("#11:5", new String[]{"Plum"});
+		suggester.rebuild("Node", nodes);
+		assertTrue(suggester.suggest("cherry", 10, null).isEmpty());
+		assertEquals(Arrays.asList("#11:5"), ids(suggester.suggest("plum", 10, null)));
+		assertEquals(2, suggester.size());
+	}
+
+	@Test
+	public void testNormalizeWords() throws Exception {
+		assertArrayEquals(new String[]{}, TitleSuggester.normalizeWords(null));
+		assertArrayEquals(new String[]{"cafe", "creme", "1900"}, TitleSuggester.normalizeWords(" Café-Crème (1900)"));
+	}
+
+	private static List<String> ids(List<TitleSuggester.Suggestion> suggestions) {
+		List<String> ids = new ArrayList<>();
+		for (TitleSuggester.Suggestion suggestion : suggestions)
+			ids.add(suggestion.getId());
+		return ids;
+	}
+}
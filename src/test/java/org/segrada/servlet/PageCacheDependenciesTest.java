@@ -0,0 +1,87 @@
+package org.segrada.servlet;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PageCacheDependenciesTest {
+	private PageCacheDependencies dependencies;
+
+	private Ehcache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		dependencies = new PageCacheDependencies();
+
+		CacheManager.getInstance().addCache("PageCacheDependenciesTest");
+		cache = CacheManager.getInstance().getEhcache("PageCacheDependenciesTest");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		CacheManager.getInstance().removeCache("PageCacheDependenciesTest");
+	}
+
+	@Test
+	public void testUrlPatternAndDependencies() throws Exception {
+		assertEquals("/", PageCacheDependencies.urlPattern("/"));
+		assertEquals("/node", PageCacheDependencies.urlPattern("/node"));
+		assertEquals("/node/show/*", PageCacheDependencies.urlPattern("/node/show/12-3"));
+		assertEquals("/file/by_reference/*", PageCacheDependencies.urlPattern("/file/by_reference/node/12-3"));
+
+		// show pages depend on entity only
+		Set<String> show = PageCacheDependencies.urlDependencies("/node/show/12-3");
+		assertEquals(1, show.size());
+		assertTrue(show.contains("uid:12-3"));
+
+		// list pages depend on model list and entities in url
+		Set<String> list = PageCacheDependencies.urlDependencies("/relation/by_node/12-3");
+		assertEquals(2, list.size());
+		assertTrue(list.contains("model:relation"));
+		assertTrue(list.contains("uid:12-3"));
+
+		assertTrue(PageCacheDependencies.urlDependencies("/").contains("model:index"));
+
+		assertEquals("source_reference", PageCacheDependencies.modelToUrlPart("SourceReference"));
+		assertEquals("node", PageCacheDependencies.modelToUrlPart("node"));
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		// node show page linking another node, node list, source show page
+		Set<String> nodeShow = PageCacheDependencies.urlDependencies("/node/show/12-3");
+		PageCacheDependencies.addUidDependencies("<a href=\"/node/show/12-4\">Other</a> 2015-10-01", nodeShow);
+		put("nodeShow", "/node/show/*", nodeShow);
+		put("nodeList", "/node", PageCacheDependencies.urlDependencies("/node"));
+		put("sourceShow", "/source/show/*", PageCacheDependencies.urlDependencies("/source/show/15-1"));
+
+		assertEquals(3, dependencies.size());
+
+		// linked node changed: show page and list are evicted, source remains
+		assertEquals(2, dependencies.invalidate(cache, "node", "12-4"));
+		assertNull(cache.get("nodeShow"));
+		assertNull(cache.get("nodeList"));
+		assertNotNull(cache.get("sourceShow"));
+		assertEquals(1, dependencies.size());
+
+		Map<String, Object> statistics = dependencies.getStatistics();
+		assertEquals(1L, ((Map<String, Object>) statistics.get("/node/show/*")).get("evictions"));
+
+		// global model flushes whole cache
+		assertEquals(-1, dependencies.invalidate(cache, "tag", "1-1"));
+		assertNull(cache.get("sourceShow"));
+	}
+
+	private void put(String key, String pattern, Set<String> pageDependencies) {
+		dependencies.register(key, pattern, pageDependencies);
+		cache.put(new Element(key, "page"));
+	}
+}
@@ -2,6 +2,8 @@ package org.segrada.test;
 
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import org.segrada.service.repository.orientdb.base.LookupCache;
+import org.segrada.service.repository.orientdb.base.PaginationCache;
 import org.segrada.service.repository.orientdb.init.OrientDbSchemaUpdater;
 
 /**
@@ -35,6 +37,11 @@ public class OrientDBTestInstance {
 	 * @return
 	 */
 	public ODatabaseDocumentTx getDatabase() {
+		// tests truncate classes directly, so cached counts and records might be outdated
+		PaginationCache.forDatabase("memory:segradatest").invalidate();
+		LookupCache lookupCache = LookupCache.getExisting("memory:segradatest");
+		if (lookupCache != null) lookupCache.invalidateAll();
+
 		return graphFactory.getDatabase();
 	}
 
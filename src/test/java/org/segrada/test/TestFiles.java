@@ -0,0 +1,55 @@
+package org.segrada.test;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Copyright 2015 Maximilian Kalus [segrada@auxnet.de]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Helper for temporary files created by tests
+ */
+public final class TestFiles {
+	private static final Logger logger = LoggerFactory.getLogger(TestFiles.class);
+
+	private TestFiles() {
+	}
+
+	/**
+	 * delete file or directory including its contents - called from finally blocks and tear downs, so files that
+	 * cannot be deleted are logged instead of hiding the outcome of the test
+	 * @param path to delete (nothing happens if it does not exist)
+	 */
+	public static void deleteRecursively(Path path) {
+		if (path == null || !Files.exists(path)) return;
+
+		try (Stream<Path> files = Files.walk(path)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> {
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					logger.warn("Could not delete temporary file " + file, e);
+				}
+			});
+		} catch (IOException e) {
+			logger.warn("Could not walk temporary directory " + path, e);
+		}
+	}
+}